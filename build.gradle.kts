@@ -4,8 +4,10 @@ import org.gradle.api.tasks.testing.logging.TestLogEvent
 plugins {
     alias(libs.plugins.hivemq.extension)
     alias(libs.plugins.defaults)
+    alias(libs.plugins.jmh)
     alias(libs.plugins.oci)
     alias(libs.plugins.spotless)
+    `java-test-fixtures`
 }
 
 group = "com.hivemq.extensions"
@@ -40,6 +42,7 @@ dependencies {
     hivemqProvided(libs.logback.classic)
     implementation(libs.owner)
     implementation(libs.aws.sdkv2.s3)
+    implementation(libs.aws.sdkv2.sts)
     // The AWS SDK's apache5-client (sync HTTP client) pulls httpclient5 5.6.1, which pins httpcore5-h2 to 5.4.
     // Forcing httpclient5 to 5.6.2 transitively pulls the patched httpcore5/httpcore5-h2 5.4.3
     // (its parent raises httpcore.version 5.4 -> 5.4.3).
@@ -51,6 +54,22 @@ dependencies {
     implementation(platform(libs.netty.bom)) {
         because("pin netty-bom to a fixed version to address vulnerabilities introduced via the AWS SDK")
     }
+    // the S3 stand-in to test and benchmark against slow or throttled S3
+    testFixturesCompileOnly(libs.jetbrains.annotations)
+    jmhCompileOnly(libs.jetbrains.annotations)
+    jmhImplementation(testFixtures(project))
+    jmhImplementation(libs.hivemq.extensionSdk)
+    jmhImplementation(libs.logback.classic)
+    jmhImplementation(libs.mockito)
+}
+
+jmh {
+    jmhVersion = libs.versions.jmh
+    // reports the allocation rate (gc.alloc.rate.norm) next to the scores
+    profilers = listOf("gc")
+    // machine readable results to compare releases
+    resultFormat = "JSON"
+    resultsFile = layout.buildDirectory.file("results/jmh/results.json")
 }
 
 oci {
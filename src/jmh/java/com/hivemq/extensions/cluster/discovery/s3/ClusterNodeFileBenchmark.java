@@ -0,0 +1,71 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.cluster.discovery.s3;
+
+import org.jetbrains.annotations.NotNull;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the expiration check of the node files of a discovery cycle, which is done for every listed node file and
+ * every entry of the manifest.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClusterNodeFileBenchmark {
+
+    @Param("1000")
+    public int nodeFiles;
+
+    private @NotNull ClusterNodeFile[] clusterNodeFiles;
+
+    @Setup
+    public void setUp() {
+        final var nowMillis = System.currentTimeMillis();
+        clusterNodeFiles = new ClusterNodeFile[nodeFiles];
+        for (int i = 0; i < nodeFiles; i++) {
+            // every tenth node file is expired
+            clusterNodeFiles[i] =
+                    ClusterNodeFile.of("NODE" + i, "10.0.0.1", 7800, nowMillis - (i % 10 == 0 ? 400_000 : 60_000));
+        }
+    }
+
+    @Benchmark
+    public int isExpired() {
+        int liveNodeFiles = 0;
+        for (final var clusterNodeFile : clusterNodeFiles) {
+            if (!clusterNodeFile.isExpired(360)) {
+                liveNodeFiles++;
+            }
+        }
+        return liveNodeFiles;
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.cluster.discovery.s3;
+
+import com.hivemq.extensions.cluster.discovery.s3.config.FileFormat;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the throughput of encoding and decoding a node file in the {@link FileFormat file formats}, including the
+ * Base64 step of the stored content. The allocation per operation is reported by the {@code gc} profiler.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClusterNodeFileCodecBenchmark {
+
+    @Param({"V4", "V5"})
+    public @NotNull FileFormat fileFormat;
+
+    private @NotNull ClusterNodeFile nodeFile;
+    private @NotNull String content;
+
+    @Setup
+    public void setUp() {
+        nodeFile = ClusterNodeFile.of("ABCD12", "10.0.12.34", 7800, 1_700_000_000_000L);
+        content = nodeFile.encode(fileFormat);
+    }
+
+    @Benchmark
+    public @NotNull String encode() {
+        return nodeFile.encode(fileFormat);
+    }
+
+    @Benchmark
+    public @Nullable ClusterNodeFile decode() {
+        return ClusterNodeFile.parseClusterNodeFile(content);
+    }
+}
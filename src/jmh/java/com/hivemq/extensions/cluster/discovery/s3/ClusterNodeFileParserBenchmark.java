@@ -0,0 +1,76 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.cluster.discovery.s3;
+
+import com.hivemq.extensions.cluster.discovery.s3.config.FileFormat;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Compares parsing a {@link FileFormat#V4} node file with the previous parser, that decoded the Base64 content into a
+ * new array and split the string with a regex, to the allocation free parser. The bytes per parse are reported by the
+ * {@code gc} profiler as {@code gc.alloc.rate.norm}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClusterNodeFileParserBenchmark {
+
+    private static final @NotNull Pattern CONTENT_SEPARATOR_PATTERN = Pattern.compile("\\|\\|\\|\\|");
+
+    private @NotNull String content;
+
+    @Setup
+    public void setUp() {
+        content = ClusterNodeFile.of("ABCD12", "10.0.12.34", 7800, 1_700_000_000_000L).encode(FileFormat.V4);
+    }
+
+    @Benchmark
+    public @Nullable ClusterNodeFile regexSplit() {
+        final var splitContent =
+                CONTENT_SEPARATOR_PATTERN.split(new String(Base64.getDecoder().decode(content), UTF_8));
+        if (splitContent.length != 5 || !splitContent[0].contentEquals(ClusterNodeFile.CONTENT_VERSION)) {
+            return null;
+        }
+        final long creationTimeInMillis = Long.parseLong(splitContent[1]);
+        final int port = Integer.parseInt(splitContent[4]);
+        return ClusterNodeFile.of(splitContent[2], splitContent[3], port, creationTimeInMillis);
+    }
+
+    @Benchmark
+    public @Nullable ClusterNodeFile indexed() {
+        return ClusterNodeFile.parseClusterNodeFile(content);
+    }
+}
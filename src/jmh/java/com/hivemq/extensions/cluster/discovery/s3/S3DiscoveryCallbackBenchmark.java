@@ -0,0 +1,227 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.cluster.discovery.s3;
+
+import com.codahale.metrics.MetricRegistry;
+import com.hivemq.extension.sdk.api.parameter.ExtensionInformation;
+import com.hivemq.extension.sdk.api.services.cluster.parameter.ClusterDiscoveryInput;
+import com.hivemq.extension.sdk.api.services.cluster.parameter.ClusterDiscoveryOutput;
+import com.hivemq.extension.sdk.api.services.cluster.parameter.ClusterNodeAddress;
+import com.hivemq.extensions.cluster.discovery.s3.aws.DeleteObjectsResult;
+import com.hivemq.extensions.cluster.discovery.s3.aws.HiveMQS3Client;
+import com.hivemq.extensions.cluster.discovery.s3.aws.S3BucketResponse;
+import com.hivemq.extensions.cluster.discovery.s3.config.ConfigurationReader;
+import com.hivemq.extensions.cluster.discovery.s3.config.FileFormat;
+import com.hivemq.extensions.cluster.discovery.s3.config.ResolvedS3Config;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static com.hivemq.extensions.cluster.discovery.s3.ExtensionConstants.EXTENSION_CONFIGURATION;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Measures a synchronous discovery cycle of the reload callback from the listed S3 objects to the node addresses: the
+ * stale check, the lookup of the known node files and the filtering of the expired and duplicate node files.
+ * <p>
+ * The S3 client is stubbed with pre-built {@link ListObjectsV2Response} pages of at most 1,000 objects, like S3
+ * returns them. The node files are known from the object key of the {@code key} layout or from the node file cache
+ * of the {@code object} layout, which is filled by the initial discovery cycle, so no node file is downloaded.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class S3DiscoveryCallbackBenchmark {
+
+    private static final int PAGE_SIZE = 1_000;
+    private static final @NotNull String FILE_PREFIX = "hivemq/cluster/nodes/";
+
+    @Param({"10", "100", "1000", "10000"})
+    public int objects;
+
+    @Param({"object", "key"})
+    public @NotNull String fileLayout;
+
+    private @NotNull Path extensionHomeFolder;
+    private @NotNull ClusterDiscoveryInput clusterDiscoveryInput;
+    private @NotNull ClusterDiscoveryOutput clusterDiscoveryOutput;
+    private @NotNull S3DiscoveryCallback s3DiscoveryCallback;
+
+    @Setup
+    public void setUp() throws IOException {
+        extensionHomeFolder = Files.createTempDirectory("s3-discovery-benchmark");
+        final var configPath = extensionHomeFolder.resolve(EXTENSION_CONFIGURATION);
+        Files.createDirectories(configPath.getParent());
+        Files.writeString(configPath, """
+                s3-bucket-region:us-east-1
+                s3-bucket-name:hivemq
+                file-prefix:%s
+                file-expiration:360
+                update-interval:180
+                credentials-type:default
+                file-layout:%s""".formatted(FILE_PREFIX, fileLayout));
+        final ExtensionInformation extensionInformation = mock();
+        when(extensionInformation.getExtensionHomeFolder()).thenReturn(extensionHomeFolder.toFile());
+        final var configurationReader = new ConfigurationReader(extensionInformation);
+        final var s3Config = Objects.requireNonNull(configurationReader.readConfiguration());
+
+        // stub only mocks do not record the invocations, which would grow with every invocation of the benchmark
+        clusterDiscoveryInput = mock(ClusterDiscoveryInput.class, withSettings().stubOnly());
+        when(clusterDiscoveryInput.getOwnClusterId()).thenReturn("ABCD12");
+        when(clusterDiscoveryInput.getOwnAddress()).thenReturn(new ClusterNodeAddress("10.0.0.1", 7800));
+        when(clusterDiscoveryInput.getReloadInterval()).thenReturn(60);
+        clusterDiscoveryOutput = mock(ClusterDiscoveryOutput.class, withSettings().stubOnly());
+
+        final var hiveMQS3Client = new StubS3Client(configurationReader, s3Config, fileLayout, objects);
+        s3DiscoveryCallback = new S3DiscoveryCallback(hiveMQS3Client,
+                new MembershipSnapshotFile(extensionHomeFolder.resolve("membership.snapshot")),
+                new S3DiscoveryMetrics(new MetricRegistry()));
+        s3DiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        s3DiscoveryCallback.destroy(clusterDiscoveryInput);
+        try (final Stream<Path> paths = Files.walk(extensionHomeFolder)) {
+            for (final var path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Benchmark
+    public void reload() {
+        s3DiscoveryCallback.reload(clusterDiscoveryInput, clusterDiscoveryOutput);
+    }
+
+    /**
+     * Lists the pre-built pages and serves the node files without any request.
+     */
+    private static final class StubS3Client extends HiveMQS3Client {
+
+        private final @NotNull ResolvedS3Config s3Config;
+        private final @NotNull List<ListObjectsV2Response> pages = new ArrayList<>();
+        private final @NotNull Map<String, String> contents = new HashMap<>();
+
+        private StubS3Client(
+                final @NotNull ConfigurationReader configurationReader,
+                final @NotNull ResolvedS3Config s3Config,
+                final @NotNull String fileLayout,
+                final int objects) {
+            super(configurationReader);
+            this.s3Config = s3Config;
+            final var lastModified = Instant.now();
+            var s3Objects = new ArrayList<S3Object>(PAGE_SIZE);
+            for (int i = 0; i < objects; i++) {
+                final var nodeFile = ClusterNodeFile.of("NODE" + i,
+                        "10.1." + (i / 256) + "." + (i % 256),
+                        7800,
+                        lastModified.toEpochMilli());
+                final var objectKey = fileLayout.equals("key") ?
+                        FILE_PREFIX + nodeFile.getClusterId() + "/" + nodeFile.toKeyName(FileFormat.V4) :
+                        FILE_PREFIX + nodeFile.getClusterId();
+                s3Objects.add(S3Object.builder()
+                        .key(objectKey)
+                        .eTag("\"" + i + "\"")
+                        .lastModified(lastModified)
+                        .build());
+                contents.put(objectKey, nodeFile.toString());
+                if (s3Objects.size() == PAGE_SIZE || i == objects - 1) {
+                    final var truncated = i < objects - 1;
+                    pages.add(ListObjectsV2Response.builder()
+                            .contents(s3Objects)
+                            .isTruncated(truncated)
+                            .nextContinuationToken(truncated ? String.valueOf(pages.size() + 1) : null)
+                            .build());
+                    s3Objects = new ArrayList<>(PAGE_SIZE);
+                }
+            }
+        }
+
+        @Override
+        public void createOrUpdate() {
+        }
+
+        @Override
+        public @Nullable ResolvedS3Config getS3Config() {
+            return s3Config;
+        }
+
+        @Override
+        public @NotNull S3BucketResponse checkBucket() {
+            return new S3BucketResponse(s3Config.getBucketName(), 200, null);
+        }
+
+        @Override
+        public void saveObject(final @NotNull String objectKey, final @NotNull String content) {
+        }
+
+        @Override
+        public void deleteObject(final @NotNull String objectKey) {
+        }
+
+        @Override
+        public @NotNull DeleteObjectsResult deleteObjects(final @NotNull Map<String, @Nullable String> objects) {
+            return new DeleteObjectsResult(List.of(), List.of());
+        }
+
+        @Override
+        public @NotNull String getObject(final @NotNull String objectKey) {
+            return contents.get(objectKey);
+        }
+
+        @Override
+        public @NotNull ListObjectsV2Response getObjects() {
+            return pages.get(0);
+        }
+
+        @Override
+        public @NotNull ListObjectsV2Response getNextBatchOfObjects(final @NotNull String continuationToken) {
+            return pages.get(Integer.parseInt(continuationToken));
+        }
+    }
+}
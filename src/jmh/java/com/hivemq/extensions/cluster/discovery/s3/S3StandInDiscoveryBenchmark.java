@@ -0,0 +1,160 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.cluster.discovery.s3;
+
+import com.codahale.metrics.MetricRegistry;
+import com.hivemq.extension.sdk.api.parameter.ExtensionInformation;
+import com.hivemq.extension.sdk.api.services.cluster.parameter.ClusterDiscoveryInput;
+import com.hivemq.extension.sdk.api.services.cluster.parameter.ClusterDiscoveryOutput;
+import com.hivemq.extension.sdk.api.services.cluster.parameter.ClusterNodeAddress;
+import com.hivemq.extensions.cluster.discovery.s3.aws.S3StandIn;
+import com.hivemq.extensions.cluster.discovery.s3.aws.S3StandIn.Latency;
+import com.hivemq.extensions.cluster.discovery.s3.aws.S3StandIn.Operation;
+import com.hivemq.extensions.cluster.discovery.s3.config.ConfigurationReader;
+import com.hivemq.extensions.cluster.discovery.s3.config.FileFormat;
+import org.jetbrains.annotations.NotNull;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static com.hivemq.extensions.cluster.discovery.s3.ExtensionConstants.EXTENSION_CONFIGURATION;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Measures a synchronous discovery cycle of the reload callback with the real S3 client against the {@link S3StandIn},
+ * so the HTTP requests, the response parsing of the SDK and a slow S3 are part of the measurement.
+ * <p>
+ * The latency of the S3 requests is log-normal distributed around the given median. The node file cache of the
+ * {@code object} layout is filled by the initial discovery cycle, so a cycle lists the node files and updates the own
+ * node file when it is due.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class S3StandInDiscoveryBenchmark {
+
+    private static final @NotNull String BUCKET_NAME = "hivemq";
+    private static final @NotNull String FILE_PREFIX = "hivemq/cluster/nodes/";
+
+    @Param({"100", "5000"})
+    public int objects;
+
+    @Param({"object", "key"})
+    public @NotNull String fileLayout;
+
+    @Param({"0", "20"})
+    public int medianLatencyMillis;
+
+    private @NotNull S3StandIn s3StandIn;
+    private @NotNull Path extensionHomeFolder;
+    private @NotNull ClusterDiscoveryInput clusterDiscoveryInput;
+    private @NotNull ClusterDiscoveryOutput clusterDiscoveryOutput;
+    private @NotNull S3DiscoveryCallback s3DiscoveryCallback;
+
+    @Setup
+    public void setUp() throws IOException {
+        s3StandIn = S3StandIn.start(BUCKET_NAME);
+        s3StandIn.setSeed(4_711);
+        final var lastModified = Instant.now();
+        for (int i = 0; i < objects; i++) {
+            final var nodeFile = ClusterNodeFile.of("NODE" + i,
+                    "10.1." + (i / 256) + "." + (i % 256),
+                    7800,
+                    lastModified.toEpochMilli());
+            final var objectKey = fileLayout.equals("key") ?
+                    FILE_PREFIX + nodeFile.getClusterId() + "/" + nodeFile.toKeyName(FileFormat.V4) :
+                    FILE_PREFIX + nodeFile.getClusterId();
+            s3StandIn.putObject(objectKey, nodeFile.toString(), lastModified);
+        }
+        if (medianLatencyMillis > 0) {
+            final var latency = Latency.logNormal(Duration.ofMillis(medianLatencyMillis), 0.5);
+            for (final var operation : Operation.values()) {
+                s3StandIn.setLatency(operation, latency);
+            }
+        }
+
+        extensionHomeFolder = Files.createTempDirectory("s3-stand-in-benchmark");
+        final var configPath = extensionHomeFolder.resolve(EXTENSION_CONFIGURATION);
+        Files.createDirectories(configPath.getParent());
+        Files.writeString(configPath, """
+                s3-bucket-region:us-east-1
+                s3-bucket-name:%s
+                file-prefix:%s
+                file-expiration:360
+                update-interval:180
+                s3-endpoint:%s
+                s3-endpoint-region:us-east-1
+                s3-path-style-access:true
+                credentials-type:access_key
+                credentials-access-key-id:access-key-id
+                credentials-secret-access-key:secret-access-key
+                file-layout:%s""".formatted(BUCKET_NAME, FILE_PREFIX, s3StandIn.getEndpoint(), fileLayout));
+        final ExtensionInformation extensionInformation = mock();
+        when(extensionInformation.getExtensionHomeFolder()).thenReturn(extensionHomeFolder.toFile());
+
+        // stub only mocks do not record the invocations, which would grow with every invocation of the benchmark
+        clusterDiscoveryInput = mock(ClusterDiscoveryInput.class, withSettings().stubOnly());
+        when(clusterDiscoveryInput.getOwnClusterId()).thenReturn("ABCD12");
+        when(clusterDiscoveryInput.getOwnAddress()).thenReturn(new ClusterNodeAddress("10.0.0.1", 7800));
+        when(clusterDiscoveryInput.getReloadInterval()).thenReturn(60);
+        clusterDiscoveryOutput = mock(ClusterDiscoveryOutput.class, withSettings().stubOnly());
+
+        s3DiscoveryCallback = new S3DiscoveryCallback(new ConfigurationReader(extensionInformation),
+                new MembershipSnapshotFile(extensionHomeFolder.resolve("membership.snapshot")),
+                new S3DiscoveryMetrics(new MetricRegistry()));
+        s3DiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        s3DiscoveryCallback.destroy(clusterDiscoveryInput);
+        s3StandIn.close();
+        try (final Stream<Path> paths = Files.walk(extensionHomeFolder)) {
+            for (final var path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Benchmark
+    public void reload() {
+        s3DiscoveryCallback.reload(clusterDiscoveryInput, clusterDiscoveryOutput);
+    }
+}
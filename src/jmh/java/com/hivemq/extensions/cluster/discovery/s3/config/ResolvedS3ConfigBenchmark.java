@@ -0,0 +1,104 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.cluster.discovery.s3.config;
+
+import org.aeonbits.owner.ConfigFactory;
+import org.jetbrains.annotations.NotNull;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the configuration lookups of a discovery cycle on the {@link S3Config} proxy with the
+ * {@link ResolvedS3Config}. Every listed node file is checked for expiration and its object key is matched against
+ * the file prefix and the file layout.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResolvedS3ConfigBenchmark {
+
+    @Param("1000")
+    public int nodeFiles;
+
+    private @NotNull S3Config s3Config;
+    private @NotNull ResolvedS3Config resolvedS3Config;
+    private @NotNull String[] objectKeys;
+    private long[] lastModifiedMillis;
+    private long nowMillis;
+
+    @Setup
+    public void setUp() {
+        final var properties = new Properties();
+        properties.setProperty("s3-bucket-region", "us-east-1");
+        properties.setProperty("s3-bucket-name", "hivemq");
+        properties.setProperty("file-prefix", "hivemq/cluster/nodes/");
+        properties.setProperty("file-expiration", "360");
+        properties.setProperty("update-interval", "180");
+        properties.setProperty("credentials-type", "default");
+        s3Config = ConfigFactory.create(S3Config.class, properties);
+        resolvedS3Config = new ResolvedS3Config(s3Config);
+        nowMillis = System.currentTimeMillis();
+        objectKeys = new String[nodeFiles];
+        lastModifiedMillis = new long[nodeFiles];
+        for (int i = 0; i < nodeFiles; i++) {
+            objectKeys[i] = "hivemq/cluster/nodes/NODE" + i;
+            // every tenth node file is expired
+            lastModifiedMillis[i] = nowMillis - (i % 10 == 0 ? 400_000 : 60_000);
+        }
+    }
+
+    @Benchmark
+    public int ownerProxy() {
+        int liveNodeFiles = 0;
+        for (int i = 0; i < nodeFiles; i++) {
+            if (FileLayout.fromName(s3Config.getFileLayoutName()) != FileLayout.MANIFEST &&
+                    objectKeys[i].startsWith(s3Config.getFilePrefix()) &&
+                    lastModifiedMillis[i] + s3Config.getFileExpirationInSeconds() * 1_000 >= nowMillis) {
+                liveNodeFiles++;
+            }
+        }
+        return liveNodeFiles;
+    }
+
+    @Benchmark
+    public int resolved() {
+        int liveNodeFiles = 0;
+        for (int i = 0; i < nodeFiles; i++) {
+            if (resolvedS3Config.getFileLayout() != FileLayout.MANIFEST &&
+                    objectKeys[i].startsWith(resolvedS3Config.getFilePrefix()) &&
+                    lastModifiedMillis[i] + resolvedS3Config.getFileExpirationInSeconds() * 1_000 >= nowMillis) {
+                liveNodeFiles++;
+            }
+        }
+        return liveNodeFiles;
+    }
+}
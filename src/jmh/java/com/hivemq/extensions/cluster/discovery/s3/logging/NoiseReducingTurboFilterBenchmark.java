@@ -0,0 +1,73 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.cluster.discovery.s3.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.core.spi.FilterReply;
+import org.jetbrains.annotations.NotNull;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the turbo filter, which is consulted for every log statement of HiveMQ and all extensions, for a noisy
+ * logger of the AWS SDK, whose statement is downgraded to trace, and for any other logger.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NoiseReducingTurboFilterBenchmark {
+
+    private static final @NotNull Object[] PARAMS = {"hivemq"};
+
+    private @NotNull NoiseReducingTurboFilter noiseReducingTurboFilter;
+    private @NotNull Logger noisyLogger;
+    private @NotNull Logger otherLogger;
+
+    @Setup
+    public void setUp() {
+        final var context = new LoggerContext();
+        noisyLogger = context.getLogger("software.amazon.awssdk.request");
+        otherLogger = context.getLogger("com.hivemq.extensions.cluster.discovery.s3.S3DiscoveryCallback");
+        noiseReducingTurboFilter = new NoiseReducingTurboFilter();
+        noiseReducingTurboFilter.setContext(context);
+        noiseReducingTurboFilter.start();
+    }
+
+    @Benchmark
+    public @NotNull FilterReply noisyLogger() {
+        return noiseReducingTurboFilter.decide(null, noisyLogger, Level.DEBUG, "Sending request to {}", PARAMS, null);
+    }
+
+    @Benchmark
+    public @NotNull FilterReply otherLogger() {
+        return noiseReducingTurboFilter.decide(null, otherLogger, Level.DEBUG, "Sending request to {}", PARAMS, null);
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.cluster.discovery.s3;
+
+/**
+ * Bounds the number of in-flight S3 requests.
+ * <p>
+ * In adaptive mode the limit follows an AIMD scheme: it grows by one per window of successful requests whose latency
+ * stays close to the observed no-load latency, shrinks slightly if the latency degrades and is halved on throttling
+ * responses (503 SlowDown). The limit never exceeds the configured maximum and never drops below one.
+ */
+class AdaptiveConcurrencyLimit {
+
+    private static final double LATENCY_TOLERANCE = 2.0;
+    private static final double LATENCY_BACKOFF_RATIO = 0.9;
+    private static final double THROTTLING_BACKOFF_RATIO = 0.5;
+    private static final double BASELINE_DRIFT = 0.01;
+
+    private int maxLimit = 1;
+    private boolean adaptive;
+    private double limit = 1;
+    private int inFlight;
+    private double baselineLatencyNanos = -1;
+
+    synchronized void configure(final int maxLimit, final boolean adaptive) {
+        this.maxLimit = Math.max(1, maxLimit);
+        if (!adaptive || !this.adaptive) {
+            limit = this.maxLimit;
+        } else {
+            limit = Math.min(limit, this.maxLimit);
+        }
+        this.adaptive = adaptive;
+        notifyAll();
+    }
+
+    synchronized void acquire() throws InterruptedException {
+        while (inFlight >= (int) limit) {
+            wait();
+        }
+        inFlight++;
+    }
+
+    synchronized void release(final long latencyNanos, final boolean throttled) {
+        inFlight--;
+        if (adaptive) {
+            adjust(latencyNanos, throttled);
+        }
+        notifyAll();
+    }
+
+    /**
+     * Releases the permit of a request that was never sent, the limit is not adjusted.
+     */
+    synchronized void releaseUnused() {
+        inFlight--;
+        notifyAll();
+    }
+
+    synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    private void adjust(final long latencyNanos, final boolean throttled) {
+        if (throttled) {
+            limit = Math.max(1, limit * THROTTLING_BACKOFF_RATIO);
+            return;
+        }
+        if (baselineLatencyNanos < 0 || latencyNanos < baselineLatencyNanos) {
+            baselineLatencyNanos = latencyNanos;
+        } else {
+            // let the baseline follow slowly, so a permanently slower endpoint does not pin the limit to one
+            baselineLatencyNanos += (latencyNanos - baselineLatencyNanos) * BASELINE_DRIFT;
+        }
+        if (latencyNanos > baselineLatencyNanos * LATENCY_TOLERANCE) {
+            limit = Math.max(1, limit * LATENCY_BACKOFF_RATIO);
+        } else {
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.cluster.discovery.s3;
+
+import com.hivemq.extension.sdk.api.services.cluster.parameter.ClusterNodeAddress;
+import com.hivemq.extensions.cluster.discovery.s3.util.DaemonThreadFactory;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.hivemq.extensions.cluster.discovery.s3.ExtensionConstants.EXTENSION_NAME;
+
+/**
+ * Refreshes the node addresses on an extension owned thread, so the reload callback of HiveMQ can be answered with
+ * the latest snapshot instead of S3 requests (stale-while-revalidate).
+ */
+class BackgroundRefresher {
+
+    private static final @NotNull Logger LOG = LoggerFactory.getLogger(BackgroundRefresher.class);
+
+    private volatile @Nullable Snapshot snapshot;
+    private @Nullable ScheduledExecutorService executorService;
+
+    /**
+     * Starts to run the given refresh with a fixed delay, if the refresher is not running yet.
+     */
+    synchronized void start(final @NotNull Runnable refresh, final long periodMillis) {
+        if (executorService != null) {
+            return;
+        }
+        executorService =
+                Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("hivemq-s3-discovery-refresh"));
+        executorService.scheduleWithFixedDelay(() -> {
+            try {
+                refresh.run();
+            } catch (final Exception e) {
+                LOG.error("{}: Background refresh of the node addresses failed.", EXTENSION_NAME, e);
+            }
+        }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+        LOG.debug("{}: Started background refresh every {} ms.", EXTENSION_NAME, periodMillis);
+    }
+
+    synchronized boolean isRunning() {
+        return executorService != null;
+    }
+
+    /**
+     * Stops the refresher and discards the snapshot.
+     */
+    synchronized void stop() {
+        if (executorService != null) {
+            executorService.shutdownNow();
+            executorService = null;
+            LOG.debug("{}: Stopped background refresh.", EXTENSION_NAME);
+        }
+        snapshot = null;
+    }
+
+    void update(final @NotNull List<ClusterNodeAddress> nodeAddresses) {
+        snapshot = new Snapshot(List.copyOf(nodeAddresses), System.nanoTime());
+    }
+
+    /**
+     * @return the latest node addresses or {@code null} if there is no snapshot or the snapshot is older than the
+     *         given staleness bound.
+     */
+    @Nullable List<ClusterNodeAddress> getSnapshot(final long maxStalenessMillis) {
+        final var snapshot = this.snapshot;
+        if (snapshot == null ||
+                System.nanoTime() - snapshot.timestampNanos > TimeUnit.MILLISECONDS.toNanos(maxStalenessMillis)) {
+            return null;
+        }
+        return snapshot.nodeAddresses;
+    }
+
+    private static final class Snapshot {
+
+        private final @NotNull List<ClusterNodeAddress> nodeAddresses;
+        private final long timestampNanos;
+
+        private Snapshot(final @NotNull List<ClusterNodeAddress> nodeAddresses, final long timestampNanos) {
+            this.nodeAddresses = nodeAddresses;
+            this.timestampNanos = timestampNanos;
+        }
+    }
+}
@@ -17,14 +17,12 @@
 package com.hivemq.extensions.cluster.discovery.s3;
 
 import com.hivemq.extension.sdk.api.services.cluster.parameter.ClusterNodeAddress;
+import com.hivemq.extensions.cluster.discovery.s3.config.FileFormat;
 import com.hivemq.extensions.cluster.discovery.s3.util.Preconditions;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.Base64;
-import java.util.regex.Pattern;
-
-import static java.nio.charset.StandardCharsets.UTF_8;
 
 /**
  * @author Abdullah Imal
@@ -35,8 +33,6 @@ public class ClusterNodeFile {
     public static final @NotNull String CONTENT_VERSION = "4";
     public static final @NotNull String CONTENT_SEPARATOR = "||||";
 
-    private static final @NotNull Pattern CONTENT_SEPARATOR_PATTERN = Pattern.compile("\\|\\|\\|\\|");
-
     private final @NotNull String clusterId;
     private final @NotNull ClusterNodeAddress clusterNodeAddress;
     private final long creationTimeInMillis;
@@ -61,43 +57,38 @@ public class ClusterNodeFile {
         this.creationTimeInMillis = creationTimeInMillis;
     }
 
+    static @NotNull ClusterNodeFile of(
+            final @NotNull String clusterId,
+            final @NotNull String host,
+            final int port,
+            final long creationTimeInMillis) {
+        return new ClusterNodeFile(clusterId, new ClusterNodeAddress(host, port), creationTimeInMillis);
+    }
+
+    /**
+     * Parses a node file of any {@link FileFormat}, see {@link #encode(FileFormat)}.
+     */
     static @Nullable ClusterNodeFile parseClusterNodeFile(final @NotNull String fileContent) {
         Preconditions.checkNotNullOrBlank(fileContent, "fileContent");
-        final String content;
-        try {
-            content = new String(Base64.getDecoder().decode(fileContent), UTF_8);
-        } catch (final IllegalArgumentException ignored) {
-            return null;
-        }
-        final var splitContent = CONTENT_SEPARATOR_PATTERN.split(content);
-        if (splitContent.length != 5) {
-            return null;
-        }
-        final var version = splitContent[0];
-        if (!version.contentEquals(CONTENT_VERSION)) {
-            return null;
-        }
-        final long creationTimeInMillis;
-        try {
-            creationTimeInMillis = Long.parseLong(splitContent[1]);
-        } catch (final NumberFormatException ignored) {
-            return null;
-        }
-        final var clusterId = splitContent[2];
-        if (clusterId.isEmpty()) {
-            return null;
-        }
-        final var host = splitContent[3];
-        if (host.isEmpty()) {
-            return null;
-        }
-        final int port;
-        try {
-            port = Integer.parseInt(splitContent[4]);
-        } catch (final NumberFormatException ignored) {
-            return null;
-        }
-        return new ClusterNodeFile(clusterId, new ClusterNodeAddress(host, port), creationTimeInMillis);
+        return ClusterNodeFileCodec.decodeBase64(fileContent);
+    }
+
+    /**
+     * Parses a node file of any {@link FileFormat} from the last segment of an object key, see
+     * {@link #toKeyName(FileFormat)}.
+     */
+    static @Nullable ClusterNodeFile parseKeyName(final @NotNull String keyName) {
+        Preconditions.checkNotNullOrBlank(keyName, "keyName");
+        return ClusterNodeFileCodec.decodeBase64Url(keyName);
+    }
+
+    /**
+     * @return the node file with the later creation time.
+     */
+    static @NotNull ClusterNodeFile newest(
+            final @NotNull ClusterNodeFile first,
+            final @NotNull ClusterNodeFile second) {
+        return second.creationTimeInMillis > first.creationTimeInMillis ? second : first;
     }
 
     @NotNull String getClusterId() {
@@ -108,6 +99,10 @@ public class ClusterNodeFile {
         return clusterNodeAddress;
     }
 
+    long getCreationTimeInMillis() {
+        return creationTimeInMillis;
+    }
+
     boolean isExpired(final long expirationInSeconds) {
         // 0 = deactivated
         if (expirationInSeconds == 0) {
@@ -117,10 +112,26 @@ public class ClusterNodeFile {
         return creationPlusExpirationInMillis < System.currentTimeMillis();
     }
 
+    /**
+     * @return the content of this node file encoded with the URL and filename safe Base64 alphabet without padding, so
+     *         it can be used as segment of an object key.
+     */
+    @NotNull String toKeyName(final @NotNull FileFormat fileFormat) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(ClusterNodeFileCodec.encode(this, fileFormat));
+    }
+
+    /**
+     * @return the content of this node file in the given format encoded with Base64.
+     */
+    @NotNull String encode(final @NotNull FileFormat fileFormat) {
+        return Base64.getEncoder().encodeToString(ClusterNodeFileCodec.encode(this, fileFormat));
+    }
+
+    /**
+     * @return the content of this node file in the {@link FileFormat#V4} format encoded with Base64.
+     */
     @Override
     public @NotNull String toString() {
-        final var content = CONTENT_VERSION + CONTENT_SEPARATOR + creationTimeInMillis + CONTENT_SEPARATOR + clusterId +
-                CONTENT_SEPARATOR + clusterNodeAddress.getHost() + CONTENT_SEPARATOR + clusterNodeAddress.getPort();
-        return new String(Base64.getEncoder().encode(content.getBytes(UTF_8)), UTF_8);
+        return encode(FileFormat.V4);
     }
 }
@@ -0,0 +1,422 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.cluster.discovery.s3;
+
+import com.hivemq.extensions.cluster.discovery.s3.config.FileFormat;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Encodes the node information of a {@link ClusterNodeFile} in one of the {@link FileFormat file formats} and decodes
+ * it from any of them, so nodes that write different formats can be part of the same cluster during a rolling
+ * upgrade.
+ * <p>
+ * The binary format {@link FileFormat#V5} starts with a magic number that is no valid start of the text format
+ * {@link FileFormat#V4}, so the format is detected from the first bytes:
+ * <pre>
+ * magic (2 bytes) | version (1 byte) | creation time (varint) | cluster id length (varint) | cluster id (UTF-8) |
+ * host length (varint) | host (UTF-8) | port (2 bytes, big endian)
+ * </pre>
+ * Node files are parsed without intermediate copies: the Base64 content is decoded into a buffer that is reused by the
+ * thread, the separators of {@link FileFormat#V4} are found by index and the creation time and port are parsed from
+ * the bytes, so only the cluster id and the host are allocated.
+ */
+final class ClusterNodeFileCodec {
+
+    static final byte MAGIC_0 = (byte) 0xC1;
+    static final byte MAGIC_1 = (byte) 0x5D;
+    static final byte VERSION_5 = 5;
+
+    private static final byte SEPARATOR = '|';
+    private static final int SEPARATOR_LENGTH = ClusterNodeFile.CONTENT_SEPARATOR.length();
+    private static final byte VERSION_4 = '4';
+
+    private static final byte BASE64_INVALID = -1;
+    private static final byte BASE64_PADDING = -2;
+    private static final byte[] BASE64_DECODING =
+            base64Decoding("ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/");
+    private static final byte[] BASE64_URL_DECODING =
+            base64Decoding("ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_");
+    // node files are a few dozen bytes, larger content is decoded into a new buffer instead of growing the cached one
+    private static final int MAX_BUFFER_SIZE = 1024;
+    private static final @NotNull ThreadLocal<byte[]> BUFFER = ThreadLocal.withInitial(() -> new byte[256]);
+
+    private ClusterNodeFileCodec() {
+    }
+
+    static byte[] encode(final @NotNull ClusterNodeFile nodeFile, final @NotNull FileFormat fileFormat) {
+        if (fileFormat == FileFormat.V5) {
+            return encodeV5(nodeFile);
+        }
+        return encodeV4(nodeFile);
+    }
+
+    /**
+     * @return the decoded node file or {@code null} if the content is no valid node file of any format.
+     */
+    static @Nullable ClusterNodeFile decode(final byte[] content) {
+        return decode(content, content.length);
+    }
+
+    /**
+     * Decodes the content like {@link java.util.Base64#getDecoder()} followed by {@link #decode(byte[])}.
+     *
+     * @return the decoded node file or {@code null} if the content is no valid Base64 or no valid node file.
+     */
+    static @Nullable ClusterNodeFile decodeBase64(final @NotNull String content) {
+        return decodeBase64(content, BASE64_DECODING);
+    }
+
+    /**
+     * Decodes the content like {@link java.util.Base64#getUrlDecoder()} followed by {@link #decode(byte[])}.
+     *
+     * @return the decoded node file or {@code null} if the content is no valid Base64 or no valid node file.
+     */
+    static @Nullable ClusterNodeFile decodeBase64Url(final @NotNull String content) {
+        return decodeBase64(content, BASE64_URL_DECODING);
+    }
+
+    private static @Nullable ClusterNodeFile decodeBase64(final @NotNull String content, final byte[] decoding) {
+        final int capacity = (content.length() + 3) / 4 * 3;
+        var buffer = BUFFER.get();
+        if (buffer.length < capacity) {
+            buffer = new byte[capacity];
+            if (capacity <= MAX_BUFFER_SIZE) {
+                BUFFER.set(buffer);
+            }
+        }
+        final int length = decodeBase64(content, decoding, buffer);
+        if (length < 0) {
+            return null;
+        }
+        return decode(buffer, length);
+    }
+
+    private static @Nullable ClusterNodeFile decode(final byte[] content, final int length) {
+        if (length >= 3 && content[0] == MAGIC_0 && content[1] == MAGIC_1) {
+            return content[2] == VERSION_5 ? decodeV5(content, length) : null;
+        }
+        return decodeV4(content, length);
+    }
+
+    private static byte[] encodeV4(final @NotNull ClusterNodeFile nodeFile) {
+        final var address = nodeFile.getClusterNodeAddress();
+        return (ClusterNodeFile.CONTENT_VERSION + ClusterNodeFile.CONTENT_SEPARATOR +
+                nodeFile.getCreationTimeInMillis() + ClusterNodeFile.CONTENT_SEPARATOR + nodeFile.getClusterId() +
+                ClusterNodeFile.CONTENT_SEPARATOR + address.getHost() + ClusterNodeFile.CONTENT_SEPARATOR +
+                address.getPort()).getBytes(UTF_8);
+    }
+
+    /**
+     * Splits the content at the separators like {@link java.util.regex.Pattern#split(CharSequence)}: the separators are
+     * matched from the left without overlapping and trailing empty segments are dropped, then exactly five segments
+     * are expected. The separator is ASCII, so it never is part of a multibyte UTF-8 sequence and the segments can be
+     * found in the bytes. A blank cluster id or a creation time that is not positive is rejected like in
+     * {@link FileFormat#V5}.
+     */
+    private static @Nullable ClusterNodeFile decodeV4(final byte[] content, final int length) {
+        final int versionEnd = indexOfSeparator(content, 0, length);
+        if (versionEnd != 1 || content[0] != VERSION_4) {
+            return null;
+        }
+        final int creationTimeStart = versionEnd + SEPARATOR_LENGTH;
+        final int creationTimeEnd = indexOfSeparator(content, creationTimeStart, length);
+        if (creationTimeEnd < 0) {
+            return null;
+        }
+        final int clusterIdStart = creationTimeEnd + SEPARATOR_LENGTH;
+        final int clusterIdEnd = indexOfSeparator(content, clusterIdStart, length);
+        if (clusterIdEnd <= clusterIdStart) {
+            return null;
+        }
+        final int hostStart = clusterIdEnd + SEPARATOR_LENGTH;
+        final int hostEnd = indexOfSeparator(content, hostStart, length);
+        if (hostEnd <= hostStart) {
+            return null;
+        }
+        final int portStart = hostEnd + SEPARATOR_LENGTH;
+        int portEnd = indexOfSeparator(content, portStart, length);
+        if (portEnd < 0) {
+            portEnd = length;
+        } else if (!isEmptySegments(content, portEnd, length)) {
+            return null;
+        }
+        long creationTimeInMillis = parseDigits(content, creationTimeStart, creationTimeEnd, 18);
+        if (creationTimeInMillis < 0) {
+            try {
+                creationTimeInMillis = Long.parseLong(segment(content, creationTimeStart, creationTimeEnd));
+            } catch (final NumberFormatException ignored) {
+                return null;
+            }
+        }
+        if (creationTimeInMillis <= 0) {
+            return null;
+        }
+        int port = (int) parseDigits(content, portStart, portEnd, 9);
+        if (port < 0) {
+            try {
+                port = Integer.parseInt(segment(content, portStart, portEnd));
+            } catch (final NumberFormatException ignored) {
+                return null;
+            }
+        }
+        final var clusterId = segment(content, clusterIdStart, clusterIdEnd);
+        if (clusterId.isBlank()) {
+            return null;
+        }
+        return ClusterNodeFile.of(clusterId, segment(content, hostStart, hostEnd), port, creationTimeInMillis);
+    }
+
+    /**
+     * @return the index of the next separator or {@code -1} if there is none.
+     */
+    private static int indexOfSeparator(final byte[] content, final int fromIndex, final int length) {
+        for (int i = fromIndex; i <= length - SEPARATOR_LENGTH; i++) {
+            if (content[i] == SEPARATOR &&
+                    content[i + 1] == SEPARATOR &&
+                    content[i + 2] == SEPARATOR &&
+                    content[i + 3] == SEPARATOR) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return {@code true} if the content from the index on only consists of separators, so all segments are empty.
+     */
+    private static boolean isEmptySegments(final byte[] content, final int fromIndex, final int length) {
+        if ((length - fromIndex) % SEPARATOR_LENGTH != 0) {
+            return false;
+        }
+        for (int i = fromIndex; i < length; i++) {
+            if (content[i] != SEPARATOR) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parses the common case of a segment that only consists of ASCII digits without allocating. Every other segment,
+     * e.g. with a sign or with non-ASCII digits, must be parsed as string to keep the semantics of
+     * {@link Long#parseLong(String)}.
+     *
+     * @return the parsed number or {@code -1} if the segment is empty, has more than the given digits or contains any
+     *         other character.
+     */
+    private static long parseDigits(final byte[] content, final int from, final int to, final int maxDigits) {
+        if (from == to || to - from > maxDigits) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            final int digit = content[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private static @NotNull String segment(final byte[] content, final int from, final int to) {
+        return new String(content, from, to - from, UTF_8);
+    }
+
+    private static byte[] encodeV5(final @NotNull ClusterNodeFile nodeFile) {
+        final var clusterId = nodeFile.getClusterId().getBytes(UTF_8);
+        final var host = nodeFile.getClusterNodeAddress().getHost().getBytes(UTF_8);
+        final long creationTimeInMillis = nodeFile.getCreationTimeInMillis();
+        final var content = new byte[3 +
+                varLongSize(creationTimeInMillis) +
+                varLongSize(clusterId.length) +
+                clusterId.length +
+                varLongSize(host.length) +
+                host.length +
+                2];
+        content[0] = MAGIC_0;
+        content[1] = MAGIC_1;
+        content[2] = VERSION_5;
+        int index = writeVarLong(content, 3, creationTimeInMillis);
+        index = writeVarLong(content, index, clusterId.length);
+        System.arraycopy(clusterId, 0, content, index, clusterId.length);
+        index += clusterId.length;
+        index = writeVarLong(content, index, host.length);
+        System.arraycopy(host, 0, content, index, host.length);
+        index += host.length;
+        final int port = nodeFile.getClusterNodeAddress().getPort();
+        content[index] = (byte) (port >>> 8);
+        content[index + 1] = (byte) port;
+        return content;
+    }
+
+    private static @Nullable ClusterNodeFile decodeV5(final byte[] content, final int length) {
+        final var reader = new Reader(content, 3, length);
+        final long creationTimeInMillis = reader.readVarLong();
+        final var clusterId = reader.readString();
+        final var host = reader.readString();
+        final int port = reader.readUnsignedShort();
+        if (creationTimeInMillis <= 0 ||
+                clusterId == null ||
+                clusterId.isBlank() ||
+                host == null ||
+                host.isEmpty() ||
+                port < 0 ||
+                reader.index != length) {
+            return null;
+        }
+        return ClusterNodeFile.of(clusterId, host, port, creationTimeInMillis);
+    }
+
+    private static byte[] base64Decoding(final @NotNull String alphabet) {
+        final var decoding = new byte[128];
+        Arrays.fill(decoding, BASE64_INVALID);
+        for (int i = 0; i < alphabet.length(); i++) {
+            decoding[alphabet.charAt(i)] = (byte) i;
+        }
+        decoding['='] = BASE64_PADDING;
+        return decoding;
+    }
+
+    /**
+     * Decodes the Base64 content with the same rules as {@link java.util.Base64.Decoder#decode(String)}: the padding is
+     * optional, but if present it must be complete and end the content.
+     *
+     * @return the length of the decoded content or {@code -1} if the content is no valid Base64.
+     */
+    private static int decodeBase64(final @NotNull String content, final byte[] decoding, final byte[] buffer) {
+        final int length = content.length();
+        int index = 0;
+        int position = 0;
+        int bits = 0;
+        int shift = 18;
+        while (index < length) {
+            final char c = content.charAt(index++);
+            final int value = c < decoding.length ? decoding[c] : BASE64_INVALID;
+            if (value < 0) {
+                if (value != BASE64_PADDING) {
+                    return -1;
+                }
+                // "=" at the start of a unit or "xx=" without a second "=" is an invalid ending unit
+                if (shift == 18 || shift == 6 && (index == length || content.charAt(index++) != '=')) {
+                    return -1;
+                }
+                break;
+            }
+            bits |= value << shift;
+            shift -= 6;
+            if (shift < 0) {
+                buffer[position++] = (byte) (bits >> 16);
+                buffer[position++] = (byte) (bits >> 8);
+                buffer[position++] = (byte) bits;
+                shift = 18;
+                bits = 0;
+            }
+        }
+        if (shift == 6) {
+            buffer[position++] = (byte) (bits >> 16);
+        } else if (shift == 0) {
+            buffer[position++] = (byte) (bits >> 16);
+            buffer[position++] = (byte) (bits >> 8);
+        } else if (shift == 12) {
+            // a single character does not contain enough bits for a byte
+            return -1;
+        }
+        return index == length ? position : -1;
+    }
+
+    private static int varLongSize(final long value) {
+        int size = 1;
+        long remaining = value >>> 7;
+        while (remaining != 0) {
+            size++;
+            remaining >>>= 7;
+        }
+        return size;
+    }
+
+    /**
+     * Writes the value as unsigned LEB128 varint, 7 bits per byte starting with the least significant bits.
+     *
+     * @return the index after the written bytes.
+     */
+    private static int writeVarLong(final byte[] content, final int index, final long value) {
+        int i = index;
+        long remaining = value;
+        while ((remaining & ~0x7FL) != 0) {
+            content[i++] = (byte) ((remaining & 0x7F) | 0x80);
+            remaining >>>= 7;
+        }
+        content[i++] = (byte) remaining;
+        return i;
+    }
+
+    /**
+     * Reads the binary format, every read of a truncated or malformed content returns {@code -1} or {@code null}.
+     */
+    private static final class Reader {
+
+        private final byte[] content;
+        private final int length;
+        private int index;
+
+        private Reader(final byte[] content, final int index, final int length) {
+            this.content = content;
+            this.index = index;
+            this.length = length;
+        }
+
+        private long readVarLong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (index >= length) {
+                    return -1;
+                }
+                final byte b = content[index++];
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            return -1;
+        }
+
+        private @Nullable String readString() {
+            final long stringLength = readVarLong();
+            if (stringLength < 0 || stringLength > length - index) {
+                return null;
+            }
+            final var value = new String(content, index, (int) stringLength, UTF_8);
+            index += (int) stringLength;
+            return value;
+        }
+
+        private int readUnsignedShort() {
+            if (length - index < 2) {
+                return -1;
+            }
+            final int value = ((content[index] & 0xFF) << 8) | (content[index + 1] & 0xFF);
+            index += 2;
+            return value;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.cluster.discovery.s3;
+
+import com.hivemq.extension.sdk.api.services.cluster.parameter.ClusterNodeAddress;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.hivemq.extensions.cluster.discovery.s3.ExtensionConstants.EXTENSION_NAME;
+
+/**
+ * Stops the discovery cycles from hammering a failing S3 endpoint and keeps the last known good membership.
+ * <p>
+ * The breaker opens after the configured number of consecutive failed discovery cycles. While it is open, no cycle is
+ * run and the last known good membership is served instead. After the open duration a single trial cycle is run
+ * (half-open), which closes the breaker on success or opens it again on failure. Every entry of the last known good
+ * membership is only served until its node file expires, so a crashed node does not linger while S3 is unavailable.
+ */
+class DiscoveryCircuitBreaker {
+
+    private static final @NotNull Logger LOG = LoggerFactory.getLogger(DiscoveryCircuitBreaker.class);
+
+    /**
+     * The values are exposed as gauge, so the order must not be changed.
+     */
+    enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final @NotNull S3DiscoveryMetrics s3DiscoveryMetrics;
+
+    private int failureThreshold;
+    private long openDurationMillis;
+    private @NotNull State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedNanos;
+    private @Nullable List<ClusterNodeFile> lastKnownGood;
+
+    DiscoveryCircuitBreaker(final @NotNull S3DiscoveryMetrics s3DiscoveryMetrics) {
+        this.s3DiscoveryMetrics = s3DiscoveryMetrics;
+    }
+
+    /**
+     * @param failureThreshold the number of consecutive failed discovery cycles that open the breaker, {@code 0}
+     *                         disables the breaker and the last known good membership.
+     */
+    synchronized void configure(final int failureThreshold, final long openDurationMillis) {
+        this.failureThreshold = failureThreshold;
+        this.openDurationMillis = openDurationMillis;
+        if (failureThreshold <= 0) {
+            if (state != State.CLOSED) {
+                transition(State.CLOSED);
+            }
+            consecutiveFailures = 0;
+            lastKnownGood = null;
+        }
+    }
+
+    /**
+     * @return {@code true} if a discovery cycle may run, {@code false} if the breaker is open.
+     */
+    synchronized boolean tryAcquire() {
+        if (state != State.OPEN) {
+            return true;
+        }
+        if (System.nanoTime() - openedNanos < TimeUnit.MILLISECONDS.toNanos(openDurationMillis)) {
+            return false;
+        }
+        transition(State.HALF_OPEN);
+        return true;
+    }
+
+    /**
+     * Records a successful discovery cycle.
+     *
+     * @param nodeFiles the live node files of the discovery cycle.
+     */
+    synchronized void onSuccess(final @NotNull Collection<ClusterNodeFile> nodeFiles) {
+        if (failureThreshold <= 0) {
+            return;
+        }
+        consecutiveFailures = 0;
+        lastKnownGood = List.copyOf(nodeFiles);
+        if (state != State.CLOSED) {
+            transition(State.CLOSED);
+        }
+    }
+
+    /**
+     * Records a failed discovery cycle.
+     */
+    synchronized void onFailure() {
+        if (failureThreshold <= 0) {
+            return;
+        }
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+            openedNanos = System.nanoTime();
+            transition(State.OPEN);
+        }
+    }
+
+    /**
+     * @return the node addresses of the last successful discovery cycle without the expired entries or {@code null}
+     *         if the breaker is disabled or no discovery cycle was successful yet.
+     */
+    synchronized @Nullable List<ClusterNodeAddress> getLastKnownGood(final long fileExpirationInSeconds) {
+        final var lastKnownGood = this.lastKnownGood;
+        if (lastKnownGood == null) {
+            return null;
+        }
+        final var nodeAddresses = new ArrayList<ClusterNodeAddress>(lastKnownGood.size());
+        for (final var nodeFile : lastKnownGood) {
+            if (!nodeFile.isExpired(fileExpirationInSeconds)) {
+                nodeAddresses.add(nodeFile.getClusterNodeAddress());
+            }
+        }
+        return nodeAddresses;
+    }
+
+    synchronized @NotNull State getState() {
+        return state;
+    }
+
+    private void transition(final @NotNull State newState) {
+        if (newState == State.OPEN) {
+            LOG.warn("{}: Circuit breaker opened after {} failed discovery cycles, serving the last known good " +
+                    "node addresses for {} ms.", EXTENSION_NAME, consecutiveFailures, openDurationMillis);
+        } else {
+            LOG.info("{}: Circuit breaker is now {}.", EXTENSION_NAME, newState);
+        }
+        state = newState;
+        s3DiscoveryMetrics.getCircuitBreakerTransitions().inc();
+    }
+}
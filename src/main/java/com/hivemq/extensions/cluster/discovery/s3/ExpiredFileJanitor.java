@@ -0,0 +1,309 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.cluster.discovery.s3;
+
+import com.hivemq.extensions.cluster.discovery.s3.aws.HiveMQS3Client;
+import com.hivemq.extensions.cluster.discovery.s3.util.DaemonThreadFactory;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.hivemq.extensions.cluster.discovery.s3.ExtensionConstants.EXTENSION_NAME;
+
+/**
+ * Deletes expired node files in the background, so the deletion does not delay the delivery of the node addresses.
+ * <p>
+ * The discovery only hands over the object keys of the expired node files and their listed ETag. They are queued
+ * without duplicates in a bounded queue and deleted in batches with one DeleteObjects request per batch on a separate
+ * thread. A node rewrites its file under the same key in the object layout, so a file is only deleted if it still has
+ * the ETag of the expiry decision. S3 checks the ETag together with the deletion, or a HeadObject request before it if
+ * conditional deletes are disabled, and a queued key is dropped once a later discovery run finds its file live again.
+ * Keys that could not be deleted are queued again, until their deletion was attempted {@value #MAX_ATTEMPTS} times in
+ * total. Keys that do not fit into the queue are dropped, they are found again by the next discovery run.
+ * <p>
+ * The previous own node file is queued as well once the node saved its file under a new key, so the update of the own
+ * file does not wait for its deletion. It is deleted only if it still has the ETag returned when it was saved, and
+ * regardless of its ETag if the S3 endpoint did not return one. A previous own file that is not deleted is logged as a
+ * warning, as no other node deletes it before it expired. When the discovery is destroyed, the queued previous own
+ * files are deleted right away instead of being dropped with the queue.
+ */
+class ExpiredFileJanitor {
+
+    static final int MAX_QUEUE_SIZE = 10_000;
+    // attempts in total, so a failed deletion is retried MAX_ATTEMPTS - 1 times
+    static final int MAX_ATTEMPTS = 3;
+
+    private static final @NotNull Logger LOG = LoggerFactory.getLogger(ExpiredFileJanitor.class);
+
+    private static final long INTERVAL_MILLIS = 5_000;
+
+    private final @NotNull HiveMQS3Client hiveMQS3Client;
+    private final @NotNull S3DiscoveryMetrics s3DiscoveryMetrics;
+    private final long intervalMillis;
+    // object key -> expired file, guarded by this
+    private final @NotNull Map<String, ExpiredFile> queue = new LinkedHashMap<>();
+    // held while files are deleted, so the previous own files are only deleted once a running deletion requeued them
+    private final @NotNull Object deleteLock = new Object();
+
+    private @Nullable ScheduledExecutorService executorService;
+
+    ExpiredFileJanitor(
+            final @NotNull HiveMQS3Client hiveMQS3Client,
+            final @NotNull S3DiscoveryMetrics s3DiscoveryMetrics) {
+        this(hiveMQS3Client, s3DiscoveryMetrics, INTERVAL_MILLIS);
+    }
+
+    ExpiredFileJanitor(
+            final @NotNull HiveMQS3Client hiveMQS3Client,
+            final @NotNull S3DiscoveryMetrics s3DiscoveryMetrics,
+            final long intervalMillis) {
+        this.hiveMQS3Client = hiveMQS3Client;
+        this.s3DiscoveryMetrics = s3DiscoveryMetrics;
+        this.intervalMillis = intervalMillis;
+    }
+
+    /**
+     * Queues the given object keys for deletion and starts the janitor if it is not running yet.
+     *
+     * @param expiredFiles the ETag of the expired files by their object key, as listed when they were found to be
+     *                     expired.
+     */
+    synchronized void submit(final @NotNull Map<String, String> expiredFiles) {
+        if (expiredFiles.isEmpty()) {
+            return;
+        }
+        var dropped = 0;
+        for (final var expiredFile : expiredFiles.entrySet()) {
+            if (!enqueue(expiredFile.getKey(), new ExpiredFile(expiredFile.getValue(), 0, false))) {
+                dropped++;
+            }
+        }
+        if (dropped > 0) {
+            LOG.debug("{}: Queue of expired files is full, dropped {} files.", EXTENSION_NAME, dropped);
+        }
+        start();
+    }
+
+    /**
+     * Queues the previous own node file for deletion, as the own node file was saved under a new object key.
+     *
+     * @param objectKey the object key of the previous own node file.
+     * @param eTag      the ETag returned when the previous own node file was saved, {@code null} to delete it
+     *                  regardless of its ETag.
+     */
+    synchronized void submitReplaced(final @NotNull String objectKey, final @Nullable String eTag) {
+        if (!enqueue(objectKey, new ExpiredFile(eTag, 0, true))) {
+            LOG.warn("{}: Queue of expired files is full, previous own file '{}' is not deleted before it expired.",
+                    EXTENSION_NAME,
+                    objectKey);
+        }
+        start();
+    }
+
+    /**
+     * Drops the given object keys from the queue, as their files were updated since they were found to be expired.
+     */
+    synchronized void dropLive(final @NotNull Collection<String> liveObjectKeys) {
+        if (queue.isEmpty()) {
+            return;
+        }
+        for (final var objectKey : liveObjectKeys) {
+            final var expiredFile = queue.get(objectKey);
+            // the previous own file is still listed as live until it is deleted
+            if (expiredFile != null && !expiredFile.replaced) {
+                queue.remove(objectKey);
+                LOG.debug("{}: Expired file '{}' is live again, it is not deleted.", EXTENSION_NAME, objectKey);
+            }
+        }
+    }
+
+    synchronized int getQueueSize() {
+        return queue.size();
+    }
+
+    /**
+     * Deletes all queued expired files.
+     */
+    void run() {
+        synchronized (deleteLock) {
+            deleteQueued();
+        }
+    }
+
+    /**
+     * Deletes the queued previous own node files once, without retries, so the node leaves no node file behind when
+     * the discovery is destroyed. Waits for a running deletion, as it may queue them again.
+     */
+    void deleteReplaced() {
+        synchronized (deleteLock) {
+            final var objects = new LinkedHashMap<String, @Nullable String>();
+            synchronized (this) {
+                final var iterator = queue.entrySet().iterator();
+                while (iterator.hasNext()) {
+                    final var queuedFile = iterator.next();
+                    if (queuedFile.getValue().replaced) {
+                        objects.put(queuedFile.getKey(), queuedFile.getValue().eTag);
+                        iterator.remove();
+                    }
+                }
+            }
+            if (objects.isEmpty()) {
+                return;
+            }
+            List<String> failedObjectKeys;
+            var modified = 0;
+            try {
+                final var result = hiveMQS3Client.deleteObjects(objects);
+                failedObjectKeys = result.getFailedObjectKeys();
+                modified = result.getModifiedObjectKeys().size();
+            } catch (final Exception e) {
+                LOG.error("{}: Not able to delete previous own files.", EXTENSION_NAME, e);
+                failedObjectKeys = new ArrayList<>(objects.keySet());
+            }
+            s3DiscoveryMetrics.getDeleteSuccessCount().inc(objects.size() - failedObjectKeys.size() - modified);
+            s3DiscoveryMetrics.getDeleteFailedCount().inc(failedObjectKeys.size());
+            for (final var objectKey : failedObjectKeys) {
+                LOG.warn("{}: Not able to delete previous own file '{}', it is not deleted before it expired.",
+                        EXTENSION_NAME,
+                        objectKey);
+            }
+        }
+    }
+
+    private void deleteQueued() {
+        final Map<String, ExpiredFile> batch;
+        synchronized (this) {
+            if (queue.isEmpty()) {
+                return;
+            }
+            batch = new LinkedHashMap<>(queue);
+            queue.clear();
+        }
+        final var objects = new LinkedHashMap<String, @Nullable String>();
+        batch.forEach((objectKey, expiredFile) -> objects.put(objectKey, expiredFile.eTag));
+        List<String> failedObjectKeys;
+        var modified = 0;
+        try {
+            final var result = hiveMQS3Client.deleteObjects(objects);
+            failedObjectKeys = result.getFailedObjectKeys();
+            modified = result.getModifiedObjectKeys().size();
+        } catch (final Exception e) {
+            LOG.error("{}: Not able to delete expired files.", EXTENSION_NAME, e);
+            failedObjectKeys = new ArrayList<>(objects.keySet());
+        }
+        if (modified > 0) {
+            // a node updated its file since it was found to be expired, the file is live again
+            LOG.debug("{}: {} expired files were updated, they are not deleted.", EXTENSION_NAME, modified);
+        }
+        final var deleted = batch.size() - failedObjectKeys.size() - modified;
+        s3DiscoveryMetrics.getDeleteSuccessCount().inc(deleted);
+        s3DiscoveryMetrics.getDeleteFailedCount().inc(failedObjectKeys.size());
+        s3DiscoveryMetrics.getExpiredFilesDeleted().mark(deleted);
+        if (failedObjectKeys.isEmpty()) {
+            return;
+        }
+        var retried = 0;
+        synchronized (this) {
+            for (final var objectKey : failedObjectKeys) {
+                final var expiredFile = batch.get(objectKey);
+                if (expiredFile == null) {
+                    continue;
+                }
+                final var attempts = expiredFile.attempts + 1;
+                if (attempts < MAX_ATTEMPTS &&
+                        enqueue(objectKey, new ExpiredFile(expiredFile.eTag, attempts, expiredFile.replaced))) {
+                    retried++;
+                } else if (expiredFile.replaced) {
+                    LOG.warn("{}: Not able to delete previous own file '{}', it is not deleted before it expired.",
+                            EXTENSION_NAME,
+                            objectKey);
+                }
+            }
+        }
+        LOG.warn("{}: Not able to delete {} of {} expired files, {} of them are retried.",
+                EXTENSION_NAME,
+                failedObjectKeys.size(),
+                batch.size(),
+                retried);
+    }
+
+    synchronized void shutdown() {
+        if (executorService != null) {
+            executorService.shutdownNow();
+            executorService = null;
+        }
+        queue.clear();
+    }
+
+    private void start() {
+        if (executorService == null) {
+            executorService =
+                    Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("hivemq-s3-discovery-janitor"));
+            executorService.scheduleWithFixedDelay(this::runSafely,
+                    intervalMillis,
+                    intervalMillis,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * @return {@code false} if the queue is full, {@code true} if the key was queued or is already queued.
+     */
+    private boolean enqueue(final @NotNull String objectKey, final @NotNull ExpiredFile expiredFile) {
+        if (queue.containsKey(objectKey)) {
+            return true;
+        }
+        if (queue.size() >= MAX_QUEUE_SIZE) {
+            return false;
+        }
+        queue.put(objectKey, expiredFile);
+        return true;
+    }
+
+    private void runSafely() {
+        try {
+            run();
+        } catch (final Exception e) {
+            LOG.error("{}: Deleting expired files failed.", EXTENSION_NAME, e);
+        }
+    }
+
+    private static final class ExpiredFile {
+
+        // null if the file is deleted regardless of its ETag
+        private final @Nullable String eTag;
+        private final int attempts;
+        // true for the previous own file
+        private final boolean replaced;
+
+        private ExpiredFile(final @Nullable String eTag, final int attempts, final boolean replaced) {
+            this.eTag = eTag;
+            this.attempts = attempts;
+            this.replaced = replaced;
+        }
+    }
+}
@@ -28,6 +28,7 @@ public class ExtensionConstants {
 
     public static final @NotNull String EXTENSION_CONFIGURATION = "conf/config.properties";
     public static final @NotNull String EXTENSION_CONFIGURATION_LEGACY = "s3discovery.properties";
+    public static final @NotNull String EXTENSION_MEMBERSHIP_SNAPSHOT = "membership.snapshot";
 
     private ExtensionConstants() {
     }
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.cluster.discovery.s3;
+
+import com.hivemq.extensions.cluster.discovery.s3.config.FileFormat;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.List;
+
+import static com.hivemq.extensions.cluster.discovery.s3.ExtensionConstants.EXTENSION_NAME;
+
+/**
+ * Persists the members of the last successful discovery cycle in the extension home folder, so a restarted node can
+ * provide them before the first discovery cycle completes.
+ * <p>
+ * The file has the same format as the {@link NodeFileManifest}, one node file per line. It is written to a temporary
+ * file which then replaces the snapshot with an atomic move, so a crash never leaves a partially written snapshot.
+ */
+class MembershipSnapshotFile {
+
+    private static final @NotNull Logger LOG = LoggerFactory.getLogger(MembershipSnapshotFile.class);
+
+    private final @NotNull Path path;
+
+    private @Nullable String lastContent;
+
+    MembershipSnapshotFile(final @NotNull Path path) {
+        this.path = path;
+    }
+
+    /**
+     * @return the node files of the snapshot, an empty list if there is no readable snapshot.
+     */
+    synchronized @NotNull List<ClusterNodeFile> read() {
+        final String content;
+        try {
+            content = Files.readString(path, StandardCharsets.UTF_8);
+        } catch (final NoSuchFileException e) {
+            return List.of();
+        } catch (final IOException e) {
+            LOG.warn("{}: Not able to read the membership snapshot '{}'.", EXTENSION_NAME, path, e);
+            return List.of();
+        }
+        lastContent = content;
+        return NodeFileManifest.parse(content);
+    }
+
+    /**
+     * Replaces the snapshot, unless its content is unchanged. A failed write is logged and otherwise ignored, the
+     * snapshot is only an optimization of the start.
+     */
+    synchronized void write(final @NotNull Collection<ClusterNodeFile> nodeFiles) {
+        final var content = NodeFileManifest.serialize(nodeFiles, FileFormat.V4);
+        if (content.equals(lastContent)) {
+            return;
+        }
+        final var tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            Files.writeString(tempPath, content, StandardCharsets.UTF_8);
+            try {
+                Files.move(tempPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (final AtomicMoveNotSupportedException e) {
+                Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+            lastContent = content;
+            LOG.trace("{}: Updated membership snapshot '{}'.", EXTENSION_NAME, path);
+        } catch (final IOException e) {
+            LOG.warn("{}: Not able to write the membership snapshot '{}'.", EXTENSION_NAME, path, e);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.cluster.discovery.s3;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caches the parsed node files by object key and ETag.
+ * <p>
+ * The ETag of an S3 object changes with its content, so a node file only has to be downloaded again if the ETag in
+ * the object listing differs from the cached one. Objects without an ETag are never cached.
+ */
+class NodeFileCache {
+
+    private final @NotNull Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * @return the cached node file if the object key and the ETag of the given S3 object match, {@code null}
+     *         otherwise.
+     */
+    @Nullable ClusterNodeFile get(final @NotNull S3Object s3Object) {
+        final var eTag = s3Object.eTag();
+        if (eTag == null) {
+            return null;
+        }
+        final var entry = entries.get(s3Object.key());
+        if (entry == null || !entry.eTag.equals(eTag)) {
+            return null;
+        }
+        return entry.nodeFile;
+    }
+
+    void put(final @NotNull S3Object s3Object, final @NotNull ClusterNodeFile nodeFile) {
+        final var eTag = s3Object.eTag();
+        if (eTag == null) {
+            return;
+        }
+        entries.put(s3Object.key(), new Entry(eTag, nodeFile));
+    }
+
+    /**
+     * Evicts all entries whose object key is not contained in the given keys, e.g. because the object is no longer
+     * part of the object listing.
+     */
+    void retainAll(final @NotNull Collection<String> objectKeys) {
+        entries.keySet().retainAll(objectKeys);
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    void clear() {
+        entries.clear();
+    }
+
+    private static final class Entry {
+
+        private final @NotNull String eTag;
+        private final @NotNull ClusterNodeFile nodeFile;
+
+        private Entry(final @NotNull String eTag, final @NotNull ClusterNodeFile nodeFile) {
+            this.eTag = eTag;
+            this.nodeFile = nodeFile;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.cluster.discovery.s3;
+
+import com.hivemq.extensions.cluster.discovery.s3.aws.S3ExceptionUtil;
+import com.hivemq.extensions.cluster.discovery.s3.util.DaemonThreadFactory;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Downloads node files with a bounded number of concurrent requests.
+ * <p>
+ * The returned list has the same order as the given S3 objects, so the result is identical to downloading the files
+ * one after another. With a maximum concurrency of one the files are downloaded on the calling thread.
+ * <p>
+ * The concurrency limit is shared by the discovery cycles, so every permit is released again, also the permit of a
+ * download that is cancelled before it started.
+ */
+class NodeFileDownloader {
+
+    private final @NotNull AdaptiveConcurrencyLimit concurrencyLimit = new AdaptiveConcurrencyLimit();
+
+    private @Nullable ExecutorService executorService;
+
+    NodeFileDownloader() {
+    }
+
+    NodeFileDownloader(final @NotNull ExecutorService executorService) {
+        this.executorService = executorService;
+    }
+
+    <T> @NotNull List<T> download(
+            final @NotNull List<S3Object> s3Objects,
+            final int maxConcurrency,
+            final boolean adaptive,
+            final @NotNull Function<S3Object, @Nullable T> fetcher,
+            final @NotNull BiConsumer<S3Object, Exception> errorHandler) {
+        concurrencyLimit.configure(maxConcurrency, adaptive);
+        final var nodeFiles = new ArrayList<T>(s3Objects.size());
+        if (maxConcurrency <= 1 || s3Objects.size() <= 1) {
+            for (final var s3Object : s3Objects) {
+                final var nodeFile = fetch(s3Object, fetcher, errorHandler);
+                if (nodeFile != null) {
+                    nodeFiles.add(nodeFile);
+                }
+            }
+            return nodeFiles;
+        }
+        final var executor = getExecutorService();
+        final var futures = new ArrayList<Future<T>>(s3Objects.size());
+        try {
+            for (final var s3Object : s3Objects) {
+                concurrencyLimit.acquire();
+                final var downloadTask = new DownloadTask<>(s3Object, fetcher, errorHandler);
+                futures.add(downloadTask);
+                executor.execute(downloadTask);
+            }
+            for (final var future : futures) {
+                final var nodeFile = future.get();
+                if (nodeFile != null) {
+                    nodeFiles.add(nodeFile);
+                }
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            futures.forEach(future -> future.cancel(true));
+            throw new IllegalStateException("Interrupted while downloading the node files.", e);
+        } catch (final ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            throw new IllegalStateException("Downloading the node files failed.", e.getCause());
+        } catch (final RuntimeException e) {
+            // e.g. the executor was shut down
+            futures.forEach(future -> future.cancel(true));
+            throw e;
+        }
+        return nodeFiles;
+    }
+
+    int getConcurrencyLimit() {
+        return concurrencyLimit.getLimit();
+    }
+
+    synchronized void shutdown() {
+        if (executorService != null) {
+            executorService.shutdownNow();
+            executorService = null;
+        }
+    }
+
+    private synchronized @NotNull ExecutorService getExecutorService() {
+        if (executorService == null) {
+            executorService = Executors.newCachedThreadPool(new DaemonThreadFactory("hivemq-s3-discovery-download"));
+        }
+        return executorService;
+    }
+
+    private <T> @Nullable T fetchWithPermit(
+            final @NotNull S3Object s3Object,
+            final @NotNull Function<S3Object, @Nullable T> fetcher,
+            final @NotNull BiConsumer<S3Object, Exception> errorHandler) {
+        final var start = System.nanoTime();
+        try {
+            final var nodeFile = fetcher.apply(s3Object);
+            concurrencyLimit.release(System.nanoTime() - start, false);
+            return nodeFile;
+        } catch (final Exception e) {
+            concurrencyLimit.release(System.nanoTime() - start, S3ExceptionUtil.isThrottling(e));
+            errorHandler.accept(s3Object, e);
+            return null;
+        } catch (final Throwable t) {
+            concurrencyLimit.release(System.nanoTime() - start, false);
+            throw t;
+        }
+    }
+
+    private static <T> @Nullable T fetch(
+            final @NotNull S3Object s3Object,
+            final @NotNull Function<S3Object, @Nullable T> fetcher,
+            final @NotNull BiConsumer<S3Object, Exception> errorHandler) {
+        try {
+            return fetcher.apply(s3Object);
+        } catch (final Exception e) {
+            errorHandler.accept(s3Object, e);
+            return null;
+        }
+    }
+
+    /**
+     * A download that holds a permit of the concurrency limit. The permit is handed over to the download when it
+     * starts, if it is cancelled before, the permit is released when it is cancelled.
+     */
+    private final class DownloadTask<T> extends FutureTask<T> {
+
+        private final @NotNull AtomicBoolean permit;
+
+        private DownloadTask(
+                final @NotNull S3Object s3Object,
+                final @NotNull Function<S3Object, @Nullable T> fetcher,
+                final @NotNull BiConsumer<S3Object, Exception> errorHandler) {
+            this(new AtomicBoolean(true), s3Object, fetcher, errorHandler);
+        }
+
+        private DownloadTask(
+                final @NotNull AtomicBoolean permit,
+                final @NotNull S3Object s3Object,
+                final @NotNull Function<S3Object, @Nullable T> fetcher,
+                final @NotNull BiConsumer<S3Object, Exception> errorHandler) {
+            super(() -> permit.getAndSet(false) ? fetchWithPermit(s3Object, fetcher, errorHandler) : null);
+            this.permit = permit;
+        }
+
+        @Override
+        protected void done() {
+            if (isCancelled() && permit.getAndSet(false)) {
+                concurrencyLimit.releaseUnused();
+            }
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.cluster.discovery.s3;
+
+import com.hivemq.extensions.cluster.discovery.s3.aws.HiveMQS3Client;
+import com.hivemq.extensions.cluster.discovery.s3.aws.S3ObjectContent;
+import com.hivemq.extensions.cluster.discovery.s3.config.FileFormat;
+import com.hivemq.extensions.cluster.discovery.s3.config.ResolvedS3Config;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static com.hivemq.extensions.cluster.discovery.s3.ExtensionConstants.EXTENSION_NAME;
+
+/**
+ * A single object at {@code <file-prefix>manifest} which holds the node files of all members, one node file per line.
+ * <p>
+ * Every node only replaces its own entry. The manifest is read with its ETag and written back with a conditional
+ * write ({@code If-Match}), so a concurrent update of another node is detected and the update is retried on the new
+ * version of the manifest. Expired entries are removed with every update.
+ */
+class NodeFileManifest {
+
+    static final @NotNull String OBJECT_NAME = "manifest";
+
+    private static final @NotNull Logger LOG = LoggerFactory.getLogger(NodeFileManifest.class);
+
+    private static final int MAX_UPDATE_ATTEMPTS = 8;
+    private static final long UPDATE_BACKOFF_MILLIS = 50;
+    private static final @NotNull String LINE_SEPARATOR = "\n";
+
+    private final @NotNull HiveMQS3Client hiveMQS3Client;
+
+    NodeFileManifest(final @NotNull HiveMQS3Client hiveMQS3Client) {
+        this.hiveMQS3Client = hiveMQS3Client;
+    }
+
+    static @NotNull String getObjectKey(final @NotNull ResolvedS3Config s3Config) {
+        return s3Config.getFilePrefix() + OBJECT_NAME;
+    }
+
+    static @NotNull List<ClusterNodeFile> parse(final @Nullable String content) {
+        final var nodeFiles = new ArrayList<ClusterNodeFile>();
+        if (content == null) {
+            return nodeFiles;
+        }
+        for (final var line : content.split(LINE_SEPARATOR)) {
+            if (line.isBlank()) {
+                continue;
+            }
+            final var nodeFile = ClusterNodeFile.parseClusterNodeFile(line.strip());
+            if (nodeFile != null) {
+                nodeFiles.add(nodeFile);
+            }
+        }
+        return nodeFiles;
+    }
+
+    static @NotNull String serialize(
+            final @NotNull Collection<ClusterNodeFile> nodeFiles,
+            final @NotNull FileFormat fileFormat) {
+        final var content = new StringBuilder();
+        for (final var nodeFile : nodeFiles) {
+            content.append(nodeFile.encode(fileFormat)).append(LINE_SEPARATOR);
+        }
+        return content.toString();
+    }
+
+    /**
+     * Replaces the entry of the given node file and removes expired entries.
+     *
+     * @param nodeFile         the node file to add or replace, {@code null} to only remove entries.
+     * @param removedClusterId the cluster id of the entry to remove, {@code null} to not remove an entry.
+     * @param fileFormat       the format of all entries, the entries of other nodes are rewritten in it.
+     * @return the content of the updated manifest.
+     */
+    static @NotNull String merge(
+            final @Nullable String content,
+            final @Nullable ClusterNodeFile nodeFile,
+            final @Nullable String removedClusterId,
+            final long fileExpirationInSeconds,
+            final @NotNull FileFormat fileFormat) {
+        // sorted by cluster id, so the content does not change with the order of the updates
+        final var nodeFiles = new TreeMap<String, ClusterNodeFile>();
+        for (final var entry : parse(content)) {
+            if (!entry.isExpired(fileExpirationInSeconds) && !entry.getClusterId().equals(removedClusterId)) {
+                nodeFiles.merge(entry.getClusterId(), entry, ClusterNodeFile::newest);
+            }
+        }
+        if (nodeFile != null) {
+            nodeFiles.put(nodeFile.getClusterId(), nodeFile);
+        }
+        return serialize(nodeFiles.values(), fileFormat);
+    }
+
+    @NotNull List<ClusterNodeFile> read() {
+        final var manifest = hiveMQS3Client.getObjectWithETag(getObjectKey());
+        return parse(manifest == null ? null : manifest.getContent());
+    }
+
+    /**
+     * Replaces the entry of the given node file with a compare-and-swap update of the manifest.
+     *
+     * @throws IllegalStateException if the manifest was modified concurrently on every attempt.
+     */
+    void update(final @Nullable ClusterNodeFile nodeFile, final @Nullable String removedClusterId) {
+        final var objectKey = getObjectKey();
+        for (int attempt = 1; attempt <= MAX_UPDATE_ATTEMPTS; attempt++) {
+            final var manifest = hiveMQS3Client.getObjectWithETag(objectKey);
+            final var content = merge(manifest, nodeFile, removedClusterId);
+            if (hiveMQS3Client.saveObjectIfMatch(objectKey, content, manifest == null ? null : manifest.getETag())) {
+                LOG.debug("{}: Updated S3 manifest '{}'.", EXTENSION_NAME, objectKey);
+                return;
+            }
+            LOG.debug("{}: S3 manifest '{}' was modified concurrently, retrying update.", EXTENSION_NAME, objectKey);
+            try {
+                TimeUnit.MILLISECONDS.sleep(getBackoffMillis(attempt));
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while updating the S3 manifest.", e);
+            }
+        }
+        throw new IllegalStateException("S3 manifest '" + objectKey + "' was modified concurrently on all " +
+                MAX_UPDATE_ATTEMPTS + " attempts.");
+    }
+
+    private @NotNull String merge(
+            final @Nullable S3ObjectContent manifest,
+            final @Nullable ClusterNodeFile nodeFile,
+            final @Nullable String removedClusterId) {
+        final var s3Config = Objects.requireNonNull(hiveMQS3Client.getS3Config());
+        return merge(manifest == null ? null : manifest.getContent(),
+                nodeFile,
+                removedClusterId,
+                s3Config.getFileExpirationInSeconds(),
+                s3Config.getFileFormat());
+    }
+
+    private @NotNull String getObjectKey() {
+        return getObjectKey(Objects.requireNonNull(hiveMQS3Client.getS3Config()));
+    }
+
+    /**
+     * @return an exponentially growing backoff with full jitter, so concurrently updating nodes spread out.
+     */
+    private static long getBackoffMillis(final int attempt) {
+        final var maxBackoffMillis = UPDATE_BACKOFF_MILLIS << Math.min(attempt - 1, 6);
+        return ThreadLocalRandom.current().nextLong(maxBackoffMillis + 1);
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.cluster.discovery.s3;
+
+import com.hivemq.extension.sdk.api.services.cluster.parameter.ClusterNodeAddress;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lengthens the interval between discovery cycles while the membership is stable.
+ * <p>
+ * Every discovery cycle which finds the same members as the previous one doubles the interval, up to the configured
+ * ceiling. A join, a leave or a restart of a node (a new cluster id) resets the interval to the minimum. Cycles that
+ * are skipped are answered with the node addresses of the last discovery cycle.
+ */
+class RefreshCadence {
+
+    private long minIntervalMillis;
+    private long maxIntervalMillis;
+    private long intervalMillis;
+    private long lastRefreshNanos;
+    private @Nullable Map<String, ClusterNodeAddress> members;
+    private @Nullable List<ClusterNodeAddress> nodeAddresses;
+
+    /**
+     * @param minIntervalMillis the interval of the discovery cycles without back-off.
+     * @param maxIntervalMillis the ceiling of the interval, a ceiling that is not larger than the minimum disables the
+     *                          back-off.
+     */
+    synchronized void configure(final long minIntervalMillis, final long maxIntervalMillis) {
+        this.minIntervalMillis = minIntervalMillis;
+        this.maxIntervalMillis = maxIntervalMillis;
+        intervalMillis = Math.max(minIntervalMillis, Math.min(intervalMillis, maxIntervalMillis));
+    }
+
+    /**
+     * Forgets the last discovery cycle, so the next cycle is not skipped, e.g. after a restart of the own node.
+     */
+    synchronized void reset() {
+        intervalMillis = minIntervalMillis;
+        members = null;
+        nodeAddresses = null;
+    }
+
+    /**
+     * Records a successful discovery cycle.
+     *
+     * @param members the node addresses by the cluster ids of the discovered nodes.
+     */
+    synchronized void onRefresh(
+            final @NotNull Map<String, ClusterNodeAddress> members,
+            final @NotNull List<ClusterNodeAddress> nodeAddresses) {
+        if (members.equals(this.members)) {
+            intervalMillis = Math.max(minIntervalMillis, Math.min(intervalMillis * 2, maxIntervalMillis));
+        } else {
+            intervalMillis = minIntervalMillis;
+        }
+        this.members = Map.copyOf(members);
+        this.nodeAddresses = List.copyOf(nodeAddresses);
+        lastRefreshNanos = System.nanoTime();
+    }
+
+    /**
+     * @return the node addresses of the last discovery cycle if the next cycle can be skipped, {@code null} if the
+     *         next cycle is due.
+     */
+    synchronized @Nullable List<ClusterNodeAddress> getSkippedCycleNodeAddresses() {
+        if (nodeAddresses == null || intervalMillis <= minIntervalMillis) {
+            return null;
+        }
+        // the cycles are triggered with the minimum interval, so a cycle is due if it is closer to the end of the
+        // interval than to the next trigger
+        final var elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastRefreshNanos);
+        if (elapsedMillis >= intervalMillis - minIntervalMillis / 2) {
+            return null;
+        }
+        return nodeAddresses;
+    }
+
+    synchronized long getIntervalMillis() {
+        return intervalMillis;
+    }
+}
@@ -22,7 +22,11 @@ import com.hivemq.extension.sdk.api.services.cluster.parameter.ClusterDiscoveryO
 import com.hivemq.extension.sdk.api.services.cluster.parameter.ClusterNodeAddress;
 import com.hivemq.extensions.cluster.discovery.s3.aws.HiveMQS3Client;
 import com.hivemq.extensions.cluster.discovery.s3.aws.S3BucketResponse;
+import com.hivemq.extensions.cluster.discovery.s3.aws.S3ExceptionUtil;
 import com.hivemq.extensions.cluster.discovery.s3.config.ConfigurationReader;
+import com.hivemq.extensions.cluster.discovery.s3.config.FileFormat;
+import com.hivemq.extensions.cluster.discovery.s3.config.FileLayout;
+import com.hivemq.extensions.cluster.discovery.s3.util.DaemonThreadFactory;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
@@ -32,9 +36,22 @@ import software.amazon.awssdk.services.s3.model.S3Exception;
 import software.amazon.awssdk.services.s3.model.S3Object;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static com.hivemq.extensions.cluster.discovery.s3.ExtensionConstants.EXTENSION_NAME;
 import static com.hivemq.extensions.cluster.discovery.s3.util.StringUtil.isNullOrBlank;
@@ -48,26 +65,64 @@ class S3DiscoveryCallback implements ClusterDiscoveryCallback {
 
     private static final @NotNull Logger LOG = LoggerFactory.getLogger(S3DiscoveryCallback.class);
 
+    private static final @NotNull String KEY_SEPARATOR = "/";
+    private static final long MIN_REFRESH_PERIOD_MILLIS = 1_000;
+
     private final @NotNull HiveMQS3Client hiveMQS3Client;
+    private final @NotNull NodeFileManifest nodeFileManifest;
+    private final @NotNull MembershipSnapshotFile membershipSnapshotFile;
+    private final @NotNull ExpiredFileJanitor expiredFileJanitor;
+    private final @NotNull DiscoveryCircuitBreaker circuitBreaker;
     private final @NotNull S3DiscoveryMetrics s3DiscoveryMetrics;
     private final @NotNull AtomicInteger addressesCount = new AtomicInteger(0);
+    private final @NotNull NodeFileDownloader nodeFileDownloader = new NodeFileDownloader();
+    private final @NotNull NodeFileCache nodeFileCache = new NodeFileCache();
+    private final @NotNull ServerClock serverClock = new ServerClock();
+    private final @NotNull BackgroundRefresher backgroundRefresher = new BackgroundRefresher();
+    private final @NotNull RefreshCadence refreshCadence = new RefreshCadence();
+    private final @NotNull ExecutorService reconcileExecutor =
+            Executors.newSingleThreadExecutor(new DaemonThreadFactory("hivemq-s3-discovery-init"));
 
-    private @Nullable ClusterNodeFile ownNodeFile;
+    private final @NotNull AtomicReference<OwnFile> ownFile = new AtomicReference<>();
+    private final @NotNull AtomicReference<DiscoveryFlight> discoveryFlight = new AtomicReference<>();
+    private volatile boolean manifestListed;
+    // a node in the manifest layout lists the objects as long as nodes in the other layouts are found
+    private volatile boolean objectNodeFilesListed = true;
+    private volatile boolean electedJanitor;
+    private boolean destroyed;
 
     S3DiscoveryCallback(
             final @NotNull ConfigurationReader configurationReader,
+            final @NotNull MembershipSnapshotFile membershipSnapshotFile,
             final @NotNull S3DiscoveryMetrics s3DiscoveryMetrics) {
-        this.hiveMQS3Client = new HiveMQS3Client(configurationReader);
-        this.s3DiscoveryMetrics = s3DiscoveryMetrics;
-        s3DiscoveryMetrics.registerAddressCountGauge(addressesCount::get);
+        this(new HiveMQS3Client(configurationReader), membershipSnapshotFile, s3DiscoveryMetrics);
     }
 
     S3DiscoveryCallback(
             final @NotNull HiveMQS3Client hiveMQS3Client,
+            final @NotNull MembershipSnapshotFile membershipSnapshotFile,
             final @NotNull S3DiscoveryMetrics s3DiscoveryMetrics) {
         this.hiveMQS3Client = hiveMQS3Client;
+        this.nodeFileManifest = new NodeFileManifest(hiveMQS3Client);
+        this.membershipSnapshotFile = membershipSnapshotFile;
         this.s3DiscoveryMetrics = s3DiscoveryMetrics;
+        this.expiredFileJanitor = new ExpiredFileJanitor(hiveMQS3Client, s3DiscoveryMetrics);
+        this.circuitBreaker = new DiscoveryCircuitBreaker(s3DiscoveryMetrics);
         s3DiscoveryMetrics.registerAddressCountGauge(addressesCount::get);
+        s3DiscoveryMetrics.registerDownloadConcurrencyGauge(nodeFileDownloader::getConcurrencyLimit);
+        s3DiscoveryMetrics.registerClockSkewGauge(serverClock::getSkewMillis);
+        s3DiscoveryMetrics.registerExpiredFilesQueueSizeGauge(expiredFileJanitor::getQueueSize);
+        s3DiscoveryMetrics.registerJanitorGauge(() -> electedJanitor ? 1 : 0);
+        s3DiscoveryMetrics.registerRefreshIntervalGauge(refreshCadence::getIntervalMillis);
+        s3DiscoveryMetrics.registerRequestRateGauge(hiveMQS3Client::getRequestRate);
+        final var requestWaitTime = s3DiscoveryMetrics.getRequestWaitTime();
+        hiveMQS3Client.setRequestWaitRecorder(waitNanos -> requestWaitTime.update(waitNanos, TimeUnit.NANOSECONDS));
+        hiveMQS3Client.setClientRebuildRecorder(s3DiscoveryMetrics.getClientRebuilds()::inc);
+        final var credentialsResolveTime = s3DiscoveryMetrics.getCredentialsResolveTime();
+        hiveMQS3Client.setCredentialsResolveRecorder(
+                resolveNanos -> credentialsResolveTime.update(resolveNanos, TimeUnit.NANOSECONDS));
+        hiveMQS3Client.setCredentialsFetchFailureRecorder(s3DiscoveryMetrics.getCredentialsFetchFailures()::inc);
+        s3DiscoveryMetrics.registerCircuitBreakerStateGauge(() -> circuitBreaker.getState().ordinal());
     }
 
     @Override
@@ -82,44 +137,45 @@ class S3DiscoveryCallback implements ClusterDiscoveryCallback {
             addressesCount.set(0);
             return;
         }
+        // the own node (re)started, so the membership changed
+        refreshCadence.reset();
+        final var snapshotNodeAddresses = readMembershipSnapshot();
+        if (snapshotNodeAddresses != null) {
+            clusterDiscoveryOutput.provideCurrentNodes(snapshotNodeAddresses);
+            // the initial discovery cycle reconciles the snapshot with S3 without delaying the start of HiveMQ, the
+            // next reload callback provides its result
+            startReconcile(clusterDiscoveryInput);
+            updateBackgroundRefresh(clusterDiscoveryInput);
+            return;
+        }
         try {
-            final var s3Bucket = hiveMQS3Client.checkBucket();
-            if (s3Bucket.isSuccessful()) {
-                saveOwnFile(clusterDiscoveryInput.getOwnClusterId(), clusterDiscoveryInput.getOwnAddress());
-                clusterDiscoveryOutput.provideCurrentNodes(getNodeAddresses());
-            } else {
-                final var status = s3Bucket.getStatus();
-                if (status == S3BucketResponse.Status.NOT_EXISTING) {
-                    LOG.error("{}: Configured bucket '{}' doesn't exist. Skipping initial discovery.",
-                            EXTENSION_NAME,
-                            s3Bucket.getBucketName());
-                } else if (status == S3BucketResponse.Status.NO_PERMISSION) {
-                    LOG.error(
-                            "{}: No permission for configured bucket '{}'. Please check your credentials and AWS security settings. Skipping initial discovery.",
-                            EXTENSION_NAME,
-                            s3Bucket.getBucketName());
-                } else if (status == S3BucketResponse.Status.OTHER) {
-                    LOG.error(
-                            "{}: Unknown error occurred when checking configured bucket '{}'. Please check your s3-bucket-region setting. Skipping initial discovery.",
-                            EXTENSION_NAME,
-                            s3Bucket.getBucketName());
-                }
-                s3Bucket.getThrowable()
-                        .ifPresent(throwable -> LOG.debug("{}: Original Exception: ", EXTENSION_NAME, throwable));
-                s3DiscoveryMetrics.getQueryFailedCount().inc();
-                addressesCount.set(0);
+            final var nodeAddresses = discover(clusterDiscoveryInput, true, "Skipping initial discovery.");
+            if (nodeAddresses != null) {
+                clusterDiscoveryOutput.provideCurrentNodes(nodeAddresses);
             }
         } catch (final Exception e) {
             LOG.error("{}: Initialization of the S3 discovery callback failed.", EXTENSION_NAME, e);
-            s3DiscoveryMetrics.getQueryFailedCount().inc();
-            addressesCount.set(0);
+            final var nodeAddresses = onDiscoveryFailure();
+            if (nodeAddresses != null) {
+                clusterDiscoveryOutput.provideCurrentNodes(nodeAddresses);
+            }
         }
+        updateBackgroundRefresh(clusterDiscoveryInput);
     }
 
     @Override
     public void reload(
             final @NotNull ClusterDiscoveryInput clusterDiscoveryInput,
             final @NotNull ClusterDiscoveryOutput clusterDiscoveryOutput) {
+        if (backgroundRefresher.isRunning()) {
+            final var nodeAddresses = backgroundRefresher.getSnapshot(getMaxStalenessMillis(clusterDiscoveryInput));
+            if (nodeAddresses != null) {
+                clusterDiscoveryOutput.provideCurrentNodes(nodeAddresses);
+                return;
+            }
+            LOG.debug("{}: Node addresses of the background refresh are stale, refreshing them synchronously.",
+                    EXTENSION_NAME);
+        }
         try {
             hiveMQS3Client.createOrUpdate();
         } catch (final Exception ignored) {
@@ -128,124 +184,705 @@ class S3DiscoveryCallback implements ClusterDiscoveryCallback {
             addressesCount.set(0);
             return;
         }
+        final var skippedCycleNodeAddresses = getSkippedCycleNodeAddresses(clusterDiscoveryInput);
+        if (skippedCycleNodeAddresses != null) {
+            clusterDiscoveryOutput.provideCurrentNodes(skippedCycleNodeAddresses);
+            updateBackgroundRefresh(clusterDiscoveryInput);
+            return;
+        }
         try {
-            final var s3Bucket = hiveMQS3Client.checkBucket();
-            if (s3Bucket.isSuccessful()) {
-                if (ownNodeFile == null || ownNodeFile.isExpired(
-                        Objects.requireNonNull(hiveMQS3Client.getS3Config()).getFileUpdateIntervalInSeconds())) {
-                    saveOwnFile(clusterDiscoveryInput.getOwnClusterId(), clusterDiscoveryInput.getOwnAddress());
-                }
-                clusterDiscoveryOutput.provideCurrentNodes(getNodeAddresses());
-            } else {
-                final var status = s3Bucket.getStatus();
-                if (status == S3BucketResponse.Status.NOT_EXISTING) {
-                    LOG.error("{}: Configured bucket '{}' doesn't exist. Skipping discovery reload callback.",
-                            EXTENSION_NAME,
-                            Objects.requireNonNull(hiveMQS3Client.getS3Config()).getBucketName());
-                } else if (status == S3BucketResponse.Status.NO_PERMISSION) {
-                    LOG.error(
-                            "{}: No permission for configured bucket '{}'. Please check your credentials and AWS security settings. Skipping discovery reload callback.",
-                            EXTENSION_NAME,
-                            Objects.requireNonNull(hiveMQS3Client.getS3Config()).getBucketName());
-                } else if (status == S3BucketResponse.Status.OTHER) {
-                    LOG.error(
-                            "{}: Unknown error occurred when checking configured bucket '{}'. Please check your s3-bucket-region setting. Skipping discovery reload callback.",
-                            EXTENSION_NAME,
-                            Objects.requireNonNull(hiveMQS3Client.getS3Config()).getBucketName());
-                }
-                s3Bucket.getThrowable()
-                        .ifPresent(throwable -> LOG.debug("{}: Original Exception: ", EXTENSION_NAME, throwable));
-                s3DiscoveryMetrics.getQueryFailedCount().inc();
-                addressesCount.set(0);
+            final var nodeAddresses =
+                    discover(clusterDiscoveryInput, false, "Skipping discovery reload callback.");
+            if (nodeAddresses != null) {
+                clusterDiscoveryOutput.provideCurrentNodes(nodeAddresses);
             }
         } catch (final Exception e) {
             LOG.error("{}: Reload of the S3 discovery callback failed.", EXTENSION_NAME, e);
-            s3DiscoveryMetrics.getQueryFailedCount().inc();
-            addressesCount.set(0);
+            final var nodeAddresses = onDiscoveryFailure();
+            if (nodeAddresses != null) {
+                clusterDiscoveryOutput.provideCurrentNodes(nodeAddresses);
+            }
         }
+        updateBackgroundRefresh(clusterDiscoveryInput);
     }
 
     @Override
     public void destroy(final @NotNull ClusterDiscoveryInput clusterDiscoveryInput) {
+        backgroundRefresher.stop();
+        reconcileExecutor.shutdownNow();
+        // waits for a running discovery, so the own file is not saved again after it is deleted
+        synchronized (this) {
+            destroyed = true;
+            // a reconcile that never started must not leave the calls that joined it waiting
+            final var flight = discoveryFlight.get();
+            if (flight != null) {
+                flight.result.complete(null);
+            }
+            try {
+                if (ownFile.get() != null) {
+                    deleteOwnFile();
+                }
+            } catch (final Exception e) {
+                LOG.error("{}: Destroy of the S3 discovery callback failed.", EXTENSION_NAME, e);
+            } finally {
+                nodeFileDownloader.shutdown();
+                // the previous own file of the key layout may still be queued, the node must not leave it behind
+                expiredFileJanitor.deleteReplaced();
+                expiredFileJanitor.shutdown();
+                nodeFileCache.clear();
+                // requests in flight complete before the clients are closed
+                hiveMQS3Client.close();
+            }
+        }
+    }
+
+    /**
+     * Runs a discovery cycle or joins the cycle that is already in flight, so overlapping init, reload and background
+     * refresh calls share one cycle and its result instead of multiplying the requests to a slow bucket. An initial
+     * call only joins an initial cycle, as only that one is guaranteed to save the own file.
+     *
+     * @return the node addresses of the cycle, see {@link #runDiscoveryCycle(ClusterDiscoveryInput, boolean, String)}.
+     */
+    private @Nullable List<ClusterNodeAddress> discover(
+            final @NotNull ClusterDiscoveryInput clusterDiscoveryInput,
+            final boolean initial,
+            final @NotNull String skipMessage) {
+        final var flight = new DiscoveryFlight(initial);
+        final var currentFlight = registerDiscovery(flight);
+        if (currentFlight != null) {
+            return joinDiscovery(currentFlight, skipMessage);
+        }
+        return runDiscovery(flight, clusterDiscoveryInput, skipMessage);
+    }
+
+    /**
+     * Registers the given cycle as the cycle in flight, unless there is already a cycle in flight it can join.
+     *
+     * @return the cycle in flight to join or {@code null} if the given cycle was registered.
+     */
+    private @Nullable DiscoveryFlight registerDiscovery(final @NotNull DiscoveryFlight flight) {
+        while (true) {
+            final var currentFlight = discoveryFlight.get();
+            if (currentFlight != null && (currentFlight.initial || !flight.initial)) {
+                return currentFlight;
+            }
+            if (discoveryFlight.compareAndSet(currentFlight, flight)) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Runs the registered cycle and shares its result with the calls that joined it.
+     */
+    private @Nullable List<ClusterNodeAddress> runDiscovery(
+            final @NotNull DiscoveryFlight flight,
+            final @NotNull ClusterDiscoveryInput clusterDiscoveryInput,
+            final @NotNull String skipMessage) {
+        try {
+            final var nodeAddresses = runDiscoveryCycle(clusterDiscoveryInput, flight.initial, skipMessage);
+            flight.result.complete(nodeAddresses);
+            return nodeAddresses;
+        } catch (final Throwable throwable) {
+            flight.result.completeExceptionally(throwable);
+            throw throwable;
+        } finally {
+            discoveryFlight.compareAndSet(flight, null);
+        }
+    }
+
+    /**
+     * @return the node addresses of the joined cycle or the last known good node addresses if it failed.
+     */
+    private @Nullable List<ClusterNodeAddress> joinDiscovery(
+            final @NotNull DiscoveryFlight flight,
+            final @NotNull String skipMessage) {
+        s3DiscoveryMetrics.getQueryCoalescedCount().inc();
+        LOG.debug("{}: Discovery cycle is already running, sharing its result.", EXTENSION_NAME);
         try {
-            if (ownNodeFile != null) {
-                deleteOwnFile(clusterDiscoveryInput.getOwnClusterId());
+            return flight.result.join();
+        } catch (final CompletionException e) {
+            // the failure is recorded by the caller that ran the cycle
+            LOG.debug("{}: Shared discovery cycle failed. {}", EXTENSION_NAME, skipMessage, e.getCause());
+            return getLastKnownGoodNodeAddresses();
+        }
+    }
+
+    /**
+     * Runs a complete discovery cycle: checks the bucket, saves the own file if required and reads the node addresses
+     * of all nodes.
+     *
+     * @return the discovered node addresses, the last known good node addresses if the circuit breaker is open or the
+     *         bucket check failed, or {@code null} if there are none or the callback is destroyed.
+     */
+    private synchronized @Nullable List<ClusterNodeAddress> runDiscoveryCycle(
+            final @NotNull ClusterDiscoveryInput clusterDiscoveryInput,
+            final boolean initial,
+            final @NotNull String skipMessage) {
+        // the own file must not be saved again after it was deleted
+        if (destroyed) {
+            return null;
+        }
+        final var s3Config = Objects.requireNonNull(hiveMQS3Client.getS3Config());
+        circuitBreaker.configure(s3Config.getCircuitBreakerFailureThreshold(),
+                s3Config.getCircuitBreakerOpenDurationInSeconds() * 1_000);
+        if (!circuitBreaker.tryAcquire()) {
+            LOG.debug("{}: Circuit breaker is open, serving the last known good node addresses. {}",
+                    EXTENSION_NAME,
+                    skipMessage);
+            return getLastKnownGoodNodeAddresses();
+        }
+        final var s3Bucket = hiveMQS3Client.checkBucket();
+        if (!s3Bucket.isSuccessful()) {
+            return handleBucketFailure(s3Bucket, skipMessage);
+        }
+        final var ownFileUpdate = initial || isOwnFileUpdateRequired();
+        if (ownFileUpdate) {
+            try {
+                saveOwnFile(clusterDiscoveryInput.getOwnClusterId(), clusterDiscoveryInput.getOwnAddress());
+            } catch (final RuntimeException e) {
+                final var bucketFailure = toBucketFailure(e);
+                if (bucketFailure == null) {
+                    throw e;
+                }
+                return handleBucketFailure(bucketFailure, skipMessage);
+            }
+        }
+        return getNodeAddresses(skipMessage, ownFileUpdate);
+    }
+
+    /**
+     * @return the node addresses of the membership snapshot without the expired entries or {@code null} if the
+     *         snapshot is disabled or has no live entries.
+     */
+    private @Nullable List<ClusterNodeAddress> readMembershipSnapshot() {
+        final var s3Config = Objects.requireNonNull(hiveMQS3Client.getS3Config());
+        if (!s3Config.getMembershipSnapshot()) {
+            return null;
+        }
+        final var nodeAddresses = new ArrayList<ClusterNodeAddress>();
+        for (final var nodeFile : membershipSnapshotFile.read()) {
+            if (!nodeFile.isExpired(s3Config.getFileExpirationInSeconds())) {
+                nodeAddresses.add(nodeFile.getClusterNodeAddress());
             }
+        }
+        if (nodeAddresses.isEmpty()) {
+            return null;
+        }
+        LOG.info("{}: Provided {} node addresses of the membership snapshot, reconciling them with S3.",
+                EXTENSION_NAME,
+                nodeAddresses.size());
+        addressesCount.set(nodeAddresses.size());
+        return nodeAddresses;
+    }
+
+    /**
+     * Starts the initial discovery cycle after the node addresses of the membership snapshot were provided. The cycle
+     * is registered before this method returns, so the first reload joins it instead of racing it.
+     */
+    private void startReconcile(final @NotNull ClusterDiscoveryInput clusterDiscoveryInput) {
+        final var flight = new DiscoveryFlight(true);
+        if (registerDiscovery(flight) != null) {
+            return;
+        }
+        try {
+            reconcileExecutor.execute(() -> reconcile(flight, clusterDiscoveryInput));
+        } catch (final RejectedExecutionException e) {
+            // destroyed
+            flight.result.complete(null);
+            discoveryFlight.compareAndSet(flight, null);
+        }
+    }
+
+    private void reconcile(
+            final @NotNull DiscoveryFlight flight,
+            final @NotNull ClusterDiscoveryInput clusterDiscoveryInput) {
+        try {
+            runDiscovery(flight, clusterDiscoveryInput, "Skipping initial discovery.");
         } catch (final Exception e) {
-            LOG.error("{}: Destroy of the S3 discovery callback failed.", EXTENSION_NAME, e);
+            LOG.error("{}: Initialization of the S3 discovery callback failed.", EXTENSION_NAME, e);
+            onDiscoveryFailure();
+        }
+    }
+
+    /**
+     * Starts or stops the background refresh according to the current configuration.
+     */
+    private void updateBackgroundRefresh(final @NotNull ClusterDiscoveryInput clusterDiscoveryInput) {
+        final var s3Config = hiveMQS3Client.getS3Config();
+        if (s3Config == null || !s3Config.getBackgroundRefresh()) {
+            backgroundRefresher.stop();
+            return;
         }
+        backgroundRefresher.start(() -> refresh(clusterDiscoveryInput), getRefreshPeriodMillis(clusterDiscoveryInput));
+    }
+
+    /**
+     * @return the period of the background refresh, twice per reload interval, so a fresh snapshot is available for
+     *         every reload callback.
+     */
+    private static long getRefreshPeriodMillis(final @NotNull ClusterDiscoveryInput clusterDiscoveryInput) {
+        return Math.max(MIN_REFRESH_PERIOD_MILLIS, clusterDiscoveryInput.getReloadInterval() * 1_000L / 2);
+    }
+
+    /**
+     * Backs off while the membership is stable, but never skips the cycle which has to update the own file.
+     *
+     * @return the node addresses of the last discovery cycle if this cycle is skipped, {@code null} otherwise.
+     */
+    private @Nullable List<ClusterNodeAddress> getSkippedCycleNodeAddresses(
+            final @NotNull ClusterDiscoveryInput clusterDiscoveryInput) {
+        final var s3Config = Objects.requireNonNull(hiveMQS3Client.getS3Config());
+        final var minIntervalMillis = backgroundRefresher.isRunning() ?
+                getRefreshPeriodMillis(clusterDiscoveryInput) :
+                clusterDiscoveryInput.getReloadInterval() * 1_000L;
+        refreshCadence.configure(minIntervalMillis, s3Config.getAdaptiveRefreshMaxIntervalInSeconds() * 1_000);
+        if (isOwnFileUpdateDue(minIntervalMillis)) {
+            return null;
+        }
+        final var nodeAddresses = refreshCadence.getSkippedCycleNodeAddresses();
+        if (nodeAddresses != null) {
+            LOG.trace("{}: Membership is stable, skipping discovery cycle.", EXTENSION_NAME);
+        }
+        return nodeAddresses;
+    }
+
+    private void refresh(final @NotNull ClusterDiscoveryInput clusterDiscoveryInput) {
+        try {
+            hiveMQS3Client.createOrUpdate();
+        } catch (final Exception e) {
+            LOG.error("{}: Configuration couldn't be reloaded. Skipping background refresh.", EXTENSION_NAME, e);
+            s3DiscoveryMetrics.getQueryFailedCount().inc();
+            return;
+        }
+        if (!Objects.requireNonNull(hiveMQS3Client.getS3Config()).getBackgroundRefresh()) {
+            backgroundRefresher.stop();
+            return;
+        }
+        final var skippedCycleNodeAddresses = getSkippedCycleNodeAddresses(clusterDiscoveryInput);
+        if (skippedCycleNodeAddresses != null) {
+            // the membership is stable, so the snapshot is still valid
+            backgroundRefresher.update(skippedCycleNodeAddresses);
+            return;
+        }
+        try {
+            discover(clusterDiscoveryInput, false, "Skipping background refresh.");
+        } catch (final Exception e) {
+            LOG.error("{}: Background refresh of the S3 discovery failed.", EXTENSION_NAME, e);
+            onDiscoveryFailure();
+        }
+    }
+
+    /**
+     * @return the configured staleness bound of the background refresh or twice the reload interval if it is not
+     *         configured.
+     */
+    private long getMaxStalenessMillis(final @NotNull ClusterDiscoveryInput clusterDiscoveryInput) {
+        final var s3Config = hiveMQS3Client.getS3Config();
+        final long maxStalenessSeconds = s3Config == null ? 0 : s3Config.getBackgroundRefreshMaxStalenessInSeconds();
+        if (maxStalenessSeconds > 0) {
+            return maxStalenessSeconds * 1_000;
+        }
+        return clusterDiscoveryInput.getReloadInterval() * 2_000L;
+    }
+
+    /**
+     * @return the last known good node addresses or {@code null} if there are none.
+     */
+    private @Nullable List<ClusterNodeAddress> handleBucketFailure(
+            final @NotNull S3BucketResponse s3Bucket,
+            final @NotNull String skipMessage) {
+        final var status = s3Bucket.getStatus();
+        if (status == S3BucketResponse.Status.NOT_EXISTING) {
+            LOG.error("{}: Configured bucket '{}' doesn't exist. {}",
+                    EXTENSION_NAME,
+                    s3Bucket.getBucketName(),
+                    skipMessage);
+        } else if (status == S3BucketResponse.Status.NO_PERMISSION) {
+            LOG.error(
+                    "{}: No permission for configured bucket '{}'. Please check your credentials and AWS security settings. {}",
+                    EXTENSION_NAME,
+                    s3Bucket.getBucketName(),
+                    skipMessage);
+        } else if (status == S3BucketResponse.Status.OTHER) {
+            LOG.error(
+                    "{}: Unknown error occurred when checking configured bucket '{}'. Please check your s3-bucket-region setting. {}",
+                    EXTENSION_NAME,
+                    s3Bucket.getBucketName(),
+                    skipMessage);
+        }
+        s3Bucket.getThrowable()
+                .ifPresent(throwable -> LOG.debug("{}: Original Exception: ", EXTENSION_NAME, throwable));
+        return onDiscoveryFailure();
+    }
+
+    /**
+     * @return the failed bucket check that the failure of a LIST, PUT or GET request maps to or {@code null} if the
+     *         request did not fail because of the bucket.
+     */
+    private @Nullable S3BucketResponse toBucketFailure(final @NotNull Throwable throwable) {
+        return S3BucketResponse.fromException(Objects.requireNonNull(hiveMQS3Client.getS3Config()).getBucketName(),
+                S3ExceptionUtil.unwrap(throwable));
+    }
+
+    /**
+     * Records a failed discovery cycle.
+     *
+     * @return the last known good node addresses or {@code null} if there are none.
+     */
+    private @Nullable List<ClusterNodeAddress> onDiscoveryFailure() {
+        s3DiscoveryMetrics.getQueryFailedCount().inc();
+        circuitBreaker.onFailure();
+        return getLastKnownGoodNodeAddresses();
+    }
+
+    private @Nullable List<ClusterNodeAddress> getLastKnownGoodNodeAddresses() {
+        final var nodeAddresses = circuitBreaker.getLastKnownGood(Objects.requireNonNull(hiveMQS3Client.getS3Config())
+                .getFileExpirationInSeconds());
+        addressesCount.set(nodeAddresses == null ? 0 : nodeAddresses.size());
+        return nodeAddresses;
+    }
+
+    private boolean isOwnFileUpdateRequired() {
+        final var ownFile = this.ownFile.get();
+        return ownFile == null ||
+                ownFile.nodeFile.isExpired(Objects.requireNonNull(hiveMQS3Client.getS3Config())
+                        .getFileUpdateIntervalInSeconds());
+    }
+
+    /**
+     * @return {@code true} if the own file has to be updated before the next cycle, which follows after the given
+     *         delay.
+     */
+    private boolean isOwnFileUpdateDue(final long nextCycleDelayMillis) {
+        final var ownFile = this.ownFile.get();
+        if (ownFile == null) {
+            return true;
+        }
+        final var updateIntervalInSeconds =
+                Objects.requireNonNull(hiveMQS3Client.getS3Config()).getFileUpdateIntervalInSeconds();
+        // 0 = deactivated
+        if (updateIntervalInSeconds == 0) {
+            return false;
+        }
+        return ownFile.nodeFile.getCreationTimeInMillis() + updateIntervalInSeconds * 1_000 <
+                System.currentTimeMillis() + nextCycleDelayMillis;
     }
 
     private void saveOwnFile(final @NotNull String ownClusterId, final @NotNull ClusterNodeAddress ownAddress) {
-        final var objectKey = Objects.requireNonNull(hiveMQS3Client.getS3Config()).getFilePrefix() + ownClusterId;
         final var newNodeFile = new ClusterNodeFile(ownClusterId, ownAddress);
-        hiveMQS3Client.saveObject(objectKey, newNodeFile.toString());
-        ownNodeFile = newNodeFile;
-        LOG.debug("{}: Updated own S3 file '{}'.", EXTENSION_NAME, objectKey);
+        final String objectKey;
+        final String eTag;
+        if (getFileLayout() == FileLayout.MANIFEST) {
+            objectKey = null;
+            eTag = null;
+            nodeFileManifest.update(newNodeFile, null);
+        } else {
+            objectKey = getObjectKey(newNodeFile);
+            eTag = hiveMQS3Client.saveObject(objectKey, newNodeFile.encode(getFileFormat()));
+            if (manifestListed) {
+                updateOwnManifestEntry(newNodeFile);
+            }
+        }
+        final var previousOwnFile = updateOwnFile(newNodeFile, objectKey, eTag);
+        if (previousOwnFile != null) {
+            // deleted in the background, so the update of the own file does not wait for it
+            expiredFileJanitor.submitReplaced(Objects.requireNonNull(previousOwnFile.objectKey), previousOwnFile.eTag);
+        }
     }
 
-    private void deleteOwnFile(final @NotNull String ownClusterId) {
-        final var objectKey = Objects.requireNonNull(hiveMQS3Client.getS3Config()).getFilePrefix() + ownClusterId;
-        hiveMQS3Client.deleteObject(objectKey);
-        ownNodeFile = null;
-        LOG.debug("{}: Removed own S3 file '{}'.", EXTENSION_NAME, objectKey);
+    /**
+     * Adds or replaces the own entry of the manifest for a node in the object or key layout, so the nodes that are
+     * already migrated to the manifest layout find it. A failure is only logged, as the own file was saved.
+     */
+    private void updateOwnManifestEntry(final @NotNull ClusterNodeFile nodeFile) {
+        try {
+            nodeFileManifest.update(nodeFile, null);
+        } catch (final Exception e) {
+            LOG.warn("{}: Not able to update own entry of the S3 manifest.", EXTENSION_NAME, e);
+        }
     }
 
-    private @NotNull List<ClusterNodeAddress> getNodeAddresses() {
-        final var nodeAddresses = new ArrayList<ClusterNodeAddress>();
-        final List<ClusterNodeFile> nodeFiles;
+    /**
+     * @param objectKey the object key of the own file or {@code null} if the own file is an entry of the manifest.
+     * @param eTag      the ETag returned when the own file was saved or {@code null} if it is unknown.
+     * @return the previous own file if its object key differs from the new one and it has to be removed, {@code null}
+     *         otherwise.
+     */
+    private @Nullable OwnFile updateOwnFile(
+            final @NotNull ClusterNodeFile newNodeFile,
+            final @Nullable String objectKey,
+            final @Nullable String eTag) {
+        final var previousOwnFile = ownFile.getAndSet(new OwnFile(newNodeFile, objectKey, eTag));
+        final var previousObjectKey = previousOwnFile == null ? null : previousOwnFile.objectKey;
+        LOG.debug("{}: Updated own S3 file '{}'.",
+                EXTENSION_NAME,
+                objectKey != null ?
+                        objectKey :
+                        NodeFileManifest.getObjectKey(Objects.requireNonNull(hiveMQS3Client.getS3Config())));
+        if (previousObjectKey == null || previousObjectKey.equals(objectKey)) {
+            return null;
+        }
+        return previousOwnFile;
+    }
+
+    private void deleteOwnFile() {
+        final var ownFile = Objects.requireNonNull(this.ownFile.get());
+        final var objectKey = ownFile.objectKey;
+        if (objectKey != null) {
+            hiveMQS3Client.deleteObject(objectKey);
+            LOG.debug("{}: Removed own S3 file '{}'.", EXTENSION_NAME, objectKey);
+        }
+        if (objectKey == null || manifestListed) {
+            nodeFileManifest.update(null, ownFile.nodeFile.getClusterId());
+            LOG.debug("{}: Removed own entry of the S3 manifest.", EXTENSION_NAME);
+        }
+        // an own file that was saved concurrently is kept, so it is deleted with the next call
+        this.ownFile.compareAndSet(ownFile, null);
+    }
+
+    private @NotNull FileLayout getFileLayout() {
+        return Objects.requireNonNull(hiveMQS3Client.getS3Config()).getFileLayout();
+    }
+
+    private @NotNull FileFormat getFileFormat() {
+        return Objects.requireNonNull(hiveMQS3Client.getS3Config()).getFileFormat();
+    }
+
+    private @NotNull String getObjectKey(final @NotNull ClusterNodeFile nodeFile) {
+        final var s3Config = Objects.requireNonNull(hiveMQS3Client.getS3Config());
+        if (s3Config.getFileLayout() == FileLayout.KEY) {
+            return s3Config.getFilePrefix() + nodeFile.getClusterId() + KEY_SEPARATOR +
+                    nodeFile.toKeyName(s3Config.getFileFormat());
+        }
+        return s3Config.getFilePrefix() + nodeFile.getClusterId();
+    }
+
+    /**
+     * Parses the node file from an object key of the {@link FileLayout#KEY} layout. Both layouts are always read, so
+     * nodes can be migrated from one layout to the other one by one.
+     *
+     * @return the node file or {@code null} if the object key has another layout.
+     */
+    private @Nullable ClusterNodeFile parseObjectKey(final @NotNull String objectKey) {
+        final var filePrefix = Objects.requireNonNull(hiveMQS3Client.getS3Config()).getFilePrefix();
+        if (!objectKey.startsWith(filePrefix)) {
+            return null;
+        }
+        final var separatorIndex = objectKey.indexOf(KEY_SEPARATOR, filePrefix.length());
+        if (separatorIndex == -1 || separatorIndex == objectKey.length() - 1) {
+            return null;
+        }
+        final var nodeFile = ClusterNodeFile.parseKeyName(objectKey.substring(separatorIndex + 1));
+        if (nodeFile == null ||
+                !objectKey.regionMatches(filePrefix.length(),
+                        nodeFile.getClusterId(),
+                        0,
+                        separatorIndex - filePrefix.length())) {
+            return null;
+        }
+        return nodeFile;
+    }
+
+    /**
+     * Reads the node files of all layouts that are in use, so the nodes of a cluster can be migrated one by one. A node
+     * in the manifest layout lists the objects as long as it finds node files besides the manifest and whenever it
+     * updates its own entry, as nodes in the object or key layout only add their entry once they have seen the
+     * manifest.
+     *
+     * @param ownFileUpdate {@code true} if the own file was updated in this cycle.
+     */
+    private @NotNull List<ClusterNodeAddress> getNodeAddresses(
+            final @NotNull String skipMessage,
+            final boolean ownFileUpdate) {
+        final Map<String, ClusterNodeFile> nodeFiles;
+        final List<ClusterNodeFile> manifestNodeFiles;
+        final var listing = new NodeFileListing();
         try {
-            nodeFiles = getNodeFiles();
+            if (getFileLayout() == FileLayout.MANIFEST) {
+                if (objectNodeFilesListed || ownFileUpdate) {
+                    nodeFiles = getNodeFiles(listing);
+                    objectNodeFilesListed = listing.nodeFilesListed;
+                } else {
+                    nodeFiles = Map.of();
+                }
+                manifestNodeFiles = nodeFileManifest.read();
+            } else {
+                nodeFiles = getNodeFiles(listing);
+                if (listing.manifestListed && !manifestListed) {
+                    // the manifest appeared, the own entry is added right away instead of with the next update
+                    final var ownFile = this.ownFile.get();
+                    if (ownFile != null) {
+                        updateOwnManifestEntry(ownFile.nodeFile);
+                    }
+                }
+                manifestListed = listing.manifestListed;
+                manifestNodeFiles = listing.manifestListed ? nodeFileManifest.read() : List.of();
+            }
         } catch (final Exception e) {
-            LOG.error("{}: Unknown error while reading all node files.", EXTENSION_NAME, e);
-            s3DiscoveryMetrics.getQueryFailedCount().inc();
-            addressesCount.set(0);
-            return nodeAddresses;
+            final var bucketFailure = toBucketFailure(e);
+            final List<ClusterNodeAddress> nodeAddresses;
+            if (bucketFailure != null) {
+                nodeAddresses = handleBucketFailure(bucketFailure, skipMessage);
+            } else {
+                LOG.error("{}: Unknown error while reading all node files.", EXTENSION_NAME, e);
+                nodeAddresses = onDiscoveryFailure();
+            }
+            return nodeAddresses != null ? nodeAddresses : new ArrayList<>();
         }
-        for (final var nodeFile : nodeFiles) {
-            if (nodeFile.isExpired(Objects.requireNonNull(hiveMQS3Client.getS3Config()).getFileExpirationInSeconds())) {
+        return toNodeAddresses(nodeFiles, manifestNodeFiles, listing);
+    }
+
+    /**
+     * @param nodeFiles         the node files by their object key.
+     * @param manifestNodeFiles the entries of the manifest.
+     * @param listing           the listing of the node files, with the object keys of the node files that are already
+     *                          known to be expired.
+     */
+    private @NotNull List<ClusterNodeAddress> toNodeAddresses(
+            final @NotNull Map<String, ClusterNodeFile> nodeFiles,
+            final @NotNull List<ClusterNodeFile> manifestNodeFiles,
+            final @NotNull NodeFileListing listing) {
+        final var fileExpirationInSeconds =
+                Objects.requireNonNull(hiveMQS3Client.getS3Config()).getFileExpirationInSeconds();
+        final var expiredObjectKeys = new ArrayList<>(listing.staleObjectKeys);
+        final var liveObjectKeys = new ArrayList<String>(nodeFiles.size());
+        // a node has briefly two files while it replaces its file in the key layout or while it is migrated to the
+        // manifest, the newest one wins
+        final var newestNodeFiles = new LinkedHashMap<String, ClusterNodeFile>();
+        for (final var entry : nodeFiles.entrySet()) {
+            final var nodeFile = entry.getValue();
+            if (nodeFile.isExpired(fileExpirationInSeconds)) {
                 LOG.debug("{}: S3 file of node with clusterId {} is expired. File will be deleted.",
                         EXTENSION_NAME,
                         nodeFile.getClusterId());
-                final var objectKey = hiveMQS3Client.getS3Config().getFilePrefix() + nodeFile.getClusterId();
-                hiveMQS3Client.deleteObject(objectKey);
+                expiredObjectKeys.add(entry.getKey());
             } else {
-                nodeAddresses.add(nodeFile.getClusterNodeAddress());
+                liveObjectKeys.add(entry.getKey());
+                newestNodeFiles.merge(nodeFile.getClusterId(), nodeFile, ClusterNodeFile::newest);
             }
         }
+        for (final var nodeFile : manifestNodeFiles) {
+            // expired entries are removed with the next update of the manifest
+            if (!nodeFile.isExpired(fileExpirationInSeconds)) {
+                newestNodeFiles.merge(nodeFile.getClusterId(), nodeFile, ClusterNodeFile::newest);
+            }
+        }
+        final var nodeAddresses = new ArrayList<ClusterNodeAddress>(newestNodeFiles.size());
+        final var members = new HashMap<String, ClusterNodeAddress>();
+        for (final var nodeFile : newestNodeFiles.values()) {
+            nodeAddresses.add(nodeFile.getClusterNodeAddress());
+            members.put(nodeFile.getClusterId(), nodeFile.getClusterNodeAddress());
+        }
         LOG.debug("{}: Found following node addresses: {}", EXTENSION_NAME, nodeAddresses);
         s3DiscoveryMetrics.getQuerySuccessCount().inc();
         addressesCount.set(nodeAddresses.size());
+        backgroundRefresher.update(nodeAddresses);
+        refreshCadence.onRefresh(members, nodeAddresses);
+        circuitBreaker.onSuccess(newestNodeFiles.values());
+        if (Objects.requireNonNull(hiveMQS3Client.getS3Config()).getMembershipSnapshot()) {
+            membershipSnapshotFile.write(newestNodeFiles.values());
+        }
+        // a node rewrites its file under the same key in the object layout, so a queued file can be live again
+        expiredFileJanitor.dropLive(liveObjectKeys);
+        if (isElectedJanitor(newestNodeFiles.keySet())) {
+            expiredFileJanitor.submit(getExpiredFiles(expiredObjectKeys, listing));
+        } else if (!expiredObjectKeys.isEmpty()) {
+            LOG.trace("{}: Not the elected janitor, leaving {} expired files to the janitor.",
+                    EXTENSION_NAME,
+                    expiredObjectKeys.size());
+        }
         return nodeAddresses;
     }
 
-    private @NotNull List<ClusterNodeFile> getNodeFiles() {
-        final var clusterNodeFiles = new ArrayList<ClusterNodeFile>();
+    /**
+     * @return the listed ETag of the expired node files by their object key, so the janitor only deletes them if they
+     *         were not updated since. Node files without a listed ETag are left in the bucket.
+     */
+    private static @NotNull Map<String, String> getExpiredFiles(
+            final @NotNull List<String> expiredObjectKeys,
+            final @NotNull NodeFileListing listing) {
+        final var expiredFiles = new LinkedHashMap<String, String>();
+        for (final var objectKey : expiredObjectKeys) {
+            final var eTag = listing.eTags.get(objectKey);
+            if (eTag != null) {
+                expiredFiles.put(objectKey, eTag);
+            }
+        }
+        return expiredFiles;
+    }
+
+    /**
+     * Elects the live node with the lowest cluster id as janitor, so an expired node file is deleted by a single
+     * node instead of every node. As soon as the node file of the janitor expires, the next node takes over.
+     *
+     * @param liveClusterIds the cluster ids of the nodes with a node file that is not expired.
+     */
+    private boolean isElectedJanitor(final @NotNull Collection<String> liveClusterIds) {
+        final var ownFile = this.ownFile.get();
+        if (ownFile == null) {
+            electedJanitor = false;
+            return false;
+        }
+        final var ownClusterId = ownFile.nodeFile.getClusterId();
+        var elected = true;
+        for (final var clusterId : liveClusterIds) {
+            if (clusterId.compareTo(ownClusterId) < 0) {
+                elected = false;
+                break;
+            }
+        }
+        if (elected != electedJanitor) {
+            LOG.debug("{}: This node {} the janitor for expired files.",
+                    EXTENSION_NAME,
+                    elected ? "is now" : "is no longer");
+        }
+        electedJanitor = elected;
+        return elected;
+    }
+
+    private @NotNull Map<String, ClusterNodeFile> getNodeFiles(final @NotNull NodeFileListing listing) {
+        final var s3Config = Objects.requireNonNull(hiveMQS3Client.getS3Config());
+        final int downloadConcurrency = s3Config.getDownloadConcurrency();
+        final boolean downloadConcurrencyAdaptive = s3Config.getDownloadConcurrencyAdaptive();
+        final var manifestObjectKey = NodeFileManifest.getObjectKey(s3Config);
+        final var clusterNodeFiles = new LinkedHashMap<String, ClusterNodeFile>();
         var listObjectsV2Response = hiveMQS3Client.getObjects();
         while (listObjectsV2Response != null) {
+            serverClock.update(listObjectsV2Response.sdkHttpResponse());
+            final var s3Objects = new ArrayList<S3Object>(listObjectsV2Response.contents().size());
             for (final var s3Object : listObjectsV2Response.contents()) {
                 if (s3Object == null) {
                     continue;
                 }
-                try {
-                    final var nodeFile = getNodeFile(s3Object);
-                    if (nodeFile != null) {
-                        clusterNodeFiles.add(nodeFile);
-                    }
-                } catch (final S3Exception e) {
-                    LOG.error("{}: Not able to read file {} from bucket {}. Skipping file.",
-                            EXTENSION_NAME,
-                            s3Object.key(),
-                            Objects.requireNonNull(hiveMQS3Client.getS3Config()).getBucketName(),
-                            e);
-                } catch (final Exception e) {
-                    LOG.error("{}: Unknown error occurred while reading file {} from bucket {}. Skipping file.",
-                            EXTENSION_NAME,
-                            s3Object.key(),
-                            Objects.requireNonNull(hiveMQS3Client.getS3Config()).getBucketName(),
-                            e);
+                listing.objectKeys.add(s3Object.key());
+                if (s3Object.eTag() != null) {
+                    listing.eTags.put(s3Object.key(), s3Object.eTag());
+                }
+                if (s3Object.key().equals(manifestObjectKey)) {
+                    listing.manifestListed = true;
+                    continue;
+                }
+                listing.nodeFilesListed = true;
+                if (isStale(s3Object)) {
+                    listing.staleObjectKeys.add(s3Object.key());
+                    continue;
+                }
+                final var knownNodeFile = getKnownNodeFile(s3Object);
+                if (knownNodeFile != null) {
+                    clusterNodeFiles.put(s3Object.key(), knownNodeFile);
+                } else {
+                    s3Objects.add(s3Object);
                 }
             }
+            final var downloadedNodeFiles = nodeFileDownloader.download(s3Objects,
+                    downloadConcurrency,
+                    downloadConcurrencyAdaptive,
+                    this::getAndCacheNodeFile,
+                    this::logNodeFileError);
+            for (final var downloadedNodeFile : downloadedNodeFiles) {
+                clusterNodeFiles.put(downloadedNodeFile.getKey(), downloadedNodeFile.getValue());
+            }
             if (listObjectsV2Response.isTruncated()) {
                 LOG.debug("{}: ObjectListing is truncated. Next batch will be loaded.", EXTENSION_NAME);
                 listObjectsV2Response =
@@ -254,9 +891,85 @@ class S3DiscoveryCallback implements ClusterDiscoveryCallback {
                 listObjectsV2Response = null;
             }
         }
+        nodeFileCache.retainAll(listing.objectKeys);
         return clusterNodeFiles;
     }
 
+    /**
+     * An S3 object which was not modified for longer than the file expiration is expired, regardless of its content,
+     * as every update of a node file replaces the object. The last modified time is set by the S3 service, so it is
+     * compared with the estimated clock of the S3 service. This avoids the download of files of crashed nodes.
+     */
+    private boolean isStale(final @NotNull S3Object s3Object) {
+        final var lastModified = s3Object.lastModified();
+        if (lastModified == null || s3Object.key().equals(getOwnObjectKey())) {
+            return false;
+        }
+        final var fileExpirationInSeconds =
+                Objects.requireNonNull(hiveMQS3Client.getS3Config()).getFileExpirationInSeconds();
+        // 0 = deactivated
+        if (fileExpirationInSeconds == 0) {
+            return false;
+        }
+        if (lastModified.toEpochMilli() + (fileExpirationInSeconds * 1_000) >= serverClock.currentTimeMillis()) {
+            return false;
+        }
+        LOG.debug("{}: S3 file '{}' was last modified at {} and is expired. File will be deleted.",
+                EXTENSION_NAME,
+                s3Object.key(),
+                lastModified);
+        return true;
+    }
+
+    /**
+     * @return the object key of our own node file, {@code null} if it was not saved yet.
+     */
+    private @Nullable String getOwnObjectKey() {
+        final var ownFile = this.ownFile.get();
+        return ownFile == null ? null : ownFile.objectKey;
+    }
+
+    /**
+     * @return our own node file, the node file encoded in the object key or the cached node file if the S3 object is
+     *         unchanged, {@code null} if the S3 object has to be downloaded.
+     */
+    private @Nullable ClusterNodeFile getKnownNodeFile(final @NotNull S3Object s3Object) {
+        final var ownFile = this.ownFile.get();
+        if (ownFile != null && s3Object.key().equals(ownFile.objectKey)) {
+            return ownFile.nodeFile;
+        }
+        final var keyNodeFile = parseObjectKey(s3Object.key());
+        if (keyNodeFile != null) {
+            return keyNodeFile;
+        }
+        return nodeFileCache.get(s3Object);
+    }
+
+    private @Nullable Map.Entry<String, ClusterNodeFile> getAndCacheNodeFile(final @NotNull S3Object s3Object) {
+        final var nodeFile = getNodeFile(s3Object);
+        if (nodeFile == null) {
+            return null;
+        }
+        nodeFileCache.put(s3Object, nodeFile);
+        return Map.entry(s3Object.key(), nodeFile);
+    }
+
+    private void logNodeFileError(final @NotNull S3Object s3Object, final @NotNull Throwable throwable) {
+        if (throwable instanceof S3Exception) {
+            LOG.error("{}: Not able to read file {} from bucket {}. Skipping file.",
+                    EXTENSION_NAME,
+                    s3Object.key(),
+                    Objects.requireNonNull(hiveMQS3Client.getS3Config()).getBucketName(),
+                    throwable);
+        } else {
+            LOG.error("{}: Unknown error occurred while reading file {} from bucket {}. Skipping file.",
+                    EXTENSION_NAME,
+                    s3Object.key(),
+                    Objects.requireNonNull(hiveMQS3Client.getS3Config()).getBucketName(),
+                    throwable);
+        }
+    }
+
     private @Nullable ClusterNodeFile getNodeFile(final @NotNull S3Object s3Object) {
         final var objectKey = s3Object.key();
         final String fileContent;
@@ -277,4 +990,51 @@ class S3DiscoveryCallback implements ClusterDiscoveryCallback {
         }
         return nodeFile;
     }
+
+    /**
+     * Collects the state of a paginated listing of the node files.
+     */
+    private static final class NodeFileListing {
+
+        private final @NotNull Set<String> objectKeys = new HashSet<>();
+        private final @NotNull Map<String, String> eTags = new HashMap<>();
+        private final @NotNull List<String> staleObjectKeys = new ArrayList<>();
+        private boolean manifestListed;
+        // any object besides the manifest, also an expired one
+        private boolean nodeFilesListed;
+    }
+
+    /**
+     * A discovery cycle that is in flight, its result is shared with the calls that join it.
+     */
+    private static final class DiscoveryFlight {
+
+        private final boolean initial;
+        private final @NotNull CompletableFuture<@Nullable List<ClusterNodeAddress>> result =
+                new CompletableFuture<>();
+
+        private DiscoveryFlight(final boolean initial) {
+            this.initial = initial;
+        }
+    }
+
+    /**
+     * The own node file, its object key and the ETag returned when it was saved, published together so a reader never
+     * combines the node file with the object key of another update.
+     */
+    private static final class OwnFile {
+
+        private final @NotNull ClusterNodeFile nodeFile;
+        private final @Nullable String objectKey;
+        private final @Nullable String eTag;
+
+        private OwnFile(
+                final @NotNull ClusterNodeFile nodeFile,
+                final @Nullable String objectKey,
+                final @Nullable String eTag) {
+            this.nodeFile = nodeFile;
+            this.objectKey = objectKey;
+            this.eTag = eTag;
+        }
+    }
 }
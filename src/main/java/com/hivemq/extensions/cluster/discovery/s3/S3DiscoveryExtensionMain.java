@@ -41,6 +41,7 @@ public class S3DiscoveryExtensionMain implements ExtensionMain {
     private final @NotNull ExtensionLogging extensionLogging;
     private final @NotNull S3DiscoveryMetrics s3DiscoveryMetrics;
     @Nullable S3DiscoveryCallback s3DiscoveryCallback;
+    private @Nullable ConfigurationReader configurationReader;
 
     @SuppressWarnings("unused")
     public S3DiscoveryExtensionMain() {
@@ -61,7 +62,13 @@ public class S3DiscoveryExtensionMain implements ExtensionMain {
         try {
             extensionLogging.start();
             final var configurationReader = new ConfigurationReader(extensionStartInput.getExtensionInformation());
-            s3DiscoveryCallback = new S3DiscoveryCallback(configurationReader, s3DiscoveryMetrics);
+            this.configurationReader = configurationReader;
+            final var membershipSnapshotFile = new MembershipSnapshotFile(extensionStartInput.getExtensionInformation()
+                    .getExtensionHomeFolder()
+                    .toPath()
+                    .resolve(ExtensionConstants.EXTENSION_MEMBERSHIP_SNAPSHOT));
+            s3DiscoveryCallback =
+                    new S3DiscoveryCallback(configurationReader, membershipSnapshotFile, s3DiscoveryMetrics);
 
             Services.clusterService().addDiscoveryCallback(s3DiscoveryCallback);
             LOG.debug("{}: Registered S3 discovery callback successfully.", ExtensionConstants.EXTENSION_NAME);
@@ -80,6 +87,9 @@ public class S3DiscoveryExtensionMain implements ExtensionMain {
         if (s3DiscoveryCallback != null) {
             Services.clusterService().removeDiscoveryCallback(s3DiscoveryCallback);
         }
+        if (configurationReader != null) {
+            configurationReader.close();
+        }
         extensionLogging.stop();
         s3DiscoveryMetrics.stop();
     }
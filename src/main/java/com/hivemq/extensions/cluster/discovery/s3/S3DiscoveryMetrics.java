@@ -18,7 +18,9 @@ package com.hivemq.extensions.cluster.discovery.s3;
 
 import com.codahale.metrics.Counter;
 import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import org.jetbrains.annotations.NotNull;
 
 import static com.hivemq.extensions.cluster.discovery.s3.ExtensionConstants.EXTENSION_METRIC_PREFIX;
@@ -31,6 +33,15 @@ class S3DiscoveryMetrics {
     private final @NotNull MetricRegistry metricRegistry;
     private final @NotNull Counter querySuccessCount;
     private final @NotNull Counter queryFailedCount;
+    private final @NotNull Counter queryCoalescedCount;
+    private final @NotNull Counter deleteSuccessCount;
+    private final @NotNull Counter deleteFailedCount;
+    private final @NotNull Meter expiredFilesDeleted;
+    private final @NotNull Counter circuitBreakerTransitions;
+    private final @NotNull Counter clientRebuilds;
+    private final @NotNull Timer requestWaitTime;
+    private final @NotNull Timer credentialsResolveTime;
+    private final @NotNull Counter credentialsFetchFailures;
 
     S3DiscoveryMetrics(final @NotNull MetricRegistry metricRegistry) {
         this.metricRegistry = metricRegistry;
@@ -38,6 +49,24 @@ class S3DiscoveryMetrics {
                 metricRegistry.counter(MetricRegistry.name(EXTENSION_METRIC_PREFIX, "query.success.count"));
         this.queryFailedCount =
                 metricRegistry.counter(MetricRegistry.name(EXTENSION_METRIC_PREFIX, "query.failed.count"));
+        this.queryCoalescedCount =
+                metricRegistry.counter(MetricRegistry.name(EXTENSION_METRIC_PREFIX, "query.coalesced.count"));
+        this.deleteSuccessCount =
+                metricRegistry.counter(MetricRegistry.name(EXTENSION_METRIC_PREFIX, "delete.success.count"));
+        this.deleteFailedCount =
+                metricRegistry.counter(MetricRegistry.name(EXTENSION_METRIC_PREFIX, "delete.failed.count"));
+        this.expiredFilesDeleted =
+                metricRegistry.meter(MetricRegistry.name(EXTENSION_METRIC_PREFIX, "expired-files.deleted"));
+        this.circuitBreakerTransitions =
+                metricRegistry.counter(MetricRegistry.name(EXTENSION_METRIC_PREFIX, "circuit-breaker.transitions"));
+        this.clientRebuilds =
+                metricRegistry.counter(MetricRegistry.name(EXTENSION_METRIC_PREFIX, "s3-client.rebuilds"));
+        this.requestWaitTime =
+                metricRegistry.timer(MetricRegistry.name(EXTENSION_METRIC_PREFIX, "request-budget.wait.time"));
+        this.credentialsResolveTime =
+                metricRegistry.timer(MetricRegistry.name(EXTENSION_METRIC_PREFIX, "credentials.resolve.time"));
+        this.credentialsFetchFailures =
+                metricRegistry.counter(MetricRegistry.name(EXTENSION_METRIC_PREFIX, "credentials.fetch.failures"));
     }
 
     @NotNull Counter getQuerySuccessCount() {
@@ -48,10 +77,75 @@ class S3DiscoveryMetrics {
         return queryFailedCount;
     }
 
+    @NotNull Counter getQueryCoalescedCount() {
+        return queryCoalescedCount;
+    }
+
+    @NotNull Counter getDeleteSuccessCount() {
+        return deleteSuccessCount;
+    }
+
+    @NotNull Counter getDeleteFailedCount() {
+        return deleteFailedCount;
+    }
+
+    @NotNull Meter getExpiredFilesDeleted() {
+        return expiredFilesDeleted;
+    }
+
+    @NotNull Counter getCircuitBreakerTransitions() {
+        return circuitBreakerTransitions;
+    }
+
+    @NotNull Counter getClientRebuilds() {
+        return clientRebuilds;
+    }
+
+    @NotNull Timer getRequestWaitTime() {
+        return requestWaitTime;
+    }
+
+    @NotNull Timer getCredentialsResolveTime() {
+        return credentialsResolveTime;
+    }
+
+    @NotNull Counter getCredentialsFetchFailures() {
+        return credentialsFetchFailures;
+    }
+
     void registerAddressCountGauge(final @NotNull Gauge<Integer> supplier) {
         metricRegistry.gauge(MetricRegistry.name(EXTENSION_METRIC_PREFIX, "resolved-addresses"), () -> supplier);
     }
 
+    void registerDownloadConcurrencyGauge(final @NotNull Gauge<Integer> supplier) {
+        metricRegistry.gauge(MetricRegistry.name(EXTENSION_METRIC_PREFIX, "download.concurrency"), () -> supplier);
+    }
+
+    void registerClockSkewGauge(final @NotNull Gauge<Long> supplier) {
+        metricRegistry.gauge(MetricRegistry.name(EXTENSION_METRIC_PREFIX, "clock-skew.millis"), () -> supplier);
+    }
+
+    void registerExpiredFilesQueueSizeGauge(final @NotNull Gauge<Integer> supplier) {
+        metricRegistry.gauge(MetricRegistry.name(EXTENSION_METRIC_PREFIX, "expired-files.queue.size"),
+                () -> supplier);
+    }
+
+    void registerJanitorGauge(final @NotNull Gauge<Integer> supplier) {
+        metricRegistry.gauge(MetricRegistry.name(EXTENSION_METRIC_PREFIX, "expired-files.janitor"), () -> supplier);
+    }
+
+    void registerRefreshIntervalGauge(final @NotNull Gauge<Long> supplier) {
+        metricRegistry.gauge(MetricRegistry.name(EXTENSION_METRIC_PREFIX, "refresh-interval.millis"), () -> supplier);
+    }
+
+    void registerRequestRateGauge(final @NotNull Gauge<Double> supplier) {
+        metricRegistry.gauge(MetricRegistry.name(EXTENSION_METRIC_PREFIX, "request-budget.rate"), () -> supplier);
+    }
+
+    void registerCircuitBreakerStateGauge(final @NotNull Gauge<Integer> supplier) {
+        metricRegistry.gauge(MetricRegistry.name(EXTENSION_METRIC_PREFIX, "circuit-breaker.state"), () -> supplier);
+    }
+
     void stop() {
         metricRegistry.removeMatching(
                 (name, metric) -> name.startsWith(EXTENSION_METRIC_PREFIX + ".") && metric instanceof Gauge);
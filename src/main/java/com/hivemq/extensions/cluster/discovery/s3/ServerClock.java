@@ -0,0 +1,74 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.cluster.discovery.s3;
+
+import org.jetbrains.annotations.Nullable;
+import software.amazon.awssdk.http.SdkHttpResponse;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Estimates the clock of the S3 service from the {@code Date} header of its responses.
+ * <p>
+ * Timestamps of the S3 service, e.g. the last modified time of an object, can then be compared with the current time
+ * of the S3 service instead of the local clock, which might be skewed.
+ */
+class ServerClock {
+
+    private static final long DATE_HEADER_RESOLUTION_MILLIS = 1_000;
+
+    private volatile long skewMillis;
+
+    /**
+     * Measures the clock skew from the {@code Date} header of the given response. The header has a resolution of one
+     * second, so smaller skews are ignored.
+     */
+    void update(final @Nullable SdkHttpResponse sdkHttpResponse) {
+        if (sdkHttpResponse == null) {
+            return;
+        }
+        final var date = sdkHttpResponse.firstMatchingHeader("Date");
+        if (date.isEmpty()) {
+            return;
+        }
+        final long serverTimeMillis;
+        try {
+            serverTimeMillis =
+                    ZonedDateTime.parse(date.get(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+        } catch (final DateTimeParseException ignored) {
+            return;
+        }
+        final var measuredSkewMillis = serverTimeMillis - System.currentTimeMillis();
+        skewMillis = Math.abs(measuredSkewMillis) <= DATE_HEADER_RESOLUTION_MILLIS ? 0 : measuredSkewMillis;
+    }
+
+    /**
+     * @return the difference between the clock of the S3 service and the local clock in milliseconds.
+     */
+    long getSkewMillis() {
+        return skewMillis;
+    }
+
+    /**
+     * @return the estimated current time of the S3 service in milliseconds.
+     */
+    long currentTimeMillis() {
+        return System.currentTimeMillis() + skewMillis;
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.cluster.discovery.s3.aws;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * The object keys that were not deleted by {@link HiveMQS3Client#deleteObjects(java.util.Map)}.
+ */
+public class DeleteObjectsResult {
+
+    private final @NotNull List<String> failedObjectKeys;
+    private final @NotNull List<String> modifiedObjectKeys;
+
+    public DeleteObjectsResult(
+            final @NotNull List<String> failedObjectKeys,
+            final @NotNull List<String> modifiedObjectKeys) {
+        this.failedObjectKeys = failedObjectKeys;
+        this.modifiedObjectKeys = modifiedObjectKeys;
+    }
+
+    /**
+     * @return the keys of the objects that could not be deleted and can be retried.
+     */
+    public @NotNull List<String> getFailedObjectKeys() {
+        return failedObjectKeys;
+    }
+
+    /**
+     * @return the keys of the objects that were not deleted because their ETag changed, they were updated since.
+     */
+    public @NotNull List<String> getModifiedObjectKeys() {
+        return modifiedObjectKeys;
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.cluster.discovery.s3.aws;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import software.amazon.awssdk.utils.SdkAutoCloseable;
+
+/**
+ * Counts the requests in flight on a client, so a replaced client is only closed after its last request completed.
+ * <p>
+ * A request {@link #acquire() acquires} the client before it is sent and {@link #release() releases} it when the
+ * response is received. After the client is {@link #retire() retired} it can't be acquired anymore and it is closed as
+ * soon as no request is in flight, together with the resource it uses, e.g. its credentials provider.
+ */
+class DrainingClient<C extends SdkAutoCloseable> {
+
+    private final @NotNull C client;
+    private final @Nullable SdkAutoCloseable resource;
+    private int inFlight;
+    private boolean retired;
+    private boolean closed;
+
+    DrainingClient(final @NotNull C client) {
+        this(client, null);
+    }
+
+    DrainingClient(final @NotNull C client, final @Nullable SdkAutoCloseable resource) {
+        this.client = client;
+        this.resource = resource;
+    }
+
+    @NotNull C get() {
+        return client;
+    }
+
+    /**
+     * @return {@code false} if the client is retired, the request must then use the replacing client.
+     */
+    synchronized boolean acquire() {
+        if (retired) {
+            return false;
+        }
+        inFlight++;
+        return true;
+    }
+
+    void release() {
+        synchronized (this) {
+            inFlight--;
+            if (!shouldClose()) {
+                return;
+            }
+        }
+        close();
+    }
+
+    void retire() {
+        synchronized (this) {
+            retired = true;
+            if (!shouldClose()) {
+                return;
+            }
+        }
+        close();
+    }
+
+    synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    private boolean shouldClose() {
+        if (!retired || closed || inFlight > 0) {
+            return false;
+        }
+        closed = true;
+        return true;
+    }
+
+    private void close() {
+        try {
+            client.close();
+        } finally {
+            if (resource != null) {
+                resource.close();
+            }
+        }
+    }
+}
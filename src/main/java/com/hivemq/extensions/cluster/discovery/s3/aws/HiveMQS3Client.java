@@ -18,7 +18,8 @@ package com.hivemq.extensions.cluster.discovery.s3.aws;
 
 import com.hivemq.extensions.cluster.discovery.s3.config.AuthenticationType;
 import com.hivemq.extensions.cluster.discovery.s3.config.ConfigurationReader;
-import com.hivemq.extensions.cluster.discovery.s3.config.S3Config;
+import com.hivemq.extensions.cluster.discovery.s3.config.ResolvedS3Config;
+import com.hivemq.extensions.cluster.discovery.s3.config.S3ClientSettings;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
@@ -32,16 +33,25 @@ import software.amazon.awssdk.auth.credentials.InstanceProfileCredentialsProvide
 import software.amazon.awssdk.auth.credentials.ProfileCredentialsProvider;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
 import software.amazon.awssdk.auth.credentials.SystemPropertyCredentialsProvider;
+import software.amazon.awssdk.core.exception.SdkException;
 import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.s3.S3Client;
-import software.amazon.awssdk.services.s3.S3Configuration;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
 import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
 import software.amazon.awssdk.services.s3.model.S3Exception;
 
-import java.net.URI;
-import java.util.Locale;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+import java.util.function.LongConsumer;
 
 import static com.hivemq.extensions.cluster.discovery.s3.ExtensionConstants.EXTENSION_NAME;
 
@@ -50,66 +60,109 @@ import static com.hivemq.extensions.cluster.discovery.s3.ExtensionConstants.EXTE
  */
 public class HiveMQS3Client {
 
+    /**
+     * The maximum number of keys of a DeleteObjects request.
+     */
+    public static final int MAX_DELETE_OBJECTS = 1000;
+
     static final @NotNull String S3_HOSTNAME = "s3.amazonaws.com";
 
     private static final @NotNull Logger LOG = LoggerFactory.getLogger(HiveMQS3Client.class);
+    private static final @NotNull String PRECONDITION_FAILED_ERROR_CODE = "PreconditionFailed";
+    private static final @NotNull String NO_SUCH_KEY_ERROR_CODE = "NoSuchKey";
 
     private final @NotNull ConfigurationReader configurationReader;
+    private final @NotNull S3ClientFactory s3ClientFactory;
+    private final @NotNull S3RequestGovernor requestGovernor = new S3RequestGovernor();
+    private final @NotNull S3AttemptInterceptor attemptInterceptor = new S3AttemptInterceptor(requestGovernor);
 
-    private @Nullable S3Config s3Config;
-    private @Nullable S3Client s3Client;
+    private final @NotNull AtomicReference<ClientState> state = new AtomicReference<>();
+    private volatile @NotNull Runnable clientRebuildRecorder = () -> {};
+    private volatile @NotNull LongConsumer requestWaitRecorder = waitNanos -> {};
+    private volatile @NotNull LongConsumer credentialsResolveRecorder = resolveNanos -> {};
+    private volatile @NotNull Runnable credentialsFetchFailureRecorder = () -> {};
+    private @Nullable S3BucketResponse cachedBucketResponse;
+    private long cachedBucketResponseNanos;
 
     public HiveMQS3Client(final @NotNull ConfigurationReader configurationReader) {
+        this(configurationReader, new S3ClientFactory());
+    }
+
+    HiveMQS3Client(
+            final @NotNull ConfigurationReader configurationReader,
+            final @NotNull S3ClientFactory s3ClientFactory) {
         this.configurationReader = configurationReader;
+        this.s3ClientFactory = s3ClientFactory;
     }
 
+    /**
+     * Reads the configuration and publishes it together with the client. The client is only rebuilt if client
+     * settings changed.
+     * <p>
+     * Concurrent calls don't need a lock: the new state is published with a compare-and-set, a call that loses the race
+     * discards the client it built and compares its configuration with the winning state again. Requests that are in
+     * flight on a replaced client complete on it, the client is closed afterwards.
+     */
     public void createOrUpdate() {
         final var newS3Config = configurationReader.readConfiguration();
         if (newS3Config == null) {
             throw new IllegalStateException("Configuration of the S3 discovery extension couldn't be loaded.");
         }
-        if (s3Config != null && s3Config.equals(newS3Config)) {
-            return;
-        }
-        s3Config = newS3Config;
-        LOG.trace("{}: Configuration loaded successfully.", EXTENSION_NAME);
-        final var authenticationType = AuthenticationType.fromName(s3Config.getAuthenticationTypeName());
-        final var credentialsProvider = getAwsCredentials(authenticationType);
-        final var s3ClientBuilder = S3Client.builder();
-        if (s3Config.getEndpoint().equals(S3_HOSTNAME)) {
-            final var region = Region.of(s3Config.getBucketRegionName());
-            s3ClientBuilder.region(region);
-        } else {
-            final var lowerCaseEndpoint = s3Config.getEndpoint().toLowerCase(Locale.ROOT);
-            // noinspection HttpUrlsUsage
-            s3ClientBuilder.endpointOverride(
-                    URI.create(!lowerCaseEndpoint.startsWith("https://") && !lowerCaseEndpoint.startsWith("http://") ?
-                            "https://" + s3Config.getEndpoint() :
-                            s3Config.getEndpoint()));
-            if (s3Config.getEndpointRegionName() != null) {
-                final var region = Region.of(s3Config.getEndpointRegionName());
-                s3ClientBuilder.region(region);
+        while (true) {
+            final var oldState = state.get();
+            if (oldState != null && oldState.s3Config.equals(newS3Config)) {
+                return;
             }
+            final var newState = newState(oldState, newS3Config);
+            if (state.compareAndSet(oldState, newState)) {
+                LOG.trace("{}: Configuration loaded successfully.", EXTENSION_NAME);
+                requestGovernor.configure(newS3Config.getRequestRate());
+                invalidateBucketResponse();
+                if (oldState != null) {
+                    if (oldState.s3Client != newState.s3Client) {
+                        clientRebuildRecorder.run();
+                    }
+                    oldState.release(newState);
+                }
+                return;
+            }
+            newState.release(oldState);
         }
-        final var s3ConfigurationBuilder = S3Configuration.builder();
-        // disable Expect: 100-continue to reduce latency for small payloads
-        s3ConfigurationBuilder.expectContinueEnabled(false);
-        if (s3Config.getPathStyleAccess() != null) {
-            s3ConfigurationBuilder.pathStyleAccessEnabled(s3Config.getPathStyleAccess());
+    }
+
+    private @NotNull ClientState newState(
+            final @Nullable ClientState oldState,
+            final @NotNull ResolvedS3Config s3Config) {
+        final var clientSettings = s3Config.getClientSettings();
+        if (oldState != null && oldState.s3Config.getClientSettings().equals(clientSettings)) {
+            // only discovery settings changed, the client and its connection pool are kept
+            return new ClientState(s3Config, oldState.s3Client, oldState.credentialsProvider);
         }
-        if (s3Client != null) {
-            s3Client.close();
+        // the credentials provider is reused, so its cached credentials and their background refresh survive
+        final ManagedCredentialsProvider credentialsProvider;
+        if (oldState != null && oldState.s3Config.getClientSettings().hasSameCredentials(clientSettings)) {
+            credentialsProvider = oldState.credentialsProvider;
+        } else {
+            credentialsProvider = new ManagedCredentialsProvider(
+                    getAwsCredentials(clientSettings.getAuthenticationType(), clientSettings),
+                    resolveNanos -> credentialsResolveRecorder.accept(resolveNanos),
+                    () -> credentialsFetchFailureRecorder.run());
         }
-        s3Client = s3ClientBuilder.credentialsProvider(credentialsProvider)
-                .serviceConfiguration(s3ConfigurationBuilder.build())
-                .build();
+        final var s3Client = new DrainingClient<>(s3ClientFactory.createS3Client(clientSettings,
+                credentialsProvider,
+                attemptInterceptor),
+                credentialsProvider.retain());
         LOG.trace("{}: Created AmazonS3 client successfully.", EXTENSION_NAME);
+        return new ClientState(s3Config, s3Client, credentialsProvider);
     }
 
-    @NotNull AwsCredentialsProvider getAwsCredentials(final @NotNull AuthenticationType authenticationType) {
+    private static @NotNull AwsCredentialsProvider getAwsCredentials(
+            final @NotNull AuthenticationType authenticationType,
+            final @NotNull S3ClientSettings clientSettings) {
         switch (authenticationType) {
             case DEFAULT :
-                return DefaultCredentialsProvider.builder().build();
+                // credentials that expire (e.g. of the instance profile) are refreshed before they expire
+                return DefaultCredentialsProvider.builder().asyncCredentialUpdateEnabled(true).build();
             case ENVIRONMENT_VARIABLES :
                 return EnvironmentVariableCredentialsProvider.create();
             case JAVA_SYSTEM_PROPERTIES :
@@ -117,86 +170,429 @@ public class HiveMQS3Client {
             case USER_CREDENTIALS_FILE :
                 return ProfileCredentialsProvider.create();
             case INSTANCE_PROFILE_CREDENTIALS :
-                return InstanceProfileCredentialsProvider.create();
+                return InstanceProfileCredentialsProvider.builder().asyncCredentialUpdateEnabled(true).build();
             case ACCESS_KEY :
             case TEMPORARY_SESSION :
-                final var accessKey = Objects.requireNonNull(s3Config).getAccessKeyId();
-                final var secretAccessKey = s3Config.getAccessKeySecret();
+                final var accessKey = clientSettings.getAccessKeyId();
+                final var secretAccessKey = clientSettings.getAccessKeySecret();
                 if (authenticationType == AuthenticationType.ACCESS_KEY) {
                     return StaticCredentialsProvider.create(AwsBasicCredentials.create(accessKey, secretAccessKey));
                 } else {
-                    final var sessionToken = s3Config.getSessionToken();
+                    final var sessionToken = clientSettings.getSessionToken();
                     return StaticCredentialsProvider
                             .create(AwsSessionCredentials.create(Objects.requireNonNull(accessKey),
                                     Objects.requireNonNull(secretAccessKey),
                                     Objects.requireNonNull(sessionToken)));
                 }
+            case WEB_IDENTITY :
+                return StsRoleCredentialsProvider.webIdentity(Region.of(clientSettings.getBucketRegionName()),
+                        clientSettings.getRoleArn(),
+                        clientSettings.getRoleSessionName());
+            case ASSUME_ROLE :
+                return StsRoleCredentialsProvider.assumeRole(Region.of(clientSettings.getBucketRegionName()),
+                        Objects.requireNonNull(clientSettings.getRoleArn()),
+                        clientSettings.getRoleSessionName());
             default :
                 throw new IllegalArgumentException("Unknown credentials type.");
         }
     }
 
+    /**
+     * Checks the bucket with a HeadBucket request, unless a successful check is cached (bucket-check-ttl).
+     */
     public @NotNull S3BucketResponse checkBucket() {
-        final var bucketName = Objects.requireNonNull(s3Config).getBucketName();
+        final var bucketName = requireS3Config().getBucketName();
+        final var cachedBucketResponse = getCachedBucketResponse();
+        if (cachedBucketResponse != null) {
+            return cachedBucketResponse;
+        }
         try {
-            final var sdkHttpResponse = Objects.requireNonNull(s3Client)
-                    .headBucket(builder -> builder.bucket(bucketName).build())
-                    .sdkHttpResponse();
-            return new S3BucketResponse(bucketName, sdkHttpResponse.statusCode(), null);
+            final var sdkHttpResponse =
+                    governed((s3Client, s3Config) -> s3Client.headBucket(builder -> builder.bucket(bucketName).build()))
+                            .sdkHttpResponse();
+            return cacheBucketResponse(new S3BucketResponse(bucketName, sdkHttpResponse.statusCode(), null));
         } catch (final S3Exception s3Exception) {
             final int statusCode = s3Exception.awsErrorDetails().sdkHttpResponse().statusCode();
             return new S3BucketResponse(bucketName, statusCode, s3Exception);
         }
     }
 
-    public void saveObject(final @NotNull String objectKey, final @NotNull String content) {
-        Objects.requireNonNull(s3Client)
-                .putObject(
-                        builder -> builder.bucket(Objects.requireNonNull(s3Config).getBucketName())
-                                .key(objectKey)
-                                .build(),
-                        RequestBody.fromString(content));
+    /**
+     * @return the ETag of the saved object, {@code null} if the S3 endpoint did not return one.
+     */
+    public @Nullable String saveObject(final @NotNull String objectKey, final @NotNull String content) {
+        return governed((s3Client, s3Config) -> s3Client.putObject(
+                builder -> builder.bucket(s3Config.getBucketName()).key(objectKey).build(),
+                RequestBody.fromString(content))).eTag();
     }
 
     public void deleteObject(final @NotNull String objectKey) {
-        Objects.requireNonNull(s3Client)
-                .deleteObject(builder -> builder.bucket(Objects.requireNonNull(s3Config).getBucketName())
+        governed((s3Client, s3Config) -> s3Client.deleteObject(builder -> builder.bucket(s3Config.getBucketName())
+                .key(objectKey)
+                .build()));
+    }
+
+    /**
+     * Deletes the objects with one DeleteObjects request per batch of up to {@value #MAX_DELETE_OBJECTS} keys. An
+     * object with an ETag is only deleted if it still has this ETag, S3 checks it together with the deletion, so an
+     * object that was updated in the meantime is kept.
+     * <p>
+     * If conditional deletes are disabled for S3 compatible stores that ignore the ETag of a DeleteObjects request, the
+     * ETag is checked with a HeadObject request per object before the objects are deleted regardless of their ETag. An
+     * object that is updated between both requests is deleted then.
+     * <p>
+     * A failed batch does not abort the remaining batches, its keys are reported as failed instead.
+     *
+     * @param objects the ETags of the objects by their key, {@code null} to delete the object regardless of its ETag.
+     * @return the keys of the objects that could not be deleted or were updated.
+     */
+    public @NotNull DeleteObjectsResult deleteObjects(final @NotNull Map<String, @Nullable String> objects) {
+        final var failedObjectKeys = new ArrayList<String>();
+        final var modifiedObjectKeys = new ArrayList<String>();
+        final var deletedObjects = requireS3Config().getConditionalDelete() ?
+                objects :
+                checkETags(objects, failedObjectKeys, modifiedObjectKeys);
+        for (final var batch : toDeleteBatches(deletedObjects)) {
+            try {
+                // quiet mode: the response only lists the keys that could not be deleted
+                final var deleteObjectsResponse = governed((s3Client, s3Config) -> s3Client.deleteObjects(
+                        builder -> builder.bucket(s3Config.getBucketName())
+                                .delete(delete -> delete.objects(batch).quiet(true))));
+                addErrors(deleteObjectsResponse, failedObjectKeys, modifiedObjectKeys);
+            } catch (final SdkException e) {
+                LOG.warn("{}: Not able to delete a batch of {} files.", EXTENSION_NAME, batch.size(), e);
+                for (final var objectIdentifier : batch) {
+                    failedObjectKeys.add(objectIdentifier.key());
+                }
+            }
+        }
+        return new DeleteObjectsResult(failedObjectKeys, modifiedObjectKeys);
+    }
+
+    /**
+     * @return the objects that still have their ETag, without their ETag, so they are deleted unconditionally.
+     */
+    private @NotNull Map<String, @Nullable String> checkETags(
+            final @NotNull Map<String, @Nullable String> objects,
+            final @NotNull List<String> failedObjectKeys,
+            final @NotNull List<String> modifiedObjectKeys) {
+        final var checkedObjects = new LinkedHashMap<String, @Nullable String>();
+        for (final var object : objects.entrySet()) {
+            final var objectKey = object.getKey();
+            final var eTag = object.getValue();
+            if (eTag == null) {
+                checkedObjects.put(objectKey, null);
+                continue;
+            }
+            try {
+                final var headObjectResponse = governed((s3Client, s3Config) -> s3Client.headObject(builder -> builder
+                        .bucket(s3Config.getBucketName())
                         .key(objectKey)
-                        .build());
+                        .build()));
+                if (eTag.equals(headObjectResponse.eTag())) {
+                    checkedObjects.put(objectKey, null);
+                } else {
+                    LOG.debug("{}: File {} was updated, it is not deleted.", EXTENSION_NAME, objectKey);
+                    modifiedObjectKeys.add(objectKey);
+                }
+            } catch (final SdkException e) {
+                if (S3ExceptionUtil.isNotFound(e)) {
+                    LOG.trace("{}: File {} was already deleted.", EXTENSION_NAME, objectKey);
+                } else {
+                    LOG.debug("{}: Not able to check file {}.", EXTENSION_NAME, objectKey, e);
+                    failedObjectKeys.add(objectKey);
+                }
+            }
+        }
+        return checkedObjects;
+    }
+
+    private static @NotNull List<List<ObjectIdentifier>> toDeleteBatches(
+            final @NotNull Map<String, @Nullable String> objects) {
+        final var batches = new ArrayList<List<ObjectIdentifier>>();
+        var batch = new ArrayList<ObjectIdentifier>();
+        for (final var object : objects.entrySet()) {
+            if (batch.size() == MAX_DELETE_OBJECTS) {
+                batches.add(batch);
+                batch = new ArrayList<>();
+            }
+            batch.add(ObjectIdentifier.builder().key(object.getKey()).eTag(object.getValue()).build());
+        }
+        if (!batch.isEmpty()) {
+            batches.add(batch);
+        }
+        return batches;
+    }
+
+    private static void addErrors(
+            final @NotNull DeleteObjectsResponse response,
+            final @NotNull List<String> failedObjectKeys,
+            final @NotNull List<String> modifiedObjectKeys) {
+        for (final var error : response.errors()) {
+            if (PRECONDITION_FAILED_ERROR_CODE.equals(error.code())) {
+                LOG.debug("{}: File {} was updated, it is not deleted.", EXTENSION_NAME, error.key());
+                modifiedObjectKeys.add(error.key());
+            } else if (NO_SUCH_KEY_ERROR_CODE.equals(error.code())) {
+                // a conditional delete of a missing object, it was already deleted
+                LOG.trace("{}: File {} was already deleted.", EXTENSION_NAME, error.key());
+            } else {
+                LOG.debug("{}: Not able to delete file {}: {} {}.",
+                        EXTENSION_NAME,
+                        error.key(),
+                        error.code(),
+                        error.message());
+                failedObjectKeys.add(error.key());
+            }
+        }
     }
 
     public @NotNull String getObject(final @NotNull String objectKey) {
-        return Objects.requireNonNull(s3Client)
-                .getObjectAsBytes(builder -> builder.bucket(Objects.requireNonNull(s3Config).getBucketName())
-                        .key(objectKey)
-                        .build())
-                .asUtf8String();
+        return governed((s3Client, s3Config) -> s3Client.getObjectAsBytes(
+                builder -> builder.bucket(s3Config.getBucketName()).key(objectKey).build())).asUtf8String();
     }
 
     public @NotNull ListObjectsV2Response getObjects() {
-        return Objects.requireNonNull(s3Client)
-                .listObjectsV2(builder -> builder.bucket(Objects.requireNonNull(s3Config).getBucketName())
-                        .prefix(s3Config.getFilePrefix())
-                        .build());
+        return governed((s3Client, s3Config) -> s3Client.listObjectsV2(builder -> builder
+                .bucket(s3Config.getBucketName())
+                .prefix(s3Config.getFilePrefix())
+                .build()));
     }
 
     public @NotNull ListObjectsV2Response getNextBatchOfObjects(final @NotNull String continuationToken) {
-        return Objects.requireNonNull(s3Client)
-                .listObjectsV2(builder -> builder.bucket(Objects.requireNonNull(s3Config).getBucketName())
-                        .prefix(s3Config.getFilePrefix())
-                        .continuationToken(continuationToken)
-                        .build());
+        return governed((s3Client, s3Config) -> s3Client.listObjectsV2(builder -> builder
+                .bucket(s3Config.getBucketName())
+                .prefix(s3Config.getFilePrefix())
+                .continuationToken(continuationToken)
+                .build()));
+    }
+
+    /**
+     * @return the content and ETag of the object or {@code null} if the object does not exist.
+     */
+    public @Nullable S3ObjectContent getObjectWithETag(final @NotNull String objectKey) {
+        try {
+            final var responseBytes = governed((s3Client, s3Config) -> s3Client.getObjectAsBytes(builder -> builder
+                    .bucket(s3Config.getBucketName())
+                    .key(objectKey)
+                    .build()));
+            return new S3ObjectContent(responseBytes.asUtf8String(), responseBytes.response().eTag());
+        } catch (final S3Exception s3Exception) {
+            if (S3ExceptionUtil.isNotFound(s3Exception)) {
+                return null;
+            }
+            throw s3Exception;
+        }
+    }
+
+    /**
+     * Saves the object only if it was not modified since it was read with the given ETag.
+     *
+     * @param eTag the ETag of the object when it was read or {@code null} if the object must not exist yet.
+     * @return {@code false} if the object was modified concurrently, {@code true} if it was saved.
+     */
+    public boolean saveObjectIfMatch(
+            final @NotNull String objectKey,
+            final @NotNull String content,
+            final @Nullable String eTag) {
+        try {
+            governed((s3Client, s3Config) -> s3Client.putObject(
+                    builder -> conditionalPut(builder, s3Config, objectKey, eTag),
+                    RequestBody.fromString(content)));
+            return true;
+        } catch (final S3Exception s3Exception) {
+            if (S3ExceptionUtil.isPreconditionFailed(s3Exception)) {
+                return false;
+            }
+            throw s3Exception;
+        }
+    }
+
+    private static void conditionalPut(
+            final @NotNull PutObjectRequest.Builder builder,
+            final @NotNull ResolvedS3Config s3Config,
+            final @NotNull String objectKey,
+            final @Nullable String eTag) {
+        builder.bucket(s3Config.getBucketName()).key(objectKey);
+        if (eTag == null) {
+            builder.ifNoneMatch("*");
+        } else {
+            builder.ifMatch(eTag);
+        }
     }
 
-    public void setS3Client(final @NotNull S3Client s3Client) {
-        this.s3Client = s3Client;
+    /**
+     * Sends the request within the request budget and adapts the budget to the response.
+     * <p>
+     * The client is acquired after the budget is granted, so a client that was replaced in the meantime is not used.
+     * The request gets the configuration that was published together with the client.
+     */
+    private <T> T governed(final @NotNull BiFunction<S3Client, ResolvedS3Config, T> request) {
+        final var waitNanos = requestGovernor.acquire();
+        if (waitNanos > 0) {
+            requestWaitRecorder.accept(waitNanos);
+        }
+        final var state = acquireS3Client();
+        try {
+            final var response = request.apply(state.s3Client.get(), state.s3Config);
+            requestGovernor.onSuccess();
+            return response;
+        } catch (final SdkException e) {
+            onRequestFailure(e);
+            throw e;
+        } finally {
+            state.s3Client.release();
+        }
     }
 
-    @Nullable S3Client getS3Client() {
-        return s3Client;
+    private void onRequestFailure(final @NotNull Throwable throwable) {
+        // the throttled attempts are already reported by the attempt interceptor
+        if (S3ExceptionUtil.isThrottling(throwable)) {
+            return;
+        }
+        // a missing bucket, missing permissions or an unreachable endpoint require a new check of the bucket
+        if (!(throwable instanceof S3Exception) ||
+                S3BucketResponse.fromException(requireS3Config().getBucketName(), throwable) != null) {
+            invalidateBucketResponse();
+        }
+    }
+
+    private synchronized @Nullable S3BucketResponse getCachedBucketResponse() {
+        final var cachedBucketResponse = this.cachedBucketResponse;
+        if (cachedBucketResponse == null) {
+            return null;
+        }
+        final long ttlNanos = TimeUnit.SECONDS.toNanos(requireS3Config().getBucketCheckTtlInSeconds());
+        if (System.nanoTime() - cachedBucketResponseNanos >= ttlNanos) {
+            this.cachedBucketResponse = null;
+            return null;
+        }
+        return cachedBucketResponse;
     }
 
-    public @Nullable S3Config getS3Config() {
-        return s3Config;
+    private synchronized @NotNull S3BucketResponse cacheBucketResponse(
+            final @NotNull S3BucketResponse s3BucketResponse) {
+        if (s3BucketResponse.isSuccessful()) {
+            cachedBucketResponse = s3BucketResponse;
+            cachedBucketResponseNanos = System.nanoTime();
+        }
+        return s3BucketResponse;
+    }
+
+    private synchronized void invalidateBucketResponse() {
+        cachedBucketResponse = null;
+    }
+
+    /**
+     * @return the current budget of S3 requests per second, {@code 0} if the budget is disabled.
+     */
+    public double getRequestRate() {
+        return requestGovernor.getRate();
+    }
+
+    /**
+     * Sets the recorder of the time in nanoseconds that each S3 request waited for the request budget, requests that
+     * were sent immediately are not recorded.
+     */
+    public void setRequestWaitRecorder(final @NotNull LongConsumer requestWaitRecorder) {
+        this.requestWaitRecorder = requestWaitRecorder;
+    }
+
+    /**
+     * Sets the recorder that is called each time the S3 client is rebuilt because client settings of the configuration
+     * changed.
+     */
+    public void setClientRebuildRecorder(final @NotNull Runnable clientRebuildRecorder) {
+        this.clientRebuildRecorder = clientRebuildRecorder;
+    }
+
+    /**
+     * Sets the recorder of the time in nanoseconds that each S3 request took to resolve its credentials, mostly from
+     * the cached credentials of the provider.
+     */
+    public void setCredentialsResolveRecorder(final @NotNull LongConsumer credentialsResolveRecorder) {
+        this.credentialsResolveRecorder = credentialsResolveRecorder;
+    }
+
+    /**
+     * Sets the recorder that is called each time an S3 request fails because no credentials could be fetched.
+     */
+    public void setCredentialsFetchFailureRecorder(final @NotNull Runnable credentialsFetchFailureRecorder) {
+        this.credentialsFetchFailureRecorder = credentialsFetchFailureRecorder;
+    }
+
+    /**
+     * Acquires the client of the current state, retrying if the state is replaced concurrently. A client is only
+     * retired after its state was replaced, so the next attempt reads the replacing state.
+     */
+    private @NotNull ClientState acquireS3Client() {
+        while (true) {
+            final var state = requireState();
+            if (state.s3Client.acquire()) {
+                return state;
+            }
+        }
+    }
+
+    private @NotNull ClientState requireState() {
+        final var state = this.state.get();
+        if (state == null) {
+            throw new IllegalStateException("The S3 client is not created.");
+        }
+        return state;
+    }
+
+    private @NotNull ResolvedS3Config requireS3Config() {
+        return requireState().s3Config;
+    }
+
+    /**
+     * Retires the client and releases the credentials provider of the state, so they are closed after the requests
+     * in flight completed. Requests that are sent afterwards fail.
+     */
+    public void close() {
+        final var oldState = state.getAndSet(null);
+        if (oldState != null) {
+            oldState.release(null);
+        }
+    }
+
+    public @Nullable ResolvedS3Config getS3Config() {
+        final var state = this.state.get();
+        return state == null ? null : state.s3Config;
+    }
+
+    /**
+     * The configuration together with the client that was built for it, published as a whole so a request never
+     * combines a client with the configuration of another state.
+     * <p>
+     * States that only differ in discovery settings share their client and credentials provider.
+     */
+    private static final class ClientState {
+
+        private final @NotNull ResolvedS3Config s3Config;
+        private final @NotNull DrainingClient<S3Client> s3Client;
+        private final @NotNull ManagedCredentialsProvider credentialsProvider;
+
+        private ClientState(
+                final @NotNull ResolvedS3Config s3Config,
+                final @NotNull DrainingClient<S3Client> s3Client,
+                final @NotNull ManagedCredentialsProvider credentialsProvider) {
+            this.s3Config = s3Config;
+            this.s3Client = s3Client;
+            this.credentialsProvider = credentialsProvider;
+        }
+
+        /**
+         * Retires the client and releases the owner reference of the credentials provider if they are not shared with
+         * the replacing state.
+         */
+        private void release(final @Nullable ClientState replacingState) {
+            if (replacingState == null || s3Client != replacingState.s3Client) {
+                s3Client.retire();
+            }
+            if (replacingState == null || credentialsProvider != replacingState.credentialsProvider) {
+                credentialsProvider.close();
+            }
+        }
     }
 }
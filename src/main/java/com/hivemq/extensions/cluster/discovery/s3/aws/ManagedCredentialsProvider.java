@@ -0,0 +1,91 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.cluster.discovery.s3.aws;
+
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.auth.credentials.AwsCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.utils.IoUtils;
+import software.amazon.awssdk.utils.SdkAutoCloseable;
+
+import java.util.function.LongConsumer;
+
+/**
+ * Shares a credentials provider between the S3 clients, so its cached credentials survive a rebuild of the clients.
+ * <p>
+ * Every client that uses the provider holds a reference, the provider is closed when the last reference is released.
+ * The time of every resolve call (in nanoseconds) and the failed fetches are recorded for the metrics. Most calls are
+ * answered from the cached credentials of the wrapped provider, so only the slow calls stand for a blocking fetch.
+ */
+final class ManagedCredentialsProvider implements AwsCredentialsProvider, SdkAutoCloseable {
+
+    private static final @NotNull Logger LOG = LoggerFactory.getLogger(ManagedCredentialsProvider.class);
+
+    private final @NotNull AwsCredentialsProvider credentialsProvider;
+    private final @NotNull LongConsumer resolveTimeRecorder;
+    private final @NotNull Runnable fetchFailureRecorder;
+    private int references = 1;
+
+    ManagedCredentialsProvider(
+            final @NotNull AwsCredentialsProvider credentialsProvider,
+            final @NotNull LongConsumer resolveTimeRecorder,
+            final @NotNull Runnable fetchFailureRecorder) {
+        this.credentialsProvider = credentialsProvider;
+        this.resolveTimeRecorder = resolveTimeRecorder;
+        this.fetchFailureRecorder = fetchFailureRecorder;
+    }
+
+    @Override
+    public @NotNull AwsCredentials resolveCredentials() {
+        final long startNanos = System.nanoTime();
+        try {
+            return credentialsProvider.resolveCredentials();
+        } catch (final RuntimeException e) {
+            fetchFailureRecorder.run();
+            throw e;
+        } finally {
+            resolveTimeRecorder.accept(System.nanoTime() - startNanos);
+        }
+    }
+
+    @NotNull AwsCredentialsProvider getCredentialsProvider() {
+        return credentialsProvider;
+    }
+
+    /**
+     * @return this provider with an additional reference that must be released with {@link #close()}.
+     */
+    synchronized @NotNull ManagedCredentialsProvider retain() {
+        references++;
+        return this;
+    }
+
+    /**
+     * Releases a reference and closes the provider if it was the last one.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (references == 0 || --references > 0) {
+                return;
+            }
+        }
+        IoUtils.closeIfCloseable(credentialsProvider, LOG);
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.cluster.discovery.s3.aws;
+
+import org.jetbrains.annotations.NotNull;
+import software.amazon.awssdk.core.interceptor.Context;
+import software.amazon.awssdk.core.interceptor.ExecutionAttribute;
+import software.amazon.awssdk.core.interceptor.ExecutionAttributes;
+import software.amazon.awssdk.core.interceptor.ExecutionInterceptor;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reports every attempt of a request to the {@link S3RequestGovernor}, so throttling responses adapt the request budget
+ * immediately instead of after the retries of the SDK are used up, and the retries of the SDK count against the budget.
+ */
+class S3AttemptInterceptor implements ExecutionInterceptor {
+
+    private static final @NotNull ExecutionAttribute<AtomicInteger> ATTEMPTS =
+            new ExecutionAttribute<>("HiveMQS3DiscoveryAttempts");
+
+    private final @NotNull S3RequestGovernor requestGovernor;
+
+    S3AttemptInterceptor(final @NotNull S3RequestGovernor requestGovernor) {
+        this.requestGovernor = requestGovernor;
+    }
+
+    @Override
+    public void beforeExecution(
+            final @NotNull Context.BeforeExecution context,
+            final @NotNull ExecutionAttributes executionAttributes) {
+        executionAttributes.putAttribute(ATTEMPTS, new AtomicInteger());
+    }
+
+    @Override
+    public void beforeTransmission(
+            final @NotNull Context.BeforeTransmission context,
+            final @NotNull ExecutionAttributes executionAttributes) {
+        final var attempts = executionAttributes.getAttribute(ATTEMPTS);
+        // the first attempt already got its token before the request was started
+        if (attempts != null && attempts.incrementAndGet() > 1) {
+            requestGovernor.onRetry();
+        }
+    }
+
+    @Override
+    public void afterTransmission(
+            final @NotNull Context.AfterTransmission context,
+            final @NotNull ExecutionAttributes executionAttributes) {
+        if (S3ExceptionUtil.isThrottling(context.httpResponse().statusCode())) {
+            requestGovernor.onThrottled();
+        }
+    }
+}
@@ -18,11 +18,15 @@ package com.hivemq.extensions.cluster.discovery.s3.aws;
 
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import software.amazon.awssdk.services.s3.model.NoSuchBucketException;
+import software.amazon.awssdk.services.s3.model.S3Exception;
 
 import java.util.Optional;
 
 public class S3BucketResponse {
 
+    private static final @NotNull String NO_SUCH_BUCKET_ERROR_CODE = "NoSuchBucket";
+
     private final @NotNull String bucketName;
     private final @NotNull Status status;
     private final @Nullable Throwable throwable;
@@ -49,6 +53,30 @@ public class S3BucketResponse {
         this.throwable = throwable;
     }
 
+    /**
+     * Maps the failure of a LIST, PUT or GET request to the result of a bucket check, so a missing bucket or missing
+     * permissions are detected without a dedicated HeadBucket request.
+     *
+     * @return the failed bucket check or {@code null} if the request did not fail because of the bucket.
+     */
+    public static @Nullable S3BucketResponse fromException(
+            final @NotNull String bucketName,
+            final @Nullable Throwable throwable) {
+        if (!(throwable instanceof S3Exception)) {
+            return null;
+        }
+        final var s3Exception = (S3Exception) throwable;
+        final var awsErrorDetails = s3Exception.awsErrorDetails();
+        if (s3Exception instanceof NoSuchBucketException ||
+                (awsErrorDetails != null && NO_SUCH_BUCKET_ERROR_CODE.equals(awsErrorDetails.errorCode()))) {
+            return new S3BucketResponse(bucketName, 404, s3Exception);
+        }
+        if (s3Exception.statusCode() == 403) {
+            return new S3BucketResponse(bucketName, 403, s3Exception);
+        }
+        return null;
+    }
+
     public @NotNull String getBucketName() {
         return bucketName;
     }
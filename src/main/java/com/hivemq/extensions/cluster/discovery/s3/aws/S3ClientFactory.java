@@ -0,0 +1,72 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.cluster.discovery.s3.aws;
+
+import com.hivemq.extensions.cluster.discovery.s3.config.S3ClientSettings;
+import org.jetbrains.annotations.NotNull;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.core.interceptor.ExecutionInterceptor;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3Configuration;
+
+import java.net.URI;
+import java.util.Locale;
+
+import static com.hivemq.extensions.cluster.discovery.s3.aws.HiveMQS3Client.S3_HOSTNAME;
+
+/**
+ * Builds the S3 client for the client settings of the configuration.
+ */
+class S3ClientFactory {
+
+    /**
+     * @param interceptor sees every attempt of the requests, also the retries of the SDK.
+     */
+    @NotNull S3Client createS3Client(
+            final @NotNull S3ClientSettings clientSettings,
+            final @NotNull AwsCredentialsProvider credentialsProvider,
+            final @NotNull ExecutionInterceptor interceptor) {
+        final var clientBuilder = S3Client.builder();
+        if (clientSettings.getEndpoint().equals(S3_HOSTNAME)) {
+            final var region = Region.of(clientSettings.getBucketRegionName());
+            clientBuilder.region(region);
+        } else {
+            final var lowerCaseEndpoint = clientSettings.getEndpoint().toLowerCase(Locale.ROOT);
+            // noinspection HttpUrlsUsage
+            clientBuilder.endpointOverride(
+                    URI.create(!lowerCaseEndpoint.startsWith("https://") && !lowerCaseEndpoint.startsWith("http://") ?
+                            "https://" + clientSettings.getEndpoint() :
+                            clientSettings.getEndpoint()));
+            if (clientSettings.getEndpointRegionName() != null) {
+                final var region = Region.of(clientSettings.getEndpointRegionName());
+                clientBuilder.region(region);
+            }
+        }
+        final var s3ConfigurationBuilder = S3Configuration.builder();
+        // disable Expect: 100-continue to reduce latency for small payloads
+        s3ConfigurationBuilder.expectContinueEnabled(false);
+        if (clientSettings.getPathStyleAccess() != null) {
+            s3ConfigurationBuilder.pathStyleAccessEnabled(clientSettings.getPathStyleAccess());
+        }
+        return clientBuilder.credentialsProvider(credentialsProvider)
+                .serviceConfiguration(s3ConfigurationBuilder.build())
+                .overrideConfiguration(overrideConfiguration -> overrideConfiguration.addExecutionInterceptor(
+                        interceptor))
+                .build();
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.cluster.discovery.s3.aws;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+public final class S3ExceptionUtil {
+
+    private static final @NotNull String SLOW_DOWN_ERROR_CODE = "SlowDown";
+
+    private S3ExceptionUtil() {
+    }
+
+    /**
+     * @return {@code true} if the throwable is a 503 SlowDown (or 429) response of S3, which asks the client to reduce
+     *         its request rate.
+     */
+    public static boolean isThrottling(final @Nullable Throwable throwable) {
+        if (!(throwable instanceof S3Exception)) {
+            return false;
+        }
+        final var s3Exception = (S3Exception) throwable;
+        if (isThrottling(s3Exception.statusCode())) {
+            return true;
+        }
+        final var awsErrorDetails = s3Exception.awsErrorDetails();
+        return awsErrorDetails != null && SLOW_DOWN_ERROR_CODE.equals(awsErrorDetails.errorCode());
+    }
+
+    /**
+     * @return {@code true} if the status code is a 503 Service Unavailable (or 429 Too Many Requests) response of S3.
+     */
+    public static boolean isThrottling(final int statusCode) {
+        return statusCode == 503 || statusCode == 429;
+    }
+
+    /**
+     * @return {@code true} if the throwable is a 412 Precondition Failed (or 409 Conflict) response of S3 to a
+     *         conditional write, so the object was modified concurrently.
+     */
+    public static boolean isPreconditionFailed(final @Nullable Throwable throwable) {
+        if (!(throwable instanceof S3Exception)) {
+            return false;
+        }
+        final var statusCode = ((S3Exception) throwable).statusCode();
+        return statusCode == 412 || statusCode == 409;
+    }
+
+    /**
+     * @return {@code true} if the throwable is a 404 Not Found response of S3.
+     */
+    public static boolean isNotFound(final @Nullable Throwable throwable) {
+        return throwable instanceof NoSuchKeyException ||
+                (throwable instanceof S3Exception && ((S3Exception) throwable).statusCode() == 404);
+    }
+
+    /**
+     * @return the cause of a {@link CompletionException} or {@link ExecutionException}, the throwable itself otherwise.
+     */
+    public static @NotNull Throwable unwrap(final @NotNull Throwable throwable) {
+        var cause = throwable;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException) &&
+                cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.cluster.discovery.s3.aws;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The content of an S3 object together with its ETag, which identifies the version of the content for conditional
+ * writes.
+ */
+public class S3ObjectContent {
+
+    private final @NotNull String content;
+    private final @NotNull String eTag;
+
+    public S3ObjectContent(final @NotNull String content, final @NotNull String eTag) {
+        this.content = content;
+        this.eTag = eTag;
+    }
+
+    public @NotNull String getContent() {
+        return content;
+    }
+
+    public @NotNull String getETag() {
+        return eTag;
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.cluster.discovery.s3.aws;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounds the rate of S3 requests with a token bucket.
+ * <p>
+ * The rate follows an AIMD scheme: it is halved on throttling responses (503 SlowDown), at most once per second so a
+ * burst of throttled requests counts as one congestion signal, and grows by about one request per second per second
+ * of successful requests. The rate never exceeds the configured budget and never drops below one request per second.
+ * A budget of zero disables the governor.
+ */
+class S3RequestGovernor {
+
+    private static final double MIN_RATE = 1;
+    private static final double THROTTLING_BACKOFF_RATIO = 0.5;
+    private static final long THROTTLING_BACKOFF_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private double maxRate;
+    private double rate;
+    private double tokens;
+    private long lastRefillNanos = System.nanoTime();
+    private long lastBackoffNanos = System.nanoTime() - THROTTLING_BACKOFF_INTERVAL_NANOS;
+
+    /**
+     * @param maxRate the budget in requests per second, {@code 0} disables the governor.
+     */
+    synchronized void configure(final int maxRate) {
+        if (maxRate == this.maxRate) {
+            return;
+        }
+        final var enabled = this.maxRate > 0;
+        this.maxRate = maxRate;
+        if (maxRate <= 0) {
+            rate = 0;
+        } else if (enabled) {
+            // keep a reduced rate, a larger budget is reached by the additive increase
+            rate = Math.max(MIN_RATE, Math.min(rate, maxRate));
+            tokens = Math.min(tokens, getCapacity());
+        } else {
+            rate = Math.max(MIN_RATE, maxRate);
+            tokens = getCapacity();
+            lastRefillNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * Blocks until the next request may be sent.
+     *
+     * @return the nanoseconds the caller waited, {@code 0} if the request may be sent immediately.
+     */
+    long acquire() {
+        final var waitNanos = reserve();
+        if (waitNanos <= 0) {
+            return 0;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the S3 request budget.", e);
+        }
+        return waitNanos;
+    }
+
+    /**
+     * Takes a token from the bucket, the bucket may go into debt so concurrent callers are queued one after another.
+     *
+     * @return the nanoseconds the caller has to wait before the request may be sent.
+     */
+    synchronized long reserve() {
+        if (maxRate <= 0) {
+            return 0;
+        }
+        refill();
+        tokens--;
+        if (tokens >= 0) {
+            return 0;
+        }
+        return (long) (-tokens / rate * TimeUnit.SECONDS.toNanos(1));
+    }
+
+    /**
+     * Takes a token for a retry of the SDK without waiting, the retry is already scheduled by the SDK. The debt delays
+     * the next requests instead.
+     */
+    synchronized void onRetry() {
+        if (maxRate <= 0) {
+            return;
+        }
+        refill();
+        tokens--;
+    }
+
+    synchronized void onSuccess() {
+        if (maxRate > 0) {
+            rate = Math.min(maxRate, rate + 1 / rate);
+        }
+    }
+
+    synchronized void onThrottled() {
+        if (maxRate <= 0) {
+            return;
+        }
+        final var now = System.nanoTime();
+        if (now - lastBackoffNanos < THROTTLING_BACKOFF_INTERVAL_NANOS) {
+            return;
+        }
+        lastBackoffNanos = now;
+        rate = Math.max(MIN_RATE, rate * THROTTLING_BACKOFF_RATIO);
+        tokens = Math.min(tokens, getCapacity());
+    }
+
+    /**
+     * @return the current rate in requests per second, {@code 0} if the governor is disabled.
+     */
+    synchronized double getRate() {
+        return rate;
+    }
+
+    private void refill() {
+        final var now = System.nanoTime();
+        tokens = Math.min(getCapacity(), tokens + (now - lastRefillNanos) * rate / TimeUnit.SECONDS.toNanos(1));
+        lastRefillNanos = now;
+    }
+
+    private double getCapacity() {
+        // a burst of one second of requests at the current rate
+        return Math.max(1, rate);
+    }
+}
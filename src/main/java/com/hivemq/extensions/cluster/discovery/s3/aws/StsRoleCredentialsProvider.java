@@ -0,0 +1,114 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.cluster.discovery.s3.aws;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import software.amazon.awssdk.auth.credentials.AnonymousCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.AwsCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.sts.StsClient;
+import software.amazon.awssdk.services.sts.auth.StsAssumeRoleCredentialsProvider;
+import software.amazon.awssdk.services.sts.auth.StsCredentialsProvider;
+import software.amazon.awssdk.services.sts.auth.StsWebIdentityTokenFileCredentialsProvider;
+import software.amazon.awssdk.utils.SdkAutoCloseable;
+
+/**
+ * Credentials of an IAM role that are requested from STS.
+ * <p>
+ * The session credentials are cached and refreshed on a background thread before they expire, so the S3 requests do
+ * not wait for STS. The STS client is owned by the provider and is closed with it.
+ */
+final class StsRoleCredentialsProvider implements AwsCredentialsProvider, SdkAutoCloseable {
+
+    private final @NotNull StsCredentialsProvider credentialsProvider;
+    private final @NotNull StsClient stsClient;
+    private final @Nullable SdkAutoCloseable baseCredentialsProvider;
+
+    private StsRoleCredentialsProvider(
+            final @NotNull StsCredentialsProvider credentialsProvider,
+            final @NotNull StsClient stsClient,
+            final @Nullable SdkAutoCloseable baseCredentialsProvider) {
+        this.credentialsProvider = credentialsProvider;
+        this.stsClient = stsClient;
+        this.baseCredentialsProvider = baseCredentialsProvider;
+    }
+
+    /**
+     * Assumes the role with the web identity token file (AssumeRoleWithWebIdentity), e.g. of an EKS service account.
+     *
+     * @param roleArn the ARN of the role or {@code null} to use the environment variable {@code AWS_ROLE_ARN}.
+     */
+    static @NotNull StsRoleCredentialsProvider webIdentity(
+            final @NotNull Region region,
+            final @Nullable String roleArn,
+            final @NotNull String roleSessionName) {
+        // AssumeRoleWithWebIdentity is authorized by the token, it must not be signed
+        final var stsClient =
+                StsClient.builder().region(region).credentialsProvider(AnonymousCredentialsProvider.create()).build();
+        try {
+            final var builder = StsWebIdentityTokenFileCredentialsProvider.builder()
+                    .stsClient(stsClient)
+                    .roleSessionName(roleSessionName)
+                    .asyncCredentialUpdateEnabled(true);
+            if (roleArn != null) {
+                builder.roleArn(roleArn);
+            }
+            return new StsRoleCredentialsProvider(builder.build(), stsClient, null);
+        } catch (final RuntimeException e) {
+            stsClient.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Assumes the role with the credentials of the default credentials provider chain (AssumeRole).
+     */
+    static @NotNull StsRoleCredentialsProvider assumeRole(
+            final @NotNull Region region,
+            final @NotNull String roleArn,
+            final @NotNull String roleSessionName) {
+        final var baseCredentialsProvider = DefaultCredentialsProvider.builder().build();
+        final var stsClient = StsClient.builder().region(region).credentialsProvider(baseCredentialsProvider).build();
+        final var credentialsProvider = StsAssumeRoleCredentialsProvider.builder()
+                .stsClient(stsClient)
+                .refreshRequest(request -> request.roleArn(roleArn).roleSessionName(roleSessionName))
+                .asyncCredentialUpdateEnabled(true)
+                .build();
+        return new StsRoleCredentialsProvider(credentialsProvider, stsClient, baseCredentialsProvider);
+    }
+
+    @Override
+    public @NotNull AwsCredentials resolveCredentials() {
+        return credentialsProvider.resolveCredentials();
+    }
+
+    @NotNull StsCredentialsProvider getCredentialsProvider() {
+        return credentialsProvider;
+    }
+
+    @Override
+    public void close() {
+        credentialsProvider.close();
+        stsClient.close();
+        if (baseCredentialsProvider != null) {
+            baseCredentialsProvider.close();
+        }
+    }
+}
@@ -31,7 +31,9 @@ public enum AuthenticationType {
     USER_CREDENTIALS_FILE("user_credentials_file"),
     INSTANCE_PROFILE_CREDENTIALS("instance_profile_credentials"),
     ACCESS_KEY("access_key"),
-    TEMPORARY_SESSION("temporary_session");
+    TEMPORARY_SESSION("temporary_session"),
+    WEB_IDENTITY("web_identity"),
+    ASSUME_ROLE("assume_role");
 
     private final @NotNull String name;
 
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.cluster.discovery.s3.config;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.hivemq.extensions.cluster.discovery.s3.ExtensionConstants.EXTENSION_NAME;
+
+/**
+ * Watches the directories of the configuration files of one {@link ConfigurationReader} with its own
+ * {@link WatchService}, which is closed with the reader. Every event for a watched file increments its version, so
+ * the reader only compares the version of its last read with the current version to detect a change.
+ * <p>
+ * No thread is needed, the pending events are drained whenever a version is requested. The watcher only accelerates
+ * the detection of a change: the events are delivered asynchronously (and only polled on some platforms), are
+ * missing on some file systems and only name the replaced link if a symbolic link is swapped (e.g. the {@code ..data}
+ * link of a Kubernetes ConfigMap), so the attributes of the file remain the source of truth for the reader.
+ */
+class ConfigFileWatcher {
+
+    /**
+     * The version of a file that is not watched.
+     */
+    static final long UNWATCHED = -1;
+
+    private static final @NotNull Logger LOG = LoggerFactory.getLogger(ConfigFileWatcher.class);
+
+    private final @NotNull Map<Path, WatchKey> watchKeys = new HashMap<>();
+    // only the requested files are counted, events for other files in the watched directories are ignored
+    private final @NotNull Map<Path, Long> versions = new HashMap<>();
+    // directory -> number of overflows and (re)registrations, a change of every file in the directory
+    private final @NotNull Map<Path, Long> overflows = new HashMap<>();
+
+    private @Nullable WatchService watchService;
+
+    ConfigFileWatcher() {
+        this(newWatchService());
+    }
+
+    ConfigFileWatcher(final @Nullable WatchService watchService) {
+        this.watchService = watchService;
+    }
+
+    private static @Nullable WatchService newWatchService() {
+        try {
+            return FileSystems.getDefault().newWatchService();
+        } catch (final IOException | UnsupportedOperationException e) {
+            LOG.debug("{}: File watching is not available, changes of the configuration are detected by the file " +
+                    "attributes.", EXTENSION_NAME, e);
+            return null;
+        }
+    }
+
+    /**
+     * @return the version of the file or {@link #UNWATCHED} if its directory can't be watched, e.g. because it does
+     *         not exist, or the watcher is closed.
+     */
+    synchronized long getVersion(final @NotNull Path file) {
+        final var watchService = this.watchService;
+        final var normalizedFile = file.toAbsolutePath().normalize();
+        final var directory = normalizedFile.getParent();
+        if (watchService == null || directory == null || !watch(watchService, directory)) {
+            return UNWATCHED;
+        }
+        versions.putIfAbsent(normalizedFile, 0L);
+        WatchKey watchKey;
+        while ((watchKey = watchService.poll()) != null) {
+            final var watchedDirectory = (Path) watchKey.watchable();
+            for (final var event : watchKey.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    overflows.merge(watchedDirectory, 1L, Long::sum);
+                } else {
+                    versions.computeIfPresent(watchedDirectory.resolve((Path) event.context()),
+                            (ignored, version) -> version + 1);
+                }
+            }
+            watchKey.reset();
+        }
+        return versions.get(normalizedFile) + overflows.getOrDefault(directory, 0L);
+    }
+
+    /**
+     * Closes the watch service, the versions of all files are {@link #UNWATCHED} afterwards.
+     */
+    synchronized void close() {
+        final var watchService = this.watchService;
+        if (watchService == null) {
+            return;
+        }
+        this.watchService = null;
+        watchKeys.clear();
+        versions.clear();
+        overflows.clear();
+        try {
+            watchService.close();
+        } catch (final IOException e) {
+            LOG.debug("{}: Not able to close the watcher of the configuration files.", EXTENSION_NAME, e);
+        }
+    }
+
+    private boolean watch(final @NotNull WatchService watchService, final @NotNull Path directory) {
+        final var watchKey = watchKeys.get(directory);
+        if (watchKey != null && watchKey.isValid()) {
+            return true;
+        }
+        try {
+            watchKeys.put(directory,
+                    directory.register(watchService,
+                            StandardWatchEventKinds.ENTRY_CREATE,
+                            StandardWatchEventKinds.ENTRY_MODIFY,
+                            StandardWatchEventKinds.ENTRY_DELETE));
+            // events before the registration are missed, so a (re)registered directory counts as change
+            overflows.merge(directory, 1L, Long::sum);
+            return true;
+        } catch (final IOException e) {
+            watchKeys.remove(directory);
+            LOG.trace("{}: Not able to watch the directory '{}'.", EXTENSION_NAME, directory, e);
+            return false;
+        }
+    }
+}
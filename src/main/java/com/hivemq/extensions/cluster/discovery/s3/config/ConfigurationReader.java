@@ -27,6 +27,10 @@ import software.amazon.awssdk.regions.Region;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Objects;
 import java.util.Properties;
 
 import static com.hivemq.extensions.cluster.discovery.s3.ExtensionConstants.EXTENSION_CONFIGURATION;
@@ -43,17 +47,47 @@ public class ConfigurationReader {
     private static final @NotNull Logger LOG = LoggerFactory.getLogger(ConfigurationReader.class);
 
     private final @NotNull ConfigResolver configResolver;
+    private final @NotNull ConfigFileWatcher configFileWatcher;
+    private final @NotNull Path configPath;
+    private final @NotNull Path legacyConfigPath;
+
+    private volatile @Nullable LoadedConfig loadedConfig;
 
     public ConfigurationReader(final @NotNull ExtensionInformation extensionInformation) {
+        this(extensionInformation, new ConfigFileWatcher());
+    }
+
+    ConfigurationReader(
+            final @NotNull ExtensionInformation extensionInformation,
+            final @NotNull ConfigFileWatcher configFileWatcher) {
         final var extensionHomeFolder = extensionInformation.getExtensionHomeFolder();
         this.configResolver = new ConfigResolver(extensionHomeFolder.toPath(),
                 EXTENSION_NAME,
                 EXTENSION_CONFIGURATION,
                 EXTENSION_CONFIGURATION_LEGACY);
+        this.configFileWatcher = configFileWatcher;
+        this.configPath = extensionHomeFolder.toPath().resolve(EXTENSION_CONFIGURATION);
+        this.legacyConfigPath = extensionHomeFolder.toPath().resolve(EXTENSION_CONFIGURATION_LEGACY);
     }
 
-    public @Nullable S3Config readConfiguration() {
-        final var propertiesFile = configResolver.get().toFile();
+    /**
+     * Returns the validated configuration of the last read while the properties file is unchanged. The file is only
+     * read, parsed and validated again if the watcher reported a change, its modification time or size changed or
+     * another location of the properties file takes precedence now.
+     *
+     * @return the configuration or {@code null} if the properties file is missing or not valid.
+     */
+    public @Nullable ResolvedS3Config readConfiguration() {
+        final long version = getWatchVersion();
+        // resolved on every read, so a file created at the preferred location is also picked up without a watcher
+        final var propertiesPath = configResolver.get();
+        final var loadedConfig = this.loadedConfig;
+        if (loadedConfig != null && loadedConfig.isUnchanged(propertiesPath, version)) {
+            LOG.trace("{}: Properties file '{}' is unchanged.", EXTENSION_NAME, loadedConfig.path);
+            return loadedConfig.s3Config;
+        }
+        this.loadedConfig = null;
+        final var propertiesFile = propertiesPath.toFile();
         if (!propertiesFile.exists()) {
             LOG.error("{}: Could not find '{}'. Please verify that the properties file is located correctly.",
                     EXTENSION_NAME,
@@ -67,6 +101,8 @@ public class ConfigurationReader {
                     propertiesFile.getAbsolutePath());
             return null;
         }
+        // the attributes are read first, so a change during the read is detected by the next read
+        final var attributes = readAttributes(propertiesPath);
         try (final var inputStream = new FileInputStream(propertiesFile)) {
             LOG.debug("{}: Reading properties file '{}'.", EXTENSION_NAME, propertiesFile.getAbsolutePath());
             final var properties = new Properties();
@@ -76,8 +112,12 @@ public class ConfigurationReader {
                 LOG.error("{}: Configuration is not valid!", EXTENSION_NAME);
                 return null;
             }
+            final var resolvedS3Config = new ResolvedS3Config(s3Config);
             LOG.trace("{}: Read properties file '{}' successfully.", EXTENSION_NAME, propertiesFile.getAbsolutePath());
-            return s3Config;
+            if (attributes != null) {
+                this.loadedConfig = new LoadedConfig(resolvedS3Config, propertiesPath, attributes, version);
+            }
+            return resolvedS3Config;
         } catch (final FileNotFoundException e) {
             LOG.error("{}: Could not find the properties file '{}'", EXTENSION_NAME, propertiesFile.getAbsolutePath());
         } catch (final IOException e) {
@@ -89,6 +129,34 @@ public class ConfigurationReader {
         return null;
     }
 
+    /**
+     * Stops watching the properties file, a change is then only detected by the attributes of the file.
+     */
+    public void close() {
+        configFileWatcher.close();
+    }
+
+    /**
+     * @return the combined version of both locations of the properties file, the file at the legacy location replaces
+     *         the file at the regular location.
+     */
+    private long getWatchVersion() {
+        final long version = configFileWatcher.getVersion(configPath);
+        final long legacyVersion = configFileWatcher.getVersion(legacyConfigPath);
+        if (version == ConfigFileWatcher.UNWATCHED || legacyVersion == ConfigFileWatcher.UNWATCHED) {
+            return ConfigFileWatcher.UNWATCHED;
+        }
+        return version + legacyVersion;
+    }
+
+    private static @Nullable BasicFileAttributes readAttributes(final @NotNull Path path) {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (final IOException e) {
+            return null;
+        }
+    }
+
     private static boolean isValid(final @NotNull S3Config s3Config) {
         final var bucketName = s3Config.getBucketName();
         if (isNullOrBlank(bucketName)) {
@@ -136,6 +204,15 @@ public class ConfigurationReader {
                 }
             }
         }
+        if (authenticationType == AuthenticationType.ASSUME_ROLE && isNullOrBlank(s3Config.getRoleArn())) {
+            LOG.error("{}: Role ARN is empty!", EXTENSION_NAME);
+            return false;
+        }
+        if ((authenticationType == AuthenticationType.WEB_IDENTITY ||
+                authenticationType == AuthenticationType.ASSUME_ROLE) && isNullOrBlank(s3Config.getRoleSessionName())) {
+            LOG.error("{}: Role session name is empty!", EXTENSION_NAME);
+            return false;
+        }
         final long fileExpirationInSeconds;
         try {
             fileExpirationInSeconds = s3Config.getFileExpirationInSeconds();
@@ -176,6 +253,129 @@ public class ConfigurationReader {
                 return false;
             }
         }
+        final int downloadConcurrency;
+        try {
+            downloadConcurrency = s3Config.getDownloadConcurrency();
+        } catch (final UnsupportedOperationException | NumberFormatException e) {
+            LOG.error("{}: Download concurrency is not a valid number!", EXTENSION_NAME);
+            return false;
+        }
+        if (downloadConcurrency < 1) {
+            LOG.error("{}: Download concurrency must be at least 1!", EXTENSION_NAME);
+            return false;
+        }
+        final int requestRate;
+        try {
+            requestRate = s3Config.getRequestRate();
+        } catch (final UnsupportedOperationException | NumberFormatException e) {
+            LOG.error("{}: S3 request rate is not a valid number!", EXTENSION_NAME);
+            return false;
+        }
+        if (requestRate < 0) {
+            LOG.error("{}: S3 request rate is negative!", EXTENSION_NAME);
+            return false;
+        }
+        final long bucketCheckTtl;
+        try {
+            bucketCheckTtl = s3Config.getBucketCheckTtlInSeconds();
+        } catch (final UnsupportedOperationException | NumberFormatException e) {
+            LOG.error("{}: Bucket check TTL is not a valid number!", EXTENSION_NAME);
+            return false;
+        }
+        if (bucketCheckTtl < 0) {
+            LOG.error("{}: Bucket check TTL is negative!", EXTENSION_NAME);
+            return false;
+        }
+        try {
+            FileLayout.fromName(s3Config.getFileLayoutName());
+        } catch (final IllegalArgumentException ignored) {
+            LOG.error("{}: Given file layout is not valid!", EXTENSION_NAME);
+            return false;
+        }
+        try {
+            FileFormat.fromVersion(s3Config.getFileFormatVersion());
+        } catch (final IllegalArgumentException ignored) {
+            LOG.error("{}: Given file format version is not valid!", EXTENSION_NAME);
+            return false;
+        }
+        final long backgroundRefreshMaxStaleness;
+        try {
+            backgroundRefreshMaxStaleness = s3Config.getBackgroundRefreshMaxStalenessInSeconds();
+        } catch (final UnsupportedOperationException | NumberFormatException e) {
+            LOG.error("{}: Background refresh max staleness is not a valid number!", EXTENSION_NAME);
+            return false;
+        }
+        if (backgroundRefreshMaxStaleness < 0) {
+            LOG.error("{}: Background refresh max staleness is negative!", EXTENSION_NAME);
+            return false;
+        }
+        final long adaptiveRefreshMaxInterval;
+        try {
+            adaptiveRefreshMaxInterval = s3Config.getAdaptiveRefreshMaxIntervalInSeconds();
+        } catch (final UnsupportedOperationException | NumberFormatException e) {
+            LOG.error("{}: Adaptive refresh max interval is not a valid number!", EXTENSION_NAME);
+            return false;
+        }
+        if (adaptiveRefreshMaxInterval < 0) {
+            LOG.error("{}: Adaptive refresh max interval is negative!", EXTENSION_NAME);
+            return false;
+        }
+        final int circuitBreakerFailureThreshold;
+        final long circuitBreakerOpenDuration;
+        try {
+            circuitBreakerFailureThreshold = s3Config.getCircuitBreakerFailureThreshold();
+            circuitBreakerOpenDuration = s3Config.getCircuitBreakerOpenDurationInSeconds();
+        } catch (final UnsupportedOperationException | NumberFormatException e) {
+            LOG.error("{}: Circuit breaker settings are not valid numbers!", EXTENSION_NAME);
+            return false;
+        }
+        if (circuitBreakerFailureThreshold < 0) {
+            LOG.error("{}: Circuit breaker failure threshold is negative!", EXTENSION_NAME);
+            return false;
+        }
+        if (circuitBreakerOpenDuration < 1) {
+            LOG.error("{}: Circuit breaker open duration must be at least 1 second!", EXTENSION_NAME);
+            return false;
+        }
         return true;
     }
+
+    /**
+     * A validated configuration with the state of the properties file it was read from.
+     */
+    private static class LoadedConfig {
+
+        private final @NotNull ResolvedS3Config s3Config;
+        private final @NotNull Path path;
+        private final @NotNull BasicFileAttributes attributes;
+        private final long version;
+
+        private LoadedConfig(
+                final @NotNull ResolvedS3Config s3Config,
+                final @NotNull Path path,
+                final @NotNull BasicFileAttributes attributes,
+                final long version) {
+            this.s3Config = s3Config;
+            this.path = path;
+            this.attributes = attributes;
+            this.version = version;
+        }
+
+        /**
+         * @param path    the location of the properties file that takes precedence now.
+         * @param version the current version of the watched properties file.
+         * @return {@code true} if the location is the same and neither the watcher nor the file attributes indicate a
+         *         change of the file, the attributes are also compared while the file is watched.
+         */
+        private boolean isUnchanged(final @NotNull Path path, final long version) {
+            if (!path.equals(this.path) || version != this.version) {
+                return false;
+            }
+            final var currentAttributes = readAttributes(path);
+            return currentAttributes != null &&
+                    currentAttributes.lastModifiedTime().equals(attributes.lastModifiedTime()) &&
+                    currentAttributes.size() == attributes.size() &&
+                    Objects.equals(currentAttributes.fileKey(), attributes.fileKey());
+        }
+    }
 }
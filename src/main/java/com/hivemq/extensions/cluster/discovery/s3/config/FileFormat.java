@@ -0,0 +1,54 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.cluster.discovery.s3.config;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Defines the format in which the node information is written. All formats are always read.
+ */
+public enum FileFormat {
+
+    /**
+     * The {@code ||||} delimited text {@code <version>||||<creation-time>||||<cluster-id>||||<host>||||<port>}.
+     */
+    V4("4"),
+    /**
+     * A compact binary layout: magic number and version, varint creation time, length-prefixed cluster id and host
+     * and the port.
+     */
+    V5("5");
+
+    private final @NotNull String version;
+
+    FileFormat(final @NotNull String version) {
+        this.version = version;
+    }
+
+    public static @NotNull FileFormat fromVersion(final @NotNull String version) throws IllegalArgumentException {
+        for (final var format : values()) {
+            if (version.contentEquals(format.getVersion())) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("Unknown file format version " + version);
+    }
+
+    public @NotNull String getVersion() {
+        return version;
+    }
+}
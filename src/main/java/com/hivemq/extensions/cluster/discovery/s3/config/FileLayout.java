@@ -0,0 +1,60 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.cluster.discovery.s3.config;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Defines how the node files are stored in the bucket.
+ */
+public enum FileLayout {
+
+    /**
+     * One object per node at {@code <file-prefix><cluster-id>}, the node information is stored in the object content.
+     */
+    OBJECT("object"),
+    /**
+     * One object per node at {@code <file-prefix><cluster-id>/<node-information>}, the node information is encoded in
+     * the object key, so the discovery is resolved from the object listing alone.
+     */
+    KEY("key"),
+    /**
+     * One shared object at {@code <file-prefix>manifest} for all nodes, every node updates its own entry with a
+     * conditional write, so the discovery is resolved from a single object once no node of the cluster uses another
+     * layout.
+     */
+    MANIFEST("manifest");
+
+    private final @NotNull String name;
+
+    FileLayout(final @NotNull String name) {
+        this.name = name;
+    }
+
+    public static @NotNull FileLayout fromName(final @NotNull String name) throws IllegalArgumentException {
+        for (final var layout : values()) {
+            if (name.contentEquals(layout.getName())) {
+                return layout;
+            }
+        }
+        throw new IllegalArgumentException("Unknown file layout " + name);
+    }
+
+    public @NotNull String getName() {
+        return name;
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.cluster.discovery.s3.config;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Objects;
+
+/**
+ * Immutable configuration that is resolved once from a validated {@link S3Config}.
+ * <p>
+ * Every getter of the {@link S3Config} proxy looks up and converts the property on each invocation. The discovery
+ * reads the configuration for every node file, so the values are resolved into final fields instead.
+ */
+public final class ResolvedS3Config {
+
+    private final @NotNull S3ClientSettings clientSettings;
+    private final @NotNull String bucketName;
+    private final @NotNull String filePrefix;
+    private final long fileExpirationInSeconds;
+    private final long fileUpdateIntervalInSeconds;
+    private final int downloadConcurrency;
+    private final boolean downloadConcurrencyAdaptive;
+    private final int requestRate;
+    private final long bucketCheckTtlInSeconds;
+    private final @NotNull FileLayout fileLayout;
+    private final @NotNull FileFormat fileFormat;
+    private final boolean backgroundRefresh;
+    private final long backgroundRefreshMaxStalenessInSeconds;
+    private final long adaptiveRefreshMaxIntervalInSeconds;
+    private final boolean membershipSnapshot;
+    private final int circuitBreakerFailureThreshold;
+    private final long circuitBreakerOpenDurationInSeconds;
+    private final boolean conditionalDelete;
+
+    /**
+     * @throws IllegalArgumentException      if the authentication type, file layout or file format is not valid.
+     * @throws UnsupportedOperationException if a property can't be converted.
+     * @throws NumberFormatException         if a numeric property is not a number.
+     */
+    ResolvedS3Config(final @NotNull S3Config s3Config) {
+        bucketName = s3Config.getBucketName();
+        filePrefix = s3Config.getFilePrefix();
+        fileExpirationInSeconds = s3Config.getFileExpirationInSeconds();
+        fileUpdateIntervalInSeconds = s3Config.getFileUpdateIntervalInSeconds();
+        downloadConcurrency = s3Config.getDownloadConcurrency();
+        clientSettings = new S3ClientSettings(s3Config.getBucketRegionName(),
+                s3Config.getEndpoint(),
+                s3Config.getEndpointRegionName(),
+                s3Config.getPathStyleAccess(),
+                AuthenticationType.fromName(s3Config.getAuthenticationTypeName()),
+                s3Config.getAccessKeyId(),
+                s3Config.getAccessKeySecret(),
+                s3Config.getSessionToken(),
+                s3Config.getRoleArn(),
+                s3Config.getRoleSessionName());
+        downloadConcurrencyAdaptive = s3Config.getDownloadConcurrencyAdaptive();
+        requestRate = s3Config.getRequestRate();
+        bucketCheckTtlInSeconds = s3Config.getBucketCheckTtlInSeconds();
+        fileLayout = FileLayout.fromName(s3Config.getFileLayoutName());
+        fileFormat = FileFormat.fromVersion(s3Config.getFileFormatVersion());
+        backgroundRefresh = s3Config.getBackgroundRefresh();
+        backgroundRefreshMaxStalenessInSeconds = s3Config.getBackgroundRefreshMaxStalenessInSeconds();
+        adaptiveRefreshMaxIntervalInSeconds = s3Config.getAdaptiveRefreshMaxIntervalInSeconds();
+        membershipSnapshot = s3Config.getMembershipSnapshot();
+        circuitBreakerFailureThreshold = s3Config.getCircuitBreakerFailureThreshold();
+        circuitBreakerOpenDurationInSeconds = s3Config.getCircuitBreakerOpenDurationInSeconds();
+        conditionalDelete = s3Config.getConditionalDelete();
+    }
+
+    public @NotNull S3ClientSettings getClientSettings() {
+        return clientSettings;
+    }
+
+    public @NotNull String getBucketName() {
+        return bucketName;
+    }
+
+    public @NotNull String getBucketRegionName() {
+        return clientSettings.getBucketRegionName();
+    }
+
+    public @NotNull String getFilePrefix() {
+        return filePrefix;
+    }
+
+    public long getFileExpirationInSeconds() {
+        return fileExpirationInSeconds;
+    }
+
+    public long getFileUpdateIntervalInSeconds() {
+        return fileUpdateIntervalInSeconds;
+    }
+
+    public @NotNull String getEndpoint() {
+        return clientSettings.getEndpoint();
+    }
+
+    public @Nullable String getEndpointRegionName() {
+        return clientSettings.getEndpointRegionName();
+    }
+
+    public @Nullable Boolean getPathStyleAccess() {
+        return clientSettings.getPathStyleAccess();
+    }
+
+    public @NotNull AuthenticationType getAuthenticationType() {
+        return clientSettings.getAuthenticationType();
+    }
+
+    public @Nullable String getAccessKeyId() {
+        return clientSettings.getAccessKeyId();
+    }
+
+    public @Nullable String getAccessKeySecret() {
+        return clientSettings.getAccessKeySecret();
+    }
+
+    public @Nullable String getSessionToken() {
+        return clientSettings.getSessionToken();
+    }
+
+    public @Nullable String getRoleArn() {
+        return clientSettings.getRoleArn();
+    }
+
+    public @NotNull String getRoleSessionName() {
+        return clientSettings.getRoleSessionName();
+    }
+
+    public int getDownloadConcurrency() {
+        return downloadConcurrency;
+    }
+
+    public boolean getDownloadConcurrencyAdaptive() {
+        return downloadConcurrencyAdaptive;
+    }
+
+    public int getRequestRate() {
+        return requestRate;
+    }
+
+    public long getBucketCheckTtlInSeconds() {
+        return bucketCheckTtlInSeconds;
+    }
+
+    public @NotNull FileLayout getFileLayout() {
+        return fileLayout;
+    }
+
+    public @NotNull FileFormat getFileFormat() {
+        return fileFormat;
+    }
+
+    public boolean getBackgroundRefresh() {
+        return backgroundRefresh;
+    }
+
+    public long getBackgroundRefreshMaxStalenessInSeconds() {
+        return backgroundRefreshMaxStalenessInSeconds;
+    }
+
+    public long getAdaptiveRefreshMaxIntervalInSeconds() {
+        return adaptiveRefreshMaxIntervalInSeconds;
+    }
+
+    public boolean getMembershipSnapshot() {
+        return membershipSnapshot;
+    }
+
+    public int getCircuitBreakerFailureThreshold() {
+        return circuitBreakerFailureThreshold;
+    }
+
+    public long getCircuitBreakerOpenDurationInSeconds() {
+        return circuitBreakerOpenDurationInSeconds;
+    }
+
+    public boolean getConditionalDelete() {
+        return conditionalDelete;
+    }
+
+    @Override
+    public boolean equals(final @Nullable Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        final var that = (ResolvedS3Config) o;
+        return fileExpirationInSeconds == that.fileExpirationInSeconds &&
+                fileUpdateIntervalInSeconds == that.fileUpdateIntervalInSeconds &&
+                downloadConcurrency == that.downloadConcurrency &&
+                downloadConcurrencyAdaptive == that.downloadConcurrencyAdaptive &&
+                requestRate == that.requestRate &&
+                bucketCheckTtlInSeconds == that.bucketCheckTtlInSeconds &&
+                backgroundRefresh == that.backgroundRefresh &&
+                backgroundRefreshMaxStalenessInSeconds == that.backgroundRefreshMaxStalenessInSeconds &&
+                adaptiveRefreshMaxIntervalInSeconds == that.adaptiveRefreshMaxIntervalInSeconds &&
+                membershipSnapshot == that.membershipSnapshot &&
+                circuitBreakerFailureThreshold == that.circuitBreakerFailureThreshold &&
+                circuitBreakerOpenDurationInSeconds == that.circuitBreakerOpenDurationInSeconds &&
+                conditionalDelete == that.conditionalDelete &&
+                clientSettings.equals(that.clientSettings) &&
+                bucketName.equals(that.bucketName) &&
+                filePrefix.equals(that.filePrefix) &&
+                fileLayout == that.fileLayout &&
+                fileFormat == that.fileFormat;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(clientSettings, bucketName, filePrefix, fileLayout);
+    }
+}
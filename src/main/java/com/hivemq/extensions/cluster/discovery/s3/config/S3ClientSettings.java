@@ -0,0 +1,148 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.cluster.discovery.s3.config;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Objects;
+
+/**
+ * The part of the {@link ResolvedS3Config} that the S3 client is built from. The client is only rebuilt if these
+ * settings change, all other settings only affect the discovery.
+ */
+public final class S3ClientSettings {
+
+    private final @NotNull String bucketRegionName;
+    private final @NotNull String endpoint;
+    private final @Nullable String endpointRegionName;
+    private final @Nullable Boolean pathStyleAccess;
+    private final @NotNull AuthenticationType authenticationType;
+    private final @Nullable String accessKeyId;
+    private final @Nullable String accessKeySecret;
+    private final @Nullable String sessionToken;
+    private final @Nullable String roleArn;
+    private final @NotNull String roleSessionName;
+
+    S3ClientSettings(
+            final @NotNull String bucketRegionName,
+            final @NotNull String endpoint,
+            final @Nullable String endpointRegionName,
+            final @Nullable Boolean pathStyleAccess,
+            final @NotNull AuthenticationType authenticationType,
+            final @Nullable String accessKeyId,
+            final @Nullable String accessKeySecret,
+            final @Nullable String sessionToken,
+            final @Nullable String roleArn,
+            final @NotNull String roleSessionName) {
+        this.bucketRegionName = bucketRegionName;
+        this.endpoint = endpoint;
+        this.endpointRegionName = endpointRegionName;
+        this.pathStyleAccess = pathStyleAccess;
+        this.authenticationType = authenticationType;
+        this.accessKeyId = accessKeyId;
+        this.accessKeySecret = accessKeySecret;
+        this.sessionToken = sessionToken;
+        this.roleArn = roleArn;
+        this.roleSessionName = roleSessionName;
+    }
+
+    public @NotNull String getBucketRegionName() {
+        return bucketRegionName;
+    }
+
+    public @NotNull String getEndpoint() {
+        return endpoint;
+    }
+
+    public @Nullable String getEndpointRegionName() {
+        return endpointRegionName;
+    }
+
+    public @Nullable Boolean getPathStyleAccess() {
+        return pathStyleAccess;
+    }
+
+    public @NotNull AuthenticationType getAuthenticationType() {
+        return authenticationType;
+    }
+
+    public @Nullable String getAccessKeyId() {
+        return accessKeyId;
+    }
+
+    public @Nullable String getAccessKeySecret() {
+        return accessKeySecret;
+    }
+
+    public @Nullable String getSessionToken() {
+        return sessionToken;
+    }
+
+    public @Nullable String getRoleArn() {
+        return roleArn;
+    }
+
+    public @NotNull String getRoleSessionName() {
+        return roleSessionName;
+    }
+
+    /**
+     * @return {@code true} if the credentials provider built from these settings can be reused for the other settings.
+     */
+    public boolean hasSameCredentials(final @NotNull S3ClientSettings other) {
+        return authenticationType == other.authenticationType &&
+                Objects.equals(accessKeyId, other.accessKeyId) &&
+                Objects.equals(accessKeySecret, other.accessKeySecret) &&
+                Objects.equals(sessionToken, other.sessionToken) &&
+                Objects.equals(roleArn, other.roleArn) &&
+                roleSessionName.equals(other.roleSessionName) &&
+                // the STS client of the role credentials uses the bucket region
+                (!usesSts() || bucketRegionName.equals(other.bucketRegionName));
+    }
+
+    private boolean usesSts() {
+        return authenticationType == AuthenticationType.WEB_IDENTITY ||
+                authenticationType == AuthenticationType.ASSUME_ROLE;
+    }
+
+    @Override
+    public boolean equals(final @Nullable Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        final var that = (S3ClientSettings) o;
+        return bucketRegionName.equals(that.bucketRegionName) &&
+                endpoint.equals(that.endpoint) &&
+                Objects.equals(endpointRegionName, that.endpointRegionName) &&
+                Objects.equals(pathStyleAccess, that.pathStyleAccess) &&
+                authenticationType == that.authenticationType &&
+                Objects.equals(accessKeyId, that.accessKeyId) &&
+                Objects.equals(accessKeySecret, that.accessKeySecret) &&
+                Objects.equals(sessionToken, that.sessionToken) &&
+                Objects.equals(roleArn, that.roleArn) &&
+                roleSessionName.equals(that.roleSessionName);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(bucketRegionName, endpoint, authenticationType);
+    }
+}
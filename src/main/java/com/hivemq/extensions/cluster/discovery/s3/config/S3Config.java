@@ -63,4 +63,63 @@ public interface S3Config extends Config {
 
     @Key("credentials-session-token")
     @Nullable String getSessionToken();
+
+    @Key("credentials-role-arn")
+    @Nullable String getRoleArn();
+
+    @Key("credentials-role-session-name")
+    @DefaultValue("hivemq-s3-cluster-discovery")
+    @NotNull String getRoleSessionName();
+
+    @Key("download-concurrency")
+    @DefaultValue("1")
+    @NotNull Integer getDownloadConcurrency();
+
+    @Key("download-concurrency-adaptive")
+    @DefaultValue("false")
+    @NotNull Boolean getDownloadConcurrencyAdaptive();
+
+    @Key("s3-request-rate")
+    @DefaultValue("0")
+    @NotNull Integer getRequestRate();
+
+    @Key("bucket-check-ttl")
+    @DefaultValue("300")
+    @NotNull Long getBucketCheckTtlInSeconds();
+
+    @Key("file-layout")
+    @DefaultValue("object")
+    @NotNull String getFileLayoutName();
+
+    @Key("file-format-version")
+    @DefaultValue("4")
+    @NotNull String getFileFormatVersion();
+
+    @Key("background-refresh")
+    @DefaultValue("false")
+    @NotNull Boolean getBackgroundRefresh();
+
+    @Key("background-refresh-max-staleness")
+    @DefaultValue("0")
+    @NotNull Long getBackgroundRefreshMaxStalenessInSeconds();
+
+    @Key("adaptive-refresh-max-interval")
+    @DefaultValue("0")
+    @NotNull Long getAdaptiveRefreshMaxIntervalInSeconds();
+
+    @Key("membership-snapshot")
+    @DefaultValue("false")
+    @NotNull Boolean getMembershipSnapshot();
+
+    @Key("circuit-breaker-failure-threshold")
+    @DefaultValue("0")
+    @NotNull Integer getCircuitBreakerFailureThreshold();
+
+    @Key("circuit-breaker-open-duration")
+    @DefaultValue("60")
+    @NotNull Long getCircuitBreakerOpenDurationInSeconds();
+
+    @Key("conditional-delete")
+    @DefaultValue("true")
+    @NotNull Boolean getConditionalDelete();
 }
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.cluster.discovery.s3.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates named daemon threads, so extension owned executors never block the shutdown of HiveMQ.
+ */
+public final class DaemonThreadFactory implements ThreadFactory {
+
+    private final @NotNull String namePrefix;
+    private final @NotNull AtomicInteger threadCount = new AtomicInteger();
+
+    public DaemonThreadFactory(final @NotNull String namePrefix) {
+        this.namePrefix = namePrefix;
+    }
+
+    @Override
+    public @NotNull Thread newThread(final @NotNull Runnable runnable) {
+        final var thread = new Thread(runnable, namePrefix + "-" + threadCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.cluster.discovery.s3;
+
+import com.hivemq.extension.sdk.api.services.cluster.parameter.ClusterNodeAddress;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BackgroundRefresherTest {
+
+    private final @NotNull BackgroundRefresher backgroundRefresher = new BackgroundRefresher();
+    private final @NotNull List<ClusterNodeAddress> nodeAddresses =
+            List.of(new ClusterNodeAddress("127.0.0.1", 7800));
+
+    @AfterEach
+    void tearDown() {
+        backgroundRefresher.stop();
+    }
+
+    @Test
+    void test_getSnapshot_no_snapshot() {
+        assertThat(backgroundRefresher.getSnapshot(60_000)).isNull();
+    }
+
+    @Test
+    void test_getSnapshot_fresh() {
+        backgroundRefresher.update(nodeAddresses);
+
+        assertThat(backgroundRefresher.getSnapshot(60_000)).isEqualTo(nodeAddresses);
+    }
+
+    @Test
+    void test_getSnapshot_stale() throws Exception {
+        backgroundRefresher.update(nodeAddresses);
+        TimeUnit.MILLISECONDS.sleep(20);
+
+        assertThat(backgroundRefresher.getSnapshot(10)).isNull();
+    }
+
+    @Test
+    void test_start_runs_refresh_periodically() throws Exception {
+        final var refreshes = new CountDownLatch(3);
+
+        backgroundRefresher.start(refreshes::countDown, 10);
+
+        assertThat(backgroundRefresher.isRunning()).isTrue();
+        assertThat(refreshes.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void test_start_continues_after_failed_refresh() throws Exception {
+        final var refreshes = new CountDownLatch(2);
+
+        backgroundRefresher.start(() -> {
+            refreshes.countDown();
+            throw new IllegalStateException("test");
+        }, 10);
+
+        assertThat(refreshes.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void test_stop_discards_snapshot() {
+        backgroundRefresher.start(() -> {
+        }, 60_000);
+        backgroundRefresher.update(nodeAddresses);
+
+        backgroundRefresher.stop();
+
+        assertThat(backgroundRefresher.isRunning()).isFalse();
+        assertThat(backgroundRefresher.getSnapshot(60_000)).isNull();
+    }
+}
@@ -0,0 +1,376 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.cluster.discovery.s3;
+
+import com.hivemq.extensions.cluster.discovery.s3.config.FileFormat;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Base64;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Fuzzes the allocation free parser against the previous parser, that decoded the Base64 content into a new array and
+ * split the string with a regex, so the accepted and rejected node files are identical. Both formats must accept and
+ * reject the same node files.
+ * <p>
+ * The current parser rejects a blank cluster id and a creation time that is not positive, the previous parser failed to
+ * construct the node file instead. These differences are expected by the fuzz tests and asserted by their own tests.
+ */
+class ClusterNodeFileCodecTest {
+
+    private static final int ITERATIONS = 20_000;
+    private static final @NotNull Pattern CONTENT_SEPARATOR_PATTERN = Pattern.compile("\\|\\|\\|\\|");
+    // the messages of the checks of ClusterNodeFile that the current parser does before it constructs the node file
+    private static final @NotNull Set<String> REJECTED_MESSAGES =
+            Set.of("'clusterId' must not be null or blank!", "CreationTimeInMillis must not be zero or negative!");
+
+    private static final @NotNull String[] VERSIONS = {"4", "5", "", "44", "٤"};
+    private static final @NotNull String[] CREATION_TIMES = {
+            "1700000000000",
+            "1",
+            "0",
+            "-1700000000000",
+            "+1700000000000",
+            "9223372036854775807",
+            "9223372036854775808",
+            "000000000000000000001700000000000",
+            "١٧٠٠٠٠٠٠٠٠٠٠٠",
+            "17e11",
+            "",
+            "-",
+            "+"};
+    private static final @NotNull String[] CLUSTER_IDS = {"ABCD12", "", " ", "ÄÖÜ-節点", "a|b", "|||"};
+    private static final @NotNull String[] HOSTS = {"127.0.0.1", "", "höst.example", "::1", "host|"};
+    private static final @NotNull String[] PORTS = {
+            "7800",
+            "0",
+            "65535",
+            "-1",
+            "+7800",
+            "2147483647",
+            "2147483648",
+            "4294967297",
+            "0000000007800",
+            "٧٨٠٠",
+            "78 00",
+            "",
+            "|"};
+    private static final byte[] INTERESTING_BYTES =
+            {'|', '4', '0', '9', '-', '+', ' ', 0, (byte) 0x80, (byte) 0xC3, (byte) 0xD9, (byte) 0xE2, (byte) 0xFF};
+    private static final @NotNull String BASE64_CHARACTERS =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/-_=!\n ä";
+
+    private final @NotNull Random random = new Random(4_711);
+
+    @Test
+    void test_decodeBase64_fuzz_node_files() {
+        for (int i = 0; i < ITERATIONS; i++) {
+            final var content = Base64.getEncoder().encodeToString(randomNodeFile());
+            assertSameOutcome(content,
+                    () -> ClusterNodeFileCodec.decodeBase64(content),
+                    () -> legacyDecode(content, Base64.getDecoder()));
+        }
+    }
+
+    @Test
+    void test_decodeBase64Url_fuzz_node_files() {
+        for (int i = 0; i < ITERATIONS; i++) {
+            final var content = Base64.getUrlEncoder().withoutPadding().encodeToString(randomNodeFile());
+            assertSameOutcome(content,
+                    () -> ClusterNodeFileCodec.decodeBase64Url(content),
+                    () -> legacyDecode(content, Base64.getUrlDecoder()));
+        }
+    }
+
+    @Test
+    void test_decodeBase64_fuzz_base64() {
+        for (int i = 0; i < ITERATIONS; i++) {
+            final var content = randomBase64();
+            assertSameOutcome(content,
+                    () -> ClusterNodeFileCodec.decodeBase64(content),
+                    () -> legacyDecode(content, Base64.getDecoder()));
+            assertSameOutcome(content,
+                    () -> ClusterNodeFileCodec.decodeBase64Url(content),
+                    () -> legacyDecode(content, Base64.getUrlDecoder()));
+        }
+    }
+
+    @Test
+    void test_decode_same_validation_in_all_formats() {
+        final long[] creationTimes = {1_700_000_000_000L, 1, 0, -1, Long.MIN_VALUE};
+        final String[] clusterIds = {"ABCD12", "ÄÖÜ-節点", "", " ", "\t"};
+        for (final long creationTime : creationTimes) {
+            for (final String clusterId : clusterIds) {
+                final var v4 = encodeV4(creationTime, clusterId);
+                final var v5 = encodeV5(creationTime, clusterId, "127.0.0.1", 7800);
+                final var expected = creationTime > 0 && !clusterId.isBlank() ?
+                        clusterId + "\n127.0.0.1\n7800\n" + creationTime :
+                        "null";
+                assertThat(outcome(() -> ClusterNodeFileCodec.decode(v4))).as("v4 %s", clusterId).isEqualTo(expected);
+                assertThat(outcome(() -> ClusterNodeFileCodec.decode(v5))).as("v5 %s", clusterId).isEqualTo(expected);
+            }
+        }
+    }
+
+    @Test
+    void test_decodeBase64_blank_cluster_id_rejected() {
+        for (final var clusterId : new String[]{" ", "\t"}) {
+            final var content = Base64.getEncoder().encodeToString(encodeV4(1_700_000_000_000L, clusterId));
+
+            assertThat(ClusterNodeFileCodec.decodeBase64(content)).isNull();
+            assertThat(outcome(() -> legacyDecode(content, Base64.getDecoder()))).isEqualTo(
+                    IllegalArgumentException.class.getName());
+        }
+    }
+
+    @Test
+    void test_decodeBase64_not_positive_creation_time_rejected() {
+        for (final var creationTime : new long[]{0, -1, Long.MIN_VALUE}) {
+            final var content = Base64.getEncoder().encodeToString(encodeV4(creationTime, "ABCD12"));
+
+            assertThat(ClusterNodeFileCodec.decodeBase64(content)).isNull();
+            assertThat(outcome(() -> legacyDecode(content, Base64.getDecoder()))).isEqualTo(
+                    IllegalArgumentException.class.getName());
+        }
+    }
+
+    @Test
+    void test_decodeBase64_content_larger_than_buffer() {
+        final var nodeFile = ClusterNodeFile.of("A".repeat(2_000), "127.0.0.1", 7800, 1_700_000_000_000L);
+
+        final var decoded = ClusterNodeFileCodec.decodeBase64(nodeFile.encode(FileFormat.V4));
+
+        assertThat(decoded).isNotNull();
+        assertThat(decoded.getClusterId()).isEqualTo(nodeFile.getClusterId());
+        assertThat(ClusterNodeFileCodec.decodeBase64(nodeFile.encode(FileFormat.V5))).isNotNull();
+    }
+
+    /**
+     * @return a node file in a random format with random, partly invalid segments and random mutations.
+     */
+    private byte[] randomNodeFile() {
+        final byte[] content;
+        if (random.nextInt(4) == 0) {
+            final var nodeFile = ClusterNodeFile.of(random.nextBoolean() ? CLUSTER_IDS[0] : CLUSTER_IDS[3],
+                    random.nextBoolean() ? HOSTS[0] : HOSTS[2],
+                    random.nextInt(65_536),
+                    1 + random.nextInt(Integer.MAX_VALUE) * 1_000L);
+            content = ClusterNodeFileCodec.encode(nodeFile, FileFormat.V5);
+        } else {
+            final var segments = String.join(ClusterNodeFile.CONTENT_SEPARATOR,
+                    pick(VERSIONS, 4),
+                    pick(CREATION_TIMES, 4),
+                    pick(CLUSTER_IDS, 4),
+                    pick(HOSTS, 4),
+                    pick(PORTS, 4));
+            content = (segments + ClusterNodeFile.CONTENT_SEPARATOR.repeat(random.nextInt(3)) +
+                    "|".repeat(random.nextInt(4) == 0 ? random.nextInt(8) : 0)).getBytes(UTF_8);
+        }
+        return mutate(content);
+    }
+
+    /**
+     * @return the valid first value in most cases, otherwise any value.
+     */
+    private @NotNull String pick(final @NotNull String[] values, final int validWeight) {
+        final int index = random.nextInt(values.length + validWeight);
+        return index < values.length ? values[index] : values[0];
+    }
+
+    private byte[] mutate(final byte[] content) {
+        var mutated = content;
+        final int mutations = random.nextInt(3) == 0 ? random.nextInt(4) : 0;
+        for (int i = 0; i < mutations && mutated.length > 0; i++) {
+            final int index = random.nextInt(mutated.length);
+            final var output = new ByteArrayOutputStream();
+            switch (random.nextInt(4)) {
+                case 0:
+                    mutated[index] = INTERESTING_BYTES[random.nextInt(INTERESTING_BYTES.length)];
+                    continue;
+                case 1:
+                    output.write(mutated, 0, index);
+                    output.writeBytes("||||".substring(random.nextInt(4)).getBytes(UTF_8));
+                    output.write(mutated, index, mutated.length - index);
+                    break;
+                case 2:
+                    output.write(mutated, 0, index);
+                    output.write(mutated, index + 1, mutated.length - index - 1);
+                    break;
+                default:
+                    output.write(mutated, 0, index);
+                    break;
+            }
+            mutated = output.toByteArray();
+        }
+        return mutated;
+    }
+
+    private @NotNull String randomBase64() {
+        final var content = new StringBuilder();
+        if (random.nextBoolean()) {
+            content.append(Base64.getEncoder().encodeToString(randomNodeFile()));
+        }
+        final int mutations = random.nextInt(4);
+        for (int i = 0; i < mutations; i++) {
+            // the end of the content is mutated more often to cover the padding and the last unit
+            final int index = random.nextBoolean() ? content.length() : random.nextInt(content.length() + 1);
+            final char c = BASE64_CHARACTERS.charAt(random.nextInt(BASE64_CHARACTERS.length()));
+            if (random.nextBoolean() || index == content.length()) {
+                content.insert(index, c);
+            } else {
+                content.setCharAt(index, c);
+            }
+        }
+        return content.toString();
+    }
+
+    /**
+     * @param expected the previous parser, a node file it failed to construct because of a blank cluster id or a
+     *                 creation time that is not positive is expected to be rejected.
+     */
+    private static void assertSameOutcome(
+            final @NotNull String content,
+            final @NotNull Supplier<@Nullable ClusterNodeFile> actual,
+            final @NotNull Supplier<@Nullable ClusterNodeFile> expected) {
+        assertThat(outcome(actual)).as(content).isEqualTo(outcome(() -> {
+            try {
+                return expected.get();
+            } catch (final IllegalArgumentException e) {
+                if (REJECTED_MESSAGES.contains(e.getMessage())) {
+                    return null;
+                }
+                throw e;
+            }
+        }));
+    }
+
+    private static @NotNull String outcome(final @NotNull Supplier<@Nullable ClusterNodeFile> decoder) {
+        final ClusterNodeFile nodeFile;
+        try {
+            nodeFile = decoder.get();
+        } catch (final RuntimeException e) {
+            return e.getClass().getName();
+        }
+        if (nodeFile == null) {
+            return "null";
+        }
+        return nodeFile.getClusterId() +
+                '\n' +
+                nodeFile.getClusterNodeAddress().getHost() +
+                '\n' +
+                nodeFile.getClusterNodeAddress().getPort() +
+                '\n' +
+                nodeFile.getCreationTimeInMillis();
+    }
+
+    private static byte[] encodeV4(final long creationTimeInMillis, final @NotNull String clusterId) {
+        return String.join(ClusterNodeFile.CONTENT_SEPARATOR,
+                ClusterNodeFile.CONTENT_VERSION,
+                Long.toString(creationTimeInMillis),
+                clusterId,
+                "127.0.0.1",
+                "7800").getBytes(UTF_8);
+    }
+
+    /**
+     * Encodes the binary format without the checks of {@link ClusterNodeFile}, so invalid node files can be encoded.
+     */
+    private static byte[] encodeV5(
+            final long creationTimeInMillis,
+            final @NotNull String clusterId,
+            final @NotNull String host,
+            final int port) {
+        final var output = new ByteArrayOutputStream();
+        output.write(ClusterNodeFileCodec.MAGIC_0);
+        output.write(ClusterNodeFileCodec.MAGIC_1);
+        output.write(ClusterNodeFileCodec.VERSION_5);
+        writeVarLong(output, creationTimeInMillis);
+        for (final var value : new String[]{clusterId, host}) {
+            final var bytes = value.getBytes(UTF_8);
+            writeVarLong(output, bytes.length);
+            output.writeBytes(bytes);
+        }
+        output.write(port >>> 8);
+        output.write(port);
+        return output.toByteArray();
+    }
+
+    private static void writeVarLong(final @NotNull ByteArrayOutputStream output, final long value) {
+        long remaining = value;
+        while ((remaining & ~0x7FL) != 0) {
+            output.write((int) ((remaining & 0x7F) | 0x80));
+            remaining >>>= 7;
+        }
+        output.write((int) remaining);
+    }
+
+    /**
+     * The previous parser: the Base64 content is decoded into a new array, the text format is split with a regex.
+     */
+    private static @Nullable ClusterNodeFile legacyDecode(
+            final @NotNull String fileContent,
+            final @NotNull Base64.Decoder decoder) {
+        final byte[] content;
+        try {
+            content = decoder.decode(fileContent);
+        } catch (final IllegalArgumentException ignored) {
+            return null;
+        }
+        if (content.length >= 3 &&
+                content[0] == ClusterNodeFileCodec.MAGIC_0 &&
+                content[1] == ClusterNodeFileCodec.MAGIC_1) {
+            return ClusterNodeFileCodec.decode(content);
+        }
+        final var splitContent = CONTENT_SEPARATOR_PATTERN.split(new String(content, UTF_8));
+        if (splitContent.length != 5) {
+            return null;
+        }
+        if (!splitContent[0].contentEquals(ClusterNodeFile.CONTENT_VERSION)) {
+            return null;
+        }
+        final long creationTimeInMillis;
+        try {
+            creationTimeInMillis = Long.parseLong(splitContent[1]);
+        } catch (final NumberFormatException ignored) {
+            return null;
+        }
+        final var clusterId = splitContent[2];
+        if (clusterId.isEmpty()) {
+            return null;
+        }
+        final var host = splitContent[3];
+        if (host.isEmpty()) {
+            return null;
+        }
+        final int port;
+        try {
+            port = Integer.parseInt(splitContent[4]);
+        } catch (final NumberFormatException ignored) {
+            return null;
+        }
+        return ClusterNodeFile.of(clusterId, host, port, creationTimeInMillis);
+    }
+}
@@ -17,11 +17,13 @@
 package com.hivemq.extensions.cluster.discovery.s3;
 
 import com.hivemq.extension.sdk.api.services.cluster.parameter.ClusterNodeAddress;
+import com.hivemq.extensions.cluster.discovery.s3.config.FileFormat;
 import com.hivemq.extensions.cluster.discovery.s3.util.ClusterNodeFileUtil;
 import org.jetbrains.annotations.NotNull;
 import org.junit.jupiter.api.Test;
 
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -237,4 +239,77 @@ class ClusterNodeFileTest {
         assertThatThrownBy(() -> ClusterNodeFile.parseClusterNodeFile("  "))
                 .isInstanceOf(IllegalArgumentException.class);
     }
+
+    @Test
+    void test_parseKeyName_success() {
+        final var clusterNodeFile1 = new ClusterNodeFile(nodeId, clusterNodeAddress);
+        final var keyName = clusterNodeFile1.toKeyName(FileFormat.V4);
+        assertThat(keyName).doesNotContain("/", "+", "=");
+
+        final var clusterNodeFile2 = ClusterNodeFile.parseKeyName(keyName);
+        assertThat(clusterNodeFile2).isNotNull();
+        assertThat(clusterNodeFile2.toString()).isEqualTo(clusterNodeFile1.toString());
+        assertThat(clusterNodeFile2.toKeyName(FileFormat.V4)).isEqualTo(keyName);
+    }
+
+    @Test
+    void test_encode_v5_roundtrip() {
+        final var clusterNodeFile1 = new ClusterNodeFile(nodeId, clusterNodeAddress);
+        final var content = clusterNodeFile1.encode(FileFormat.V5);
+
+        final var clusterNodeFile2 = ClusterNodeFile.parseClusterNodeFile(content);
+        assertThat(clusterNodeFile2).isNotNull();
+        assertThat(clusterNodeFile2.getClusterId()).isEqualTo(nodeId);
+        assertThat(clusterNodeFile2.getClusterNodeAddress().getHost()).isEqualTo("127.0.0.1");
+        assertThat(clusterNodeFile2.getClusterNodeAddress().getPort()).isEqualTo(7800);
+        assertThat(clusterNodeFile2.getCreationTimeInMillis()).isEqualTo(clusterNodeFile1.getCreationTimeInMillis());
+        assertThat(clusterNodeFile2.encode(FileFormat.V5)).isEqualTo(content);
+        assertThat(content).hasSizeLessThan(clusterNodeFile1.encode(FileFormat.V4).length());
+    }
+
+    @Test
+    void test_encode_v5_non_ascii_and_max_port() {
+        final var clusterNodeFile1 = new ClusterNodeFile("ÄÖÜ-節点", new ClusterNodeAddress("höst.example", 65535));
+
+        final var clusterNodeFile2 = ClusterNodeFile.parseClusterNodeFile(clusterNodeFile1.encode(FileFormat.V5));
+        assertThat(clusterNodeFile2).isNotNull();
+        assertThat(clusterNodeFile2.getClusterId()).isEqualTo("ÄÖÜ-節点");
+        assertThat(clusterNodeFile2.getClusterNodeAddress().getHost()).isEqualTo("höst.example");
+        assertThat(clusterNodeFile2.getClusterNodeAddress().getPort()).isEqualTo(65535);
+    }
+
+    @Test
+    void test_parseKeyName_v5_success() {
+        final var clusterNodeFile1 = new ClusterNodeFile(nodeId, clusterNodeAddress);
+        final var keyName = clusterNodeFile1.toKeyName(FileFormat.V5);
+        assertThat(keyName).doesNotContain("/", "+", "=");
+
+        final var clusterNodeFile2 = ClusterNodeFile.parseKeyName(keyName);
+        assertThat(clusterNodeFile2).isNotNull();
+        assertThat(clusterNodeFile2.toString()).isEqualTo(clusterNodeFile1.toString());
+    }
+
+    @Test
+    void test_decode_v5_truncated() {
+        final var content = ClusterNodeFileCodec.encode(new ClusterNodeFile(nodeId, clusterNodeAddress), FileFormat.V5);
+
+        for (int length = 0; length < content.length; length++) {
+            assertThat(ClusterNodeFileCodec.decode(Arrays.copyOf(content, length))).isNull();
+        }
+        assertThat(ClusterNodeFileCodec.decode(Arrays.copyOf(content, content.length + 1))).isNull();
+    }
+
+    @Test
+    void test_decode_unknown_binary_version() {
+        final var content = ClusterNodeFileCodec.encode(new ClusterNodeFile(nodeId, clusterNodeAddress), FileFormat.V5);
+        content[2] = 6;
+
+        assertThat(ClusterNodeFileCodec.decode(content)).isNull();
+    }
+
+    @Test
+    void test_parseKeyName_invalid() {
+        assertThat(ClusterNodeFile.parseKeyName("ABCD12")).isNull();
+        assertThat(ClusterNodeFile.parseKeyName("not base64!")).isNull();
+    }
 }
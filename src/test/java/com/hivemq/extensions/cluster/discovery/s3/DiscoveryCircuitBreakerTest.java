@@ -0,0 +1,123 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.cluster.discovery.s3;
+
+import com.codahale.metrics.MetricRegistry;
+import com.hivemq.extension.sdk.api.services.cluster.parameter.ClusterNodeAddress;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DiscoveryCircuitBreakerTest {
+
+    private final @NotNull S3DiscoveryMetrics s3DiscoveryMetrics = new S3DiscoveryMetrics(new MetricRegistry());
+    private final @NotNull DiscoveryCircuitBreaker circuitBreaker = new DiscoveryCircuitBreaker(s3DiscoveryMetrics);
+    private final @NotNull ClusterNodeAddress address = new ClusterNodeAddress("127.0.0.1", 7800);
+
+    @Test
+    void test_disabled() {
+        circuitBreaker.configure(0, 60_000);
+        circuitBreaker.onSuccess(List.of(new ClusterNodeFile("ABCD12", address)));
+
+        for (int i = 0; i < 10; i++) {
+            circuitBreaker.onFailure();
+        }
+
+        assertThat(circuitBreaker.tryAcquire()).isTrue();
+        assertThat(circuitBreaker.getState()).isEqualTo(DiscoveryCircuitBreaker.State.CLOSED);
+        assertThat(circuitBreaker.getLastKnownGood(360)).isNull();
+    }
+
+    @Test
+    void test_opens_after_consecutive_failures() {
+        circuitBreaker.configure(3, 60_000);
+
+        circuitBreaker.onFailure();
+        circuitBreaker.onFailure();
+        assertThat(circuitBreaker.tryAcquire()).isTrue();
+
+        circuitBreaker.onFailure();
+        assertThat(circuitBreaker.getState()).isEqualTo(DiscoveryCircuitBreaker.State.OPEN);
+        assertThat(circuitBreaker.tryAcquire()).isFalse();
+        assertThat(s3DiscoveryMetrics.getCircuitBreakerTransitions().getCount()).isOne();
+    }
+
+    @Test
+    void test_success_resets_failures() {
+        circuitBreaker.configure(2, 60_000);
+
+        circuitBreaker.onFailure();
+        circuitBreaker.onSuccess(List.of());
+        circuitBreaker.onFailure();
+
+        assertThat(circuitBreaker.getState()).isEqualTo(DiscoveryCircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void test_half_open_trial_closes_on_success() throws Exception {
+        circuitBreaker.configure(1, 10);
+        circuitBreaker.onFailure();
+
+        TimeUnit.MILLISECONDS.sleep(20);
+
+        assertThat(circuitBreaker.tryAcquire()).isTrue();
+        assertThat(circuitBreaker.getState()).isEqualTo(DiscoveryCircuitBreaker.State.HALF_OPEN);
+        circuitBreaker.onSuccess(List.of());
+        assertThat(circuitBreaker.getState()).isEqualTo(DiscoveryCircuitBreaker.State.CLOSED);
+        assertThat(s3DiscoveryMetrics.getCircuitBreakerTransitions().getCount()).isEqualTo(3);
+    }
+
+    @Test
+    void test_half_open_trial_opens_on_failure() throws Exception {
+        circuitBreaker.configure(3, 10);
+        circuitBreaker.onFailure();
+        circuitBreaker.onFailure();
+        circuitBreaker.onFailure();
+
+        TimeUnit.MILLISECONDS.sleep(20);
+
+        assertThat(circuitBreaker.tryAcquire()).isTrue();
+        circuitBreaker.onFailure();
+        assertThat(circuitBreaker.getState()).isEqualTo(DiscoveryCircuitBreaker.State.OPEN);
+        assertThat(circuitBreaker.tryAcquire()).isFalse();
+    }
+
+    @Test
+    void test_last_known_good() {
+        circuitBreaker.configure(1, 60_000);
+        assertThat(circuitBreaker.getLastKnownGood(360)).isNull();
+
+        circuitBreaker.onSuccess(List.of(new ClusterNodeFile("ABCD12", address)));
+        circuitBreaker.onFailure();
+
+        assertThat(circuitBreaker.getLastKnownGood(360)).containsExactly(address);
+    }
+
+    @Test
+    void test_last_known_good_drops_expired_entries() throws Exception {
+        circuitBreaker.configure(1, 60_000);
+        circuitBreaker.onSuccess(List.of(new ClusterNodeFile("ABCD12", address)));
+
+        TimeUnit.MILLISECONDS.sleep(1100);
+
+        assertThat(circuitBreaker.getLastKnownGood(1)).isEmpty();
+    }
+}
@@ -0,0 +1,287 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.cluster.discovery.s3;
+
+import com.codahale.metrics.MetricRegistry;
+import com.hivemq.extensions.cluster.discovery.s3.aws.DeleteObjectsResult;
+import com.hivemq.extensions.cluster.discovery.s3.aws.HiveMQS3Client;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+class ExpiredFileJanitorTest {
+
+    private final @NotNull HiveMQS3Client hiveMQS3Client = mock();
+    private final @NotNull S3DiscoveryMetrics s3DiscoveryMetrics = new S3DiscoveryMetrics(new MetricRegistry());
+    // the schedule never fires in the tests, run() is called explicitly
+    private final @NotNull ExpiredFileJanitor janitor =
+            new ExpiredFileJanitor(hiveMQS3Client, s3DiscoveryMetrics, 3_600_000);
+
+    @BeforeEach
+    void setUp() {
+        when(hiveMQS3Client.deleteObjects(any())).thenReturn(new DeleteObjectsResult(List.of(), List.of()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        janitor.shutdown();
+    }
+
+    @Test
+    void test_submit_deduplicates_keys() {
+        janitor.submit(expiredFiles("node-1", "node-2"));
+        janitor.submit(expiredFiles("node-2", "node-3"));
+
+        assertThat(janitor.getQueueSize()).isEqualTo(3);
+    }
+
+    @Test
+    void test_submit_bounded_queue() {
+        final var expiredFiles = new LinkedHashMap<String, String>();
+        for (int i = 0; i < ExpiredFileJanitor.MAX_QUEUE_SIZE + 10; i++) {
+            expiredFiles.put("node-" + i, eTag("node-" + i));
+        }
+
+        janitor.submit(expiredFiles);
+
+        assertThat(janitor.getQueueSize()).isEqualTo(ExpiredFileJanitor.MAX_QUEUE_SIZE);
+    }
+
+    @Test
+    void test_run_deletes_queued_keys() {
+        janitor.submit(expiredFiles("node-1", "node-2"));
+
+        janitor.run();
+
+        verify(hiveMQS3Client).deleteObjects(expiredFiles("node-1", "node-2"));
+        assertThat(janitor.getQueueSize()).isZero();
+        assertThat(s3DiscoveryMetrics.getDeleteSuccessCount().getCount()).isEqualTo(2);
+        assertThat(s3DiscoveryMetrics.getExpiredFilesDeleted().getCount()).isEqualTo(2);
+    }
+
+    @Test
+    void test_run_empty_queue() {
+        janitor.run();
+
+        verify(hiveMQS3Client, never()).deleteObjects(any());
+    }
+
+    @Test
+    void test_run_retries_failed_keys() {
+        when(hiveMQS3Client.deleteObjects(any())).thenReturn(new DeleteObjectsResult(List.of("node-2"), List.of()));
+        janitor.submit(expiredFiles("node-1", "node-2"));
+
+        janitor.run();
+
+        assertThat(janitor.getQueueSize()).isOne();
+        assertThat(s3DiscoveryMetrics.getDeleteSuccessCount().getCount()).isOne();
+        assertThat(s3DiscoveryMetrics.getDeleteFailedCount().getCount()).isOne();
+
+        for (int i = 1; i < ExpiredFileJanitor.MAX_ATTEMPTS; i++) {
+            janitor.run();
+        }
+
+        verify(hiveMQS3Client).deleteObjects(expiredFiles("node-1", "node-2"));
+        assertThat(janitor.getQueueSize()).isZero();
+        assertThat(s3DiscoveryMetrics.getDeleteFailedCount().getCount()).isEqualTo(ExpiredFileJanitor.MAX_ATTEMPTS);
+    }
+
+    @Test
+    void test_run_failed_key_attempted_three_times_in_total() {
+        when(hiveMQS3Client.deleteObjects(any())).thenReturn(new DeleteObjectsResult(List.of("node-1"), List.of()));
+        janitor.submit(expiredFiles("node-1"));
+
+        for (int i = 0; i < 5; i++) {
+            janitor.run();
+        }
+
+        // the first attempt and two retries
+        verify(hiveMQS3Client, times(3)).deleteObjects(expiredFiles("node-1"));
+        assertThat(janitor.getQueueSize()).isZero();
+        assertThat(s3DiscoveryMetrics.getDeleteFailedCount().getCount()).isEqualTo(3);
+    }
+
+    @Test
+    void test_run_one_request_per_batch() {
+        final var expiredFiles = new LinkedHashMap<String, String>();
+        for (int i = 0; i < 100; i++) {
+            expiredFiles.put("node-" + i, eTag("node-" + i));
+        }
+        janitor.submit(expiredFiles);
+
+        janitor.run();
+
+        // the ETags are checked by the deletion itself, no request per file
+        verify(hiveMQS3Client).deleteObjects(expiredFiles);
+        verifyNoMoreInteractions(hiveMQS3Client);
+        assertThat(s3DiscoveryMetrics.getDeleteSuccessCount().getCount()).isEqualTo(100);
+    }
+
+    @Test
+    void test_run_updated_file_not_deleted_and_not_retried() {
+        when(hiveMQS3Client.deleteObjects(any())).thenReturn(new DeleteObjectsResult(List.of(), List.of("node-2")));
+        janitor.submit(expiredFiles("node-1", "node-2"));
+
+        janitor.run();
+
+        verify(hiveMQS3Client).deleteObjects(expiredFiles("node-1", "node-2"));
+        assertThat(janitor.getQueueSize()).isZero();
+        assertThat(s3DiscoveryMetrics.getDeleteSuccessCount().getCount()).isOne();
+        assertThat(s3DiscoveryMetrics.getDeleteFailedCount().getCount()).isZero();
+        assertThat(s3DiscoveryMetrics.getExpiredFilesDeleted().getCount()).isOne();
+    }
+
+    @Test
+    void test_dropLive_removes_queued_keys() {
+        janitor.submit(expiredFiles("node-1", "node-2"));
+
+        janitor.dropLive(List.of("node-2", "node-3"));
+        janitor.run();
+
+        verify(hiveMQS3Client).deleteObjects(expiredFiles("node-1"));
+    }
+
+    @Test
+    void test_submitReplaced_deleted_with_etag() {
+        janitor.submitReplaced("node-1", eTag("node-1"));
+
+        janitor.run();
+
+        verify(hiveMQS3Client).deleteObjects(expiredFiles("node-1"));
+        assertThat(janitor.getQueueSize()).isZero();
+    }
+
+    @Test
+    void test_submitReplaced_without_etag_deleted_regardless_of_etag() {
+        janitor.submitReplaced("node-1", null);
+
+        janitor.run();
+
+        verify(hiveMQS3Client).deleteObjects(Collections.singletonMap("node-1", null));
+        assertThat(janitor.getQueueSize()).isZero();
+    }
+
+    @Test
+    void test_submitReplaced_retried_with_etag() {
+        when(hiveMQS3Client.deleteObjects(any())).thenReturn(new DeleteObjectsResult(List.of("node-1"), List.of()));
+        janitor.submitReplaced("node-1", eTag("node-1"));
+
+        for (int i = 0; i < 5; i++) {
+            janitor.run();
+        }
+
+        verify(hiveMQS3Client, times(ExpiredFileJanitor.MAX_ATTEMPTS)).deleteObjects(expiredFiles("node-1"));
+        assertThat(janitor.getQueueSize()).isZero();
+    }
+
+    @Test
+    void test_submitReplaced_bounded_queue() {
+        final var expiredFiles = new LinkedHashMap<String, String>();
+        for (int i = 0; i < ExpiredFileJanitor.MAX_QUEUE_SIZE; i++) {
+            expiredFiles.put("node-" + i, eTag("node-" + i));
+        }
+        janitor.submit(expiredFiles);
+
+        janitor.submitReplaced("own-node", eTag("own-node"));
+
+        assertThat(janitor.getQueueSize()).isEqualTo(ExpiredFileJanitor.MAX_QUEUE_SIZE);
+    }
+
+    @Test
+    void test_deleteReplaced_deletes_only_replaced_keys() {
+        janitor.submit(expiredFiles("node-1"));
+        janitor.submitReplaced("node-2", eTag("node-2"));
+
+        janitor.deleteReplaced();
+
+        verify(hiveMQS3Client).deleteObjects(expiredFiles("node-2"));
+        assertThat(janitor.getQueueSize()).isOne();
+        assertThat(s3DiscoveryMetrics.getDeleteSuccessCount().getCount()).isOne();
+    }
+
+    @Test
+    void test_deleteReplaced_failed_key_not_retried() {
+        when(hiveMQS3Client.deleteObjects(any())).thenReturn(new DeleteObjectsResult(List.of("node-1"), List.of()));
+        janitor.submitReplaced("node-1", eTag("node-1"));
+
+        janitor.deleteReplaced();
+
+        assertThat(janitor.getQueueSize()).isZero();
+        assertThat(s3DiscoveryMetrics.getDeleteFailedCount().getCount()).isOne();
+    }
+
+    @Test
+    void test_dropLive_keeps_replaced_keys() {
+        janitor.submitReplaced("node-1", eTag("node-1"));
+
+        // the previous own file is listed as live until it is deleted
+        janitor.dropLive(List.of("node-1"));
+
+        assertThat(janitor.getQueueSize()).isOne();
+    }
+
+    @Test
+    void test_run_exception_retries_all_keys() {
+        when(hiveMQS3Client.deleteObjects(any())).thenThrow(new IllegalStateException("test"));
+        janitor.submit(expiredFiles("node-1", "node-2"));
+
+        janitor.run();
+
+        assertThat(janitor.getQueueSize()).isEqualTo(2);
+        assertThat(s3DiscoveryMetrics.getDeleteFailedCount().getCount()).isEqualTo(2);
+    }
+
+    @Test
+    void test_scheduled_run() {
+        final var scheduledJanitor = new ExpiredFileJanitor(hiveMQS3Client, s3DiscoveryMetrics, 10);
+        try {
+            scheduledJanitor.submit(expiredFiles("node-1"));
+
+            verify(hiveMQS3Client, timeout(5_000)).deleteObjects(expiredFiles("node-1"));
+        } finally {
+            scheduledJanitor.shutdown();
+        }
+    }
+
+    private static @NotNull Map<String, String> expiredFiles(final @NotNull String... objectKeys) {
+        final var expiredFiles = new LinkedHashMap<String, String>();
+        for (final var objectKey : objectKeys) {
+            expiredFiles.put(objectKey, eTag(objectKey));
+        }
+        return expiredFiles;
+    }
+
+    private static @NotNull String eTag(final @NotNull String objectKey) {
+        return "\"" + objectKey + "\"";
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.cluster.discovery.s3;
+
+import com.hivemq.extension.sdk.api.services.cluster.parameter.ClusterNodeAddress;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MembershipSnapshotFileTest {
+
+    @TempDir
+    private @NotNull Path tempDir;
+
+    @Test
+    void test_read_no_snapshot() {
+        final var snapshotFile = new MembershipSnapshotFile(tempDir.resolve("membership.snapshot"));
+
+        assertThat(snapshotFile.read()).isEmpty();
+    }
+
+    @Test
+    void test_write_read() {
+        final var path = tempDir.resolve("membership.snapshot");
+        final var nodeFile1 = new ClusterNodeFile("ABCD12", new ClusterNodeAddress("127.0.0.1", 7800));
+        final var nodeFile2 = new ClusterNodeFile("EFGH34", new ClusterNodeAddress("127.0.0.2", 7800));
+
+        new MembershipSnapshotFile(path).write(List.of(nodeFile1, nodeFile2));
+
+        // a restarted node reads the snapshot with a new instance
+        final var nodeFiles = new MembershipSnapshotFile(path).read();
+        assertThat(nodeFiles).extracting(ClusterNodeFile::getClusterId).containsExactly("ABCD12", "EFGH34");
+        assertThat(nodeFiles.get(0).getCreationTimeInMillis()).isEqualTo(nodeFile1.getCreationTimeInMillis());
+        assertThat(tempDir.resolve("membership.snapshot.tmp")).doesNotExist();
+    }
+
+    @Test
+    void test_write_replaces_snapshot() {
+        final var snapshotFile = new MembershipSnapshotFile(tempDir.resolve("membership.snapshot"));
+        snapshotFile.write(List.of(new ClusterNodeFile("ABCD12", new ClusterNodeAddress("127.0.0.1", 7800))));
+
+        snapshotFile.write(List.of(new ClusterNodeFile("EFGH34", new ClusterNodeAddress("127.0.0.2", 7800))));
+
+        assertThat(snapshotFile.read()).extracting(ClusterNodeFile::getClusterId).containsExactly("EFGH34");
+    }
+
+    @Test
+    void test_write_unchanged_content_skipped() throws Exception {
+        final var path = tempDir.resolve("membership.snapshot");
+        final var snapshotFile = new MembershipSnapshotFile(path);
+        final var nodeFiles = List.of(new ClusterNodeFile("ABCD12", new ClusterNodeAddress("127.0.0.1", 7800)));
+        snapshotFile.write(nodeFiles);
+        Files.delete(path);
+
+        snapshotFile.write(nodeFiles);
+
+        assertThat(path).doesNotExist();
+    }
+
+    @Test
+    void test_read_invalid_lines_skipped() throws Exception {
+        final var path = tempDir.resolve("membership.snapshot");
+        final var nodeFile = new ClusterNodeFile("ABCD12", new ClusterNodeAddress("127.0.0.1", 7800));
+        Files.writeString(path, "invalid\n" + nodeFile + "\n");
+
+        assertThat(new MembershipSnapshotFile(path).read()).extracting(ClusterNodeFile::getClusterId)
+                .containsExactly("ABCD12");
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.cluster.discovery.s3;
+
+import com.hivemq.extension.sdk.api.services.cluster.parameter.ClusterNodeAddress;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NodeFileCacheTest {
+
+    private final @NotNull NodeFileCache nodeFileCache = new NodeFileCache();
+    private final @NotNull ClusterNodeFile nodeFile =
+            new ClusterNodeFile("ABCD12", new ClusterNodeAddress("127.0.0.1", 7800));
+
+    @Test
+    void test_get_same_etag() {
+        nodeFileCache.put(s3Object("node-1", "\"etag-1\""), nodeFile);
+
+        assertThat(nodeFileCache.get(s3Object("node-1", "\"etag-1\""))).isSameAs(nodeFile);
+    }
+
+    @Test
+    void test_get_changed_etag() {
+        nodeFileCache.put(s3Object("node-1", "\"etag-1\""), nodeFile);
+
+        assertThat(nodeFileCache.get(s3Object("node-1", "\"etag-2\""))).isNull();
+    }
+
+    @Test
+    void test_get_unknown_key() {
+        nodeFileCache.put(s3Object("node-1", "\"etag-1\""), nodeFile);
+
+        assertThat(nodeFileCache.get(s3Object("node-2", "\"etag-1\""))).isNull();
+    }
+
+    @Test
+    void test_no_etag_not_cached() {
+        nodeFileCache.put(s3Object("node-1", null), nodeFile);
+
+        assertThat(nodeFileCache.size()).isZero();
+        assertThat(nodeFileCache.get(s3Object("node-1", null))).isNull();
+    }
+
+    @Test
+    void test_retainAll_evicts_unlisted_keys() {
+        nodeFileCache.put(s3Object("node-1", "\"etag-1\""), nodeFile);
+        nodeFileCache.put(s3Object("node-2", "\"etag-2\""), nodeFile);
+
+        nodeFileCache.retainAll(List.of("node-2"));
+
+        assertThat(nodeFileCache.size()).isOne();
+        assertThat(nodeFileCache.get(s3Object("node-1", "\"etag-1\""))).isNull();
+        assertThat(nodeFileCache.get(s3Object("node-2", "\"etag-2\""))).isSameAs(nodeFile);
+    }
+
+    private static @NotNull S3Object s3Object(final @NotNull String key, final String eTag) {
+        return S3Object.builder().key(key).eTag(eTag).build();
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.cluster.discovery.s3;
+
+import com.hivemq.extension.sdk.api.services.cluster.parameter.ClusterNodeAddress;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.awscore.exception.AwsErrorDetails;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NodeFileDownloaderTest {
+
+    private final @NotNull NodeFileDownloader nodeFileDownloader = new NodeFileDownloader();
+
+    @AfterEach
+    void tearDown() {
+        nodeFileDownloader.shutdown();
+    }
+
+    @Test
+    void test_download_parallel_same_order_as_sequential() {
+        final var s3Objects = createS3Objects(50);
+
+        final var sequential = nodeFileDownloader.download(s3Objects, 1, false, this::createNodeFile, (o, e) -> {
+        });
+        final var parallel = nodeFileDownloader.download(s3Objects, 8, false, s3Object -> {
+            sleepRandomly();
+            return createNodeFile(s3Object);
+        }, (o, e) -> {
+        });
+
+        assertThat(parallel).extracting(ClusterNodeFile::getClusterId)
+                .containsExactlyElementsOf(sequential.stream().map(ClusterNodeFile::getClusterId).toList());
+    }
+
+    @Test
+    void test_download_parallel_respects_max_concurrency() {
+        final var inFlight = new AtomicInteger();
+        final var maxInFlight = new AtomicInteger();
+
+        nodeFileDownloader.download(createS3Objects(40), 4, false, s3Object -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            sleepRandomly();
+            inFlight.decrementAndGet();
+            return createNodeFile(s3Object);
+        }, (o, e) -> {
+        });
+
+        assertThat(maxInFlight.get()).isBetween(1, 4);
+    }
+
+    @Test
+    void test_download_failed_files_are_skipped_and_reported() {
+        final var failedKeys = new CopyOnWriteArrayList<String>();
+
+        final var nodeFiles = nodeFileDownloader.download(createS3Objects(10), 4, false, s3Object -> {
+            if (s3Object.key().endsWith("3")) {
+                throw S3Exception.builder().message("failed").build();
+            }
+            return createNodeFile(s3Object);
+        }, (s3Object, e) -> failedKeys.add(s3Object.key()));
+
+        assertThat(nodeFiles).hasSize(9);
+        assertThat(failedKeys).containsExactly("node-3");
+    }
+
+    @Test
+    void test_download_adaptive_backs_off_on_slow_down() {
+        final var slowDown = S3Exception.builder()
+                .statusCode(503)
+                .awsErrorDetails(AwsErrorDetails.builder().errorCode("SlowDown").build())
+                .build();
+
+        nodeFileDownloader.download(createS3Objects(20), 16, true, s3Object -> {
+            throw slowDown;
+        }, (o, e) -> {
+        });
+
+        assertThat(nodeFileDownloader.getConcurrencyLimit()).isLessThan(16);
+    }
+
+    @Test
+    void test_download_non_adaptive_keeps_max_concurrency() {
+        nodeFileDownloader.download(createS3Objects(20), 16, false, s3Object -> {
+            throw S3Exception.builder().statusCode(503).build();
+        }, (o, e) -> {
+        });
+
+        assertThat(nodeFileDownloader.getConcurrencyLimit()).isEqualTo(16);
+    }
+
+    @Test
+    void test_download_interrupted_releases_permits_of_not_started_downloads() throws Exception {
+        // the only thread of the executor is blocked, so the downloads of the batch are queued and never start
+        final var executorService = Executors.newSingleThreadExecutor();
+        final var blocker = new CountDownLatch(1);
+        executorService.execute(() -> {
+            try {
+                blocker.await();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        final var downloader = new NodeFileDownloader(executorService);
+        try {
+            final var failure = new CompletableFuture<Throwable>();
+            final var downloadThread = new Thread(() -> {
+                try {
+                    downloader.download(createS3Objects(6), 4, false, this::createNodeFile, (o, e) -> {
+                    });
+                    failure.complete(null);
+                } catch (final Throwable t) {
+                    failure.complete(t);
+                }
+            });
+            downloadThread.start();
+            // all 4 permits are taken, the thread waits for a permit for the 5th download
+            while (downloadThread.getState() != Thread.State.WAITING) {
+                Thread.onSpinWait();
+            }
+            downloadThread.interrupt();
+            assertThat(failure.get(5, TimeUnit.SECONDS)).isInstanceOf(IllegalStateException.class)
+                    .hasMessageContaining("Interrupted");
+            blocker.countDown();
+
+            // without the permits of the cancelled downloads the next batch would wait forever
+            final var nodeFiles = CompletableFuture.supplyAsync(() -> downloader.download(createS3Objects(8),
+                    4,
+                    false,
+                    this::createNodeFile,
+                    (o, e) -> {
+                    }));
+
+            assertThat(nodeFiles.get(5, TimeUnit.SECONDS)).hasSize(8);
+        } finally {
+            downloader.shutdown();
+        }
+    }
+
+    private @NotNull ClusterNodeFile createNodeFile(final @NotNull S3Object s3Object) {
+        return new ClusterNodeFile(s3Object.key(), new ClusterNodeAddress("127.0.0.1", 7800));
+    }
+
+    private static @NotNull List<S3Object> createS3Objects(final int count) {
+        final var s3Objects = new ArrayList<S3Object>(count);
+        for (int i = 0; i < count; i++) {
+            s3Objects.add(S3Object.builder().key("node-" + i).build());
+        }
+        return s3Objects;
+    }
+
+    private static void sleepRandomly() {
+        try {
+            TimeUnit.MILLISECONDS.sleep(ThreadLocalRandom.current().nextInt(5));
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
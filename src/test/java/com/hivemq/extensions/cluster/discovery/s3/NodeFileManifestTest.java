@@ -0,0 +1,153 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.cluster.discovery.s3;
+
+import com.hivemq.extension.sdk.api.services.cluster.parameter.ClusterNodeAddress;
+import com.hivemq.extensions.cluster.discovery.s3.aws.HiveMQS3Client;
+import com.hivemq.extensions.cluster.discovery.s3.aws.S3ObjectContent;
+import com.hivemq.extensions.cluster.discovery.s3.config.FileFormat;
+import com.hivemq.extensions.cluster.discovery.s3.config.ResolvedS3Config;
+import com.hivemq.extensions.cluster.discovery.s3.util.ClusterNodeFileUtil;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class NodeFileManifestTest {
+
+    private static final @NotNull String MANIFEST_KEY = "hivemq/cluster/nodes/manifest";
+
+    private final @NotNull HiveMQS3Client hiveMQS3Client = mock();
+    private final @NotNull NodeFileManifest nodeFileManifest = new NodeFileManifest(hiveMQS3Client);
+    private final @NotNull ClusterNodeFile nodeFile1 =
+            new ClusterNodeFile("ABCD12", new ClusterNodeAddress("127.0.0.1", 7800));
+    private final @NotNull ClusterNodeFile nodeFile2 =
+            new ClusterNodeFile("EFGH34", new ClusterNodeAddress("127.0.0.2", 7800));
+
+    @BeforeEach
+    void setUp() {
+        final ResolvedS3Config s3Config = mock();
+        when(s3Config.getFilePrefix()).thenReturn("hivemq/cluster/nodes/");
+        when(s3Config.getFileExpirationInSeconds()).thenReturn(360L);
+        when(s3Config.getFileFormat()).thenReturn(FileFormat.V4);
+        when(hiveMQS3Client.getS3Config()).thenReturn(s3Config);
+    }
+
+    @Test
+    void test_serialize_parse_roundtrip() {
+        final var nodeFiles = NodeFileManifest.parse(NodeFileManifest.serialize(List.of(nodeFile1, nodeFile2), FileFormat.V4));
+
+        assertThat(nodeFiles).extracting(ClusterNodeFile::getClusterId).containsExactly("ABCD12", "EFGH34");
+    }
+
+    @Test
+    void test_parse_skips_invalid_lines() {
+        final var content = nodeFile1 + "\n\n" + ClusterNodeFileUtil.createClusterNodeFileString("3",
+                "3",
+                "3",
+                "3",
+                "3") + "\n";
+
+        assertThat(NodeFileManifest.parse(content)).extracting(ClusterNodeFile::getClusterId)
+                .containsExactly("ABCD12");
+        assertThat(NodeFileManifest.parse(null)).isEmpty();
+    }
+
+    @Test
+    void test_merge_replaces_and_removes_entries() {
+        final var content = NodeFileManifest.serialize(List.of(nodeFile1, nodeFile2), FileFormat.V4);
+        final var newNodeFile1 = new ClusterNodeFile("ABCD12", new ClusterNodeAddress("127.0.0.3", 7800));
+
+        final var merged =
+                NodeFileManifest.parse(NodeFileManifest.merge(content, newNodeFile1, "EFGH34", 360, FileFormat.V4));
+
+        assertThat(merged).extracting(ClusterNodeFile::getClusterNodeAddress)
+                .containsExactly(newNodeFile1.getClusterNodeAddress());
+    }
+
+    @Test
+    void test_merge_prunes_expired_entries() {
+        final var expiredNodeFile = ClusterNodeFileUtil.createClusterNodeFileString(ClusterNodeFile.CONTENT_VERSION,
+                Long.toString(System.currentTimeMillis() - 3_600_000),
+                "IJKL56",
+                "127.0.0.4",
+                "7800");
+        final var content = expiredNodeFile + "\n" + nodeFile2 + "\n";
+
+        final var merged =
+                NodeFileManifest.parse(NodeFileManifest.merge(content, nodeFile1, null, 360, FileFormat.V4));
+
+        assertThat(merged).extracting(ClusterNodeFile::getClusterId).containsExactly("ABCD12", "EFGH34");
+    }
+
+    @Test
+    void test_merge_rewrites_entries_in_file_format() {
+        final var content = NodeFileManifest.serialize(List.of(nodeFile2), FileFormat.V4);
+
+        final var merged = NodeFileManifest.merge(content, nodeFile1, null, 360, FileFormat.V5);
+
+        assertThat(merged).isEqualTo(NodeFileManifest.serialize(List.of(nodeFile1, nodeFile2), FileFormat.V5));
+        assertThat(NodeFileManifest.parse(merged)).extracting(ClusterNodeFile::getClusterId)
+                .containsExactly("ABCD12", "EFGH34");
+    }
+
+    @Test
+    void test_update_creates_manifest() {
+        when(hiveMQS3Client.saveObjectIfMatch(any(), any(), any())).thenReturn(true);
+
+        nodeFileManifest.update(nodeFile1, null);
+
+        verify(hiveMQS3Client).saveObjectIfMatch(eq(MANIFEST_KEY), eq(nodeFile1 + "\n"), isNull());
+    }
+
+    @Test
+    void test_update_retries_on_concurrent_modification() {
+        when(hiveMQS3Client.getObjectWithETag(MANIFEST_KEY)).thenReturn(new S3ObjectContent("", "\"etag-1\""))
+                .thenReturn(new S3ObjectContent(nodeFile2 + "\n", "\"etag-2\""));
+        when(hiveMQS3Client.saveObjectIfMatch(any(), any(), any())).thenReturn(false).thenReturn(true);
+
+        nodeFileManifest.update(nodeFile1, null);
+
+        verify(hiveMQS3Client).saveObjectIfMatch(MANIFEST_KEY,
+                NodeFileManifest.serialize(List.of(nodeFile1, nodeFile2), FileFormat.V4),
+                "\"etag-2\"");
+    }
+
+    @Test
+    void test_update_fails_after_max_attempts() {
+        when(hiveMQS3Client.saveObjectIfMatch(any(), any(), any())).thenReturn(false);
+
+        assertThatThrownBy(() -> nodeFileManifest.update(nodeFile1, null)).isInstanceOf(IllegalStateException.class);
+        verify(hiveMQS3Client, times(8)).saveObjectIfMatch(any(), any(), any());
+    }
+
+    @Test
+    void test_read_missing_manifest() {
+        assertThat(nodeFileManifest.read()).isEmpty();
+    }
+}
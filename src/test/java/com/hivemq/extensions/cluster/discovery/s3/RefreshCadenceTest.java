@@ -0,0 +1,124 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.cluster.discovery.s3;
+
+import com.hivemq.extension.sdk.api.services.cluster.parameter.ClusterNodeAddress;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RefreshCadenceTest {
+
+    private final @NotNull RefreshCadence refreshCadence = new RefreshCadence();
+    private final @NotNull ClusterNodeAddress address1 = new ClusterNodeAddress("127.0.0.1", 7800);
+    private final @NotNull ClusterNodeAddress address2 = new ClusterNodeAddress("127.0.0.2", 7800);
+
+    @Test
+    void test_back_off_while_membership_is_stable() {
+        refreshCadence.configure(60_000, 600_000);
+
+        refresh(Map.of("ABCD12", address1));
+        assertThat(refreshCadence.getIntervalMillis()).isEqualTo(60_000);
+        assertThat(refreshCadence.getSkippedCycleNodeAddresses()).isNull();
+
+        refresh(Map.of("ABCD12", address1));
+        assertThat(refreshCadence.getIntervalMillis()).isEqualTo(120_000);
+        assertThat(refreshCadence.getSkippedCycleNodeAddresses()).containsExactly(address1);
+
+        refresh(Map.of("ABCD12", address1));
+        refresh(Map.of("ABCD12", address1));
+        refresh(Map.of("ABCD12", address1));
+        refresh(Map.of("ABCD12", address1));
+        assertThat(refreshCadence.getIntervalMillis()).isEqualTo(600_000);
+    }
+
+    @Test
+    void test_join_resets_interval() {
+        refreshCadence.configure(60_000, 600_000);
+        refresh(Map.of("ABCD12", address1));
+        refresh(Map.of("ABCD12", address1));
+
+        refresh(Map.of("ABCD12", address1, "EFGH34", address2));
+
+        assertThat(refreshCadence.getIntervalMillis()).isEqualTo(60_000);
+        assertThat(refreshCadence.getSkippedCycleNodeAddresses()).isNull();
+    }
+
+    @Test
+    void test_leave_resets_interval() {
+        refreshCadence.configure(60_000, 600_000);
+        refresh(Map.of("ABCD12", address1, "EFGH34", address2));
+        refresh(Map.of("ABCD12", address1, "EFGH34", address2));
+
+        refresh(Map.of("ABCD12", address1));
+
+        assertThat(refreshCadence.getIntervalMillis()).isEqualTo(60_000);
+    }
+
+    @Test
+    void test_restart_with_same_address_resets_interval() {
+        refreshCadence.configure(60_000, 600_000);
+        refresh(Map.of("ABCD12", address1));
+        refresh(Map.of("ABCD12", address1));
+
+        refresh(Map.of("IJKL56", address1));
+
+        assertThat(refreshCadence.getIntervalMillis()).isEqualTo(60_000);
+    }
+
+    @Test
+    void test_reset() {
+        refreshCadence.configure(60_000, 600_000);
+        refresh(Map.of("ABCD12", address1));
+        refresh(Map.of("ABCD12", address1));
+
+        refreshCadence.reset();
+
+        assertThat(refreshCadence.getIntervalMillis()).isEqualTo(60_000);
+        assertThat(refreshCadence.getSkippedCycleNodeAddresses()).isNull();
+    }
+
+    @Test
+    void test_back_off_disabled() {
+        refreshCadence.configure(60_000, 0);
+        refresh(Map.of("ABCD12", address1));
+        refresh(Map.of("ABCD12", address1));
+
+        assertThat(refreshCadence.getIntervalMillis()).isEqualTo(60_000);
+        assertThat(refreshCadence.getSkippedCycleNodeAddresses()).isNull();
+    }
+
+    @Test
+    void test_cycle_due_after_interval() throws Exception {
+        refreshCadence.configure(10, 1_000);
+        refresh(Map.of("ABCD12", address1));
+        refresh(Map.of("ABCD12", address1));
+
+        TimeUnit.MILLISECONDS.sleep(30);
+
+        assertThat(refreshCadence.getSkippedCycleNodeAddresses()).isNull();
+    }
+
+    private void refresh(final @NotNull Map<String, ClusterNodeAddress> members) {
+        refreshCadence.onRefresh(members, List.copyOf(members.values()));
+    }
+}
@@ -16,18 +16,27 @@
 
 package com.hivemq.extensions.cluster.discovery.s3;
 
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
 import com.hivemq.extension.sdk.api.parameter.ExtensionInformation;
 import com.hivemq.extension.sdk.api.services.cluster.parameter.ClusterDiscoveryInput;
 import com.hivemq.extension.sdk.api.services.cluster.parameter.ClusterDiscoveryOutput;
 import com.hivemq.extension.sdk.api.services.cluster.parameter.ClusterNodeAddress;
+import com.hivemq.extensions.cluster.discovery.s3.aws.DeleteObjectsResult;
 import com.hivemq.extensions.cluster.discovery.s3.aws.HiveMQS3Client;
 import com.hivemq.extensions.cluster.discovery.s3.aws.S3BucketResponse;
+import com.hivemq.extensions.cluster.discovery.s3.aws.S3ObjectContent;
+import com.hivemq.extensions.cluster.discovery.s3.aws.S3StandIn;
 import com.hivemq.extensions.cluster.discovery.s3.config.ConfigurationReader;
+import com.hivemq.extensions.cluster.discovery.s3.config.FileFormat;
 import com.hivemq.extensions.cluster.discovery.s3.util.ClusterNodeFileUtil;
 import org.jetbrains.annotations.NotNull;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import software.amazon.awssdk.http.SdkHttpResponse;
 import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
 import software.amazon.awssdk.services.s3.model.NoSuchBucketException;
 import software.amazon.awssdk.services.s3.model.S3Exception;
@@ -36,15 +45,28 @@ import software.amazon.awssdk.services.s3.model.S3Object;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
 import static com.hivemq.extensions.cluster.discovery.s3.ExtensionConstants.EXTENSION_CONFIGURATION;
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.anyList;
+import static org.mockito.Mockito.argThat;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.startsWith;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -56,8 +78,12 @@ class S3DiscoveryCallbackTest {
     private final @NotNull ClusterDiscoveryOutput clusterDiscoveryOutput = mock();
     private final @NotNull S3DiscoveryMetrics s3DiscoveryMetrics = mock();
     private final @NotNull HiveMQS3Client hiveMQS3Client = mock();
+    private final @NotNull Counter deleteSuccessCount = mock();
+    private final @NotNull Counter deleteFailedCount = mock();
+    private final @NotNull Counter queryCoalescedCount = mock();
 
     private @NotNull ConfigurationReader configurationReader;
+    private @NotNull MembershipSnapshotFile membershipSnapshotFile;
     private @NotNull S3DiscoveryCallback s3DiscoveryCallback;
 
     @BeforeEach
@@ -67,6 +93,11 @@ class S3DiscoveryCallbackTest {
         when(extensionInformation.getExtensionHomeFolder()).thenReturn(tempDir);
         when(s3DiscoveryMetrics.getQuerySuccessCount()).thenReturn(mock());
         when(s3DiscoveryMetrics.getQueryFailedCount()).thenReturn(mock());
+        when(s3DiscoveryMetrics.getQueryCoalescedCount()).thenReturn(queryCoalescedCount);
+        when(s3DiscoveryMetrics.getDeleteSuccessCount()).thenReturn(deleteSuccessCount);
+        when(s3DiscoveryMetrics.getDeleteFailedCount()).thenReturn(deleteFailedCount);
+        when(s3DiscoveryMetrics.getExpiredFilesDeleted()).thenReturn(mock());
+        when(s3DiscoveryMetrics.getCircuitBreakerTransitions()).thenReturn(mock());
 
         final var configPath = extensionInformation.getExtensionHomeFolder().toPath().resolve(EXTENSION_CONFIGURATION);
         Files.createDirectories(configPath.getParent());
@@ -83,8 +114,10 @@ class S3DiscoveryCallbackTest {
         final var s3Config = configurationReader.readConfiguration();
         when(hiveMQS3Client.getS3Config()).thenReturn(s3Config);
         when(hiveMQS3Client.checkBucket()).thenReturn(new S3BucketResponse("hivemq123456", 200, null));
+        when(hiveMQS3Client.deleteObjects(any())).thenReturn(new DeleteObjectsResult(List.of(), List.of()));
 
-        s3DiscoveryCallback = new S3DiscoveryCallback(hiveMQS3Client, s3DiscoveryMetrics);
+        membershipSnapshotFile = new MembershipSnapshotFile(tempDir.toPath().resolve("membership.snapshot"));
+        s3DiscoveryCallback = new S3DiscoveryCallback(hiveMQS3Client, membershipSnapshotFile, s3DiscoveryMetrics);
     }
 
     @Test
@@ -319,12 +352,40 @@ class S3DiscoveryCallbackTest {
     void test_init_no_config() throws IOException {
         Files.delete(extensionInformation.getExtensionHomeFolder().toPath().resolve(EXTENSION_CONFIGURATION));
 
-        s3DiscoveryCallback = new S3DiscoveryCallback(configurationReader, s3DiscoveryMetrics);
+        s3DiscoveryCallback =
+                new S3DiscoveryCallback(configurationReader, membershipSnapshotFile, s3DiscoveryMetrics);
         s3DiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
 
         verify(clusterDiscoveryOutput, never()).provideCurrentNodes(anyList());
     }
 
+    @Test
+    void test_reload_concurrent_calls_share_discovery_cycle() throws Exception {
+        when(hiveMQS3Client.getObjects()).then(ignored -> extendedObjectList());
+        when(hiveMQS3Client.getObject(any())).then(ignored -> createS3Object());
+        final var bucketChecked = new CountDownLatch(1);
+        final var bucketResponse = new CompletableFuture<S3BucketResponse>();
+        when(hiveMQS3Client.checkBucket()).then(ignored -> {
+            bucketChecked.countDown();
+            return bucketResponse.get();
+        });
+
+        final var firstReload =
+                CompletableFuture.runAsync(() -> s3DiscoveryCallback.reload(clusterDiscoveryInput,
+                        clusterDiscoveryOutput));
+        assertThat(bucketChecked.await(10, TimeUnit.SECONDS)).isTrue();
+        final var secondReload =
+                CompletableFuture.runAsync(() -> s3DiscoveryCallback.reload(clusterDiscoveryInput,
+                        clusterDiscoveryOutput));
+        verify(queryCoalescedCount, timeout(10_000)).inc();
+        bucketResponse.complete(new S3BucketResponse("hivemq123456", 200, null));
+        CompletableFuture.allOf(firstReload, secondReload).get(10, TimeUnit.SECONDS);
+
+        verify(hiveMQS3Client).checkBucket();
+        verify(hiveMQS3Client).getObjects();
+        verify(clusterDiscoveryOutput, times(2)).provideCurrentNodes(anyList());
+    }
+
     @Test
     void test_reload_success_same_config() {
         s3DiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
@@ -455,6 +516,7 @@ class S3DiscoveryCallbackTest {
         s3DiscoveryCallback.destroy(clusterDiscoveryInput);
 
         verify(hiveMQS3Client, times(1)).deleteObject(any());
+        verify(hiveMQS3Client).close();
     }
 
     @Test
@@ -476,6 +538,567 @@ class S3DiscoveryCallbackTest {
         verify(hiveMQS3Client, times(1)).deleteObject(any());
     }
 
+    @Test
+    void test_reload_unchanged_node_file_served_from_cache() {
+        when(hiveMQS3Client.getObjects()).then(ignored -> objectListWithETag("ABCD12", "\"etag-1\""));
+        when(hiveMQS3Client.getObject(any())).then(ignored -> createS3Object());
+
+        s3DiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+        s3DiscoveryCallback.reload(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        verify(hiveMQS3Client, times(1)).getObject(any());
+        verify(clusterDiscoveryOutput, times(2)).provideCurrentNodes(argThat(addresses -> addresses.size() == 1));
+    }
+
+    @Test
+    void test_reload_changed_node_file_downloaded_again() {
+        when(hiveMQS3Client.getObjects()).then(ignored -> objectListWithETag("ABCD12", "\"etag-1\""))
+                .then(ignored -> objectListWithETag("ABCD12", "\"etag-2\""));
+        when(hiveMQS3Client.getObject(any())).then(ignored -> createS3Object());
+
+        s3DiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+        s3DiscoveryCallback.reload(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        verify(hiveMQS3Client, times(2)).getObject(any());
+    }
+
+    @Test
+    void test_init_own_node_file_not_downloaded() {
+        when(hiveMQS3Client.getObjects()).then(ignored -> objectListWithETag("hivemq/cluster/nodes/ABCD12",
+                "\"etag-1\""));
+
+        s3DiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        verify(hiveMQS3Client, never()).getObject(any());
+        verify(clusterDiscoveryOutput).provideCurrentNodes(List.of(clusterDiscoveryInput.getOwnAddress()));
+    }
+
+    @Test
+    void test_init_stale_node_file_deleted_without_download() {
+        final var listObjectsV2Response = mock(ListObjectsV2Response.class);
+        final var objects = new ArrayList<S3Object>();
+        final var lastModified = Instant.now().minusSeconds(600);
+        objects.add(S3Object.builder().key("ABCD12").lastModified(lastModified).eTag("\"etag-1\"").build());
+        when(listObjectsV2Response.contents()).thenReturn(objects);
+        when(hiveMQS3Client.getObjects()).thenReturn(listObjectsV2Response);
+
+        s3DiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        verify(hiveMQS3Client, never()).getObject(any());
+        verify(hiveMQS3Client, timeout(10_000)).deleteObjects(Map.of("ABCD12", "\"etag-1\""));
+        verify(clusterDiscoveryOutput).provideCurrentNodes(new ArrayList<>());
+    }
+
+    @Test
+    void test_init_expired_node_files_deleted_in_background() {
+        final var listObjectsV2Response = mock(ListObjectsV2Response.class);
+        final var objects = new ArrayList<S3Object>();
+        final var lastModified = Instant.now().minusSeconds(600);
+        objects.add(S3Object.builder().key("EFGH34").lastModified(lastModified).eTag("\"etag-1\"").build());
+        objects.add(S3Object.builder().key("IJKL56").lastModified(lastModified).eTag("\"etag-2\"").build());
+        when(listObjectsV2Response.contents()).thenReturn(objects);
+        when(hiveMQS3Client.getObjects()).thenReturn(listObjectsV2Response);
+        when(hiveMQS3Client.deleteObjects(any())).thenReturn(new DeleteObjectsResult(List.of("IJKL56"), List.of()));
+
+        s3DiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        // the node addresses are provided before the expired files are deleted by the janitor
+        verify(clusterDiscoveryOutput).provideCurrentNodes(new ArrayList<>());
+        verify(hiveMQS3Client, timeout(10_000)).deleteObjects(Map.of("EFGH34",
+                "\"etag-1\"",
+                "IJKL56",
+                "\"etag-2\""));
+        verify(hiveMQS3Client, never()).deleteObject(any());
+        verify(deleteSuccessCount, timeout(10_000)).inc(1);
+        verify(deleteFailedCount, timeout(10_000)).inc(1);
+    }
+
+    @Test
+    void test_init_expired_node_files_left_to_elected_janitor() {
+        final var janitorGauge = ArgumentCaptor.<Gauge<Integer>>captor();
+        verify(s3DiscoveryMetrics).registerJanitorGauge(janitorGauge.capture());
+        final var queueSizeGauge = ArgumentCaptor.<Gauge<Integer>>captor();
+        verify(s3DiscoveryMetrics).registerExpiredFilesQueueSizeGauge(queueSizeGauge.capture());
+        // the live node with the lowest cluster id is the janitor
+        final var janitorNodeFile = new ClusterNodeFile("AAAA00", new ClusterNodeAddress("127.0.0.2", 7800));
+        final var listObjectsV2Response = mock(ListObjectsV2Response.class);
+        final var objects = new ArrayList<S3Object>();
+        objects.add(S3Object.builder().key("AAAA00").build());
+        final var lastModified = Instant.now().minusSeconds(600);
+        objects.add(S3Object.builder().key("EFGH34").lastModified(lastModified).eTag("\"etag-1\"").build());
+        when(listObjectsV2Response.contents()).thenReturn(objects);
+        when(hiveMQS3Client.getObjects()).thenReturn(listObjectsV2Response);
+        when(hiveMQS3Client.getObject("AAAA00")).thenReturn(janitorNodeFile.toString());
+
+        s3DiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        verify(clusterDiscoveryOutput).provideCurrentNodes(List.of(janitorNodeFile.getClusterNodeAddress()));
+        assertThat(janitorGauge.getValue().getValue()).isZero();
+        assertThat(queueSizeGauge.getValue().getValue()).isZero();
+
+        // the janitor is gone, so this node takes over
+        when(listObjectsV2Response.contents()).thenReturn(List.of(objects.get(1)));
+        s3DiscoveryCallback.reload(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        assertThat(janitorGauge.getValue().getValue()).isOne();
+        verify(hiveMQS3Client, timeout(10_000)).deleteObjects(Map.of("EFGH34", "\"etag-1\""));
+    }
+
+    @Test
+    void test_reload_expired_node_file_live_again_not_deleted() {
+        final var queueSizeGauge = ArgumentCaptor.<Gauge<Integer>>captor();
+        verify(s3DiscoveryMetrics).registerExpiredFilesQueueSizeGauge(queueSizeGauge.capture());
+        final var listObjectsV2Response = mock(ListObjectsV2Response.class);
+        when(listObjectsV2Response.contents()).thenReturn(List.of(S3Object.builder()
+                .key("EFGH34")
+                .lastModified(Instant.now().minusSeconds(600))
+                .eTag("\"etag-1\"")
+                .build()));
+        when(hiveMQS3Client.getObjects()).thenReturn(listObjectsV2Response);
+
+        s3DiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        assertThat(queueSizeGauge.getValue().getValue()).isOne();
+
+        // the node rewrote its file under the same key before the janitor deleted it
+        final var liveNodeFile = new ClusterNodeFile("EFGH34", new ClusterNodeAddress("127.0.0.2", 7800));
+        when(listObjectsV2Response.contents()).thenReturn(List.of(S3Object.builder()
+                .key("EFGH34")
+                .lastModified(Instant.now())
+                .eTag("\"etag-2\"")
+                .build()));
+        when(hiveMQS3Client.getObject("EFGH34")).thenReturn(liveNodeFile.toString());
+        s3DiscoveryCallback.reload(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        assertThat(queueSizeGauge.getValue().getValue()).isZero();
+        verify(clusterDiscoveryOutput).provideCurrentNodes(List.of(liveNodeFile.getClusterNodeAddress()));
+    }
+
+    @Test
+    void test_init_stale_node_file_compensates_clock_skew() {
+        // the clock of S3 is 10 minutes behind the local clock, so the file is not expired
+        final var serverNow = Instant.now().minusSeconds(600);
+        final var listObjectsV2Response = mock(ListObjectsV2Response.class);
+        when(listObjectsV2Response.sdkHttpResponse()).thenReturn(SdkHttpResponse.builder()
+                .statusCode(200)
+                .putHeader("Date", DateTimeFormatter.RFC_1123_DATE_TIME.format(serverNow.atZone(ZoneOffset.UTC)))
+                .build());
+        final var objects = new ArrayList<S3Object>();
+        objects.add(S3Object.builder().key("ABCD12").lastModified(serverNow.minusSeconds(10)).build());
+        when(listObjectsV2Response.contents()).thenReturn(objects);
+        when(hiveMQS3Client.getObjects()).thenReturn(listObjectsV2Response);
+        when(hiveMQS3Client.getObject(any())).then(ignored -> createS3Object());
+
+        s3DiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        verify(hiveMQS3Client).getObject("ABCD12");
+        verify(hiveMQS3Client, never()).deleteObjects(any());
+        verify(clusterDiscoveryOutput).provideCurrentNodes(argThat(nodeAddresses -> nodeAddresses.size() == 1));
+    }
+
+    @Test
+    void test_init_key_layout_resolved_from_listing() throws Exception {
+        useFileLayout("key");
+        final var otherNodeFile = new ClusterNodeFile("EFGH34", new ClusterNodeAddress("127.0.0.2", 7800));
+        when(hiveMQS3Client.getObjects()).then(ignored -> objectListWithETag(
+                "hivemq/cluster/nodes/EFGH34/" + otherNodeFile.toKeyName(FileFormat.V4),
+                "\"etag-1\""));
+
+        s3DiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        verify(hiveMQS3Client).saveObject(startsWith("hivemq/cluster/nodes/ABCD12/"), any());
+        verify(hiveMQS3Client, never()).getObject(any());
+        verify(clusterDiscoveryOutput).provideCurrentNodes(List.of(otherNodeFile.getClusterNodeAddress()));
+    }
+
+    @Test
+    void test_reload_key_layout_replaces_own_file() throws Exception {
+        useFileLayout("key");
+        final var savedObjectKeys = new ArrayList<String>();
+        doAnswer(invocation -> {
+            savedObjectKeys.add(invocation.getArgument(0));
+            return "\"etag-" + savedObjectKeys.size() + "\"";
+        }).when(hiveMQS3Client).saveObject(any(), any());
+
+        s3DiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+        // wait for file to expire
+        TimeUnit.MILLISECONDS.sleep(1500);
+        s3DiscoveryCallback.reload(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        assertThat(savedObjectKeys).hasSize(2).doesNotHaveDuplicates();
+        // the previous own file is deleted in the background, only if it still has the ETag returned when it was saved
+        verify(hiveMQS3Client, never()).deleteObject(savedObjectKeys.get(0));
+        verify(hiveMQS3Client, timeout(10_000)).deleteObjects(Map.of(savedObjectKeys.get(0), "\"etag-1\""));
+
+        s3DiscoveryCallback.destroy(clusterDiscoveryInput);
+        verify(hiveMQS3Client).deleteObject(savedObjectKeys.get(1));
+    }
+
+    @Test
+    void test_destroy_key_layout_deletes_replaced_own_file() throws Exception {
+        try (final var s3StandIn = S3StandIn.start("hivemq123456")) {
+            final var configuration = """
+                    s3-bucket-region:us-east-1
+                    s3-bucket-name:hivemq123456
+                    file-prefix:hivemq/cluster/nodes/
+                    file-expiration:5
+                    update-interval:1
+                    s3-endpoint:%s
+                    s3-endpoint-region:us-east-1
+                    s3-path-style-access:true
+                    credentials-type:access_key
+                    credentials-access-key-id:access-key-id
+                    credentials-secret-access-key:secret-access-key
+                    file-layout:key""".formatted(s3StandIn.getEndpoint());
+            Files.writeString(extensionInformation.getExtensionHomeFolder().toPath().resolve(EXTENSION_CONFIGURATION),
+                    configuration);
+            final var s3DiscoveryCallback = new S3DiscoveryCallback(new HiveMQS3Client(new ConfigurationReader(
+                    extensionInformation)), membershipSnapshotFile, new S3DiscoveryMetrics(new MetricRegistry()));
+
+            s3DiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+            // wait for file to expire
+            TimeUnit.MILLISECONDS.sleep(1500);
+            s3DiscoveryCallback.reload(clusterDiscoveryInput, clusterDiscoveryOutput);
+            assertThat(s3StandIn.getObjectKeys()).hasSize(2);
+
+            // destroyed before the janitor deleted the previous own file
+            s3DiscoveryCallback.destroy(clusterDiscoveryInput);
+
+            assertThat(s3StandIn.getObjectKeys()).isEmpty();
+        }
+    }
+
+    @Test
+    void test_init_manifest_layout_resolved_from_manifest() throws Exception {
+        useFileLayout("manifest");
+        final var otherNodeFile = new ClusterNodeFile("EFGH34", new ClusterNodeAddress("127.0.0.2", 7800));
+        when(hiveMQS3Client.getObjectWithETag("hivemq/cluster/nodes/manifest")).thenReturn(new S3ObjectContent(
+                otherNodeFile + "\n",
+                "\"etag-1\""));
+        when(hiveMQS3Client.saveObjectIfMatch(any(), any(), any())).thenReturn(true);
+
+        s3DiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        verify(hiveMQS3Client).saveObjectIfMatch(eq("hivemq/cluster/nodes/manifest"),
+                argThat(content -> content.contains(otherNodeFile.toString())),
+                eq("\"etag-1\""));
+        // the objects are listed until no node in another layout is found
+        verify(hiveMQS3Client).getObjects();
+        verify(hiveMQS3Client, never()).saveObject(any(), any());
+        verify(clusterDiscoveryOutput).provideCurrentNodes(List.of(otherNodeFile.getClusterNodeAddress()));
+
+        s3DiscoveryCallback.destroy(clusterDiscoveryInput);
+        verify(hiveMQS3Client, times(2)).saveObjectIfMatch(any(), any(), any());
+        verify(hiveMQS3Client, never()).deleteObject(any());
+    }
+
+    @Test
+    void test_init_object_layout_reads_listed_manifest() {
+        final var otherNodeFile = new ClusterNodeFile("EFGH34", new ClusterNodeAddress("127.0.0.2", 7800));
+        when(hiveMQS3Client.getObjects()).then(ignored -> objectListWithETag("hivemq/cluster/nodes/manifest",
+                "\"etag-1\""));
+        when(hiveMQS3Client.getObjectWithETag("hivemq/cluster/nodes/manifest")).thenReturn(new S3ObjectContent(
+                otherNodeFile + "\n",
+                "\"etag-1\""));
+        when(hiveMQS3Client.saveObjectIfMatch(any(), any(), any())).thenReturn(true);
+
+        s3DiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        verify(hiveMQS3Client, never()).getObject(any());
+        verify(clusterDiscoveryOutput).provideCurrentNodes(List.of(otherNodeFile.getClusterNodeAddress()));
+        // the own entry is added in the cycle that found the manifest, so nodes in the manifest layout see this node
+        verify(hiveMQS3Client).saveObjectIfMatch(eq("hivemq/cluster/nodes/manifest"),
+                argThat(content -> content.contains(otherNodeFile.toString()) && content.contains("ABCD12")),
+                eq("\"etag-1\""));
+
+        // the own entry is removed from the manifest again
+        s3DiscoveryCallback.destroy(clusterDiscoveryInput);
+        verify(hiveMQS3Client).deleteObject("hivemq/cluster/nodes/ABCD12");
+        verify(hiveMQS3Client, times(2)).saveObjectIfMatch(eq("hivemq/cluster/nodes/manifest"),
+                argThat(content -> content.contains(otherNodeFile.toString())),
+                eq("\"etag-1\""));
+    }
+
+    @Test
+    void test_reload_manifest_layout_lists_objects_while_found() throws Exception {
+        final var configuration = """
+                s3-bucket-region:us-east-1
+                s3-bucket-name:hivemq123456
+                file-prefix:hivemq/cluster/nodes/
+                file-expiration:360
+                update-interval:180
+                credentials-type:default
+                file-layout:manifest""";
+        Files.writeString(extensionInformation.getExtensionHomeFolder().toPath().resolve(EXTENSION_CONFIGURATION),
+                configuration);
+        final var s3Config = new ConfigurationReader(extensionInformation).readConfiguration();
+        when(hiveMQS3Client.getS3Config()).thenReturn(s3Config);
+        when(hiveMQS3Client.saveObjectIfMatch(any(), any(), any())).thenReturn(true);
+        // a node that still uses the object layout
+        final var otherNodeFile = new ClusterNodeFile("EFGH34", new ClusterNodeAddress("127.0.0.2", 7800));
+        when(hiveMQS3Client.getObjects()).then(ignored -> objectListWithETag("hivemq/cluster/nodes/EFGH34",
+                "\"etag-1\""));
+        when(hiveMQS3Client.getObject("hivemq/cluster/nodes/EFGH34")).thenReturn(otherNodeFile.toString());
+
+        s3DiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+        s3DiscoveryCallback.reload(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        verify(hiveMQS3Client, times(2)).getObjects();
+        verify(clusterDiscoveryOutput, times(2)).provideCurrentNodes(List.of(otherNodeFile.getClusterNodeAddress()));
+
+        // the node was migrated, only the manifest is left
+        when(hiveMQS3Client.getObjects()).then(ignored -> objectListWithETag("hivemq/cluster/nodes/manifest",
+                "\"etag-2\""));
+        s3DiscoveryCallback.reload(clusterDiscoveryInput, clusterDiscoveryOutput);
+        s3DiscoveryCallback.reload(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        verify(hiveMQS3Client, times(3)).getObjects();
+
+        s3DiscoveryCallback.destroy(clusterDiscoveryInput);
+    }
+
+    @Test
+    void test_reload_background_refresh_serves_snapshot() throws Exception {
+        useBackgroundRefresh("1");
+        when(hiveMQS3Client.getObjects()).then(ignored -> extendedObjectList());
+        when(hiveMQS3Client.getObject(any())).then(ignored -> createS3Object());
+
+        s3DiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+        s3DiscoveryCallback.reload(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        // the reload callback is answered without any S3 request
+        verify(hiveMQS3Client, times(1)).createOrUpdate();
+        verify(hiveMQS3Client, times(1)).getObjects();
+        verify(clusterDiscoveryOutput, times(2)).provideCurrentNodes(argThat(addresses -> addresses.size() == 1));
+
+        s3DiscoveryCallback.destroy(clusterDiscoveryInput);
+    }
+
+    @Test
+    void test_reload_background_refresh_stale_snapshot_refreshed_synchronously() throws Exception {
+        useBackgroundRefresh("1");
+        when(hiveMQS3Client.getObjects()).then(ignored -> extendedObjectList());
+        when(hiveMQS3Client.getObject(any())).then(ignored -> createS3Object());
+
+        s3DiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+        // wait for the snapshot to exceed the staleness bound
+        TimeUnit.MILLISECONDS.sleep(1500);
+        s3DiscoveryCallback.reload(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        verify(hiveMQS3Client, times(2)).createOrUpdate();
+        verify(hiveMQS3Client, times(2)).getObjects();
+        verify(clusterDiscoveryOutput, times(2)).provideCurrentNodes(anyList());
+
+        s3DiscoveryCallback.destroy(clusterDiscoveryInput);
+    }
+
+    @Test
+    void test_reload_adaptive_refresh_skips_cycles_while_membership_is_stable() throws Exception {
+        final var configuration = """
+                s3-bucket-region:us-east-1
+                s3-bucket-name:hivemq123456
+                file-prefix:hivemq/cluster/nodes/
+                file-expiration:360
+                update-interval:180
+                credentials-type:default
+                adaptive-refresh-max-interval:600""";
+        Files.writeString(extensionInformation.getExtensionHomeFolder().toPath().resolve(EXTENSION_CONFIGURATION),
+                configuration);
+        final var s3Config = new ConfigurationReader(extensionInformation).readConfiguration();
+        when(hiveMQS3Client.getS3Config()).thenReturn(s3Config);
+        when(clusterDiscoveryInput.getReloadInterval()).thenReturn(60);
+        when(hiveMQS3Client.getObjects()).then(ignored -> extendedObjectList());
+        when(hiveMQS3Client.getObject(any())).then(ignored -> createS3Object());
+
+        s3DiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+        // same membership as the initial discovery, the interval is doubled
+        s3DiscoveryCallback.reload(clusterDiscoveryInput, clusterDiscoveryOutput);
+        // skipped, served from the last discovery cycle
+        s3DiscoveryCallback.reload(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        verify(hiveMQS3Client, times(2)).getObjects();
+        verify(clusterDiscoveryOutput, times(3)).provideCurrentNodes(argThat(addresses -> addresses.size() == 1));
+    }
+
+    @Test
+    void test_reload_adaptive_refresh_does_not_skip_own_file_update() throws Exception {
+        final var configuration = """
+                s3-bucket-region:us-east-1
+                s3-bucket-name:hivemq123456
+                file-prefix:hivemq/cluster/nodes/
+                file-expiration:360
+                update-interval:30
+                credentials-type:default
+                adaptive-refresh-max-interval:600""";
+        Files.writeString(extensionInformation.getExtensionHomeFolder().toPath().resolve(EXTENSION_CONFIGURATION),
+                configuration);
+        final var s3Config = new ConfigurationReader(extensionInformation).readConfiguration();
+        when(hiveMQS3Client.getS3Config()).thenReturn(s3Config);
+        // the own file is due before the next reload callback
+        when(clusterDiscoveryInput.getReloadInterval()).thenReturn(60);
+        when(hiveMQS3Client.getObjects()).then(ignored -> extendedObjectList());
+        when(hiveMQS3Client.getObject(any())).then(ignored -> createS3Object());
+
+        s3DiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+        s3DiscoveryCallback.reload(clusterDiscoveryInput, clusterDiscoveryOutput);
+        s3DiscoveryCallback.reload(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        verify(hiveMQS3Client, times(3)).getObjects();
+    }
+
+    @Test
+    void test_reload_circuit_breaker_serves_last_known_good_membership() throws Exception {
+        final var configuration = """
+                s3-bucket-region:us-east-1
+                s3-bucket-name:hivemq123456
+                file-prefix:hivemq/cluster/nodes/
+                file-expiration:360
+                update-interval:180
+                credentials-type:default
+                circuit-breaker-failure-threshold:2
+                circuit-breaker-open-duration:60""";
+        Files.writeString(extensionInformation.getExtensionHomeFolder().toPath().resolve(EXTENSION_CONFIGURATION),
+                configuration);
+        final var s3Config = new ConfigurationReader(extensionInformation).readConfiguration();
+        when(hiveMQS3Client.getS3Config()).thenReturn(s3Config);
+        when(hiveMQS3Client.getObjects()).then(ignored -> extendedObjectList()).thenThrow(S3Exception.class);
+        when(hiveMQS3Client.getObject(any())).then(ignored -> createS3Object());
+
+        s3DiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+        // two failed cycles open the circuit breaker
+        s3DiscoveryCallback.reload(clusterDiscoveryInput, clusterDiscoveryOutput);
+        s3DiscoveryCallback.reload(clusterDiscoveryInput, clusterDiscoveryOutput);
+        // the open circuit breaker does not send any S3 request
+        s3DiscoveryCallback.reload(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        verify(hiveMQS3Client, times(3)).checkBucket();
+        verify(hiveMQS3Client, times(3)).getObjects();
+        verify(clusterDiscoveryOutput, times(4)).provideCurrentNodes(argThat(addresses -> addresses.size() == 1));
+    }
+
+    @Test
+    void test_init_membership_snapshot_written() throws Exception {
+        useMembershipSnapshot();
+        when(hiveMQS3Client.getObjects()).then(ignored -> extendedObjectList());
+        when(hiveMQS3Client.getObject(any())).then(ignored -> createS3Object());
+
+        s3DiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        verify(clusterDiscoveryOutput).provideCurrentNodes(argThat(addresses -> addresses.size() == 1));
+        assertThat(membershipSnapshotFile.read()).extracting(ClusterNodeFile::getClusterId).containsExactly("ABCD12");
+    }
+
+    @Test
+    void test_init_membership_snapshot_provided_before_discovery() throws Exception {
+        useMembershipSnapshot();
+        membershipSnapshotFile.write(List.of(new ClusterNodeFile("EFGH34", new ClusterNodeAddress("127.0.0.2", 7801))));
+        when(hiveMQS3Client.getObjects()).then(ignored -> extendedObjectList());
+        when(hiveMQS3Client.getObject(any())).then(ignored -> createS3Object());
+
+        s3DiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        verify(clusterDiscoveryOutput).provideCurrentNodes(argThat(addresses -> addresses.size() == 1 &&
+                addresses.get(0).getPort() == 7801));
+        // the initial discovery cycle reconciles the snapshot in the background
+        verify(hiveMQS3Client, timeout(10_000)).saveObject(any(), any());
+        s3DiscoveryCallback.reload(clusterDiscoveryInput, clusterDiscoveryOutput);
+        verify(clusterDiscoveryOutput).provideCurrentNodes(argThat(addresses -> addresses.size() == 1 &&
+                addresses.get(0).getPort() == 1883));
+        assertThat(membershipSnapshotFile.read()).extracting(ClusterNodeFile::getClusterId).containsExactly("ABCD12");
+    }
+
+    @Test
+    void test_init_membership_snapshot_first_reload_joins_reconcile() throws Exception {
+        useMembershipSnapshot();
+        membershipSnapshotFile.write(List.of(new ClusterNodeFile("EFGH34", new ClusterNodeAddress("127.0.0.2", 7801))));
+        when(hiveMQS3Client.getObjects()).then(ignored -> extendedObjectList());
+        when(hiveMQS3Client.getObject(any())).then(ignored -> createS3Object());
+        final var bucketResponse = new CompletableFuture<S3BucketResponse>();
+        when(hiveMQS3Client.checkBucket()).then(ignored -> bucketResponse.get());
+
+        s3DiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+        final var reload =
+                CompletableFuture.runAsync(() -> s3DiscoveryCallback.reload(clusterDiscoveryInput,
+                        clusterDiscoveryOutput));
+        verify(queryCoalescedCount, timeout(10_000)).inc();
+        bucketResponse.complete(new S3BucketResponse("hivemq123456", 200, null));
+        reload.get(10, TimeUnit.SECONDS);
+
+        verify(hiveMQS3Client).checkBucket();
+        verify(hiveMQS3Client).saveObject(any(), any());
+        verify(clusterDiscoveryOutput).provideCurrentNodes(argThat(addresses -> addresses.size() == 1 &&
+                addresses.get(0).getPort() == 1883));
+    }
+
+    @Test
+    void test_destroy_stops_reconcile() throws Exception {
+        useMembershipSnapshot();
+        membershipSnapshotFile.write(List.of(new ClusterNodeFile("EFGH34", new ClusterNodeAddress("127.0.0.2", 7801))));
+        final var bucketChecked = new CountDownLatch(1);
+        final var bucketResponse = new CompletableFuture<S3BucketResponse>();
+        when(hiveMQS3Client.checkBucket()).then(ignored -> {
+            bucketChecked.countDown();
+            return bucketResponse.get();
+        });
+
+        s3DiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+        assertThat(bucketChecked.await(10, TimeUnit.SECONDS)).isTrue();
+        // the reconcile is interrupted, so destroy does not wait for the bucket check
+        CompletableFuture.runAsync(() -> s3DiscoveryCallback.destroy(clusterDiscoveryInput))
+                .get(10, TimeUnit.SECONDS);
+
+        verify(hiveMQS3Client, never()).saveObject(any(), any());
+        verify(hiveMQS3Client).close();
+    }
+
+    private void useFileLayout(final @NotNull String fileLayout) throws IOException {
+        final var configuration = """
+                s3-bucket-region:us-east-1
+                s3-bucket-name:hivemq123456
+                file-prefix:hivemq/cluster/nodes/
+                file-expiration:5
+                update-interval:1
+                credentials-type:default
+                file-layout:""" + fileLayout;
+        Files.writeString(extensionInformation.getExtensionHomeFolder().toPath().resolve(EXTENSION_CONFIGURATION),
+                configuration);
+        final var s3Config = new ConfigurationReader(extensionInformation).readConfiguration();
+        when(hiveMQS3Client.getS3Config()).thenReturn(s3Config);
+    }
+
+    private void useMembershipSnapshot() throws IOException {
+        final var configuration = """
+                s3-bucket-region:us-east-1
+                s3-bucket-name:hivemq123456
+                file-prefix:hivemq/cluster/nodes/
+                file-expiration:360
+                update-interval:180
+                credentials-type:default
+                membership-snapshot:true""";
+        Files.writeString(extensionInformation.getExtensionHomeFolder().toPath().resolve(EXTENSION_CONFIGURATION),
+                configuration);
+        final var s3Config = new ConfigurationReader(extensionInformation).readConfiguration();
+        when(hiveMQS3Client.getS3Config()).thenReturn(s3Config);
+    }
+
+    private void useBackgroundRefresh(final @NotNull String maxStalenessSeconds) throws IOException {
+        final var configuration = """
+                s3-bucket-region:us-east-1
+                s3-bucket-name:hivemq123456
+                file-prefix:hivemq/cluster/nodes/
+                file-expiration:360
+                update-interval:180
+                credentials-type:default
+                background-refresh:true
+                background-refresh-max-staleness:""" + maxStalenessSeconds;
+        Files.writeString(extensionInformation.getExtensionHomeFolder().toPath().resolve(EXTENSION_CONFIGURATION),
+                configuration);
+        final var s3Config = new ConfigurationReader(extensionInformation).readConfiguration();
+        when(hiveMQS3Client.getS3Config()).thenReturn(s3Config);
+        // the refresher runs every 30 seconds, so it does not interfere with the test
+        when(clusterDiscoveryInput.getReloadInterval()).thenReturn(60);
+    }
+
     private @NotNull String createS3Object() {
         final var clusterNodeFile = new ClusterNodeFile("ABCD12", new ClusterNodeAddress("127.0.0.1", 1883));
         return clusterNodeFile.toString();
@@ -499,6 +1122,14 @@ class S3DiscoveryCallbackTest {
         return listObjectsV2Response;
     }
 
+    private @NotNull ListObjectsV2Response objectListWithETag(final @NotNull String key, final @NotNull String eTag) {
+        final var listObjectsV2Response = mock(ListObjectsV2Response.class);
+        final var objects = new ArrayList<S3Object>();
+        objects.add(S3Object.builder().key(key).eTag(eTag).build());
+        when(listObjectsV2Response.contents()).thenReturn(objects);
+        return listObjectsV2Response;
+    }
+
     private @NotNull ListObjectsV2Response extendedObjectNullList() {
         final var listObjectsV2Response = mock(ListObjectsV2Response.class);
         final var objects = new ArrayList<S3Object>();
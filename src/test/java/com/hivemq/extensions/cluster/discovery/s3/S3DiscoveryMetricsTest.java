@@ -21,6 +21,7 @@ import org.jetbrains.annotations.NotNull;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -54,6 +55,131 @@ class S3DiscoveryMetricsTest {
         assertThat(counterFromRegistry.getCount()).isEqualTo(counter.getCount());
     }
 
+    @Test
+    void test_getQueryCoalescedCount() {
+        final var counter = metrics.getQueryCoalescedCount();
+        counter.inc(2);
+        final var name = ExtensionConstants.EXTENSION_METRIC_PREFIX + "." + "query.coalesced.count";
+        final var counterFromRegistry = metricRegistry.counter(name);
+        assertThat(counterFromRegistry.getCount()).isEqualTo(2);
+    }
+
+    @Test
+    void test_getDeleteSuccessCount() {
+        final var counter = metrics.getDeleteSuccessCount();
+        counter.inc(3);
+        final var name = ExtensionConstants.EXTENSION_METRIC_PREFIX + "." + "delete.success.count";
+        final var counterFromRegistry = metricRegistry.counter(name);
+        assertThat(counterFromRegistry.getCount()).isEqualTo(3);
+    }
+
+    @Test
+    void test_getDeleteFailedCount() {
+        final var counter = metrics.getDeleteFailedCount();
+        counter.inc();
+        final var name = ExtensionConstants.EXTENSION_METRIC_PREFIX + "." + "delete.failed.count";
+        final var counterFromRegistry = metricRegistry.counter(name);
+        assertThat(counterFromRegistry.getCount()).isEqualTo(counter.getCount());
+    }
+
+    @Test
+    void test_getExpiredFilesDeleted() {
+        final var meter = metrics.getExpiredFilesDeleted();
+        meter.mark(2);
+        final var name = ExtensionConstants.EXTENSION_METRIC_PREFIX + "." + "expired-files.deleted";
+        assertThat(metricRegistry.meter(name).getCount()).isEqualTo(2);
+    }
+
+    @Test
+    void test_registerExpiredFilesQueueSizeGauge() {
+        final var queueSize = new AtomicInteger(7);
+        metrics.registerExpiredFilesQueueSizeGauge(queueSize::get);
+
+        final var name = ExtensionConstants.EXTENSION_METRIC_PREFIX + ".expired-files.queue.size";
+        final var gauge = metricRegistry.getGauges().get(name);
+        assertThat(gauge).isNotNull();
+        assertThat(gauge.getValue()).isEqualTo(7);
+    }
+
+    @Test
+    void test_registerJanitorGauge() {
+        metrics.registerJanitorGauge(() -> 1);
+
+        final var name = ExtensionConstants.EXTENSION_METRIC_PREFIX + ".expired-files.janitor";
+        final var gauge = metricRegistry.getGauges().get(name);
+        assertThat(gauge).isNotNull();
+        assertThat(gauge.getValue()).isEqualTo(1);
+    }
+
+    @Test
+    void test_registerRefreshIntervalGauge() {
+        metrics.registerRefreshIntervalGauge(() -> 120_000L);
+
+        final var name = ExtensionConstants.EXTENSION_METRIC_PREFIX + ".refresh-interval.millis";
+        final var gauge = metricRegistry.getGauges().get(name);
+        assertThat(gauge).isNotNull();
+        assertThat(gauge.getValue()).isEqualTo(120_000L);
+    }
+
+    @Test
+    void test_requestBudgetMetrics() {
+        metrics.registerRequestRateGauge(() -> 12.5);
+        metrics.getRequestWaitTime().update(300, TimeUnit.MILLISECONDS);
+
+        final var rateGauge =
+                metricRegistry.getGauges().get(ExtensionConstants.EXTENSION_METRIC_PREFIX + ".request-budget.rate");
+        final var waitTimer = metricRegistry.getTimers()
+                .get(ExtensionConstants.EXTENSION_METRIC_PREFIX + ".request-budget.wait.time");
+        assertThat(rateGauge).isNotNull();
+        assertThat(rateGauge.getValue()).isEqualTo(12.5);
+        assertThat(waitTimer).isNotNull();
+        assertThat(waitTimer.getCount()).isOne();
+        assertThat(waitTimer.getSnapshot().getMax()).isEqualTo(TimeUnit.MILLISECONDS.toNanos(300));
+    }
+
+    @Test
+    void test_circuitBreakerMetrics() {
+        metrics.getCircuitBreakerTransitions().inc();
+        metrics.registerCircuitBreakerStateGauge(() -> 1);
+
+        final var transitions = metricRegistry.counter(ExtensionConstants.EXTENSION_METRIC_PREFIX +
+                ".circuit-breaker.transitions");
+        final var gauge =
+                metricRegistry.getGauges().get(ExtensionConstants.EXTENSION_METRIC_PREFIX + ".circuit-breaker.state");
+        assertThat(transitions.getCount()).isOne();
+        assertThat(gauge).isNotNull();
+        assertThat(gauge.getValue()).isEqualTo(1);
+    }
+
+    @Test
+    void test_getClientRebuilds() {
+        metrics.getClientRebuilds().inc(2);
+
+        final var counter = metricRegistry.counter(ExtensionConstants.EXTENSION_METRIC_PREFIX + ".s3-client.rebuilds");
+        assertThat(counter.getCount()).isEqualTo(2);
+    }
+
+    @Test
+    void test_credentialsResolveTime_timer() {
+        metrics.getCredentialsResolveTime().update(40, TimeUnit.MILLISECONDS);
+        metrics.getCredentialsResolveTime().update(2, TimeUnit.MILLISECONDS);
+
+        final var timer =
+                metricRegistry.getTimers().get(ExtensionConstants.EXTENSION_METRIC_PREFIX + ".credentials.resolve.time");
+        assertThat(timer).isNotNull();
+        assertThat(timer.getCount()).isEqualTo(2);
+        assertThat(timer.getSnapshot().getMax()).isEqualTo(TimeUnit.MILLISECONDS.toNanos(40));
+    }
+
+    @Test
+    void test_getCredentialsFetchFailures() {
+        metrics.getCredentialsFetchFailures().inc();
+
+        final var counter =
+                metricRegistry.counter(ExtensionConstants.EXTENSION_METRIC_PREFIX + ".credentials.fetch.failures");
+        assertThat(counter.getCount()).isOne();
+    }
+
     @Test
     void test_registerAddressCountGauge() {
         final var addressesCount = new AtomicInteger(1);
@@ -67,4 +193,25 @@ class S3DiscoveryMetricsTest {
         addressesCount.set(3);
         assertThat(gauge.getValue()).isEqualTo(3);
     }
+
+    @Test
+    void test_registerDownloadConcurrencyGauge() {
+        final var concurrency = new AtomicInteger(4);
+        metrics.registerDownloadConcurrencyGauge(concurrency::get);
+
+        final var name = ExtensionConstants.EXTENSION_METRIC_PREFIX + ".download.concurrency";
+        final var gauge = metricRegistry.getGauges().get(name);
+        assertThat(gauge).isNotNull();
+        assertThat(gauge.getValue()).isEqualTo(4);
+    }
+
+    @Test
+    void test_registerClockSkewGauge() {
+        metrics.registerClockSkewGauge(() -> -2_000L);
+
+        final var name = ExtensionConstants.EXTENSION_METRIC_PREFIX + ".clock-skew.millis";
+        final var gauge = metricRegistry.getGauges().get(name);
+        assertThat(gauge).isNotNull();
+        assertThat(gauge.getValue()).isEqualTo(-2_000L);
+    }
 }
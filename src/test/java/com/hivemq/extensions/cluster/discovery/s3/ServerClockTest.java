@@ -0,0 +1,71 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.cluster.discovery.s3;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.http.SdkHttpResponse;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ServerClockTest {
+
+    private final @NotNull ServerClock serverClock = new ServerClock();
+
+    @Test
+    void test_update_server_ahead() {
+        serverClock.update(responseWithDate(Instant.now().plusSeconds(60)));
+
+        assertThat(serverClock.getSkewMillis()).isBetween(58_000L, 61_000L);
+        assertThat(serverClock.currentTimeMillis() - System.currentTimeMillis()).isBetween(58_000L, 61_000L);
+    }
+
+    @Test
+    void test_update_server_behind() {
+        serverClock.update(responseWithDate(Instant.now().minusSeconds(60)));
+
+        assertThat(serverClock.getSkewMillis()).isBetween(-61_000L, -59_000L);
+    }
+
+    @Test
+    void test_update_skew_below_resolution_ignored() {
+        serverClock.update(responseWithDate(Instant.now().minusSeconds(60)));
+        serverClock.update(responseWithDate(Instant.now()));
+
+        assertThat(serverClock.getSkewMillis()).isZero();
+    }
+
+    @Test
+    void test_update_without_date_header() {
+        serverClock.update(null);
+        serverClock.update(SdkHttpResponse.builder().statusCode(200).build());
+        serverClock.update(SdkHttpResponse.builder().statusCode(200).putHeader("Date", "yesterday").build());
+
+        assertThat(serverClock.getSkewMillis()).isZero();
+    }
+
+    private static @NotNull SdkHttpResponse responseWithDate(final @NotNull Instant date) {
+        return SdkHttpResponse.builder()
+                .statusCode(200)
+                .putHeader("Date", DateTimeFormatter.RFC_1123_DATE_TIME.format(date.atZone(ZoneOffset.UTC)))
+                .build();
+    }
+}
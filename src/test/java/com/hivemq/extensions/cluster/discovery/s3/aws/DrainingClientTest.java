@@ -0,0 +1,64 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.cluster.discovery.s3.aws;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.s3.S3Client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class DrainingClientTest {
+
+    private final @NotNull S3Client s3Client = mock();
+    private final @NotNull DrainingClient<S3Client> drainingClient = new DrainingClient<>(s3Client);
+
+    @Test
+    void test_retire_idle_closes() {
+        drainingClient.retire();
+
+        verify(s3Client).close();
+        assertThat(drainingClient.acquire()).isFalse();
+    }
+
+    @Test
+    void test_retire_closes_after_last_release() {
+        assertThat(drainingClient.acquire()).isTrue();
+        assertThat(drainingClient.acquire()).isTrue();
+
+        drainingClient.retire();
+        assertThat(drainingClient.acquire()).isFalse();
+        drainingClient.release();
+        verify(s3Client, never()).close();
+        assertThat(drainingClient.getInFlight()).isOne();
+
+        drainingClient.release();
+        verify(s3Client).close();
+    }
+
+    @Test
+    void test_not_retired_not_closed() {
+        assertThat(drainingClient.acquire()).isTrue();
+        drainingClient.release();
+
+        verify(s3Client, never()).close();
+        assertThat(drainingClient.getInFlight()).isZero();
+    }
+}
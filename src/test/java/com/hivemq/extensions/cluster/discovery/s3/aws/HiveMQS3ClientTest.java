@@ -17,12 +17,12 @@
 package com.hivemq.extensions.cluster.discovery.s3.aws;
 
 import com.hivemq.extension.sdk.api.parameter.ExtensionInformation;
-import com.hivemq.extensions.cluster.discovery.s3.config.AuthenticationType;
 import com.hivemq.extensions.cluster.discovery.s3.config.ConfigurationReader;
 import org.jetbrains.annotations.NotNull;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
 import org.mockito.ArgumentMatchers;
 import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
 import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
@@ -34,26 +34,45 @@ import software.amazon.awssdk.auth.credentials.SystemPropertyCredentialsProvider
 import software.amazon.awssdk.awscore.exception.AwsErrorDetails;
 import software.amazon.awssdk.core.ResponseBytes;
 import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.interceptor.Context;
+import software.amazon.awssdk.core.interceptor.ExecutionAttributes;
+import software.amazon.awssdk.core.interceptor.ExecutionInterceptor;
 import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.http.SdkHttpResponse;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
 import software.amazon.awssdk.services.s3.model.DeleteObjectResponse;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
 import software.amazon.awssdk.services.s3.model.GetObjectResponse;
 import software.amazon.awssdk.services.s3.model.HeadBucketRequest;
 import software.amazon.awssdk.services.s3.model.HeadBucketResponse;
 import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
 import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.NoSuchBucketException;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
 import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Error;
 import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.sts.auth.StsAssumeRoleCredentialsProvider;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 import static com.hivemq.extensions.cluster.discovery.s3.ExtensionConstants.EXTENSION_CONFIGURATION;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -61,10 +80,17 @@ import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 class HiveMQS3ClientTest {
 
+    private final @NotNull S3Client s3Client = mock();
+    private final @NotNull S3ClientFactory s3ClientFactory = mock();
+    private final @NotNull AtomicInteger clientRebuilds = new AtomicInteger();
+
     private @NotNull ExtensionInformation extensionInformation;
     private @NotNull HiveMQS3Client hiveMQS3Client;
 
@@ -87,22 +113,24 @@ class HiveMQS3ClientTest {
                 credentials-type:default""";
         Files.writeString(configPath, configuration);
 
+        when(s3ClientFactory.createS3Client(any(), any(), any())).thenReturn(s3Client);
+
         final var configurationReader = new ConfigurationReader(extensionInformation);
-        hiveMQS3Client = new HiveMQS3Client(configurationReader);
+        hiveMQS3Client = new HiveMQS3Client(configurationReader, s3ClientFactory);
+        hiveMQS3Client.setClientRebuildRecorder(clientRebuilds::incrementAndGet);
     }
 
     @Test
     void test_create_successful() {
+        hiveMQS3Client = new HiveMQS3Client(new ConfigurationReader(extensionInformation));
         hiveMQS3Client.createOrUpdate();
         assertThat(hiveMQS3Client.getS3Config()).isNotNull();
-        assertThat(hiveMQS3Client.getS3Client()).isNotNull();
+        hiveMQS3Client.close();
     }
 
     @Test
     void test_bucket_exists() {
         hiveMQS3Client.createOrUpdate();
-        final var s3Client = mock(S3Client.class);
-        hiveMQS3Client.setS3Client(s3Client);
 
         final var headBucketResponse = mock(HeadBucketResponse.class);
         final var sdkHttpResponse = mock(SdkHttpResponse.class);
@@ -122,8 +150,6 @@ class HiveMQS3ClientTest {
     @Test
     void test_bucket_not_exists() {
         hiveMQS3Client.createOrUpdate();
-        final var s3Client = mock(S3Client.class);
-        hiveMQS3Client.setS3Client(s3Client);
 
         final var awsServiceException = S3Exception.builder()
                 .message("Bucket not found!")
@@ -178,13 +204,11 @@ class HiveMQS3ClientTest {
                 credentials-secret-access-key:secret-access-key""";
         Files.writeString(extensionInformation.getExtensionHomeFolder().toPath().resolve(EXTENSION_CONFIGURATION),
                 configuration);
-        hiveMQS3Client = new HiveMQS3Client(configurationReader);
+        hiveMQS3Client = new HiveMQS3Client(configurationReader, s3ClientFactory);
         hiveMQS3Client.createOrUpdate();
-        final var firstClient = hiveMQS3Client.getS3Client();
-
         hiveMQS3Client.createOrUpdate();
-        final var secondClient = hiveMQS3Client.getS3Client();
-        assertThat(secondClient).isSameAs(firstClient);
+
+        verify(s3ClientFactory).createS3Client(any(), any(), any());
     }
 
     @Test
@@ -202,54 +226,184 @@ class HiveMQS3ClientTest {
                 credentials-secret-access-key:secret-access-key""";
         Files.writeString(extensionInformation.getExtensionHomeFolder().toPath().resolve(EXTENSION_CONFIGURATION),
                 configuration);
-        hiveMQS3Client = new HiveMQS3Client(configurationReader);
+        hiveMQS3Client = new HiveMQS3Client(configurationReader, s3ClientFactory);
+        hiveMQS3Client.setClientRebuildRecorder(clientRebuilds::incrementAndGet);
         hiveMQS3Client.createOrUpdate();
-        final var firstClient = hiveMQS3Client.getS3Client();
 
         final var configuration2 = """
+                s3-bucket-region:eu-central-1
+                s3-bucket-name:hivemq123456
+                file-prefix:hivemq/cluster/nodes/
+                file-expiration:360
+                update-interval:180
+                credentials-type:access_key
+                credentials-access-key-id:access-key-id
+                credentials-secret-access-key:secret-access-key""";
+        Files.writeString(extensionInformation.getExtensionHomeFolder().toPath().resolve(EXTENSION_CONFIGURATION),
+                configuration2);
+        hiveMQS3Client.createOrUpdate();
+        verify(s3ClientFactory, times(2)).createS3Client(any(), any(), any());
+        verify(s3Client).close();
+        assertThat(clientRebuilds).hasValue(1);
+    }
+
+    @Test
+    void createOrUpdate_discoveryConfig_sameClient() throws IOException {
+        final var configurationReader = new ConfigurationReader(extensionInformation);
+
+        final var configuration = """
                 s3-bucket-region:us-east-1
-                s3-bucket-name:hivemq654321
+                s3-bucket-name:hivemq123456
                 file-prefix:hivemq/cluster/nodes/
                 file-expiration:360
                 update-interval:180
                 credentials-type:access_key
                 credentials-access-key-id:access-key-id
                 credentials-secret-access-key:secret-access-key""";
+        Files.writeString(extensionInformation.getExtensionHomeFolder().toPath().resolve(EXTENSION_CONFIGURATION),
+                configuration);
+        hiveMQS3Client = new HiveMQS3Client(configurationReader, s3ClientFactory);
+        hiveMQS3Client.setClientRebuildRecorder(clientRebuilds::incrementAndGet);
+        hiveMQS3Client.createOrUpdate();
+
+        final var configuration2 = """
+                s3-bucket-region:us-east-1
+                s3-bucket-name:hivemq654321
+                file-prefix:hivemq/cluster/nodes/
+                file-expiration:3600
+                update-interval:180
+                credentials-type:access_key
+                credentials-access-key-id:access-key-id
+                credentials-secret-access-key:secret-access-key""";
         Files.writeString(extensionInformation.getExtensionHomeFolder().toPath().resolve(EXTENSION_CONFIGURATION),
                 configuration2);
         hiveMQS3Client.createOrUpdate();
-        final var secondClient = hiveMQS3Client.getS3Client();
-        assertThat(firstClient).isNotSameAs(secondClient);
+        verify(s3ClientFactory).createS3Client(any(), any(), any());
+        verify(s3Client, never()).close();
+        assertThat(hiveMQS3Client.getS3Config()).isNotNull();
+        assertThat(hiveMQS3Client.getS3Config().getBucketName()).isEqualTo("hivemq654321");
+        assertThat(clientRebuilds).hasValue(0);
+    }
+
+    @Test
+    void createOrUpdate_clientConfig_sameCredentialsProvider() throws IOException {
+        writeAccessKeyConfiguration("us-east-1", "access-key-id");
+        final var configurationReader = new ConfigurationReader(extensionInformation);
+        hiveMQS3Client = new HiveMQS3Client(configurationReader, s3ClientFactory);
+        hiveMQS3Client.setClientRebuildRecorder(clientRebuilds::incrementAndGet);
+        hiveMQS3Client.createOrUpdate();
+
+        writeAccessKeyConfiguration("eu-central-1", "access-key-id");
+        hiveMQS3Client.createOrUpdate();
+
+        assertThat(clientRebuilds).hasValue(1);
+        final var credentialsProviders = getCredentialsProviders(2);
+        assertThat(credentialsProviders.get(1)).isSameAs(credentialsProviders.get(0));
+    }
+
+    @Test
+    void createOrUpdate_credentialsConfig_differentCredentialsProvider() throws IOException {
+        writeAccessKeyConfiguration("us-east-1", "access-key-id");
+        final var configurationReader = new ConfigurationReader(extensionInformation);
+        hiveMQS3Client = new HiveMQS3Client(configurationReader, s3ClientFactory);
+        hiveMQS3Client.createOrUpdate();
+
+        writeAccessKeyConfiguration("us-east-1", "other-access-key-id");
+        hiveMQS3Client.createOrUpdate();
+
+        final var credentialsProviders = getCredentialsProviders(2);
+        assertThat(credentialsProviders.get(1)).isNotSameAs(credentialsProviders.get(0));
+        assertThat(credentialsProviders.get(1).resolveCredentials().accessKeyId()).isEqualTo("other-access-key-id");
+    }
+
+    private void writeAccessKeyConfiguration(final @NotNull String region, final @NotNull String accessKeyId)
+            throws IOException {
+        final var configuration = """
+                s3-bucket-region:%s
+                s3-bucket-name:hivemq123456
+                file-prefix:hivemq/cluster/nodes/
+                file-expiration:360
+                update-interval:180
+                credentials-type:access_key
+                credentials-access-key-id:%s
+                credentials-secret-access-key:secret-access-key""".formatted(region, accessKeyId);
+        Files.writeString(extensionInformation.getExtensionHomeFolder().toPath().resolve(EXTENSION_CONFIGURATION),
+                configuration);
+    }
+
+    private void writeCredentialsConfiguration(final @NotNull String credentialsType) throws IOException {
+        final var configuration = """
+                s3-bucket-region:us-east-1
+                s3-bucket-name:hivemq123456
+                file-prefix:hivemq/cluster/nodes/
+                file-expiration:360
+                update-interval:180
+                credentials-type:%s""".formatted(credentialsType);
+        Files.writeString(extensionInformation.getExtensionHomeFolder().toPath().resolve(EXTENSION_CONFIGURATION),
+                configuration);
+    }
+
+    /**
+     * @return the credentials providers that the S3 clients were created with, in the order of their creation.
+     */
+    private @NotNull List<ManagedCredentialsProvider> getCredentialsProviders(final int clients) {
+        final var credentialsProviders = ArgumentCaptor.forClass(AwsCredentialsProvider.class);
+        verify(s3ClientFactory, times(clients)).createS3Client(any(), credentialsProviders.capture(), any());
+        return credentialsProviders.getAllValues()
+                .stream()
+                .map(ManagedCredentialsProvider.class::cast)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @return the credentials provider that was configured for the S3 client.
+     */
+    private @NotNull AwsCredentialsProvider getCredentialsProvider() {
+        return getCredentialsProviders(1).get(0).getCredentialsProvider();
     }
 
     @Test
-    void test_getAwsCredentials_default() {
-        final var awsCredentials = hiveMQS3Client.getAwsCredentials(AuthenticationType.DEFAULT);
+    void test_getAwsCredentials_default() throws IOException {
+        writeCredentialsConfiguration("default");
+        hiveMQS3Client.createOrUpdate();
+
+        final var awsCredentials = getCredentialsProvider();
         assertThat(awsCredentials).isInstanceOf(DefaultCredentialsProvider.class);
     }
 
     @Test
-    void test_getAwsCredentials_environment() {
-        final var awsCredentials = hiveMQS3Client.getAwsCredentials(AuthenticationType.ENVIRONMENT_VARIABLES);
+    void test_getAwsCredentials_environment() throws IOException {
+        writeCredentialsConfiguration("environment_variables");
+        hiveMQS3Client.createOrUpdate();
+
+        final var awsCredentials = getCredentialsProvider();
         assertThat(awsCredentials).isInstanceOf(EnvironmentVariableCredentialsProvider.class);
     }
 
     @Test
-    void test_getAwsCredentials_java_system() {
-        final var awsCredentials = hiveMQS3Client.getAwsCredentials(AuthenticationType.JAVA_SYSTEM_PROPERTIES);
+    void test_getAwsCredentials_java_system() throws IOException {
+        writeCredentialsConfiguration("java_system_properties");
+        hiveMQS3Client.createOrUpdate();
+
+        final var awsCredentials = getCredentialsProvider();
         assertThat(awsCredentials).isInstanceOf(SystemPropertyCredentialsProvider.class);
     }
 
     @Test
-    void test_getAwsCredentials_user_credentials() {
-        final var awsCredentials = hiveMQS3Client.getAwsCredentials(AuthenticationType.USER_CREDENTIALS_FILE);
+    void test_getAwsCredentials_user_credentials() throws IOException {
+        writeCredentialsConfiguration("user_credentials_file");
+        hiveMQS3Client.createOrUpdate();
+
+        final var awsCredentials = getCredentialsProvider();
         assertThat(awsCredentials).isInstanceOf(ProfileCredentialsProvider.class);
     }
 
     @Test
-    void test_getAwsCredentials_instance_profile() {
-        final AwsCredentialsProvider awsCredentials =
-                hiveMQS3Client.getAwsCredentials(AuthenticationType.INSTANCE_PROFILE_CREDENTIALS);
+    void test_getAwsCredentials_instance_profile() throws IOException {
+        writeCredentialsConfiguration("instance_profile_credentials");
+        hiveMQS3Client.createOrUpdate();
+
+        final var awsCredentials = getCredentialsProvider();
         assertThat(awsCredentials).isInstanceOf(InstanceProfileCredentialsProvider.class);
     }
 
@@ -268,13 +422,36 @@ class HiveMQS3ClientTest {
                 configuration);
 
         final var configurationReader = new ConfigurationReader(extensionInformation);
-        hiveMQS3Client = new HiveMQS3Client(configurationReader);
+        hiveMQS3Client = new HiveMQS3Client(configurationReader, s3ClientFactory);
         hiveMQS3Client.createOrUpdate();
 
-        final var awsCredentials = hiveMQS3Client.getAwsCredentials(AuthenticationType.ACCESS_KEY);
+        final var awsCredentials = getCredentialsProvider();
         assertThat(awsCredentials).isInstanceOf(StaticCredentialsProvider.class);
     }
 
+    @Test
+    void test_getAwsCredentials_assume_role() throws IOException {
+        final var configuration = """
+                s3-bucket-region:us-east-1
+                s3-bucket-name:hivemq123456
+                file-prefix:hivemq/cluster/nodes/
+                file-expiration:360
+                update-interval:180
+                credentials-type:assume_role
+                credentials-role-arn:arn:aws:iam::123456789012:role/hivemq""";
+        Files.writeString(extensionInformation.getExtensionHomeFolder().toPath().resolve(EXTENSION_CONFIGURATION),
+                configuration);
+
+        final var configurationReader = new ConfigurationReader(extensionInformation);
+        hiveMQS3Client = new HiveMQS3Client(configurationReader, s3ClientFactory);
+        hiveMQS3Client.createOrUpdate();
+
+        assertThat(getCredentialsProvider()).isInstanceOfSatisfying(
+                StsRoleCredentialsProvider.class,
+                stsRoleCredentialsProvider -> assertThat(stsRoleCredentialsProvider.getCredentialsProvider())
+                        .isInstanceOf(StsAssumeRoleCredentialsProvider.class));
+    }
+
     @Test
     void test_getAwsCredentials_access_key_missing_secret() throws IOException {
         final var configuration = """
@@ -327,10 +504,10 @@ class HiveMQS3ClientTest {
                 configuration);
 
         final var configurationReader = new ConfigurationReader(extensionInformation);
-        hiveMQS3Client = new HiveMQS3Client(configurationReader);
+        hiveMQS3Client = new HiveMQS3Client(configurationReader, s3ClientFactory);
         hiveMQS3Client.createOrUpdate();
 
-        final var awsCredentials = hiveMQS3Client.getAwsCredentials(AuthenticationType.TEMPORARY_SESSION);
+        final var awsCredentials = getCredentialsProvider();
         assertThat(awsCredentials).isInstanceOf(StaticCredentialsProvider.class);
     }
 
@@ -356,12 +533,10 @@ class HiveMQS3ClientTest {
     @Test
     void test_saveObject_success() {
         hiveMQS3Client.createOrUpdate();
-        final var s3Client = mock(S3Client.class);
-        hiveMQS3Client.setS3Client(s3Client);
 
         when(s3Client.putObject(ArgumentMatchers.<Consumer<PutObjectRequest.Builder>>any(), any(RequestBody.class)))
-                .thenReturn(PutObjectResponse.builder().build());
-        hiveMQS3Client.saveObject("abcd", "test");
+                .thenReturn(PutObjectResponse.builder().eTag("\"etag-1\"").build());
+        assertThat(hiveMQS3Client.saveObject("abcd", "test")).isEqualTo("\"etag-1\"");
     }
 
     @Test
@@ -385,8 +560,6 @@ class HiveMQS3ClientTest {
     @Test
     void test_getObject_success() {
         hiveMQS3Client.createOrUpdate();
-        final var s3Client = mock(S3Client.class);
-        hiveMQS3Client.setS3Client(s3Client);
 
         when(s3Client.getObjectAsBytes(ArgumentMatchers.<Consumer<GetObjectRequest.Builder>>any())).thenReturn(
                 ResponseBytes.fromByteArray(mock(GetObjectResponse.class), "Test".getBytes(StandardCharsets.UTF_8)));
@@ -396,8 +569,6 @@ class HiveMQS3ClientTest {
     @Test
     void test_getObject_objectkey_null() {
         hiveMQS3Client.createOrUpdate();
-        final var s3Client = mock(S3Client.class);
-        hiveMQS3Client.setS3Client(s3Client);
 
         when(s3Client.getObjectAsBytes(ArgumentMatchers.<Consumer<GetObjectRequest.Builder>>any()))
                 .thenThrow(IllegalArgumentException.class);
@@ -405,22 +576,115 @@ class HiveMQS3ClientTest {
         assertThatThrownBy(() -> hiveMQS3Client.getObject(null)).isInstanceOf(IllegalArgumentException.class);
     }
 
+    @Test
+    void test_getObjectWithETag_success() {
+        hiveMQS3Client.createOrUpdate();
+
+        when(s3Client.getObjectAsBytes(ArgumentMatchers.<Consumer<GetObjectRequest.Builder>>any())).thenReturn(
+                ResponseBytes.fromByteArray(GetObjectResponse.builder().eTag("\"etag-1\"").build(),
+                        "Test".getBytes(StandardCharsets.UTF_8)));
+        final var s3ObjectContent = hiveMQS3Client.getObjectWithETag("abcd");
+        assertThat(s3ObjectContent).isNotNull();
+        assertThat(s3ObjectContent.getContent()).isEqualTo("Test");
+        assertThat(s3ObjectContent.getETag()).isEqualTo("\"etag-1\"");
+    }
+
+    @Test
+    void test_getObjectWithETag_not_found() {
+        hiveMQS3Client.createOrUpdate();
+
+        when(s3Client.getObjectAsBytes(ArgumentMatchers.<Consumer<GetObjectRequest.Builder>>any())).thenThrow(
+                NoSuchKeyException.builder().statusCode(404).build());
+        assertThat(hiveMQS3Client.getObjectWithETag("abcd")).isNull();
+    }
+
+    @Test
+    void test_saveObjectIfMatch_success() {
+        hiveMQS3Client.createOrUpdate();
+
+        when(s3Client.putObject(ArgumentMatchers.<Consumer<PutObjectRequest.Builder>>any(), any(RequestBody.class)))
+                .thenReturn(PutObjectResponse.builder().build());
+        assertThat(hiveMQS3Client.saveObjectIfMatch("abcd", "test", "\"etag-1\"")).isTrue();
+    }
+
+    @Test
+    void test_saveObjectIfMatch_precondition_failed() {
+        hiveMQS3Client.createOrUpdate();
+
+        when(s3Client.putObject(ArgumentMatchers.<Consumer<PutObjectRequest.Builder>>any(), any(RequestBody.class)))
+                .thenThrow(S3Exception.builder().statusCode(412).build());
+        assertThat(hiveMQS3Client.saveObjectIfMatch("abcd", "test", "\"etag-1\"")).isFalse();
+    }
+
     @Test
     void test_deleteObject_success() {
         hiveMQS3Client.createOrUpdate();
-        final var s3Client = mock(S3Client.class);
-        hiveMQS3Client.setS3Client(s3Client);
 
         when(s3Client.deleteObject(ArgumentMatchers.<Consumer<DeleteObjectRequest.Builder>>any()))
                 .thenReturn(mock(DeleteObjectResponse.class));
         hiveMQS3Client.deleteObject("abcd");
     }
 
+    @Test
+    void test_deleteObjects_batches() {
+        hiveMQS3Client.createOrUpdate();
+
+        when(s3Client.deleteObjects(ArgumentMatchers.<Consumer<DeleteObjectsRequest.Builder>>any())).thenReturn(
+                DeleteObjectsResponse.builder().build());
+        final var objects = new LinkedHashMap<String, String>();
+        for (int i = 0; i < 2500; i++) {
+            objects.put("node-" + i, "\"etag-" + i + "\"");
+        }
+
+        final var result = hiveMQS3Client.deleteObjects(objects);
+        assertThat(result.getFailedObjectKeys()).isEmpty();
+        assertThat(result.getModifiedObjectKeys()).isEmpty();
+        verify(s3Client, times(3)).deleteObjects(ArgumentMatchers.<Consumer<DeleteObjectsRequest.Builder>>any());
+    }
+
+    @Test
+    void test_deleteObjects_failed_keys() {
+        hiveMQS3Client.createOrUpdate();
+
+        when(s3Client.deleteObjects(ArgumentMatchers.<Consumer<DeleteObjectsRequest.Builder>>any())).thenReturn(
+                DeleteObjectsResponse.builder()
+                        .errors(S3Error.builder().key("node-2").code("AccessDenied").build())
+                        .build());
+
+        final var result = hiveMQS3Client.deleteObjects(objects("node-1", "node-2"));
+        assertThat(result.getFailedObjectKeys()).containsExactly("node-2");
+        assertThat(result.getModifiedObjectKeys()).isEmpty();
+    }
+
+    @Test
+    void test_deleteObjects_modified_and_missing_keys() {
+        hiveMQS3Client.createOrUpdate();
+
+        when(s3Client.deleteObjects(ArgumentMatchers.<Consumer<DeleteObjectsRequest.Builder>>any())).thenReturn(
+                DeleteObjectsResponse.builder()
+                        .errors(S3Error.builder().key("node-2").code("PreconditionFailed").build(),
+                                S3Error.builder().key("node-3").code("NoSuchKey").build())
+                        .build());
+
+        final var result = hiveMQS3Client.deleteObjects(objects("node-1", "node-2", "node-3"));
+        assertThat(result.getFailedObjectKeys()).isEmpty();
+        assertThat(result.getModifiedObjectKeys()).containsExactly("node-2");
+    }
+
+    @Test
+    void test_deleteObjects_failed_batch() {
+        hiveMQS3Client.createOrUpdate();
+
+        when(s3Client.deleteObjects(ArgumentMatchers.<Consumer<DeleteObjectsRequest.Builder>>any())).thenThrow(
+                S3Exception.builder().statusCode(500).build());
+
+        final var result = hiveMQS3Client.deleteObjects(objects("node-1", "node-2"));
+        assertThat(result.getFailedObjectKeys()).containsExactly("node-1", "node-2");
+    }
+
     @Test
     void test_deleteObject_objectkey_null() {
         hiveMQS3Client.createOrUpdate();
-        final var s3Client = mock(S3Client.class);
-        hiveMQS3Client.setS3Client(s3Client);
 
         doThrow(IllegalArgumentException.class).when(s3Client)
                 .deleteObject(ArgumentMatchers.<Consumer<DeleteObjectRequest.Builder>>any());
@@ -431,8 +695,6 @@ class HiveMQS3ClientTest {
     @Test
     void test_listObjects_success() {
         hiveMQS3Client.createOrUpdate();
-        final var s3Client = mock(S3Client.class);
-        hiveMQS3Client.setS3Client(s3Client);
 
         when(s3Client.listObjectsV2(ArgumentMatchers.<Consumer<ListObjectsV2Request.Builder>>any()))
                 .thenReturn(mock(ListObjectsV2Response.class));
@@ -442,8 +704,6 @@ class HiveMQS3ClientTest {
     @Test
     void test_listObjects_fileprefix_null() {
         hiveMQS3Client.createOrUpdate();
-        final var s3Client = mock(S3Client.class);
-        hiveMQS3Client.setS3Client(s3Client);
 
         when(s3Client.listObjectsV2(ArgumentMatchers.<Consumer<ListObjectsV2Request.Builder>>any()))
                 .thenThrow(IllegalArgumentException.class);
@@ -453,8 +713,6 @@ class HiveMQS3ClientTest {
     @Test
     void test_listNextBatchOfObjects_success() {
         hiveMQS3Client.createOrUpdate();
-        final var s3Client = mock(S3Client.class);
-        hiveMQS3Client.setS3Client(s3Client);
 
         when(s3Client.listObjectsV2(ArgumentMatchers.<Consumer<ListObjectsV2Request.Builder>>any()))
                 .thenReturn(mock(ListObjectsV2Response.class));
@@ -464,8 +722,6 @@ class HiveMQS3ClientTest {
     @Test
     void test_listNextBatchOfObjects_objectlisting_null() {
         hiveMQS3Client.createOrUpdate();
-        final var s3Client = mock(S3Client.class);
-        hiveMQS3Client.setS3Client(s3Client);
 
         when(s3Client.listObjectsV2(ArgumentMatchers.<Consumer<ListObjectsV2Request.Builder>>any()))
                 .thenThrow(IllegalArgumentException.class);
@@ -493,7 +749,6 @@ class HiveMQS3ClientTest {
 
         assertThat(hiveMQS3Client.getS3Config()).isNotNull();
         assertThat(hiveMQS3Client.getS3Config().getEndpoint()).isEqualTo(HiveMQS3Client.S3_HOSTNAME);
-        assertThat(hiveMQS3Client.getS3Client()).isNotNull();
     }
 
     @Test
@@ -517,7 +772,6 @@ class HiveMQS3ClientTest {
         assertThat(hiveMQS3Client.getS3Config()).isNotNull();
         assertThat(hiveMQS3Client.getS3Config().getEndpoint()).isEqualTo("minio.example.com:9000");
         assertThat(hiveMQS3Client.getS3Config().getEndpointRegionName()).isEqualTo("us-east-1");
-        assertThat(hiveMQS3Client.getS3Client()).isNotNull();
     }
 
     @Test
@@ -541,7 +795,6 @@ class HiveMQS3ClientTest {
         assertThat(hiveMQS3Client.getS3Config()).isNotNull();
         assertThat(hiveMQS3Client.getS3Config().getEndpoint()).isEqualTo("https://minio.example.com:9000");
         assertThat(hiveMQS3Client.getS3Config().getEndpointRegionName()).isEqualTo("eu-west-1");
-        assertThat(hiveMQS3Client.getS3Client()).isNotNull();
     }
 
     @Test
@@ -565,7 +818,6 @@ class HiveMQS3ClientTest {
         assertThat(hiveMQS3Client.getS3Config()).isNotNull();
         assertThat(hiveMQS3Client.getS3Config().getEndpoint()).isEqualTo("http://localhost:9000");
         assertThat(hiveMQS3Client.getS3Config().getEndpointRegionName()).isEqualTo("local");
-        assertThat(hiveMQS3Client.getS3Client()).isNotNull();
     }
 
     @Test
@@ -611,6 +863,276 @@ class HiveMQS3ClientTest {
         assertThat(hiveMQS3Client.getS3Config().getEndpoint()).isEqualTo("https://minio.example.com");
         assertThat(hiveMQS3Client.getS3Config().getEndpointRegionName()).isEqualTo("us-east-1");
         assertThat(hiveMQS3Client.getS3Config().getPathStyleAccess()).isTrue();
-        assertThat(hiveMQS3Client.getS3Client()).isNotNull();
+    }
+
+    @Test
+    void test_close_waits_for_request_in_flight() throws Exception {
+        hiveMQS3Client.createOrUpdate();
+
+        final var requestSent = new CountDownLatch(1);
+        final var responseReceived = new CountDownLatch(1);
+        when(s3Client.getObjectAsBytes(ArgumentMatchers.<Consumer<GetObjectRequest.Builder>>any())).then(ignored -> {
+            requestSent.countDown();
+            responseReceived.await();
+            return ResponseBytes.fromByteArray(GetObjectResponse.builder().build(),
+                    "content".getBytes(StandardCharsets.UTF_8));
+        });
+        final var executorService = Executors.newSingleThreadExecutor();
+        try {
+            final var content = executorService.submit(() -> hiveMQS3Client.getObject("key"));
+            assertThat(requestSent.await(10, TimeUnit.SECONDS)).isTrue();
+
+            hiveMQS3Client.close();
+            verify(s3Client, never()).close();
+
+            responseReceived.countDown();
+            assertThat(content.get(10, TimeUnit.SECONDS)).isEqualTo("content");
+            verify(s3Client).close();
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    void test_config_change_request_in_flight_completes() throws Exception {
+        final var newS3Client = mock(S3Client.class);
+        when(s3ClientFactory.createS3Client(any(), any(), any())).thenReturn(s3Client, newS3Client);
+        writeAccessKeyConfiguration("us-east-1", "access-key-id");
+        hiveMQS3Client.createOrUpdate();
+
+        final var requestSent = new CountDownLatch(1);
+        final var responseReceived = new CountDownLatch(1);
+        when(s3Client.getObjectAsBytes(ArgumentMatchers.<Consumer<GetObjectRequest.Builder>>any())).then(ignored -> {
+            requestSent.countDown();
+            responseReceived.await();
+            return ResponseBytes.fromByteArray(GetObjectResponse.builder().build(),
+                    "content".getBytes(StandardCharsets.UTF_8));
+        });
+        final var executorService = Executors.newSingleThreadExecutor();
+        try {
+            final var content = executorService.submit(() -> hiveMQS3Client.getObject("key"));
+            assertThat(requestSent.await(10, TimeUnit.SECONDS)).isTrue();
+
+            writeAccessKeyConfiguration("eu-central-1", "access-key-id");
+            hiveMQS3Client.createOrUpdate();
+            assertThat(clientRebuilds).hasValue(1);
+            verify(s3Client, never()).close();
+
+            responseReceived.countDown();
+            assertThat(content.get(10, TimeUnit.SECONDS)).isEqualTo("content");
+            verify(s3Client).close();
+            verify(newS3Client, never()).close();
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    void createOrUpdate_concurrent_singleRebuild() throws Exception {
+        writeAccessKeyConfiguration("us-east-1", "access-key-id");
+        hiveMQS3Client = new HiveMQS3Client(new ConfigurationReader(extensionInformation), s3ClientFactory);
+        hiveMQS3Client.setClientRebuildRecorder(clientRebuilds::incrementAndGet);
+        hiveMQS3Client.createOrUpdate();
+        writeAccessKeyConfiguration("eu-central-1", "access-key-id");
+
+        final var executorService = Executors.newFixedThreadPool(4);
+        try {
+            final var start = new CountDownLatch(1);
+            final var futures = new ArrayList<Future<?>>();
+            for (int i = 0; i < 4; i++) {
+                futures.add(executorService.submit(() -> {
+                    start.await();
+                    hiveMQS3Client.createOrUpdate();
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (final var future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        assertThat(clientRebuilds).hasValue(1);
+        assertThat(hiveMQS3Client.getS3Config()).isNotNull();
+        assertThat(hiveMQS3Client.getS3Config().getBucketRegionName()).isEqualTo("eu-central-1");
+    }
+
+    @Test
+    void test_close_retires_clients() {
+        hiveMQS3Client.createOrUpdate();
+
+        hiveMQS3Client.close();
+
+        verify(s3Client).close();
+        assertThat(hiveMQS3Client.getS3Config()).isNull();
+        assertThatThrownBy(() -> hiveMQS3Client.getObject("key")).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void test_request_budget_disabled_by_default() {
+        hiveMQS3Client.createOrUpdate();
+
+        assertThat(hiveMQS3Client.getRequestRate()).isZero();
+    }
+
+    @Test
+    void test_request_budget_wait_recorded() throws IOException {
+        final var configuration = """
+                s3-bucket-region:us-east-1
+                s3-bucket-name:hivemq123456
+                file-prefix:hivemq/cluster/nodes/
+                file-expiration:360
+                update-interval:180
+                credentials-type:default
+                s3-request-rate:10""";
+        Files.writeString(extensionInformation.getExtensionHomeFolder().toPath().resolve(EXTENSION_CONFIGURATION),
+                configuration);
+        hiveMQS3Client = new HiveMQS3Client(new ConfigurationReader(extensionInformation), s3ClientFactory);
+        hiveMQS3Client.createOrUpdate();
+        final var waits = new ArrayList<Long>();
+        hiveMQS3Client.setRequestWaitRecorder(waits::add);
+        when(s3Client.getObjectAsBytes(ArgumentMatchers.<Consumer<GetObjectRequest.Builder>>any())).thenReturn(
+                ResponseBytes.fromByteArray(mock(GetObjectResponse.class), "Test".getBytes(StandardCharsets.UTF_8)));
+
+        // the burst of the budget is sent immediately, only the requests after it wait
+        for (int i = 0; i < 12; i++) {
+            hiveMQS3Client.getObject("abcd");
+        }
+
+        assertThat(waits).isNotEmpty()
+                .hasSizeLessThanOrEqualTo(2)
+                .allSatisfy(waitNanos -> assertThat(waitNanos).isPositive());
+    }
+
+    @Test
+    void test_request_budget_halved_on_throttling() throws IOException {
+        final var configuration = """
+                s3-bucket-region:us-east-1
+                s3-bucket-name:hivemq123456
+                file-prefix:hivemq/cluster/nodes/
+                file-expiration:360
+                update-interval:180
+                credentials-type:default
+                s3-request-rate:100""";
+        Files.writeString(extensionInformation.getExtensionHomeFolder().toPath().resolve(EXTENSION_CONFIGURATION),
+                configuration);
+        hiveMQS3Client = new HiveMQS3Client(new ConfigurationReader(extensionInformation), s3ClientFactory);
+        hiveMQS3Client.createOrUpdate();
+        assertThat(hiveMQS3Client.getRequestRate()).isEqualTo(100);
+
+        final var slowDown = S3Exception.builder()
+                .statusCode(503)
+                .awsErrorDetails(AwsErrorDetails.builder().errorCode("SlowDown").build())
+                .build();
+        when(s3Client.getObjectAsBytes(ArgumentMatchers.<Consumer<GetObjectRequest.Builder>>any())).thenThrow(
+                slowDown);
+
+        // the throttled attempts are reported by the interceptor of the client, not by the failed request
+        assertThatThrownBy(() -> hiveMQS3Client.getObject("abcd")).isSameAs(slowDown);
+        assertThat(hiveMQS3Client.getRequestRate()).isEqualTo(100);
+
+        final var interceptor = ArgumentCaptor.forClass(ExecutionInterceptor.class);
+        verify(s3ClientFactory).createS3Client(any(), any(), interceptor.capture());
+        final var context = mock(Context.AfterTransmission.class);
+        when(context.httpResponse()).thenReturn(SdkHttpResponse.builder().statusCode(503).build());
+        interceptor.getValue().afterTransmission(context, new ExecutionAttributes());
+        assertThat(hiveMQS3Client.getRequestRate()).isEqualTo(50);
+    }
+
+    @Test
+    void test_bucket_check_cached() {
+        hiveMQS3Client.createOrUpdate();
+        mockHeadBucket(s3Client);
+
+        assertThat(hiveMQS3Client.checkBucket().isSuccessful()).isTrue();
+        assertThat(hiveMQS3Client.checkBucket().isSuccessful()).isTrue();
+
+        verify(s3Client).headBucket(ArgumentMatchers.<Consumer<HeadBucketRequest.Builder>>any());
+    }
+
+    @Test
+    void test_bucket_check_not_cached_without_ttl() throws IOException {
+        final var configuration = """
+                s3-bucket-region:us-east-1
+                s3-bucket-name:hivemq123456
+                file-prefix:hivemq/cluster/nodes/
+                file-expiration:360
+                update-interval:180
+                credentials-type:default
+                bucket-check-ttl:0""";
+        Files.writeString(extensionInformation.getExtensionHomeFolder().toPath().resolve(EXTENSION_CONFIGURATION),
+                configuration);
+        hiveMQS3Client = new HiveMQS3Client(new ConfigurationReader(extensionInformation), s3ClientFactory);
+        hiveMQS3Client.createOrUpdate();
+        mockHeadBucket(s3Client);
+
+        hiveMQS3Client.checkBucket();
+        hiveMQS3Client.checkBucket();
+
+        verify(s3Client, times(2)).headBucket(ArgumentMatchers.<Consumer<HeadBucketRequest.Builder>>any());
+    }
+
+    @Test
+    void test_bucket_check_failure_not_cached() {
+        hiveMQS3Client.createOrUpdate();
+        when(s3Client.headBucket(ArgumentMatchers.<Consumer<HeadBucketRequest.Builder>>any())).thenThrow(
+                S3Exception.builder()
+                        .awsErrorDetails(AwsErrorDetails.builder()
+                                .sdkHttpResponse(SdkHttpResponse.builder().statusCode(403).build())
+                                .build())
+                        .build());
+
+        assertThat(hiveMQS3Client.checkBucket().getStatus()).isEqualTo(S3BucketResponse.Status.NO_PERMISSION);
+        assertThat(hiveMQS3Client.checkBucket().getStatus()).isEqualTo(S3BucketResponse.Status.NO_PERMISSION);
+
+        verify(s3Client, times(2)).headBucket(ArgumentMatchers.<Consumer<HeadBucketRequest.Builder>>any());
+    }
+
+    @Test
+    void test_bucket_check_invalidated_by_missing_bucket() {
+        hiveMQS3Client.createOrUpdate();
+        mockHeadBucket(s3Client);
+        final var noSuchBucket = NoSuchBucketException.builder().statusCode(404).build();
+        when(s3Client.listObjectsV2(ArgumentMatchers.<Consumer<ListObjectsV2Request.Builder>>any())).thenThrow(
+                noSuchBucket);
+
+        hiveMQS3Client.checkBucket();
+        assertThatThrownBy(() -> hiveMQS3Client.getObjects()).isSameAs(noSuchBucket);
+        hiveMQS3Client.checkBucket();
+
+        verify(s3Client, times(2)).headBucket(ArgumentMatchers.<Consumer<HeadBucketRequest.Builder>>any());
+    }
+
+    @Test
+    void test_bucket_check_not_invalidated_by_missing_object() {
+        hiveMQS3Client.createOrUpdate();
+        mockHeadBucket(s3Client);
+        when(s3Client.getObjectAsBytes(ArgumentMatchers.<Consumer<GetObjectRequest.Builder>>any())).thenThrow(
+                NoSuchKeyException.builder().statusCode(404).build());
+
+        hiveMQS3Client.checkBucket();
+        assertThat(hiveMQS3Client.getObjectWithETag("abcd")).isNull();
+        hiveMQS3Client.checkBucket();
+
+        verify(s3Client).headBucket(ArgumentMatchers.<Consumer<HeadBucketRequest.Builder>>any());
+    }
+
+    private static void mockHeadBucket(final @NotNull S3Client s3Client) {
+        final var headBucketResponse = mock(HeadBucketResponse.class);
+        final var sdkHttpResponse = mock(SdkHttpResponse.class);
+        when(headBucketResponse.sdkHttpResponse()).thenReturn(sdkHttpResponse);
+        when(sdkHttpResponse.statusCode()).thenReturn(200);
+        when(s3Client.headBucket(ArgumentMatchers.<Consumer<HeadBucketRequest.Builder>>any()))
+                .thenReturn(headBucketResponse);
+    }
+
+    private static @NotNull Map<String, String> objects(final @NotNull String... objectKeys) {
+        final var objects = new LinkedHashMap<String, String>();
+        for (final var objectKey : objectKeys) {
+            objects.put(objectKey, "\"" + objectKey + "\"");
+        }
+        return objects;
     }
 }
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.cluster.discovery.s3.aws;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.services.sts.auth.StsAssumeRoleCredentialsProvider;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ManagedCredentialsProviderTest {
+
+    private final @NotNull StsAssumeRoleCredentialsProvider credentialsProvider = mock();
+    private final @NotNull List<Long> resolveTimes = new ArrayList<>();
+    private final @NotNull AtomicInteger fetchFailures = new AtomicInteger();
+    private final @NotNull ManagedCredentialsProvider managedCredentialsProvider =
+            new ManagedCredentialsProvider(credentialsProvider, resolveTimes::add, fetchFailures::incrementAndGet);
+
+    @Test
+    void test_resolveCredentials() {
+        final var credentials = AwsBasicCredentials.create("access-key-id", "secret-access-key");
+        when(credentialsProvider.resolveCredentials()).thenReturn(credentials);
+
+        assertThat(managedCredentialsProvider.resolveCredentials()).isSameAs(credentials);
+        assertThat(resolveTimes).hasSize(1);
+        assertThat(fetchFailures).hasValue(0);
+    }
+
+    @Test
+    void test_resolveCredentials_failure_counted() {
+        when(credentialsProvider.resolveCredentials()).thenThrow(SdkClientException.create("STS not reachable"));
+
+        assertThatThrownBy(managedCredentialsProvider::resolveCredentials).isInstanceOf(SdkClientException.class);
+        assertThat(resolveTimes).hasSize(1);
+        assertThat(fetchFailures).hasValue(1);
+    }
+
+    @Test
+    void test_close_after_last_reference() {
+        managedCredentialsProvider.retain();
+
+        managedCredentialsProvider.close();
+        verify(credentialsProvider, never()).close();
+
+        managedCredentialsProvider.close();
+        verify(credentialsProvider).close();
+    }
+}
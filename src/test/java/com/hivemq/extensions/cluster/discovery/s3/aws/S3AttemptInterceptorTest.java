@@ -0,0 +1,74 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.cluster.discovery.s3.aws;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.core.interceptor.Context;
+import software.amazon.awssdk.core.interceptor.ExecutionAttributes;
+import software.amazon.awssdk.http.SdkHttpResponse;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class S3AttemptInterceptorTest {
+
+    private final @NotNull S3RequestGovernor governor = new S3RequestGovernor();
+    private final @NotNull S3AttemptInterceptor interceptor = new S3AttemptInterceptor(governor);
+
+    @Test
+    void test_first_attempt_takes_no_token() {
+        governor.configure(1);
+        final var executionAttributes = new ExecutionAttributes();
+
+        interceptor.beforeExecution(mock(Context.BeforeExecution.class), executionAttributes);
+        interceptor.beforeTransmission(mock(Context.BeforeTransmission.class), executionAttributes);
+
+        assertThat(governor.reserve()).isZero();
+    }
+
+    @Test
+    void test_retry_takes_token() {
+        governor.configure(1);
+        final var executionAttributes = new ExecutionAttributes();
+
+        interceptor.beforeExecution(mock(Context.BeforeExecution.class), executionAttributes);
+        interceptor.beforeTransmission(mock(Context.BeforeTransmission.class), executionAttributes);
+        interceptor.beforeTransmission(mock(Context.BeforeTransmission.class), executionAttributes);
+
+        // the retry used the only token, so the next request has to wait
+        assertThat(governor.reserve()).isPositive();
+    }
+
+    @Test
+    void test_throttled_attempt_halves_rate() {
+        governor.configure(100);
+
+        interceptor.afterTransmission(afterTransmission(200), new ExecutionAttributes());
+        assertThat(governor.getRate()).isEqualTo(100);
+
+        interceptor.afterTransmission(afterTransmission(503), new ExecutionAttributes());
+        assertThat(governor.getRate()).isEqualTo(50);
+    }
+
+    private static @NotNull Context.AfterTransmission afterTransmission(final int statusCode) {
+        final var context = mock(Context.AfterTransmission.class);
+        when(context.httpResponse()).thenReturn(SdkHttpResponse.builder().statusCode(statusCode).build());
+        return context;
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.cluster.discovery.s3.aws;
+
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.awscore.exception.AwsErrorDetails;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.services.s3.model.NoSuchBucketException;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class S3BucketResponseTest {
+
+    @Test
+    void test_from_exception_no_such_bucket() {
+        final var noSuchBucket = NoSuchBucketException.builder().statusCode(404).build();
+
+        final var s3Bucket = S3BucketResponse.fromException("hivemq123456", noSuchBucket);
+
+        assertThat(s3Bucket).isNotNull();
+        assertThat(s3Bucket.getStatus()).isEqualTo(S3BucketResponse.Status.NOT_EXISTING);
+        assertThat(s3Bucket.getBucketName()).isEqualTo("hivemq123456");
+        assertThat(s3Bucket.getThrowable()).hasValue(noSuchBucket);
+    }
+
+    @Test
+    void test_from_exception_no_such_bucket_error_code() {
+        final var noSuchBucket = S3Exception.builder()
+                .statusCode(404)
+                .awsErrorDetails(AwsErrorDetails.builder().errorCode("NoSuchBucket").build())
+                .build();
+
+        final var s3Bucket = S3BucketResponse.fromException("hivemq123456", noSuchBucket);
+
+        assertThat(s3Bucket).isNotNull();
+        assertThat(s3Bucket.getStatus()).isEqualTo(S3BucketResponse.Status.NOT_EXISTING);
+    }
+
+    @Test
+    void test_from_exception_access_denied() {
+        final var accessDenied = S3Exception.builder()
+                .statusCode(403)
+                .awsErrorDetails(AwsErrorDetails.builder().errorCode("AccessDenied").build())
+                .build();
+
+        final var s3Bucket = S3BucketResponse.fromException("hivemq123456", accessDenied);
+
+        assertThat(s3Bucket).isNotNull();
+        assertThat(s3Bucket.getStatus()).isEqualTo(S3BucketResponse.Status.NO_PERMISSION);
+    }
+
+    @Test
+    void test_from_exception_not_caused_by_bucket() {
+        assertThat(S3BucketResponse.fromException("hivemq123456",
+                NoSuchKeyException.builder().statusCode(404).build())).isNull();
+        assertThat(S3BucketResponse.fromException("hivemq123456", S3Exception.builder().statusCode(412).build()))
+                .isNull();
+        assertThat(S3BucketResponse.fromException("hivemq123456", SdkClientException.create("timeout"))).isNull();
+        assertThat(S3BucketResponse.fromException("hivemq123456", null)).isNull();
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.cluster.discovery.s3.aws;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class S3RequestGovernorTest {
+
+    private final @NotNull S3RequestGovernor governor = new S3RequestGovernor();
+
+    @Test
+    void test_disabled() {
+        governor.configure(0);
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(governor.reserve()).isZero();
+        }
+        governor.onThrottled();
+        assertThat(governor.getRate()).isZero();
+        assertThat(governor.acquire()).isZero();
+    }
+
+    @Test
+    void test_burst_then_wait() {
+        governor.configure(10);
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(governor.reserve()).isZero();
+        }
+        assertThat(governor.reserve()).isPositive().isLessThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(100));
+        // the bucket is in debt, so the next caller is queued behind the previous one
+        assertThat(governor.reserve()).isGreaterThan(TimeUnit.MILLISECONDS.toNanos(100));
+    }
+
+    @Test
+    void test_throttling_halves_rate_once_per_second() {
+        governor.configure(100);
+
+        governor.onThrottled();
+        assertThat(governor.getRate()).isEqualTo(50);
+
+        governor.onThrottled();
+        assertThat(governor.getRate()).isEqualTo(50);
+    }
+
+    @Test
+    void test_throttling_keeps_minimum_rate() {
+        governor.configure(1);
+
+        governor.onThrottled();
+
+        assertThat(governor.getRate()).isEqualTo(1);
+    }
+
+    @Test
+    void test_success_recovers_additively() {
+        governor.configure(100);
+        governor.onThrottled();
+
+        governor.onSuccess();
+        assertThat(governor.getRate()).isCloseTo(50.02, within(0.001));
+
+        for (int i = 0; i < 10_000; i++) {
+            governor.onSuccess();
+        }
+        assertThat(governor.getRate()).isEqualTo(100);
+    }
+
+    @Test
+    void test_configure_keeps_reduced_rate() {
+        governor.configure(100);
+        governor.onThrottled();
+
+        governor.configure(200);
+
+        assertThat(governor.getRate()).isEqualTo(50);
+    }
+}
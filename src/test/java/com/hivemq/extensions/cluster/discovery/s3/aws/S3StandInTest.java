@@ -0,0 +1,292 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.cluster.discovery.s3.aws;
+
+import com.hivemq.extension.sdk.api.parameter.ExtensionInformation;
+import com.hivemq.extensions.cluster.discovery.s3.aws.S3StandIn.Latency;
+import com.hivemq.extensions.cluster.discovery.s3.aws.S3StandIn.Operation;
+import com.hivemq.extensions.cluster.discovery.s3.config.ConfigurationReader;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static com.hivemq.extensions.cluster.discovery.s3.ExtensionConstants.EXTENSION_CONFIGURATION;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class S3StandInTest {
+
+    private static final @NotNull String BUCKET_NAME = "hivemq123456";
+    private static final @NotNull String FILE_PREFIX = "hivemq/cluster/nodes/";
+
+    private @NotNull S3StandIn s3StandIn;
+    private @NotNull HiveMQS3Client hiveMQS3Client;
+
+    @TempDir
+    private @NotNull Path tempDir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        s3StandIn = S3StandIn.start(BUCKET_NAME);
+        hiveMQS3Client = createHiveMQS3Client("");
+    }
+
+    @AfterEach
+    void tearDown() {
+        hiveMQS3Client.close();
+        s3StandIn.close();
+    }
+
+    @Test
+    void test_checkBucket_existing() {
+        final var s3Bucket = hiveMQS3Client.checkBucket();
+
+        assertThat(s3Bucket.isSuccessful()).isTrue();
+        assertThat(s3Bucket.getStatus()).isEqualTo(S3BucketResponse.Status.EXISTING);
+        assertThat(s3StandIn.getRequestCount(Operation.HEAD_BUCKET)).isEqualTo(1);
+    }
+
+    @Test
+    void test_saveObject_getObject_getObjects_deleteObject() {
+        final var eTag = hiveMQS3Client.saveObject(FILE_PREFIX + "node1", "content1");
+
+        assertThat(s3StandIn.getObject(FILE_PREFIX + "node1")).isEqualTo("content1");
+        assertThat(hiveMQS3Client.getObject(FILE_PREFIX + "node1")).isEqualTo("content1");
+        assertThat(keys(hiveMQS3Client.getObjects().contents())).containsExactly(FILE_PREFIX + "node1");
+        assertThat(hiveMQS3Client.getObjects().contents().get(0).eTag()).isNotNull().isEqualTo(eTag);
+
+        hiveMQS3Client.deleteObject(FILE_PREFIX + "node1");
+
+        assertThat(s3StandIn.getObjectKeys()).isEmpty();
+        assertThat(hiveMQS3Client.getObjects().contents()).isEmpty();
+        assertThatThrownBy(() -> hiveMQS3Client.getObject(FILE_PREFIX + "node1")).isInstanceOfSatisfying(
+                S3Exception.class,
+                e -> assertThat(e.statusCode()).isEqualTo(404));
+    }
+
+    @Test
+    void test_getObjects_only_with_prefix() {
+        s3StandIn.putObject(FILE_PREFIX + "node1", "content1");
+        s3StandIn.putObject("other/node2", "content2");
+
+        assertThat(keys(hiveMQS3Client.getObjects().contents())).containsExactly(FILE_PREFIX + "node1");
+    }
+
+    @Test
+    void test_getNextBatchOfObjects_continuation_token() {
+        s3StandIn.setMaxKeys(2);
+        for (int i = 0; i < 5; i++) {
+            s3StandIn.putObject(FILE_PREFIX + "node" + i, "content" + i);
+        }
+
+        final var objectKeys = new ArrayList<String>();
+        var response = hiveMQS3Client.getObjects();
+        objectKeys.addAll(keys(response.contents()));
+        while (response.isTruncated()) {
+            response = hiveMQS3Client.getNextBatchOfObjects(response.nextContinuationToken());
+            objectKeys.addAll(keys(response.contents()));
+        }
+
+        assertThat(objectKeys).containsExactly(FILE_PREFIX + "node0",
+                FILE_PREFIX + "node1",
+                FILE_PREFIX + "node2",
+                FILE_PREFIX + "node3",
+                FILE_PREFIX + "node4");
+        assertThat(s3StandIn.getRequestCount(Operation.LIST_OBJECTS)).isEqualTo(3);
+    }
+
+    @Test
+    void test_deleteObjects() {
+        s3StandIn.putObject(FILE_PREFIX + "node1", "content1");
+        s3StandIn.putObject(FILE_PREFIX + "node2", "content2");
+        s3StandIn.putObject(FILE_PREFIX + "node3", "content3");
+
+        final var objects = new LinkedHashMap<String, String>();
+        objects.put(FILE_PREFIX + "node1", null);
+        objects.put(FILE_PREFIX + "node3", null);
+        final var result = hiveMQS3Client.deleteObjects(objects);
+
+        assertThat(result.getFailedObjectKeys()).isEmpty();
+        assertThat(result.getModifiedObjectKeys()).isEmpty();
+        assertThat(s3StandIn.getObjectKeys()).containsExactly(FILE_PREFIX + "node2");
+    }
+
+    @Test
+    void test_deleteObjects_conditional_one_request_per_batch() {
+        for (int i = 0; i < 50; i++) {
+            s3StandIn.putObject(FILE_PREFIX + "node" + i, "content" + i);
+        }
+        final var objects = new LinkedHashMap<String, String>();
+        for (final var s3Object : hiveMQS3Client.getObjects().contents()) {
+            objects.put(s3Object.key(), s3Object.eTag());
+        }
+        // updated after the listing, so it no longer has the listed ETag
+        s3StandIn.putObject(FILE_PREFIX + "node7", "updated");
+        hiveMQS3Client.deleteObject(FILE_PREFIX + "node8");
+
+        final var result = hiveMQS3Client.deleteObjects(objects);
+
+        assertThat(result.getFailedObjectKeys()).isEmpty();
+        assertThat(result.getModifiedObjectKeys()).containsExactly(FILE_PREFIX + "node7");
+        assertThat(s3StandIn.getObjectKeys()).containsExactly(FILE_PREFIX + "node7");
+        assertThat(s3StandIn.getRequestCount(Operation.DELETE_OBJECTS)).isEqualTo(1);
+        assertThat(s3StandIn.getRequestCount(Operation.GET_OBJECT)).isZero();
+    }
+
+    @Test
+    void test_deleteObjects_without_conditional_delete_checks_etags() throws IOException {
+        hiveMQS3Client.close();
+        hiveMQS3Client = createHiveMQS3Client("conditional-delete:false");
+        s3StandIn.setConditionalDelete(false);
+        for (int i = 0; i < 3; i++) {
+            s3StandIn.putObject(FILE_PREFIX + "node" + i, "content" + i);
+        }
+        final var objects = new LinkedHashMap<String, String>();
+        for (final var s3Object : hiveMQS3Client.getObjects().contents()) {
+            objects.put(s3Object.key(), s3Object.eTag());
+        }
+        // updated after the listing, the stand-in would delete it as it ignores the ETag of the deletion
+        s3StandIn.putObject(FILE_PREFIX + "node1", "updated");
+        hiveMQS3Client.deleteObject(FILE_PREFIX + "node2");
+
+        final var result = hiveMQS3Client.deleteObjects(objects);
+
+        assertThat(result.getFailedObjectKeys()).isEmpty();
+        assertThat(result.getModifiedObjectKeys()).containsExactly(FILE_PREFIX + "node1");
+        assertThat(s3StandIn.getObjectKeys()).containsExactly(FILE_PREFIX + "node1");
+        assertThat(s3StandIn.getRequestCount(Operation.HEAD_OBJECT)).isEqualTo(3);
+        assertThat(s3StandIn.getRequestCount(Operation.DELETE_OBJECTS)).isEqualTo(1);
+    }
+
+    @Test
+    void test_saveObjectIfMatch() {
+        assertThat(hiveMQS3Client.saveObjectIfMatch(FILE_PREFIX + "node1", "content1", null)).isTrue();
+        assertThat(hiveMQS3Client.saveObjectIfMatch(FILE_PREFIX + "node1", "content2", null)).isFalse();
+
+        final var objectContent = hiveMQS3Client.getObjectWithETag(FILE_PREFIX + "node1");
+        assertThat(objectContent).isNotNull();
+        assertThat(objectContent.getContent()).isEqualTo("content1");
+
+        assertThat(hiveMQS3Client.saveObjectIfMatch(FILE_PREFIX + "node1",
+                "content2",
+                objectContent.getETag())).isTrue();
+        assertThat(hiveMQS3Client.saveObjectIfMatch(FILE_PREFIX + "node1",
+                "content3",
+                objectContent.getETag())).isFalse();
+        assertThat(s3StandIn.getObject(FILE_PREFIX + "node1")).isEqualTo("content2");
+    }
+
+    @Test
+    void test_slow_down() {
+        s3StandIn.setSlowDownRate(Operation.GET_OBJECT, 1.0);
+        s3StandIn.putObject(FILE_PREFIX + "node1", "content1");
+
+        assertThatThrownBy(() -> hiveMQS3Client.getObject(FILE_PREFIX + "node1")).isInstanceOfSatisfying(
+                S3Exception.class,
+                e -> {
+                    assertThat(e.statusCode()).isEqualTo(503);
+                    assertThat(S3ExceptionUtil.isThrottling(e)).isTrue();
+                });
+        // the SDK retries a throttled request
+        assertThat(s3StandIn.getRequestCount(Operation.GET_OBJECT)).isGreaterThan(1);
+    }
+
+    @Test
+    void test_connection_reset() {
+        s3StandIn.setConnectionResetRate(Operation.LIST_OBJECTS, 1.0);
+
+        assertThatThrownBy(() -> hiveMQS3Client.getObjects()).isInstanceOf(SdkClientException.class);
+        assertThat(s3StandIn.getRequestCount(Operation.LIST_OBJECTS)).isGreaterThan(1);
+    }
+
+    @Test
+    void test_latency() {
+        s3StandIn.setLatency(Operation.GET_OBJECT, Latency.fixed(Duration.ofMillis(200)));
+        s3StandIn.putObject(FILE_PREFIX + "node1", "content1");
+
+        final var startNanos = System.nanoTime();
+        hiveMQS3Client.getObject(FILE_PREFIX + "node1");
+
+        assertThat(Duration.ofNanos(System.nanoTime() - startNanos)).isGreaterThanOrEqualTo(Duration.ofMillis(200));
+    }
+
+    @Test
+    void test_listing_delay() throws InterruptedException {
+        s3StandIn.setListingDelay(Duration.ofMillis(200));
+
+        hiveMQS3Client.saveObject(FILE_PREFIX + "node1", "content1");
+
+        // the new object can be read, but it is not listed yet
+        assertThat(hiveMQS3Client.getObject(FILE_PREFIX + "node1")).isEqualTo("content1");
+        assertThat(hiveMQS3Client.getObjects().contents()).isEmpty();
+        Thread.sleep(300);
+        assertThat(keys(hiveMQS3Client.getObjects().contents())).containsExactly(FILE_PREFIX + "node1");
+
+        hiveMQS3Client.deleteObject(FILE_PREFIX + "node1");
+
+        // the deleted object is still listed
+        assertThat(keys(hiveMQS3Client.getObjects().contents())).containsExactly(FILE_PREFIX + "node1");
+        Thread.sleep(300);
+        assertThat(hiveMQS3Client.getObjects().contents()).isEmpty();
+    }
+
+    private @NotNull HiveMQS3Client createHiveMQS3Client(final @NotNull String additionalConfiguration)
+            throws IOException {
+        final var extensionInformation = mock(ExtensionInformation.class);
+        when(extensionInformation.getExtensionHomeFolder()).thenReturn(tempDir.toFile());
+        final var configPath = tempDir.resolve(EXTENSION_CONFIGURATION);
+        Files.createDirectories(configPath.getParent());
+        final var configuration = """
+                s3-bucket-region:us-east-1
+                s3-bucket-name:%s
+                file-prefix:%s
+                file-expiration:360
+                update-interval:180
+                s3-endpoint:%s
+                s3-endpoint-region:us-east-1
+                s3-path-style-access:true
+                credentials-type:access_key
+                credentials-access-key-id:access-key-id
+                credentials-secret-access-key:secret-access-key
+                %s""".formatted(BUCKET_NAME, FILE_PREFIX, s3StandIn.getEndpoint(), additionalConfiguration);
+        Files.writeString(configPath, configuration);
+
+        final var hiveMQS3Client = new HiveMQS3Client(new ConfigurationReader(extensionInformation));
+        hiveMQS3Client.createOrUpdate();
+        return hiveMQS3Client;
+    }
+
+    private static @NotNull List<String> keys(final @NotNull List<S3Object> s3Objects) {
+        return s3Objects.stream().map(S3Object::key).collect(Collectors.toList());
+    }
+}
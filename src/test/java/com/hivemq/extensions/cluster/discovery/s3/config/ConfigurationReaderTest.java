@@ -20,10 +20,13 @@ import com.hivemq.extension.sdk.api.parameter.ExtensionInformation;
 import org.jetbrains.annotations.NotNull;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.condition.OS;
 import org.junit.jupiter.api.io.TempDir;
 
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 
 import static com.hivemq.extensions.cluster.discovery.s3.ExtensionConstants.EXTENSION_CONFIGURATION;
 import static com.hivemq.extensions.cluster.discovery.s3.ExtensionConstants.EXTENSION_CONFIGURATION_LEGACY;
@@ -64,7 +67,9 @@ class ConfigurationReaderTest {
                 configuration);
 
         final var configurationReader = new ConfigurationReader(extensionInformation);
-        assertThat(configurationReader.readConfiguration()).isNotNull();
+        final var s3Config = configurationReader.readConfiguration();
+        assertThat(s3Config).isNotNull();
+        assertThat(s3Config.getConditionalDelete()).isTrue();
     }
 
     @Test
@@ -220,6 +225,62 @@ class ConfigurationReaderTest {
         assertThat(configurationReader.readConfiguration()).isNotNull();
     }
 
+    @Test
+    void test_readConfiguration_credentials_type_assume_role_successful() throws Exception {
+        final var configuration = """
+                s3-bucket-region:us-east-1
+                s3-bucket-name:hivemq
+                file-prefix:hivemq/cluster/nodes/
+                file-expiration:360
+                update-interval:180
+                credentials-type:assume_role
+                credentials-role-arn:arn:aws:iam::123456789012:role/hivemq""";
+        Files.writeString(extensionInformation.getExtensionHomeFolder().toPath().resolve(EXTENSION_CONFIGURATION),
+                configuration);
+
+        final var configurationReader = new ConfigurationReader(extensionInformation);
+        final var s3Config = configurationReader.readConfiguration();
+        assertThat(s3Config).isNotNull();
+        assertThat(s3Config.getAuthenticationType()).isEqualTo(AuthenticationType.ASSUME_ROLE);
+        assertThat(s3Config.getRoleArn()).isEqualTo("arn:aws:iam::123456789012:role/hivemq");
+        assertThat(s3Config.getRoleSessionName()).isEqualTo("hivemq-s3-cluster-discovery");
+    }
+
+    @Test
+    void test_readConfiguration_credentials_type_assume_role_missing_role_arn() throws Exception {
+        final var configuration = """
+                s3-bucket-region:us-east-1
+                s3-bucket-name:hivemq
+                file-prefix:hivemq/cluster/nodes/
+                file-expiration:360
+                update-interval:180
+                credentials-type:assume_role""";
+        Files.writeString(extensionInformation.getExtensionHomeFolder().toPath().resolve(EXTENSION_CONFIGURATION),
+                configuration);
+
+        final var configurationReader = new ConfigurationReader(extensionInformation);
+        assertThat(configurationReader.readConfiguration()).isNull();
+    }
+
+    @Test
+    void test_readConfiguration_credentials_type_web_identity_without_role_arn() throws Exception {
+        final var configuration = """
+                s3-bucket-region:us-east-1
+                s3-bucket-name:hivemq
+                file-prefix:hivemq/cluster/nodes/
+                file-expiration:360
+                update-interval:180
+                credentials-type:web_identity""";
+        Files.writeString(extensionInformation.getExtensionHomeFolder().toPath().resolve(EXTENSION_CONFIGURATION),
+                configuration);
+
+        final var configurationReader = new ConfigurationReader(extensionInformation);
+        final var s3Config = configurationReader.readConfiguration();
+        assertThat(s3Config).isNotNull();
+        assertThat(s3Config.getAuthenticationType()).isEqualTo(AuthenticationType.WEB_IDENTITY);
+        assertThat(s3Config.getRoleArn()).isNull();
+    }
+
     @Test
     void test_readConfiguration_credentials_type_temporary_session_missing_session_token() throws Exception {
         final var configuration = """
@@ -367,4 +428,408 @@ class ConfigurationReaderTest {
         final var configurationReader = new ConfigurationReader(extensionInformation);
         assertThat(configurationReader.readConfiguration()).isNotNull();
     }
+
+    @Test
+    void test_readConfiguration_download_concurrency_successful() throws Exception {
+        final var configuration = """
+                s3-bucket-region:us-east-1
+                s3-bucket-name:hivemq
+                file-prefix:hivemq/cluster/nodes/
+                file-expiration:360
+                update-interval:180
+                credentials-type:default
+                download-concurrency:16
+                download-concurrency-adaptive:true""";
+        Files.writeString(extensionInformation.getExtensionHomeFolder().toPath().resolve(EXTENSION_CONFIGURATION),
+                configuration);
+
+        final var configurationReader = new ConfigurationReader(extensionInformation);
+        final var s3Config = configurationReader.readConfiguration();
+        assertThat(s3Config).isNotNull();
+        assertThat(s3Config.getDownloadConcurrency()).isEqualTo(16);
+        assertThat(s3Config.getDownloadConcurrencyAdaptive()).isTrue();
+    }
+
+    @Test
+    void test_readConfiguration_download_concurrency_zero() throws Exception {
+        final var configuration = """
+                s3-bucket-region:us-east-1
+                s3-bucket-name:hivemq
+                file-prefix:hivemq/cluster/nodes/
+                file-expiration:360
+                update-interval:180
+                credentials-type:default
+                download-concurrency:0""";
+        Files.writeString(extensionInformation.getExtensionHomeFolder().toPath().resolve(EXTENSION_CONFIGURATION),
+                configuration);
+
+        final var configurationReader = new ConfigurationReader(extensionInformation);
+        assertThat(configurationReader.readConfiguration()).isNull();
+    }
+
+    @Test
+    void test_readConfiguration_file_layout_key() throws Exception {
+        final var configuration = """
+                s3-bucket-region:us-east-1
+                s3-bucket-name:hivemq
+                file-prefix:hivemq/cluster/nodes/
+                file-expiration:360
+                update-interval:180
+                credentials-type:default
+                file-layout:key""";
+        Files.writeString(extensionInformation.getExtensionHomeFolder().toPath().resolve(EXTENSION_CONFIGURATION),
+                configuration);
+
+        final var configurationReader = new ConfigurationReader(extensionInformation);
+        final var s3Config = configurationReader.readConfiguration();
+        assertThat(s3Config).isNotNull();
+        assertThat(s3Config.getFileLayout()).isEqualTo(FileLayout.KEY);
+    }
+
+    @Test
+    void test_readConfiguration_file_layout_invalid() throws Exception {
+        final var configuration = """
+                s3-bucket-region:us-east-1
+                s3-bucket-name:hivemq
+                file-prefix:hivemq/cluster/nodes/
+                file-expiration:360
+                update-interval:180
+                credentials-type:default
+                file-layout:folder""";
+        Files.writeString(extensionInformation.getExtensionHomeFolder().toPath().resolve(EXTENSION_CONFIGURATION),
+                configuration);
+
+        final var configurationReader = new ConfigurationReader(extensionInformation);
+        assertThat(configurationReader.readConfiguration()).isNull();
+    }
+
+    @Test
+    void test_readConfiguration_file_format_default() throws Exception {
+        final var configuration = """
+                s3-bucket-region:us-east-1
+                s3-bucket-name:hivemq
+                file-prefix:hivemq/cluster/nodes/
+                file-expiration:360
+                update-interval:180
+                credentials-type:default""";
+        Files.writeString(extensionInformation.getExtensionHomeFolder().toPath().resolve(EXTENSION_CONFIGURATION),
+                configuration);
+
+        final var configurationReader = new ConfigurationReader(extensionInformation);
+        final var s3Config = configurationReader.readConfiguration();
+        assertThat(s3Config).isNotNull();
+        assertThat(s3Config.getFileFormat()).isEqualTo(FileFormat.V4);
+    }
+
+    @Test
+    void test_readConfiguration_file_format_v5() throws Exception {
+        final var configuration = """
+                s3-bucket-region:us-east-1
+                s3-bucket-name:hivemq
+                file-prefix:hivemq/cluster/nodes/
+                file-expiration:360
+                update-interval:180
+                credentials-type:default
+                file-format-version:5""";
+        Files.writeString(extensionInformation.getExtensionHomeFolder().toPath().resolve(EXTENSION_CONFIGURATION),
+                configuration);
+
+        final var configurationReader = new ConfigurationReader(extensionInformation);
+        final var s3Config = configurationReader.readConfiguration();
+        assertThat(s3Config).isNotNull();
+        assertThat(s3Config.getFileFormat()).isEqualTo(FileFormat.V5);
+    }
+
+    @Test
+    void test_readConfiguration_file_format_invalid() throws Exception {
+        final var configuration = """
+                s3-bucket-region:us-east-1
+                s3-bucket-name:hivemq
+                file-prefix:hivemq/cluster/nodes/
+                file-expiration:360
+                update-interval:180
+                credentials-type:default
+                file-format-version:3""";
+        Files.writeString(extensionInformation.getExtensionHomeFolder().toPath().resolve(EXTENSION_CONFIGURATION),
+                configuration);
+
+        final var configurationReader = new ConfigurationReader(extensionInformation);
+        assertThat(configurationReader.readConfiguration()).isNull();
+    }
+
+    @Test
+    void test_readConfiguration_background_refresh() throws Exception {
+        final var configuration = """
+                s3-bucket-region:us-east-1
+                s3-bucket-name:hivemq
+                file-prefix:hivemq/cluster/nodes/
+                file-expiration:360
+                update-interval:180
+                credentials-type:default
+                background-refresh:true
+                background-refresh-max-staleness:90""";
+        Files.writeString(extensionInformation.getExtensionHomeFolder().toPath().resolve(EXTENSION_CONFIGURATION),
+                configuration);
+
+        final var configurationReader = new ConfigurationReader(extensionInformation);
+        final var s3Config = configurationReader.readConfiguration();
+        assertThat(s3Config).isNotNull();
+        assertThat(s3Config.getBackgroundRefresh()).isTrue();
+        assertThat(s3Config.getBackgroundRefreshMaxStalenessInSeconds()).isEqualTo(90);
+    }
+
+    @Test
+    void test_readConfiguration_background_refresh_max_staleness_negative() throws Exception {
+        final var configuration = """
+                s3-bucket-region:us-east-1
+                s3-bucket-name:hivemq
+                file-prefix:hivemq/cluster/nodes/
+                file-expiration:360
+                update-interval:180
+                credentials-type:default
+                background-refresh:true
+                background-refresh-max-staleness:-1""";
+        Files.writeString(extensionInformation.getExtensionHomeFolder().toPath().resolve(EXTENSION_CONFIGURATION),
+                configuration);
+
+        final var configurationReader = new ConfigurationReader(extensionInformation);
+        assertThat(configurationReader.readConfiguration()).isNull();
+    }
+
+    @Test
+    void test_readConfiguration_s3_request_rate() throws Exception {
+        final var configuration = """
+                s3-bucket-region:us-east-1
+                s3-bucket-name:hivemq
+                file-prefix:hivemq/cluster/nodes/
+                file-expiration:360
+                update-interval:180
+                credentials-type:default
+                s3-request-rate:50""";
+        Files.writeString(extensionInformation.getExtensionHomeFolder().toPath().resolve(EXTENSION_CONFIGURATION),
+                configuration);
+
+        final var configurationReader = new ConfigurationReader(extensionInformation);
+        final var s3Config = configurationReader.readConfiguration();
+        assertThat(s3Config).isNotNull();
+        assertThat(s3Config.getRequestRate()).isEqualTo(50);
+    }
+
+    @Test
+    void test_readConfiguration_s3_request_rate_negative() throws Exception {
+        final var configuration = """
+                s3-bucket-region:us-east-1
+                s3-bucket-name:hivemq
+                file-prefix:hivemq/cluster/nodes/
+                file-expiration:360
+                update-interval:180
+                credentials-type:default
+                s3-request-rate:-1""";
+        Files.writeString(extensionInformation.getExtensionHomeFolder().toPath().resolve(EXTENSION_CONFIGURATION),
+                configuration);
+
+        final var configurationReader = new ConfigurationReader(extensionInformation);
+        assertThat(configurationReader.readConfiguration()).isNull();
+    }
+
+    @Test
+    void test_readConfiguration_bucket_check_ttl_negative() throws Exception {
+        final var configuration = """
+                s3-bucket-region:us-east-1
+                s3-bucket-name:hivemq
+                file-prefix:hivemq/cluster/nodes/
+                file-expiration:360
+                update-interval:180
+                credentials-type:default
+                bucket-check-ttl:-1""";
+        Files.writeString(extensionInformation.getExtensionHomeFolder().toPath().resolve(EXTENSION_CONFIGURATION),
+                configuration);
+
+        final var configurationReader = new ConfigurationReader(extensionInformation);
+        assertThat(configurationReader.readConfiguration()).isNull();
+    }
+
+    @Test
+    void test_readConfiguration_circuit_breaker_open_duration_zero() throws Exception {
+        final var configuration = """
+                s3-bucket-region:us-east-1
+                s3-bucket-name:hivemq
+                file-prefix:hivemq/cluster/nodes/
+                file-expiration:360
+                update-interval:180
+                credentials-type:default
+                circuit-breaker-failure-threshold:3
+                circuit-breaker-open-duration:0""";
+        Files.writeString(extensionInformation.getExtensionHomeFolder().toPath().resolve(EXTENSION_CONFIGURATION),
+                configuration);
+
+        final var configurationReader = new ConfigurationReader(extensionInformation);
+        assertThat(configurationReader.readConfiguration()).isNull();
+    }
+
+    @Test
+    void test_readConfiguration_conditional_delete_disabled() throws Exception {
+        final var configuration = """
+                s3-bucket-region:us-east-1
+                s3-bucket-name:hivemq
+                file-prefix:hivemq/cluster/nodes/
+                file-expiration:360
+                update-interval:180
+                credentials-type:default
+                conditional-delete:false""";
+        Files.writeString(extensionInformation.getExtensionHomeFolder().toPath().resolve(EXTENSION_CONFIGURATION),
+                configuration);
+
+        final var configurationReader = new ConfigurationReader(extensionInformation);
+        final var s3Config = configurationReader.readConfiguration();
+        assertThat(s3Config).isNotNull();
+        assertThat(s3Config.getConditionalDelete()).isFalse();
+    }
+
+    @Test
+    void test_readConfiguration_unchanged_file_not_read_again() throws Exception {
+        writeConfiguration("hivemq");
+
+        final var configurationReader = new ConfigurationReader(extensionInformation);
+        final var s3Config = configurationReader.readConfiguration();
+
+        assertThat(s3Config).isNotNull();
+        assertThat(configurationReader.readConfiguration()).isSameAs(s3Config);
+    }
+
+    @Test
+    void test_readConfiguration_changed_file_read_again() throws Exception {
+        writeConfiguration("hivemq");
+        final var configurationReader = new ConfigurationReader(extensionInformation);
+        final var s3Config = configurationReader.readConfiguration();
+
+        writeConfiguration("hivemq-changed");
+
+        final var changedS3Config = configurationReader.readConfiguration();
+        assertThat(changedS3Config).isNotSameAs(s3Config);
+        assertThat(changedS3Config).isNotNull();
+        assertThat(changedS3Config.getBucketName()).isEqualTo("hivemq-changed");
+    }
+
+    @Test
+    @DisabledOnOs(OS.WINDOWS)
+    void test_readConfiguration_swapped_symlink_read_again() throws Exception {
+        // the layout of a mounted Kubernetes ConfigMap, an update only replaces the ..data symlink
+        final var confDir = tempDir.resolve("conf");
+        writeConfiguration("..2026_01/config.properties", "hivemq");
+        Files.createSymbolicLink(confDir.resolve("..data"), Path.of("..2026_01"));
+        Files.createSymbolicLink(confDir.resolve("config.properties"), Path.of("..data/config.properties"));
+        final var configurationReader = new ConfigurationReader(extensionInformation);
+        final var s3Config = configurationReader.readConfiguration();
+        assertThat(s3Config).isNotNull();
+
+        writeConfiguration("..2026_02/config.properties", "hivemq-changed");
+        Files.createSymbolicLink(confDir.resolve("..data_tmp"), Path.of("..2026_02"));
+        Files.move(confDir.resolve("..data_tmp"), confDir.resolve("..data"), StandardCopyOption.ATOMIC_MOVE);
+
+        // the watcher reports no event for config.properties, the attributes of the link target changed
+        final var changedS3Config = configurationReader.readConfiguration();
+        assertThat(changedS3Config).isNotNull();
+        assertThat(changedS3Config.getBucketName()).isEqualTo("hivemq-changed");
+        configurationReader.close();
+    }
+
+    @Test
+    void test_readConfiguration_deleted_file() throws Exception {
+        writeConfiguration("hivemq");
+        final var configurationReader = new ConfigurationReader(extensionInformation);
+        assertThat(configurationReader.readConfiguration()).isNotNull();
+
+        Files.delete(extensionInformation.getExtensionHomeFolder().toPath().resolve(EXTENSION_CONFIGURATION));
+
+        assertThat(configurationReader.readConfiguration()).isNull();
+    }
+
+    @Test
+    void test_readConfiguration_without_watcher_uses_file_attributes() throws Exception {
+        writeConfiguration("hivemq");
+        final var configurationReader = new ConfigurationReader(extensionInformation, new ConfigFileWatcher(null));
+        final var s3Config = configurationReader.readConfiguration();
+        assertThat(configurationReader.readConfiguration()).isSameAs(s3Config);
+
+        writeConfiguration("hivemq-changed");
+
+        final var changedS3Config = configurationReader.readConfiguration();
+        assertThat(changedS3Config).isNotNull();
+        assertThat(changedS3Config.getBucketName()).isEqualTo("hivemq-changed");
+    }
+
+    @Test
+    void test_readConfiguration_without_watcher_legacy_file_created() throws Exception {
+        writeConfiguration("hivemq");
+        final var configurationReader = new ConfigurationReader(extensionInformation, new ConfigFileWatcher(null));
+        assertThat(configurationReader.readConfiguration()).isNotNull();
+
+        writeConfiguration(EXTENSION_CONFIGURATION_LEGACY, "hivemq-legacy");
+
+        final var legacyS3Config = configurationReader.readConfiguration();
+        assertThat(legacyS3Config).isNotNull();
+        assertThat(legacyS3Config.getBucketName()).isEqualTo("hivemq-legacy");
+    }
+
+    @Test
+    void test_readConfiguration_after_close_uses_file_attributes() throws Exception {
+        writeConfiguration("hivemq");
+        final var configurationReader = new ConfigurationReader(extensionInformation);
+        assertThat(configurationReader.readConfiguration()).isNotNull();
+
+        configurationReader.close();
+        writeConfiguration("hivemq-changed");
+
+        final var changedS3Config = configurationReader.readConfiguration();
+        assertThat(changedS3Config).isNotNull();
+        assertThat(changedS3Config.getBucketName()).isEqualTo("hivemq-changed");
+    }
+
+    @Test
+    void test_getVersion_other_directory_does_not_change_version() throws Exception {
+        final var file = tempDir.resolve("conf").resolve("config.xml");
+        final var otherFile = Files.createDirectories(tempDir.resolve("other")).resolve("config.xml");
+        final var configFileWatcher = new ConfigFileWatcher();
+        try {
+            final var version = configFileWatcher.getVersion(file);
+            configFileWatcher.getVersion(otherFile);
+
+            assertThat(configFileWatcher.getVersion(file)).isEqualTo(version);
+        } finally {
+            configFileWatcher.close();
+        }
+        assertThat(configFileWatcher.getVersion(file)).isEqualTo(ConfigFileWatcher.UNWATCHED);
+    }
+
+    @Test
+    void test_readConfiguration_same_content_equal() throws Exception {
+        writeConfiguration("hivemq");
+
+        final var s3Config = new ConfigurationReader(extensionInformation).readConfiguration();
+        final var otherS3Config = new ConfigurationReader(extensionInformation).readConfiguration();
+
+        assertThat(s3Config).isNotSameAs(otherS3Config);
+        assertThat(s3Config).isEqualTo(otherS3Config);
+        assertThat(s3Config).hasSameHashCodeAs(otherS3Config);
+        assertThat(s3Config.getAuthenticationType()).isEqualTo(AuthenticationType.DEFAULT);
+    }
+
+    private void writeConfiguration(final @NotNull String bucketName) throws Exception {
+        writeConfiguration(EXTENSION_CONFIGURATION, bucketName);
+    }
+
+    private void writeConfiguration(final @NotNull String location, final @NotNull String bucketName)
+            throws Exception {
+        final var configuration = """
+                s3-bucket-region:us-east-1
+                s3-bucket-name:%s
+                file-prefix:hivemq/cluster/nodes/
+                file-expiration:360
+                update-interval:180
+                credentials-type:default""".formatted(bucketName);
+        final var path = extensionInformation.getExtensionHomeFolder().toPath().resolve(location);
+        Files.createDirectories(path.getParent());
+        Files.writeString(path, configuration);
+    }
 }
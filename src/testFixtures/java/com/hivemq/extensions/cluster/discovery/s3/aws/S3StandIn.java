@@ -0,0 +1,745 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.cluster.discovery.s3.aws;
+
+import com.hivemq.extensions.cluster.discovery.s3.util.DaemonThreadFactory;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.w3c.dom.Element;
+import org.xml.sax.SAXException;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * An embedded stand-in for S3, so the extension can be tested and benchmarked under slow, throttled or failing S3
+ * conditions without Docker or network access.
+ * <p>
+ * It serves a single bucket with the subset of the S3 REST API that the {@link HiveMQS3Client} uses: HeadBucket,
+ * ListObjectsV2 with continuation tokens, GetObject, HeadObject, PutObject (also conditional), DeleteObject and
+ * DeleteObjects (also conditional, unless {@link #setConditionalDelete(boolean) disabled}).
+ * Requests are not authenticated and must use path-style access, so the client is configured with
+ * {@code s3-endpoint:}{@link #getEndpoint()}, {@code s3-path-style-access:true} and static credentials.
+ * <p>
+ * Per {@link Operation} the stand-in can add {@link Latency latency}, respond with {@code 503 SlowDown} and reset the
+ * connection, each with a probability. With a {@link #setListingDelay(Duration) listing delay} new objects show up in
+ * the listings and deleted objects vanish from them only after the delay, like with an eventually consistent listing.
+ * GetObject is always consistent.
+ */
+public class S3StandIn implements AutoCloseable {
+
+    public enum Operation {
+        HEAD_BUCKET,
+        LIST_OBJECTS,
+        GET_OBJECT,
+        HEAD_OBJECT,
+        PUT_OBJECT,
+        DELETE_OBJECT,
+        DELETE_OBJECTS
+    }
+
+    /**
+     * The distribution of the latency that is added to a request.
+     */
+    @FunctionalInterface
+    public interface Latency {
+
+        @NotNull Latency NONE = random -> 0;
+
+        long nextMillis(@NotNull Random random);
+
+        static @NotNull Latency fixed(final @NotNull Duration latency) {
+            final var millis = latency.toMillis();
+            return random -> millis;
+        }
+
+        static @NotNull Latency uniform(final @NotNull Duration min, final @NotNull Duration max) {
+            final var minMillis = min.toMillis();
+            final var rangeMillis = max.toMillis() - minMillis;
+            return random -> minMillis + (long) (random.nextDouble() * rangeMillis);
+        }
+
+        /**
+         * A log-normal distribution with a long tail, like the latencies of S3 requests.
+         *
+         * @param median the median latency.
+         * @param sigma  the standard deviation of the logarithm of the latency, e.g. {@code 0.5}, the higher the
+         *               longer the tail.
+         */
+        static @NotNull Latency logNormal(final @NotNull Duration median, final double sigma) {
+            final var mu = Math.log(Math.max(1, median.toMillis()));
+            return random -> Math.round(Math.exp(mu + sigma * random.nextGaussian()));
+        }
+    }
+
+    private static final @NotNull String XML_NAMESPACE = "http://s3.amazonaws.com/doc/2006-03-01/";
+    private static final @NotNull DateTimeFormatter LAST_MODIFIED_HEADER =
+            DateTimeFormatter.RFC_1123_DATE_TIME.withZone(ZoneOffset.UTC);
+    private static final int DEFAULT_MAX_KEYS = 1_000;
+
+    private final @NotNull String bucketName;
+    private final @NotNull HttpServer server;
+    private final @NotNull ExecutorService executor;
+    private final @NotNull Random random = new Random(0);
+    private final @NotNull ConcurrentSkipListMap<String, StoredObject> objects = new ConcurrentSkipListMap<>();
+    private final @NotNull Map<Operation, Latency> latencies = new EnumMap<>(Operation.class);
+    private final @NotNull Map<Operation, Double> slowDownRates = new EnumMap<>(Operation.class);
+    private final @NotNull Map<Operation, Double> connectionResetRates = new EnumMap<>(Operation.class);
+    private final @NotNull Map<Operation, LongAdder> requestCounts = new EnumMap<>(Operation.class);
+    private volatile long listingDelayMillis;
+    private volatile int maxKeys = DEFAULT_MAX_KEYS;
+    private volatile boolean conditionalDelete = true;
+
+    private S3StandIn(final @NotNull String bucketName, final @NotNull HttpServer server) {
+        this.bucketName = bucketName;
+        this.server = server;
+        for (final var operation : Operation.values()) {
+            requestCounts.put(operation, new LongAdder());
+        }
+        // the latency blocks the handling thread, so every request in flight needs its own thread
+        executor = Executors.newCachedThreadPool(new DaemonThreadFactory("s3-stand-in"));
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+    }
+
+    /**
+     * Starts the stand-in on a free port of the loopback interface.
+     */
+    public static @NotNull S3StandIn start(final @NotNull String bucketName) throws IOException {
+        final var server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        final var s3StandIn = new S3StandIn(bucketName, server);
+        server.start();
+        return s3StandIn;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    public @NotNull String getEndpoint() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    }
+
+    public @NotNull String getBucketName() {
+        return bucketName;
+    }
+
+    public synchronized void setLatency(final @NotNull Operation operation, final @NotNull Latency latency) {
+        latencies.put(operation, latency);
+    }
+
+    /**
+     * @param probability the probability that a request is answered with {@code 503 SlowDown}.
+     */
+    public synchronized void setSlowDownRate(final @NotNull Operation operation, final double probability) {
+        slowDownRates.put(operation, probability);
+    }
+
+    /**
+     * @param probability the probability that the connection is closed instead of answering a request.
+     */
+    public synchronized void setConnectionResetRate(final @NotNull Operation operation, final double probability) {
+        connectionResetRates.put(operation, probability);
+    }
+
+    public void setListingDelay(final @NotNull Duration listingDelay) {
+        listingDelayMillis = listingDelay.toMillis();
+    }
+
+    /**
+     * @param maxKeys the maximum number of objects of a ListObjectsV2 page, S3 returns at most 1,000.
+     */
+    public void setMaxKeys(final int maxKeys) {
+        this.maxKeys = maxKeys;
+    }
+
+    /**
+     * @param conditionalDelete {@code false} to ignore the ETags of a DeleteObjects request, like S3 compatible stores
+     *                          without conditional deletes.
+     */
+    public void setConditionalDelete(final boolean conditionalDelete) {
+        this.conditionalDelete = conditionalDelete;
+    }
+
+    /**
+     * Seeds the random numbers of the latencies and the faults, so a run can be repeated.
+     */
+    public void setSeed(final long seed) {
+        random.setSeed(seed);
+    }
+
+    /**
+     * Puts an object directly, without latency and faults, it is listed immediately.
+     */
+    public void putObject(final @NotNull String key, final @NotNull String content) {
+        putObject(key, content, Instant.now());
+    }
+
+    /**
+     * Puts an object directly with the given last modified time, e.g. of an expired node file.
+     */
+    public void putObject(
+            final @NotNull String key,
+            final @NotNull String content,
+            final @NotNull Instant lastModified) {
+        objects.put(key, new StoredObject(content.getBytes(UTF_8), lastModified, 0));
+    }
+
+    /**
+     * @return the content of the object or {@code null} if it does not exist.
+     */
+    public @Nullable String getObject(final @NotNull String key) {
+        final var storedObject = objects.get(key);
+        return storedObject == null || storedObject.isDeleted() ? null : new String(storedObject.content, UTF_8);
+    }
+
+    /**
+     * @return the keys of all existing objects, regardless of the listing delay.
+     */
+    public @NotNull Set<String> getObjectKeys() {
+        final var keys = new TreeSet<String>();
+        objects.forEach((key, storedObject) -> {
+            if (!storedObject.isDeleted()) {
+                keys.add(key);
+            }
+        });
+        return keys;
+    }
+
+    public long getRequestCount(final @NotNull Operation operation) {
+        return requestCounts.get(operation).sum();
+    }
+
+    private void handle(final @NotNull HttpExchange exchange) throws IOException {
+        try (exchange) {
+            final var path = exchange.getRequestURI().getPath();
+            final var separatorIndex = path.indexOf('/', 1);
+            final var bucket = separatorIndex == -1 ? path.substring(1) : path.substring(1, separatorIndex);
+            final var key = separatorIndex == -1 || separatorIndex == path.length() - 1 ?
+                    null :
+                    path.substring(separatorIndex + 1);
+            final var query = parseQuery(exchange.getRequestURI().getRawQuery());
+            final var operation = toOperation(exchange.getRequestMethod(), key, query);
+            if (operation == null) {
+                sendError(exchange, 501, "NotImplemented", "The operation is not supported by the S3 stand-in.");
+                return;
+            }
+            final var body = readBody(exchange);
+            requestCounts.get(operation).increment();
+            if (!delay(operation)) {
+                return;
+            }
+            if (nextBoolean(connectionResetRates, operation)) {
+                // closing the exchange before the response headers are sent closes the connection
+                return;
+            }
+            if (nextBoolean(slowDownRates, operation)) {
+                sendError(exchange, 503, "SlowDown", "Please reduce your request rate.");
+                return;
+            }
+            if (!bucketName.equals(bucket)) {
+                sendError(exchange, 404, "NoSuchBucket", "The specified bucket does not exist.");
+                return;
+            }
+            switch (operation) {
+                case HEAD_BUCKET :
+                    exchange.sendResponseHeaders(200, -1);
+                    break;
+                case LIST_OBJECTS :
+                    listObjects(exchange, query);
+                    break;
+                case GET_OBJECT :
+                    getObject(exchange, key);
+                    break;
+                case HEAD_OBJECT :
+                    headObject(exchange, key);
+                    break;
+                case PUT_OBJECT :
+                    putObject(exchange, key, body);
+                    break;
+                case DELETE_OBJECT :
+                    deleteObject(key, null);
+                    exchange.sendResponseHeaders(204, -1);
+                    break;
+                case DELETE_OBJECTS :
+                    deleteObjects(exchange, body);
+                    break;
+            }
+        }
+    }
+
+    private static @Nullable Operation toOperation(
+            final @NotNull String method,
+            final @Nullable String key,
+            final @NotNull Map<String, String> query) {
+        if (key == null) {
+            switch (method) {
+                case "HEAD" :
+                    return Operation.HEAD_BUCKET;
+                case "GET" :
+                    return "2".equals(query.get("list-type")) ? Operation.LIST_OBJECTS : null;
+                case "POST" :
+                    return query.containsKey("delete") ? Operation.DELETE_OBJECTS : null;
+                default :
+                    return null;
+            }
+        }
+        switch (method) {
+            case "GET" :
+                return Operation.GET_OBJECT;
+            case "HEAD" :
+                return Operation.HEAD_OBJECT;
+            case "PUT" :
+                return Operation.PUT_OBJECT;
+            case "DELETE" :
+                return Operation.DELETE_OBJECT;
+            default :
+                return null;
+        }
+    }
+
+    /**
+     * @return {@code false} if the thread was interrupted while it was waiting.
+     */
+    private boolean delay(final @NotNull Operation operation) {
+        final long delayMillis;
+        synchronized (this) {
+            delayMillis = latencies.getOrDefault(operation, Latency.NONE).nextMillis(random);
+        }
+        if (delayMillis <= 0) {
+            return true;
+        }
+        try {
+            Thread.sleep(delayMillis);
+            return true;
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private synchronized boolean nextBoolean(
+            final @NotNull Map<Operation, Double> probabilities,
+            final @NotNull Operation operation) {
+        final var probability = probabilities.getOrDefault(operation, 0.0);
+        return probability > 0 && random.nextDouble() < probability;
+    }
+
+    private void listObjects(final @NotNull HttpExchange exchange, final @NotNull Map<String, String> query)
+            throws IOException {
+        final var prefix = query.getOrDefault("prefix", "");
+        final var continuationToken = query.get("continuation-token");
+        final var pageSize = Math.min(maxKeys, Integer.parseInt(query.getOrDefault("max-keys", "1000")));
+        final var urlEncoding = "url".equals(query.get("encoding-type"));
+        final NavigableMap<String, StoredObject> candidates = continuationToken == null ?
+                objects.tailMap(prefix, true) :
+                objects.tailMap(new String(Base64.getUrlDecoder().decode(continuationToken), UTF_8), false);
+        final var nowMillis = System.currentTimeMillis();
+        final var contents = new ArrayList<Map.Entry<String, StoredObject>>();
+        String nextContinuationToken = null;
+        for (final var entry : candidates.entrySet()) {
+            if (!entry.getKey().startsWith(prefix)) {
+                break;
+            }
+            if (!entry.getValue().isListed(nowMillis)) {
+                continue;
+            }
+            if (contents.size() == pageSize) {
+                final var lastKey = contents.get(contents.size() - 1).getKey().getBytes(UTF_8);
+                nextContinuationToken = Base64.getUrlEncoder().withoutPadding().encodeToString(lastKey);
+                break;
+            }
+            contents.add(entry);
+        }
+        final var xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        xml.append("<ListBucketResult xmlns=\"").append(XML_NAMESPACE).append("\">");
+        appendElement(xml, "Name", bucketName);
+        appendElement(xml, "Prefix", encodeKey(prefix, urlEncoding));
+        appendElement(xml, "KeyCount", String.valueOf(contents.size()));
+        appendElement(xml, "MaxKeys", String.valueOf(pageSize));
+        if (urlEncoding) {
+            appendElement(xml, "EncodingType", "url");
+        }
+        appendElement(xml, "IsTruncated", String.valueOf(nextContinuationToken != null));
+        if (continuationToken != null) {
+            appendElement(xml, "ContinuationToken", continuationToken);
+        }
+        if (nextContinuationToken != null) {
+            appendElement(xml, "NextContinuationToken", nextContinuationToken);
+        }
+        for (final var entry : contents) {
+            final var storedObject = entry.getValue();
+            xml.append("<Contents>");
+            appendElement(xml, "Key", encodeKey(entry.getKey(), urlEncoding));
+            appendElement(xml, "LastModified", storedObject.lastModified.toString());
+            appendElement(xml, "ETag", storedObject.eTag);
+            appendElement(xml, "Size", String.valueOf(storedObject.content.length));
+            appendElement(xml, "StorageClass", "STANDARD");
+            xml.append("</Contents>");
+        }
+        xml.append("</ListBucketResult>");
+        sendXml(exchange, 200, xml);
+    }
+
+    private void getObject(final @NotNull HttpExchange exchange, final @NotNull String key) throws IOException {
+        final var storedObject = objects.get(key);
+        if (storedObject == null || storedObject.isDeleted()) {
+            sendError(exchange, 404, "NoSuchKey", "The specified key does not exist.");
+            return;
+        }
+        final var headers = exchange.getResponseHeaders();
+        headers.set("Content-Type", "application/octet-stream");
+        headers.set("ETag", storedObject.eTag);
+        headers.set("Last-Modified", LAST_MODIFIED_HEADER.format(storedObject.lastModified));
+        sendBody(exchange, 200, storedObject.content);
+    }
+
+    private void headObject(final @NotNull HttpExchange exchange, final @NotNull String key) throws IOException {
+        final var storedObject = objects.get(key);
+        if (storedObject == null || storedObject.isDeleted()) {
+            // the response to a HEAD request has no body
+            exchange.sendResponseHeaders(404, -1);
+            return;
+        }
+        final var headers = exchange.getResponseHeaders();
+        headers.set("Content-Type", "application/octet-stream");
+        headers.set("ETag", storedObject.eTag);
+        headers.set("Last-Modified", LAST_MODIFIED_HEADER.format(storedObject.lastModified));
+        exchange.sendResponseHeaders(200, -1);
+    }
+
+    private void putObject(final @NotNull HttpExchange exchange, final @NotNull String key, final byte[] content)
+            throws IOException {
+        final var ifMatch = exchange.getRequestHeaders().getFirst("If-Match");
+        final var ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+        final var newObject =
+                new StoredObject(content, Instant.now(), System.currentTimeMillis() + listingDelayMillis);
+        final var status = new int[]{200};
+        objects.compute(key, (ignored, storedObject) -> {
+            final var exists = storedObject != null && !storedObject.isDeleted();
+            if (ifNoneMatch != null && exists) {
+                status[0] = 412;
+                return storedObject;
+            }
+            if (ifMatch != null && !exists) {
+                status[0] = 404;
+                return storedObject;
+            }
+            if (ifMatch != null && !ifMatch.equals(storedObject.eTag)) {
+                status[0] = 412;
+                return storedObject;
+            }
+            // an existing object stays listed while it is replaced
+            return exists ? newObject.listedFrom(storedObject.listedFromMillis) : newObject;
+        });
+        if (status[0] == 412) {
+            sendError(exchange, 412, "PreconditionFailed", "At least one of the preconditions did not hold.");
+        } else if (status[0] == 404) {
+            sendError(exchange, 404, "NoSuchKey", "The specified key does not exist.");
+        } else {
+            exchange.getResponseHeaders().set("ETag", newObject.eTag);
+            exchange.sendResponseHeaders(200, -1);
+        }
+    }
+
+    /**
+     * @param eTag the ETag the object must have to be deleted, {@code null} to delete it unconditionally.
+     * @return the error code if the object was not deleted, {@code null} otherwise.
+     */
+    private @Nullable String deleteObject(final @NotNull String key, final @Nullable String eTag) {
+        final var listedUntilMillis = System.currentTimeMillis() + listingDelayMillis;
+        final var errorCode = new String[1];
+        objects.compute(key, (ignored, storedObject) -> {
+            if (storedObject == null || storedObject.isDeleted()) {
+                if (eTag != null) {
+                    errorCode[0] = "NoSuchKey";
+                }
+                return storedObject;
+            }
+            if (eTag != null && !eTag.equals(storedObject.eTag)) {
+                errorCode[0] = "PreconditionFailed";
+                return storedObject;
+            }
+            // the deleted object is still listed until the listing delay passed
+            return listingDelayMillis <= 0 ? null : storedObject.deleted(listedUntilMillis);
+        });
+        return errorCode[0];
+    }
+
+    private void deleteObjects(final @NotNull HttpExchange exchange, final byte[] body) throws IOException {
+        final var keys = new ArrayList<String>();
+        final var eTags = new ArrayList<@Nullable String>();
+        final boolean quiet;
+        try {
+            final var documentBuilderFactory = DocumentBuilderFactory.newInstance();
+            documentBuilderFactory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            documentBuilderFactory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            final var document =
+                    documentBuilderFactory.newDocumentBuilder().parse(new ByteArrayInputStream(body));
+            final var objectElements = document.getElementsByTagName("Object");
+            for (int i = 0; i < objectElements.getLength(); i++) {
+                final var objectElement = (Element) objectElements.item(i);
+                keys.add(objectElement.getElementsByTagName("Key").item(0).getTextContent());
+                final var eTagElements = objectElement.getElementsByTagName("ETag");
+                eTags.add(eTagElements.getLength() > 0 ? eTagElements.item(0).getTextContent() : null);
+            }
+            final var quietElements = document.getElementsByTagName("Quiet");
+            quiet = quietElements.getLength() > 0 && "true".equals(quietElements.item(0).getTextContent().strip());
+        } catch (final ParserConfigurationException | SAXException e) {
+            sendError(exchange, 400, "MalformedXML", "The XML you provided was not well-formed.");
+            return;
+        }
+        final var xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        xml.append("<DeleteResult xmlns=\"").append(XML_NAMESPACE).append("\">");
+        for (int i = 0; i < keys.size(); i++) {
+            final var key = keys.get(i);
+            final var errorCode = deleteObject(key, conditionalDelete ? eTags.get(i) : null);
+            if (errorCode != null) {
+                // errors are also listed in quiet mode
+                xml.append("<Error>");
+                appendElement(xml, "Key", key);
+                appendElement(xml, "Code", errorCode);
+                appendElement(xml, "Message", "The object was not deleted.");
+                xml.append("</Error>");
+            } else if (!quiet) {
+                xml.append("<Deleted>");
+                appendElement(xml, "Key", key);
+                xml.append("</Deleted>");
+            }
+        }
+        xml.append("</DeleteResult>");
+        sendXml(exchange, 200, xml);
+    }
+
+    /**
+     * Reads the request body and removes the chunk framing of the aws-chunked encoding, which the AWS SDK uses to
+     * send the checksum of an upload as trailer.
+     */
+    private static byte[] readBody(final @NotNull HttpExchange exchange) throws IOException {
+        final var body = exchange.getRequestBody().readAllBytes();
+        final var contentEncoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+        final var contentSha256 = exchange.getRequestHeaders().getFirst("x-amz-content-sha256");
+        if ((contentEncoding == null || !contentEncoding.contains("aws-chunked")) &&
+                (contentSha256 == null || !contentSha256.startsWith("STREAMING-"))) {
+            return body;
+        }
+        final var content = new ByteArrayOutputStream(body.length);
+        int index = 0;
+        while (index < body.length) {
+            final var lineEnd = indexOfLineEnd(body, index);
+            if (lineEnd == -1) {
+                break;
+            }
+            final var chunkHeader = new String(body, index, lineEnd - index, US_ASCII);
+            final var extensionIndex = chunkHeader.indexOf(';');
+            final var chunkSize = Integer.parseInt(
+                    (extensionIndex == -1 ? chunkHeader : chunkHeader.substring(0, extensionIndex)).strip(), 16);
+            if (chunkSize == 0) {
+                // only the trailers follow
+                break;
+            }
+            index = lineEnd + 2;
+            content.write(body, index, chunkSize);
+            index += chunkSize + 2;
+        }
+        return content.toByteArray();
+    }
+
+    private static int indexOfLineEnd(final byte[] body, final int fromIndex) {
+        for (int i = fromIndex; i < body.length - 1; i++) {
+            if (body[i] == '\r' && body[i + 1] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static @NotNull Map<String, String> parseQuery(final @Nullable String rawQuery) {
+        final var query = new HashMap<String, String>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return query;
+        }
+        for (final var parameter : rawQuery.split("&")) {
+            final var separatorIndex = parameter.indexOf('=');
+            if (separatorIndex == -1) {
+                query.put(URLDecoder.decode(parameter, UTF_8), "");
+            } else {
+                query.put(URLDecoder.decode(parameter.substring(0, separatorIndex), UTF_8),
+                        URLDecoder.decode(parameter.substring(separatorIndex + 1), UTF_8));
+            }
+        }
+        return query;
+    }
+
+    private static @NotNull String encodeKey(final @NotNull String key, final boolean urlEncoding) {
+        return urlEncoding ? URLEncoder.encode(key, UTF_8) : key;
+    }
+
+    private static void appendElement(
+            final @NotNull StringBuilder xml,
+            final @NotNull String name,
+            final @NotNull String value) {
+        xml.append('<').append(name).append('>');
+        for (int i = 0; i < value.length(); i++) {
+            final var c = value.charAt(i);
+            switch (c) {
+                case '<' :
+                    xml.append("&lt;");
+                    break;
+                case '>' :
+                    xml.append("&gt;");
+                    break;
+                case '&' :
+                    xml.append("&amp;");
+                    break;
+                case '"' :
+                    xml.append("&quot;");
+                    break;
+                case '\'' :
+                    xml.append("&apos;");
+                    break;
+                default :
+                    xml.append(c);
+            }
+        }
+        xml.append("</").append(name).append('>');
+    }
+
+    private static void sendError(
+            final @NotNull HttpExchange exchange,
+            final int statusCode,
+            final @NotNull String code,
+            final @NotNull String message) throws IOException {
+        if (exchange.getRequestMethod().equals("HEAD")) {
+            // a response to HEAD has no body
+            exchange.sendResponseHeaders(statusCode, -1);
+            return;
+        }
+        final var xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<Error>");
+        appendElement(xml, "Code", code);
+        appendElement(xml, "Message", message);
+        xml.append("</Error>");
+        sendXml(exchange, statusCode, xml);
+    }
+
+    private static void sendXml(
+            final @NotNull HttpExchange exchange,
+            final int statusCode,
+            final @NotNull CharSequence xml) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/xml");
+        sendBody(exchange, statusCode, xml.toString().getBytes(UTF_8));
+    }
+
+    private static void sendBody(final @NotNull HttpExchange exchange, final int statusCode, final byte[] body)
+            throws IOException {
+        exchange.sendResponseHeaders(statusCode, body.length == 0 ? -1 : body.length);
+        if (body.length > 0) {
+            exchange.getResponseBody().write(body);
+        }
+    }
+
+    private static final class StoredObject {
+
+        private final byte[] content;
+        private final @NotNull String eTag;
+        private final @NotNull Instant lastModified;
+        private final long listedFromMillis;
+        private final long listedUntilMillis;
+
+        private StoredObject(final byte[] content, final @NotNull Instant lastModified, final long listedFromMillis) {
+            this(content, eTag(content), lastModified, listedFromMillis, Long.MAX_VALUE);
+        }
+
+        private StoredObject(
+                final byte[] content,
+                final @NotNull String eTag,
+                final @NotNull Instant lastModified,
+                final long listedFromMillis,
+                final long listedUntilMillis) {
+            this.content = content;
+            this.eTag = eTag;
+            // S3 stores the last modified time in milliseconds
+            this.lastModified = lastModified.truncatedTo(ChronoUnit.MILLIS);
+            this.listedFromMillis = listedFromMillis;
+            this.listedUntilMillis = listedUntilMillis;
+        }
+
+        private @NotNull StoredObject listedFrom(final long listedFromMillis) {
+            return new StoredObject(content, eTag, lastModified, listedFromMillis, listedUntilMillis);
+        }
+
+        private @NotNull StoredObject deleted(final long listedUntilMillis) {
+            return new StoredObject(content, eTag, lastModified, listedFromMillis, listedUntilMillis);
+        }
+
+        private boolean isDeleted() {
+            return listedUntilMillis != Long.MAX_VALUE;
+        }
+
+        private boolean isListed(final long nowMillis) {
+            return nowMillis >= listedFromMillis && nowMillis < listedUntilMillis;
+        }
+
+        /**
+         * @return the quoted MD5 hex digest of the content, like the ETag S3 calculates for a single part upload.
+         */
+        private static @NotNull String eTag(final byte[] content) {
+            try {
+                return '"' + HexFormat.of().formatHex(MessageDigest.getInstance("MD5").digest(content)) + '"';
+            } catch (final NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}